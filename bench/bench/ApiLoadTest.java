@@ -0,0 +1,248 @@
+package bench;
+
+import config.Json;
+import config.LatencyHistogram;
+import config.config;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import main.ApiServer;
+
+/**
+ * Closed-loop load test for the HTTP API: N client threads send requests
+ * back to back for a fixed time and the run reports requests per second and
+ * p50/p99 latency per endpoint.
+ *
+ * Not a JMH benchmark; run it directly, e.g.
+ * <pre>
+ *   java -cp build/classes:build/bench/classes:lib/* bench.ApiLoadTest --clients 32 --seconds 20
+ *   java ... bench.ApiLoadTest --url http://127.0.0.1:8080 --users 200 --programs 10
+ * </pre>
+ * Without --url it seeds a {@link BenchDatabase} and serves it from an
+ * in-process {@link ApiServer} on a free localhost port. With --url,
+ * --users and --programs must describe the database behind that server (the
+ * workload assumes BenchDatabase's IDs, e-mails and passwords).
+ *
+ * Each client logs in once for its session token. Mix: 40% program lookups,
+ * 25% participation lookups, 15% attendance listings, 15% attendance
+ * inserts, 5% logins (each followed by a logout).
+ */
+public final class ApiLoadTest {
+
+    private static final LocalDate FIRST_INSERT_DATE = LocalDate.of(2030, 1, 1);
+
+    private final String baseUrl;
+    private final int users;
+    private final int programs;
+    private final Map<String, LatencyHistogram> latency = new TreeMap<>();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private final AtomicInteger insertSeq = new AtomicInteger();
+
+    private ApiLoadTest(String baseUrl, int users, int programs) {
+        this.baseUrl = baseUrl;
+        this.users = users;
+        this.programs = programs;
+        for (String name : new String[] { "GET program", "GET participation", "GET attendance list", "POST attendance", "POST login", "POST logout" }) {
+            latency.put(name, new LatencyHistogram());
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        String url = null;
+        int clients = 16;
+        int seconds = 10;
+        int users = 20000;
+        int programs = 20;
+        int serverThreads = 16;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--url": url = args[i + 1]; break;
+                case "--clients": clients = Integer.parseInt(args[i + 1]); break;
+                case "--seconds": seconds = Integer.parseInt(args[i + 1]); break;
+                case "--users": users = Integer.parseInt(args[i + 1]); break;
+                case "--programs": programs = Integer.parseInt(args[i + 1]); break;
+                case "--server-threads": serverThreads = Integer.parseInt(args[i + 1]); break;
+                default: throw new IllegalArgumentException("unknown option " + args[i]);
+            }
+        }
+
+        Path file = null;
+        ApiServer server = null;
+        if (url == null) {
+            file = BenchDatabase.create(users, programs, 8);
+            System.setProperty("4ps.db.url", "jdbc:sqlite:" + file);
+            config.connectDB();
+            server = new ApiServer(new config(), new InetSocketAddress("127.0.0.1", 0), serverThreads);
+            server.start();
+            url = "http://127.0.0.1:" + server.getPort();
+        }
+        try {
+            ApiLoadTest test = new ApiLoadTest(url, users, programs);
+            test.run(2, Math.min(seconds, 3));    // warm-up: JIT, page cache, statement cache
+            test.reset();
+            long elapsed = test.run(clients, seconds);
+            test.report(clients, elapsed);
+        } finally {
+            if (server != null) {
+                server.stop(1);
+                config.closeDB();
+                BenchDatabase.delete(file);
+            }
+        }
+    }
+
+    private long run(int clients, int seconds) throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        List<Thread> threads = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int c = 0; c < clients; c++) {
+            final int user = c % users + 1;
+            Thread t = new Thread(() -> {
+                String token = login(user);
+                while (System.nanoTime() < deadline) {
+                    step(token);
+                }
+            }, "load-client-" + c);
+            t.start();
+            threads.add(t);
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        return System.nanoTime() - start;
+    }
+
+    private String login(int user) {
+        try {
+            HttpURLConnection conn = (HttpURLConnection) new URL(baseUrl + "/api/login").openConnection();
+            conn.setRequestMethod("POST");
+            conn.setDoOutput(true);
+            try (OutputStream out = conn.getOutputStream()) {
+                out.write(loginBody(user).getBytes(StandardCharsets.UTF_8));
+            }
+            if (conn.getResponseCode() != 200) {
+                throw new IllegalStateException("login as user " + user + " failed: HTTP " + conn.getResponseCode());
+            }
+            try (InputStream in = conn.getInputStream()) {
+                return (String) Json.parseObject(new String(drain(in), StandardCharsets.UTF_8)).get("token");
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("login as user " + user + " failed", e);
+        }
+    }
+
+    private static String loginBody(int user) {
+        return "{\"email\":\"user" + user + "@4ps.test\",\"password\":\"password" + user + "\"}";
+    }
+
+    private void step(String token) {
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        int user = 1 + rnd.nextInt(users);
+        int program = user % programs + 1;   // BenchDatabase enrolls each user in exactly this program
+        int pick = rnd.nextInt(100);
+        if (pick < 40) {
+            call("GET program", "GET", "/api/programs/" + (1 + rnd.nextInt(programs)), null, token);
+        } else if (pick < 65) {
+            call("GET participation", "GET", "/api/participation/" + user + "/" + program, null, token);
+        } else if (pick < 80) {
+            call("GET attendance list", "GET", "/api/attendance?user_id=" + user + "&limit=20", null, token);
+        } else if (pick < 95) {
+            int seq = insertSeq.getAndIncrement();
+            int u = seq % users + 1;
+            String date = FIRST_INSERT_DATE.plusDays(seq / users).toString();
+            call("POST attendance", "POST", "/api/attendance",
+                    "{\"user_id\":" + u + ",\"program_id\":" + (u % programs + 1) + ",\"date\":\"" + date + "\"}", token);
+        } else {
+            String reply = call("POST login", "POST", "/api/login", loginBody(user), null);
+            if (reply != null) {
+                // End the session again so the server's session count stays flat however long the run is.
+                call("POST logout", "POST", "/api/logout", null, (String) Json.parseObject(reply).get("token"));
+            }
+        }
+    }
+
+    /** Sends one request, records its latency and returns the response body (null on failure). */
+    private String call(String name, String method, String path, String body, String token) {
+        long start = System.nanoTime();
+        int status;
+        byte[] response = null;
+        try {
+            HttpURLConnection conn = (HttpURLConnection) new URL(baseUrl + path).openConnection();
+            conn.setRequestMethod(method);
+            if (token != null) {
+                conn.setRequestProperty("Authorization", "Bearer " + token);
+            }
+            if (body != null) {
+                conn.setDoOutput(true);
+                conn.setRequestProperty("Content-Type", "application/json");
+                try (OutputStream out = conn.getOutputStream()) {
+                    out.write(body.getBytes(StandardCharsets.UTF_8));
+                }
+            }
+            status = conn.getResponseCode();
+            // Read the body fully so the keep-alive connection can be reused.
+            try (InputStream in = status < 400 ? conn.getInputStream() : conn.getErrorStream()) {
+                response = drain(in);
+            }
+        } catch (IOException e) {
+            status = -1;
+        }
+        latency.get(name).record(System.nanoTime() - start);
+        requests.incrementAndGet();
+        if (status < 200 || status >= 300) {
+            errors.incrementAndGet();
+            return null;
+        }
+        return response == null ? null : new String(response, StandardCharsets.UTF_8);
+    }
+
+    private static byte[] drain(InputStream in) throws IOException {
+        ByteArrayOutputStream sink = new ByteArrayOutputStream();
+        if (in == null) return sink.toByteArray();
+        byte[] buf = new byte[4096];
+        int n;
+        while ((n = in.read(buf)) > 0) {
+            sink.write(buf, 0, n);
+        }
+        return sink.toByteArray();
+    }
+
+    private void reset() {
+        for (LatencyHistogram h : latency.values()) {
+            h.reset();
+        }
+        requests.set(0);
+        errors.set(0);
+    }
+
+    private void report(int clients, long elapsedNanos) {
+        LatencyHistogram all = new LatencyHistogram();
+        System.out.printf("%n=== HTTP API load test: %s, %d clients, %.1f s ===%n", baseUrl, clients, elapsedNanos / 1e9);
+        System.out.printf("%-22s %9s %10s %10s %10s%n", "endpoint", "requests", "p50 ms", "p99 ms", "max ms");
+        for (Map.Entry<String, LatencyHistogram> e : latency.entrySet()) {
+            LatencyHistogram h = e.getValue();
+            System.out.printf("%-22s %9d %10.3f %10.3f %10.3f%n", e.getKey(), h.getCount(),
+                    h.getValueAtPercentile(50) / 1e6, h.getValueAtPercentile(99) / 1e6, h.getMax() / 1e6);
+            all.merge(h);
+        }
+        System.out.printf("%-22s %9d %10.3f %10.3f %10.3f%n", "all", all.getCount(),
+                all.getValueAtPercentile(50) / 1e6, all.getValueAtPercentile(99) / 1e6, all.getMax() / 1e6);
+        System.out.printf("throughput: %.0f req/s, non-2xx or failed: %d%n", requests.get() / (elapsedNanos / 1e9), errors.get());
+    }
+}
@@ -0,0 +1,90 @@
+package bench;
+
+import config.config;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import main.AttendanceIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * One eligibility check (meetings a beneficiary attended in a program within
+ * a date window): a COUNT(*) round trip through config.getRecords vs. two
+ * binary searches in the in-memory {@link AttendanceIndex}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class AttendanceIndexBenchmark {
+
+    private static final int PROGRAMS = 20;
+    private static final int MEETINGS_PER_USER = 40;
+    private static final String SQL_COUNT =
+        "SELECT COUNT(*) FROM attendance WHERE user_id = ? AND program_id = ? AND meeting_date BETWEEN ? AND ?";
+
+    @Param("50000")
+    public int users;
+
+    private Path file;
+    private config db;
+    private AttendanceIndex index;
+    private String fromDate;
+    private String toDate;
+    private int fromDay;
+    private int toDay;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        file = BenchDatabase.create(users, PROGRAMS, MEETINGS_PER_USER);
+        System.setProperty("4ps.db.url", "jdbc:sqlite:" + file);
+        config.connectDB();
+        db = new config();
+        index = AttendanceIndex.get();
+        index.invalidate();
+        index.ensureLoaded();
+        System.out.println(index.getStats());
+        fromDate = BenchDatabase.FIRST_MEETING.plusWeeks(8).toString();
+        toDate = BenchDatabase.FIRST_MEETING.plusWeeks(24).toString();
+        fromDay = (int) BenchDatabase.FIRST_MEETING.plusWeeks(8).toEpochDay();
+        toDay = (int) BenchDatabase.FIRST_MEETING.plusWeeks(24).toEpochDay();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        index.invalidate();
+        config.closeDB();
+        BenchDatabase.delete(file);
+    }
+
+    @Benchmark
+    public int sqlCount() throws SQLException {
+        int user = 1 + ThreadLocalRandom.current().nextInt(users);
+        try (ResultSet rs = db.getRecords(SQL_COUNT, user, user % PROGRAMS + 1, fromDate, toDate)) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    @Benchmark
+    public int indexCount() throws SQLException {
+        int user = 1 + ThreadLocalRandom.current().nextInt(users);
+        return index.countInRange(user, user % PROGRAMS + 1, fromDay, toDay);
+    }
+}
@@ -0,0 +1,118 @@
+package bench;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.Random;
+
+/**
+ * Builds a throwaway copy of the 4psDB schema in a temp file and seeds it with
+ * deterministic data, so benchmark runs are reproducible offline.
+ */
+public final class BenchDatabase {
+
+    public static final long SEED = 4L;
+    public static final LocalDate FIRST_MEETING = LocalDate.of(2024, 1, 8);
+
+    private static final String[] SCHEMA = {
+        "CREATE TABLE user (user_id INT PRIMARY KEY, name VARCHAR(255) NOT NULL, gender VARCHAR(10), "
+            + "year_level VARCHAR(50), email VARCHAR(100) UNIQUE NOT NULL, password VARCHAR(64) NOT NULL)",
+        "CREATE TABLE program (program_id INT PRIMARY KEY, program_name VARCHAR(255) NOT NULL, description TEXT)",
+        "CREATE TABLE participation (user_id INT, program_id INT, meetings_attended INT DEFAULT 0, "
+            + "amount_received DECIMAL(10, 2) DEFAULT 0.00, PRIMARY KEY (user_id, program_id), "
+            + "FOREIGN KEY (user_id) REFERENCES user(user_id) ON DELETE CASCADE, "
+            + "FOREIGN KEY (program_id) REFERENCES program(program_id) ON DELETE CASCADE)",
+        "CREATE TABLE attendance (attendance_id INT PRIMARY KEY, user_id INT NOT NULL, program_id INT NOT NULL, "
+            + "meeting_date DATE NOT NULL, UNIQUE (user_id, program_id, meeting_date), "
+            + "FOREIGN KEY (user_id) REFERENCES user(user_id) ON DELETE CASCADE, "
+            + "FOREIGN KEY (program_id) REFERENCES program(program_id) ON DELETE CASCADE)"
+    };
+
+    private BenchDatabase() {
+    }
+
+    /**
+     * Creates and seeds a database. Every user joins one program (user_id % programs + 1)
+     * and attends {@code meetingsPerUser} weekly meetings of it, so the attendance
+     * table holds exactly {@code users * meetingsPerUser} rows.
+     */
+    public static Path create(int users, int programs, int meetingsPerUser) throws IOException, SQLException {
+        Path file = Files.createTempFile("4ps-bench-", ".db");
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + file)) {
+            try (Statement st = conn.createStatement()) {
+                for (String ddl : SCHEMA) {
+                    st.execute(ddl);
+                }
+            }
+            conn.setAutoCommit(false);
+            Random random = new Random(SEED);
+
+            try (PreparedStatement ps = conn.prepareStatement("INSERT INTO program VALUES (?,?,?)")) {
+                for (int p = 1; p <= programs; p++) {
+                    ps.setInt(1, p);
+                    ps.setString(2, "Program " + p);
+                    ps.setString(3, "Family development session track " + p);
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+            }
+
+            try (PreparedStatement u = conn.prepareStatement("INSERT INTO user VALUES (?,?,?,?,?,?)");
+                 PreparedStatement part = conn.prepareStatement("INSERT INTO participation VALUES (?,?,?,?)");
+                 PreparedStatement att = conn.prepareStatement("INSERT INTO attendance VALUES (?,?,?,?)")) {
+                int attendanceId = 1;
+                for (int id = 1; id <= users; id++) {
+                    int programId = id % programs + 1;
+                    u.setInt(1, id);
+                    u.setString(2, "Beneficiary " + id);
+                    u.setString(3, random.nextBoolean() ? "female" : "male");
+                    u.setString(4, String.valueOf(1 + random.nextInt(12)));
+                    u.setString(5, "user" + id + "@4ps.test");
+                    u.setString(6, main.AuthManager.hashPassword("password" + id));
+                    u.addBatch();
+
+                    int attended = meetingsPerUser;
+                    part.setInt(1, id);
+                    part.setInt(2, programId);
+                    part.setInt(3, attended);
+                    part.setDouble(4, attended * 250.0);
+                    part.addBatch();
+
+                    for (int m = 0; m < attended; m++) {
+                        att.setInt(1, attendanceId++);
+                        att.setInt(2, id);
+                        att.setInt(3, programId);
+                        att.setString(4, FIRST_MEETING.plusWeeks(m).toString());
+                        att.addBatch();
+                    }
+                    if (id % 5000 == 0) {
+                        u.executeBatch();
+                        part.executeBatch();
+                        att.executeBatch();
+                    }
+                }
+                u.executeBatch();
+                part.executeBatch();
+                att.executeBatch();
+            }
+            conn.commit();
+        }
+        return file;
+    }
+
+    public static void delete(Path file) {
+        for (String suffix : new String[] { "", "-wal", "-shm" }) {
+            try {
+                Files.deleteIfExists(file.resolveSibling(file.getFileName() + suffix));
+            } catch (IOException e) {
+                /* Ignore cleanup error */
+            }
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package bench;
+
+import config.config;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+import main.ComplianceRun;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * One full compliance run (read every participation row, count its
+ * attendance in the period, write the verdicts back) on 1, 2, 4 and 8
+ * fork-join workers. Near-linear scaling needs as many free cores as
+ * workers; the single writer is the floor.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+public class ComplianceBenchmark {
+
+    private static final int PROGRAMS = 20;
+    private static final int MEETINGS_PER_USER = 20;
+
+    @Param("50000")
+    public int users;
+
+    @Param({ "1", "2", "4", "8" })
+    public int threads;
+
+    private Path file;
+    private LocalDate from;
+    private LocalDate to;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        file = BenchDatabase.create(users, PROGRAMS, MEETINGS_PER_USER);
+        System.setProperty("4ps.db.url", "jdbc:sqlite:" + file);
+        config.connectDB();
+        from = BenchDatabase.FIRST_MEETING;
+        to = BenchDatabase.FIRST_MEETING.plusWeeks(MEETINGS_PER_USER);
+    }
+
+    @TearDown(Level.Iteration)
+    public void dropVerdicts() throws SQLException {
+        try (Connection conn = config.getWriteConnection(); Statement st = conn.createStatement()) {
+            st.executeUpdate("DELETE FROM compliance_result");
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        config.closeDB();
+        BenchDatabase.delete(file);
+    }
+
+    @Benchmark
+    public long complianceRun() throws SQLException {
+        return new ComplianceRun(new config(), threads, ComplianceRun.DEFAULT_MIN_RATE).run(from, to, null).getEligible();
+    }
+}
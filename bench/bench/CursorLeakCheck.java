@@ -0,0 +1,278 @@
+package bench;
+
+import config.ConnectionPool;
+import config.SchemaMigrator;
+import config.config;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import main.RecordService;
+import main.RecordViewer;
+import main.ServiceException;
+
+/**
+ * Cursor leak check for the record paths: runs the {@link RecordService}
+ * operations and every {@link RecordViewer} paging mode against a throwaway
+ * database, the failing branches (missing rows, bad dates, duplicates,
+ * invalid arguments) as well as the working ones, and a viewer dropped after
+ * its first page. After every call no cursor may be left open
+ * ({@link config#getOpenCursorCount()}) and no reader connection checked
+ * out; the run stops (exit code 1) at the first call that leaves one, e.g.
+ * <pre>
+ *   java -cp build/classes:build/bench/classes:lib/* bench.CursorLeakCheck --rounds 3
+ * </pre>
+ *
+ * Options: --rounds (passes over the whole set, default 3), --users (seeded
+ * beneficiaries, default 200), --page (viewer page size, default 25).
+ */
+public final class CursorLeakCheck {
+
+    private interface Call {
+        void run() throws Exception;
+    }
+
+    private static final int PROGRAMS = 5;
+
+    private static int calls = 0;
+    private static int unexpected = 0;
+
+    private CursorLeakCheck() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int rounds = 3;
+        int users = 200;
+        int page = 25;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--rounds": rounds = Integer.parseInt(args[i + 1]); break;
+                case "--users": users = Integer.parseInt(args[i + 1]); break;
+                case "--page": page = Integer.parseInt(args[i + 1]); break;
+                default: throw new IllegalArgumentException("unknown option " + args[i]);
+            }
+        }
+
+        Path dir = Files.createTempDirectory("4ps-cursor-check-");
+        Path file = dir.resolve("4psDB.db").toAbsolutePath();
+        // Read once when config is first loaded, so it is set before anything touches that class.
+        System.setProperty("4ps.db.url", "jdbc:sqlite:" + file);
+        try {
+            seed(file, users);
+            config.connectDB();
+            if (config.getPoolStats() == null) {
+                throw new IllegalStateException("could not open " + file);
+            }
+            try {
+                config db = new config();
+                RecordService service = new RecordService(db);
+                PrintStream sink = new PrintStream(new OutputStream() {
+                    @Override
+                    public void write(int b) {
+                    }
+                });
+                System.out.printf("⌛ %d round(s), %d users, page size %d%n", rounds, users, page);
+                for (int r = 0; r < rounds; r++) {
+                    records(service, users, r);
+                    viewers(db, service, sink, page, users);
+                }
+            } finally {
+                config.closeDB();
+            }
+        } finally {
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+                for (Path f : files) {
+                    Files.deleteIfExists(f);
+                }
+            }
+            Files.deleteIfExists(dir);
+        }
+        if (unexpected > 0) {
+            System.out.println("❌ " + unexpected + " call(s) did not succeed or fail as expected");
+            System.exit(1);
+        }
+        System.out.printf("✅ %,d calls, no cursor or reader connection left open%n", calls);
+    }
+
+    // ----------------------------------------------------
+    // --- RECORD SERVICE: each operation, working and failing ---
+    // ----------------------------------------------------
+
+    private static void records(RecordService service, int users, int round) throws Exception {
+        final int user = 1 + round % users;
+        final int missing = users + 1000;
+        final String date = BenchDatabase.FIRST_MEETING.plusWeeks(round).toString();
+        final int[] program = new int[1];
+        final int[] attendance = new int[1];
+
+        check("addProgram", () -> program[0] = service.addProgram("Leak check " + round, "round " + round));
+        fails("addProgram without a name", () -> service.addProgram("  ", "x"));
+        check("findProgram", () -> service.findProgram(program[0]));
+        check("findProgram (missing)", () -> service.findProgram(missing));
+        check("updateProgram", () -> service.updateProgram(program[0], "Leak check " + round, "updated"));
+        fails("updateProgram (missing)", () -> service.updateProgram(missing, "x", "x"));
+        fails("deleteProgram (missing)", () -> service.deleteProgram(missing));
+
+        check("recordParticipation", () -> service.recordParticipation(user, program[0], 500));
+        fails("recordParticipation (duplicate)", () -> service.recordParticipation(user, program[0], 500));
+        fails("recordParticipation (missing user)", () -> service.recordParticipation(missing, program[0], 500));
+        fails("recordParticipation (missing program)", () -> service.recordParticipation(user, missing, 500));
+        fails("recordParticipation (negative amount)", () -> service.recordParticipation(user + 1, program[0], -1));
+        check("findParticipation", () -> service.findParticipation(user, program[0]));
+        check("updateParticipation", () -> service.updateParticipation(user, program[0], 750));
+        fails("updateParticipation (missing)", () -> service.updateParticipation(missing, program[0], 750));
+
+        check("recordAttendance", () -> attendance[0] = service.recordAttendance(user, program[0], date));
+        fails("recordAttendance (same date again)", () -> service.recordAttendance(user, program[0], date));
+        fails("recordAttendance (bad date)", () -> service.recordAttendance(user, program[0], "2024-13-40"));
+        fails("recordAttendance (missing program)", () -> service.recordAttendance(user, missing, date));
+        check("findAttendance", () -> service.findAttendance(attendance[0]));
+        check("findAttendance (missing)", () -> service.findAttendance(missing));
+        check("countAttendance", () -> service.countAttendance(user, program[0], "2024-01-01", "2030-12-31"));
+        fails("countAttendance (bad date)", () -> service.countAttendance(user, program[0], "yesterday", "2030-12-31"));
+        fails("countAttendance (end before start)", () -> service.countAttendance(user, program[0], "2030-12-31", "2024-01-01"));
+
+        check("deleteAttendance", () -> service.deleteAttendance(attendance[0]));
+        fails("deleteAttendance (already deleted)", () -> service.deleteAttendance(attendance[0]));
+        check("deleteParticipation", () -> service.deleteParticipation(user, program[0]));
+        fails("deleteParticipation (already deleted)", () -> service.deleteParticipation(user, program[0]));
+        check("deleteProgram", () -> service.deleteProgram(program[0]));
+    }
+
+    // ----------------------------------------------------
+    // --- RECORD VIEWER: printed and fetched pages, filters, early stop ---
+    // ----------------------------------------------------
+
+    private static void viewers(config db, RecordService service, PrintStream sink, int page, int users) throws Exception {
+        for (final RecordViewer.View view : RecordViewer.View.values()) {
+            for (int mask = 0; mask < 8; mask++) {
+                final RecordViewer.Filter filter = new RecordViewer.Filter();
+                if ((mask & 1) != 0) filter.userId = 1 + mask % users;
+                if ((mask & 2) != 0) filter.programId = 1;
+                if ((mask & 4) != 0) {
+                    filter.fromDate = BenchDatabase.FIRST_MEETING.toString();
+                    filter.toDate = BenchDatabase.FIRST_MEETING.plusWeeks(4).toString();
+                }
+                String name = view + " filter " + mask;
+                check("showNextPage to the end, " + name, () -> {
+                    RecordViewer v = new RecordViewer(db, view, filter, page, sink);
+                    while (v.hasMore()) v.showNextPage();
+                });
+                check("fetchNextPage to the end, " + name, () -> {
+                    RecordViewer v = new RecordViewer(db, view, filter, page, null);
+                    while (v.hasMore()) v.fetchNextPage();
+                });
+                // The operator quits after the first page; the viewer is simply dropped.
+                check("showNextPage then stop, " + name, () -> new RecordViewer(db, view, filter, page, sink).showNextPage());
+                check("list, " + name, () -> service.list(view, filter, page));
+            }
+            final RecordViewer.Filter none = new RecordViewer.Filter();
+            none.userId = users + 1000;
+            check(view + " with no matching rows", () -> new RecordViewer(db, view, none, page, sink).showNextPage());
+            fails(view + " with page size 0", () -> new RecordViewer(db, view, null, 0, sink));
+        }
+    }
+
+    // ----------------------------------------------------
+    // --- CHECKS ---
+    // ----------------------------------------------------
+
+    private static void check(String what, Call call) {
+        run(what, call, false);
+    }
+
+    private static void fails(String what, Call call) {
+        run(what, call, true);
+    }
+
+    private static void run(String what, Call call, boolean shouldFail) {
+        calls++;
+        Exception failure = null;
+        try {
+            call.run();
+        } catch (ServiceException | IllegalArgumentException e) {
+            failure = e;
+        } catch (Exception e) {
+            failure = e;
+            if (shouldFail) {
+                // Only rule violations are expected; a SQLException here is a failure of its own.
+                System.out.println("❌ " + what + ": " + e);
+                unexpected++;
+            }
+        }
+        if (failure == null && shouldFail) {
+            System.out.println("❌ " + what + ": expected to fail, but succeeded");
+            unexpected++;
+        } else if (failure != null && !shouldFail) {
+            System.out.println("❌ " + what + ": " + failure);
+            unexpected++;
+        }
+
+        int open = config.getOpenCursorCount();
+        ConnectionPool.Stats pool = config.getPoolStats();
+        int busy = pool == null ? 0 : pool.getActiveReaders();
+        if (open != 0 || busy != 0) {
+            System.out.println("❌ " + what + " left " + open + " cursor(s) open and " + busy + " reader connection(s) checked out");
+            for (String line : config.describeOpenCursors()) {
+                System.out.println("   - " + line);
+            }
+            throw new IllegalStateException(what + " leaked a cursor or a reader connection");
+        }
+    }
+
+    // --- Every user joins one of five programs and attends four weekly meetings, so the viewers have pages to walk ---
+    private static void seed(Path file, int users) throws SQLException {
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + file)) {
+            SchemaMigrator.migrate(conn);
+            conn.setAutoCommit(false);
+            try (PreparedStatement ps = conn.prepareStatement(
+                    "INSERT INTO user(user_id, name, gender, year_level, email, password) VALUES (?,?,?,?,?,?)")) {
+                for (int id = 1; id <= users; id++) {
+                    ps.setInt(1, id);
+                    ps.setString(2, "Beneficiary " + id);
+                    ps.setString(3, id % 2 == 0 ? "female" : "male");
+                    ps.setString(4, String.valueOf(1 + id % 12));
+                    ps.setString(5, "user" + id + "@4ps.test");
+                    ps.setString(6, "not-a-hash");
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+            }
+            try (PreparedStatement program = conn.prepareStatement("INSERT INTO program(program_id, program_name, description) VALUES (?,?,?)");
+                 PreparedStatement part = conn.prepareStatement("INSERT INTO participation(user_id, program_id, amount_received) VALUES (?,?,?)");
+                 PreparedStatement att = conn.prepareStatement(
+                         "INSERT INTO attendance(attendance_id, user_id, program_id, meeting_date) VALUES (?,?,?,?)")) {
+                for (int p = 1; p <= PROGRAMS; p++) {
+                    program.setInt(1, p);
+                    program.setString(2, "Program " + p);
+                    program.setString(3, "Family development session track " + p);
+                    program.addBatch();
+                }
+                program.executeBatch();
+                int attendanceId = 1;
+                for (int id = 1; id <= users; id++) {
+                    int programId = id % PROGRAMS + 1;
+                    part.setInt(1, id);
+                    part.setInt(2, programId);
+                    part.setDouble(3, 1500);
+                    part.addBatch();
+                    for (int w = 0; w < 4; w++) {
+                        att.setInt(1, attendanceId++);
+                        att.setInt(2, id);
+                        att.setInt(3, programId);
+                        att.setString(4, BenchDatabase.FIRST_MEETING.plusWeeks(w).toString());
+                        att.addBatch();
+                    }
+                }
+                part.executeBatch();
+                att.executeBatch();
+            }
+            conn.commit();
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package bench;
+
+import config.config;
+import java.nio.file.Path;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Hot paths of config: single-row inserts, participation point lookups and ID allocation.
+ * Run with {@code ant bench -Dbench.args="DatabaseBenchmark -p users=100000"}.
+ *
+ * Every benchmark runs with the prepared-statement cache off (size 0) and at its
+ * default size, so one run gives the before and after rows side by side. The size
+ * is read once when config initialises; JMH runs each parameter combination in its
+ * own fork, so do not pass {@code -f 0}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class DatabaseBenchmark {
+
+    @Param("10000")
+    public int users;
+
+    @Param("20")
+    public int programs;
+
+    @Param("12")
+    public int meetingsPerUser;
+
+    @Param({ "0", "32" })
+    public int statementCacheSize;
+
+    private Path file;
+    private config db;
+    private int insertCounter;
+    private int lookupCounter;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        file = BenchDatabase.create(users, programs, meetingsPerUser);
+        // config reads the URL once, so it must be set before the class initialises.
+        System.setProperty("4ps.db.url", "jdbc:sqlite:" + file);
+        System.setProperty("4ps.db.statementCacheSize", Integer.toString(statementCacheSize));
+        config.connectDB();
+        db = new config();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        config.closeDB();
+        BenchDatabase.delete(file);
+    }
+
+    @Benchmark
+    public void addRecordInsert() throws SQLException {
+        int n = insertCounter++;
+        int id = db.getNextId("attendance", "attendance_id");
+        // Dates far past the seeded range keep (user_id, program_id, meeting_date) unique.
+        db.addRecord("INSERT INTO attendance(attendance_id, user_id, program_id, meeting_date) VALUES (?,?,?,?)",
+                id, 1, 2, BenchDatabase.FIRST_MEETING.plusYears(100).plusDays(n).toString());
+    }
+
+    @Benchmark
+    public void getRecordsParticipationLookup(Blackhole bh) throws SQLException {
+        int userId = (lookupCounter++ % users) + 1;
+        int programId = userId % programs + 1;
+        try (ResultSet rs = db.getRecords("SELECT * FROM participation WHERE user_id = ? AND program_id = ?", userId, programId)) {
+            if (rs.next()) {
+                bh.consume(rs.getInt("meetings_attended"));
+                bh.consume(rs.getDouble("amount_received"));
+            }
+        }
+    }
+
+    @Benchmark
+    public int getNextId() throws SQLException {
+        return db.getNextId("attendance", "attendance_id");
+    }
+}
@@ -0,0 +1,364 @@
+package bench;
+
+import config.SchemaMigrator;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import main.PasswordHasher;
+
+/**
+ * Seeded generator for a regional-scale 4Ps database, e.g.
+ * <pre>
+ *   java -cp build/classes:build/bench/classes:lib/* bench.DatasetGenerator --users 500000 --out 4ps-500k.db
+ * </pre>
+ * The same options and seed always give the same rows. The file gets the
+ * application's own schema (SchemaMigrator), summaries included.
+ *
+ * Shape of the data:
+ * <ul>
+ * <li>about one program per 2,500 beneficiaries. Each program meets weekly
+ *     (70%) or every other week, starting within the first quarter, and pays
+ *     a fixed grant per meeting attended.</li>
+ * <li>each beneficiary joins 1 (70%), 2 (22%) or 3 programs, chosen with a
+ *     skew towards the larger ones. 80% join at the first meeting, the rest
+ *     at a random later one.</li>
+ * <li>attendance follows a per-enrolment rate: 75% regular (85-100%), 20%
+ *     irregular (50-85%), 5% drifting away (0-50%). Each meeting is a coin
+ *     flip at that rate.</li>
+ * </ul>
+ * With the default 104 weeks that is about 95 attendance rows per
+ * beneficiary (500k beneficiaries give roughly 47M rows).
+ *
+ * Every account's email is {@code user<id>@4ps.test}. All accounts share one
+ * password ({@link #PASSWORD}), hashed once at the configured PBKDF2 cost:
+ * hashing half a million passwords separately would take hours.
+ *
+ * Loading: one connection with the journal and fsync off, triggers and
+ * secondary indexes dropped, and multi-row INSERTs in large transactions.
+ * Afterwards the indexes and triggers are recreated, the summary tables are
+ * filled in one pass, the full-text search indexes are rebuilt, and ANALYZE
+ * runs.
+ */
+public final class DatasetGenerator {
+
+    public static final String PASSWORD = "4ps-scale-test";
+    public static final long DEFAULT_SEED = 42L;
+    public static final LocalDate FIRST_MEETING = LocalDate.of(2024, 1, 8);
+
+    private static final int ROWS_PER_INSERT = 200;
+    private static final int USERS_PER_TRANSACTION = 20_000;
+    private static final int[] GRANTS = { 300, 500, 700 };
+    static final String[] FIRST_NAMES = {
+        "Maria", "Jose", "Juan", "Ana", "Mark", "Angel", "Jasmine", "John Paul", "Princess", "Christian",
+        "Mary Joy", "Jerome", "Kimberly", "Carlo", "Rhea", "Joshua", "Kristine", "Rodel", "Lovely", "Jericho",
+        "Althea", "Bryan", "Camille", "Darwin", "Elaine", "Francis", "Grace", "Harold", "Irene", "Jayson",
+        "Liza", "Marvin", "Nicole", "Oliver", "Patricia", "Ramil", "Sheila", "Tristan", "Veronica", "Wilfredo" };
+    static final String[] LAST_NAMES = {
+        "Santos", "Reyes", "Cruz", "Bautista", "Ocampo", "Garcia", "Mendoza", "Torres", "Tomas", "Andrada",
+        "Castillo", "Flores", "Villanueva", "Ramos", "Castro", "Rivera", "Aquino", "Navarro", "Salazar", "Mercado",
+        "Dela Cruz", "Del Rosario", "Gonzales", "Lopez", "Soriano", "Pascual", "Domingo", "Aguilar", "Manalo", "Valdez" };
+    private static final String[] TRACKS = {
+        "Family Development Session", "Education Grant Monitoring", "Health Center Check-up",
+        "Livelihood Skills Training", "Parent Effectiveness Seminar", "Nutrition and Feeding" };
+    private static final String[] REGIONS = {
+        "NCR", "CAR", "Region I", "Region II", "Region III", "Region IV-A", "MIMAROPA", "Region V", "Region VI",
+        "Region VII", "Region VIII", "Region IX", "Region X", "Region XI", "Region XII", "Caraga", "BARMM" };
+
+    /** What to generate; programs = 0 means one per 2,500 beneficiaries (at least 10). */
+    public static final class Spec {
+        public int users = 10_000;
+        public int programs = 0;
+        public int weeks = 104;
+        public long seed = DEFAULT_SEED;
+
+        int programCount() {
+            return programs > 0 ? programs : Math.max(10, users / 2500);
+        }
+    }
+
+    public static final class Stats {
+        private long users;
+        private long programs;
+        private long participations;
+        private long attendance;
+        private long loadNanos;
+        private long indexNanos;
+        private long bytes;
+
+        public long getUsers() { return users; }
+        public long getPrograms() { return programs; }
+        public long getParticipations() { return participations; }
+        public long getAttendance() { return attendance; }
+        public long getLoadNanos() { return loadNanos; }
+        public long getIndexNanos() { return indexNanos; }
+        public long getBytes() { return bytes; }
+
+        @Override
+        public String toString() {
+            long rows = users + programs + participations + attendance;
+            return String.format("%,d users, %,d programs, %,d participations, %,d attendance rows: "
+                    + "loaded in %.1f s (%,.0f rows/s), indexes and summaries %.1f s, %,d MB",
+                    users, programs, participations, attendance, loadNanos / 1e9, rows / (loadNanos / 1e9),
+                    indexNanos / 1e9, bytes >> 20);
+        }
+    }
+
+    private DatasetGenerator() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Spec spec = new Spec();
+        Path out = null;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--users": spec.users = Integer.parseInt(args[i + 1]); break;
+                case "--programs": spec.programs = Integer.parseInt(args[i + 1]); break;
+                case "--weeks": spec.weeks = Integer.parseInt(args[i + 1]); break;
+                case "--seed": spec.seed = Long.parseLong(args[i + 1]); break;
+                case "--out": out = Paths.get(args[i + 1]); break;
+                default: throw new IllegalArgumentException("unknown option " + args[i]);
+            }
+        }
+        if (out == null) {
+            out = Paths.get("4ps-" + spec.users + "-" + spec.seed + ".db");
+        }
+        System.out.println("✅ " + generate(out, spec) + " -> " + out);
+    }
+
+    /** Writes a new database to {@code file}; an existing file is replaced. */
+    public static Stats generate(Path file, Spec spec) throws IOException, SQLException {
+        BenchDatabase.delete(file);
+        Stats stats = new Stats();
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + file.toAbsolutePath())) {
+            SchemaMigrator.migrate(conn);
+            try (Statement st = conn.createStatement()) {
+                st.execute("PRAGMA journal_mode = OFF");
+                st.execute("PRAGMA synchronous = OFF");
+                st.execute("PRAGMA cache_size = -262144");     // 256 MB
+                st.execute("PRAGMA temp_store = MEMORY");
+                st.execute("PRAGMA locking_mode = EXCLUSIVE");
+            }
+            List<String> deferred = dropTriggersAndIndexes(conn);
+
+            long start = System.nanoTime();
+            conn.setAutoCommit(false);
+            load(conn, spec, stats);
+            conn.setAutoCommit(true);
+            stats.loadNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            try (Statement st = conn.createStatement()) {
+                for (String ddl : deferred) {
+                    st.execute(ddl);
+                }
+                fillSummaries(st);
+                st.execute("INSERT INTO user_search(user_search) VALUES ('rebuild')");
+                st.execute("INSERT INTO program_search(program_search) VALUES ('rebuild')");
+                st.execute("ANALYZE");
+                st.execute("PRAGMA journal_mode = WAL");
+            }
+            stats.indexNanos = System.nanoTime() - start;
+        }
+        stats.bytes = Files.size(file);
+        return stats;
+    }
+
+    // --- Saves the CREATE statements of every trigger and explicit index, then drops them ---
+    private static List<String> dropTriggersAndIndexes(Connection conn) throws SQLException {
+        List<String> ddl = new ArrayList<>();
+        List<String> drops = new ArrayList<>();
+        try (Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery("SELECT type, name, sql FROM sqlite_master "
+                     + "WHERE type IN ('index', 'trigger') AND sql IS NOT NULL ORDER BY type")) {
+            while (rs.next()) {
+                ddl.add(rs.getString(3));
+                drops.add("DROP " + rs.getString(1).toUpperCase() + " " + rs.getString(2));
+            }
+        }
+        try (Statement st = conn.createStatement()) {
+            for (String drop : drops) {
+                st.execute(drop);
+            }
+        }
+        return ddl;
+    }
+
+    // --- Same totals the schema v3 backfill computes, from the finished tables ---
+    private static void fillSummaries(Statement st) throws SQLException {
+        st.execute("DELETE FROM program_summary");
+        st.execute("DELETE FROM attendance_daily");
+        st.execute("DELETE FROM beneficiary_attendance");
+        st.execute("INSERT INTO program_summary(program_id, participants, meetings_attended, amount_received) "
+                + "SELECT program_id, COUNT(*), TOTAL(meetings_attended), TOTAL(amount_received) FROM participation GROUP BY program_id");
+        st.execute("INSERT INTO program_summary(program_id, attendance_count) "
+                + "SELECT program_id, COUNT(*) FROM attendance WHERE 1 GROUP BY program_id "
+                + "ON CONFLICT(program_id) DO UPDATE SET attendance_count = excluded.attendance_count");
+        st.execute("INSERT INTO attendance_daily(program_id, meeting_date, attendees) "
+                + "SELECT program_id, meeting_date, COUNT(*) FROM attendance GROUP BY program_id, meeting_date");
+        st.execute("INSERT INTO beneficiary_attendance(program_id, user_id, meetings) "
+                + "SELECT program_id, user_id, COUNT(*) FROM attendance GROUP BY program_id, user_id");
+    }
+
+    private static void load(Connection conn, Spec spec, Stats stats) throws SQLException {
+        SplittableRandom random = new SplittableRandom(spec.seed);
+        int programs = spec.programCount();
+
+        // --- Programs: schedule and grant ---
+        int[] firstWeek = new int[programs + 1];
+        int[] everyWeeks = new int[programs + 1];
+        int[] grant = new int[programs + 1];
+        try (Batch batch = new Batch(conn, "program", "program_id, program_name, description", 3)) {
+            for (int p = 1; p <= programs; p++) {
+                firstWeek[p] = random.nextInt(13);
+                everyWeeks[p] = random.nextInt(10) < 7 ? 1 : 2;
+                grant[p] = GRANTS[random.nextInt(GRANTS.length)];
+                String track = TRACKS[random.nextInt(TRACKS.length)];
+                String region = REGIONS[random.nextInt(REGIONS.length)];
+                batch.add(p, track + " - " + region + " #" + p,
+                        (everyWeeks[p] == 1 ? "Weekly" : "Fortnightly") + " sessions, PHP " + grant[p] + " per meeting attended");
+            }
+        }
+        stats.programs = programs;
+        conn.commit();
+
+        String hash = PasswordHasher.fromSystemProperties().hash(PASSWORD);
+        int attendanceId = 1;
+        int[] joined = new int[3];
+        try (Batch users = new Batch(conn, "user", "user_id, name, gender, year_level, email, password", 6);
+             Batch participation = new Batch(conn, "participation", "user_id, program_id, meetings_attended, amount_received", 4);
+             Batch attendance = new Batch(conn, "attendance", "attendance_id, user_id, program_id, meeting_date", 4)) {
+            for (int u = 1; u <= spec.users; u++) {
+                String name = FIRST_NAMES[random.nextInt(FIRST_NAMES.length)] + " " + LAST_NAMES[random.nextInt(LAST_NAMES.length)];
+                // Fewer pupils reach the upper grades.
+                int grade = 1 + (int) (12 * Math.pow(random.nextDouble(), 1.3));
+                users.add(u, name, random.nextBoolean() ? "female" : "male", String.valueOf(grade), "user" + u + "@4ps.test", hash);
+
+                int roll = random.nextInt(100);
+                int count = roll < 70 ? 1 : roll < 92 ? 2 : 3;
+                for (int j = 0; j < count; j++) {
+                    int p = pickProgram(random, programs, joined, j);
+                    joined[j] = p;
+                    int held = Math.max(0, (spec.weeks - firstWeek[p] + everyWeeks[p] - 1) / everyWeeks[p]);
+                    int from = random.nextInt(10) < 8 || held == 0 ? 0 : random.nextInt(held);
+                    double rate = attendanceRate(random);
+                    int attended = 0;
+                    for (int m = from; m < held; m++) {
+                        if (random.nextDouble() < rate) {
+                            LocalDate date = FIRST_MEETING.plusWeeks(firstWeek[p] + (long) m * everyWeeks[p]);
+                            attendance.add(attendanceId++, u, p, date.toString());
+                            attended++;
+                        }
+                    }
+                    participation.add(u, p, attended, attended * grant[p]);
+                    stats.participations++;
+                }
+                if (u % USERS_PER_TRANSACTION == 0) {
+                    users.flush();
+                    participation.flush();
+                    attendance.flush();
+                    conn.commit();
+                    if (u % (USERS_PER_TRANSACTION * 10) == 0) {
+                        System.out.printf("⌛ %,d of %,d beneficiaries, %,d attendance rows%n", u, spec.users, attendanceId - 1);
+                    }
+                }
+            }
+        }
+        conn.commit();
+        stats.users = spec.users;
+        stats.attendance = attendanceId - 1;
+    }
+
+    // --- Skewed towards low program IDs (the big municipal programs); never a program already joined ---
+    private static int pickProgram(SplittableRandom random, int programs, int[] joined, int taken) {
+        while (true) {
+            int p = 1 + (int) (programs * Math.pow(random.nextDouble(), 1.5));
+            boolean dup = false;
+            for (int k = 0; k < taken; k++) {
+                dup |= joined[k] == p;
+            }
+            if (!dup || programs <= taken) return p;
+        }
+    }
+
+    private static double attendanceRate(SplittableRandom random) {
+        int roll = random.nextInt(100);
+        if (roll < 75) return 0.85 + 0.15 * random.nextDouble();
+        if (roll < 95) return 0.50 + 0.35 * random.nextDouble();
+        return 0.50 * random.nextDouble();
+    }
+
+    // --- Multi-row INSERT: one JDBC call per ROWS_PER_INSERT rows instead of one per row ---
+    private static final class Batch implements AutoCloseable {
+        private final Connection conn;
+        private final String table;
+        private final String columns;
+        private final int width;
+        private final PreparedStatement full;
+        private final Object[] pending;
+        private int rows;
+
+        Batch(Connection conn, String table, String columns, int width) throws SQLException {
+            this.conn = conn;
+            this.table = table;
+            this.columns = columns;
+            this.width = width;
+            this.full = conn.prepareStatement(insertSql(ROWS_PER_INSERT));
+            this.pending = new Object[ROWS_PER_INSERT * width];
+        }
+
+        private String insertSql(int n) {
+            StringBuilder sb = new StringBuilder("INSERT INTO ").append(table).append('(').append(columns).append(") VALUES ");
+            StringBuilder row = new StringBuilder("(");
+            for (int c = 0; c < width; c++) {
+                row.append(c == 0 ? "?" : ",?");
+            }
+            row.append(')');
+            for (int r = 0; r < n; r++) {
+                sb.append(r == 0 ? "" : ",").append(row);
+            }
+            return sb.toString();
+        }
+
+        void add(Object... values) throws SQLException {
+            System.arraycopy(values, 0, pending, rows * width, width);
+            if (++rows == ROWS_PER_INSERT) {
+                execute(full, rows);
+            }
+        }
+
+        void flush() throws SQLException {
+            if (rows == 0) return;
+            try (PreparedStatement tail = conn.prepareStatement(insertSql(rows))) {
+                execute(tail, rows);
+            }
+        }
+
+        private void execute(PreparedStatement ps, int n) throws SQLException {
+            for (int i = 0; i < n * width; i++) {
+                ps.setObject(i + 1, pending[i]);
+            }
+            ps.executeUpdate();
+            rows = 0;
+        }
+
+        @Override
+        public void close() throws SQLException {
+            try {
+                flush();
+            } finally {
+                full.close();
+            }
+        }
+    }
+}
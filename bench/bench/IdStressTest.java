@@ -0,0 +1,349 @@
+package bench;
+
+import config.DbMetrics;
+import config.SchemaMigrator;
+import config.config;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import main.RecordService;
+import main.ServiceException;
+
+/**
+ * Concurrency check for the ID allocator: several JVMs share one database
+ * file, each with several threads drawing attendance IDs through
+ * {@link config#getNextId} and {@link config#reserveIds} and inserting an
+ * attendance row with every ID they get, e.g.
+ * <pre>
+ *   java -cp build/classes:build/bench/classes:lib/* bench.IdStressTest --processes 2 --threads 8 --ids 2000
+ * </pre>
+ *
+ * The inserts go through {@link RecordService}, so IDs are drawn while other
+ * threads hold the writer, and a duplicate ID fails its insert on the
+ * table's primary key. About one call in fifty reserves a range of 1-20 IDs
+ * instead of one, and about one in two hundred writes a row past the
+ * allocator's reserved range directly, as an import tool would, which later
+ * reservations must skip (the allocator's MAX(id) check).
+ *
+ * Options: --processes (JVMs, default 2), --threads (per JVM, default 8),
+ * --ids (calls per thread, default 2000), --block (the allocator's block
+ * size, default 8, kept small so blocks run out and are reserved again all
+ * the time), --users (seeded beneficiaries the rows are spread over, default
+ * 500). Each JVM writes the IDs it got to a file; the parent then sorts all
+ * of them as a second check, compares their number with the rows in the
+ * table, and fails (exit code 1) on any duplicate or rejected insert.
+ */
+public final class IdStressTest {
+
+    private static final String TABLE = "attendance";
+    private static final String COLUMN = "attendance_id";
+    private static final int PROGRAM = 1;
+    private static final LocalDate FIRST_DAY = LocalDate.of(2024, 1, 1);
+
+    private IdStressTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int processes = 2;
+        int threads = 8;
+        int ids = 2000;
+        int block = 8;
+        int users = 500;
+        Path out = null;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--processes": processes = Integer.parseInt(args[i + 1]); break;
+                case "--threads": threads = Integer.parseInt(args[i + 1]); break;
+                case "--ids": ids = Integer.parseInt(args[i + 1]); break;
+                case "--users": users = Integer.parseInt(args[i + 1]); break;
+                case "--block": block = Integer.parseInt(args[i + 1]); break;
+                case "--out": out = Paths.get(args[i + 1]); break;
+                default: throw new IllegalArgumentException("unknown option " + args[i]);
+            }
+        }
+        if (out != null) {
+            runOne(out, threads, ids, users);
+            return;
+        }
+
+        Path dir = Files.createTempDirectory("4ps-id-stress-");
+        try {
+            System.out.printf("⌛ %d JVM(s) x %d threads x %,d calls, block size %d%n", processes, threads, ids, block);
+            // Migrated and seeded once up front, so the JVMs do not race to create the schema.
+            seed(dir.resolve("4psDB.db").toAbsolutePath(), users);
+            long start = System.nanoTime();
+            List<Process> children = new ArrayList<>();
+            for (int p = 0; p < processes; p++) {
+                children.add(fork(dir, p, threads, ids, block, users));
+            }
+            int failedJvms = 0;
+            for (int p = 0; p < processes; p++) {
+                if (children.get(p).waitFor() != 0) {
+                    System.out.println("❌ JVM " + p + " exited with " + children.get(p).exitValue());
+                    failedJvms++;
+                }
+            }
+            if (failedJvms > 0) {
+                System.exit(1);
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+
+            long[] all = readAll(dir, processes);
+            Arrays.sort(all);
+            long duplicates = 0;
+            for (int i = 1; i < all.length; i++) {
+                if (all[i] == all[i - 1]) {
+                    if (duplicates < 10) System.out.println("❌ ID " + all[i] + " was handed out more than once");
+                    duplicates++;
+                }
+            }
+            long rows = countRows(dir.resolve("4psDB.db").toAbsolutePath());
+            System.out.printf("%,d IDs in %.2f s, range %d..%d, %,d attendance rows%n", all.length, seconds,
+                    all.length == 0 ? 0 : all[0], all.length == 0 ? 0 : all[all.length - 1], rows);
+            if (duplicates > 0 || rows != all.length) {
+                System.out.println("❌ " + duplicates + " duplicate ID(s), " + (all.length - rows) + " ID(s) without a row");
+                System.exit(1);
+            }
+            System.out.println("✅ No duplicate IDs; every ID has its row");
+        } finally {
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+                for (Path f : files) {
+                    Files.deleteIfExists(f);
+                }
+            }
+            Files.deleteIfExists(dir);
+        }
+    }
+
+    // ----------------------------------------------------
+    // --- PARENT ---
+    // ----------------------------------------------------
+
+    private static void seed(Path file, int users) throws SQLException {
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + file)) {
+            SchemaMigrator.migrate(conn);
+            conn.setAutoCommit(false);
+            try (PreparedStatement user = conn.prepareStatement(
+                    "INSERT INTO user(user_id, name, gender, year_level, email, password) VALUES (?,?,?,?,?,?)")) {
+                for (int id = 1; id <= users; id++) {
+                    user.setInt(1, id);
+                    user.setString(2, "Beneficiary " + id);
+                    user.setString(3, id % 2 == 0 ? "female" : "male");
+                    user.setString(4, String.valueOf(1 + id % 12));
+                    user.setString(5, "user" + id + "@4ps.test");
+                    user.setString(6, "not-a-hash");
+                    user.addBatch();
+                }
+                user.executeBatch();
+            }
+            try (PreparedStatement program = conn.prepareStatement(
+                    "INSERT INTO program(program_id, program_name, description) VALUES (?,?,?)")) {
+                program.setInt(1, PROGRAM);
+                program.setString(2, "Stress program");
+                program.setString(3, "");
+                program.executeUpdate();
+            }
+            conn.commit();
+        }
+    }
+
+    private static long countRows(Path file) throws SQLException {
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + file);
+             Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery("SELECT COUNT(*) FROM " + TABLE)) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
+    private static Process fork(Path dir, int index, int threads, int ids, int block, int users) throws IOException {
+        List<String> cmd = new ArrayList<>();
+        cmd.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        cmd.add("-cp");
+        cmd.add(System.getProperty("java.class.path"));
+        cmd.add("-D4ps.db.url=jdbc:sqlite:" + dir.resolve("4psDB.db").toAbsolutePath());
+        cmd.add("-D4ps.db.idBlockSize=" + block);
+        cmd.add(IdStressTest.class.getName());
+        cmd.add("--out");
+        cmd.add(dir.resolve("ids-" + index + ".bin").toString());
+        cmd.add("--threads");
+        cmd.add(Integer.toString(threads));
+        cmd.add("--ids");
+        cmd.add(Integer.toString(ids));
+        cmd.add("--users");
+        cmd.add(Integer.toString(users));
+        return new ProcessBuilder(cmd).inheritIO().start();
+    }
+
+    private static long[] readAll(Path dir, int processes) throws IOException {
+        long[] all = new long[1024];
+        int n = 0;
+        for (int p = 0; p < processes; p++) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                    Files.newInputStream(dir.resolve("ids-" + p + ".bin"))))) {
+                while (true) {
+                    long id;
+                    try {
+                        id = in.readLong();
+                    } catch (EOFException e) {
+                        break;
+                    }
+                    if (n == all.length) all = Arrays.copyOf(all, n * 2);
+                    all[n++] = id;
+                }
+            }
+        }
+        return Arrays.copyOf(all, n);
+    }
+
+    // ----------------------------------------------------
+    // --- CHILD: draws IDs from several threads and inserts a row with each ---
+    // ----------------------------------------------------
+
+    private static void runOne(Path out, int threads, final int ids, final int users) throws Exception {
+        config.connectDB();
+        final config db = new config();
+        final RecordService service = new RecordService(db);
+        final long[][] issued = new long[threads][];
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        final AtomicLong duplicates = new AtomicLong();
+        final CountDownLatch ready = new CountDownLatch(threads);
+        final CountDownLatch go = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        try {
+            for (int t = 0; t < threads; t++) {
+                final int slot = t;
+                final SplittableRandom random = new SplittableRandom(out.toString().hashCode() * 31L + t);
+                Thread worker = new Thread(() -> {
+                    long[] mine = new long[ids + ids / 2];
+                    int n = 0;
+                    try {
+                        ready.countDown();
+                        go.await();
+                        for (int i = 0; i < ids; i++) {
+                            int draw = random.nextInt(200);
+                            if (draw == 0) {
+                                int id = insertPastAllocator(users);
+                                if (id < 0) continue;
+                                if (n == mine.length) mine = Arrays.copyOf(mine, n * 2);
+                                mine[n++] = id;
+                            } else if (draw < 5) {
+                                int count = 1 + random.nextInt(20);
+                                int first = db.reserveIds(TABLE, COLUMN, count);
+                                for (int k = 0; k < count; k++) {
+                                    if (n == mine.length) mine = Arrays.copyOf(mine, n * 2);
+                                    mine[n++] = first + k;
+                                    insert(service, first + k, users, duplicates);
+                                }
+                            } else {
+                                int id = db.getNextId(TABLE, COLUMN);
+                                if (n == mine.length) mine = Arrays.copyOf(mine, n * 2);
+                                mine[n++] = id;
+                                insert(service, id, users, duplicates);
+                            }
+                        }
+                    } catch (SQLException | ServiceException | InterruptedException | RuntimeException e) {
+                        failure.compareAndSet(null, e);
+                    }
+                    issued[slot] = Arrays.copyOf(mine, n);
+                }, "id-stress-" + t);
+                workers.add(worker);
+                worker.start();
+            }
+            ready.await();
+            go.countDown();
+            for (Thread w : workers) {
+                w.join();
+            }
+        } finally {
+            config.closeDB();
+        }
+        if (failure.get() != null) {
+            throw new IllegalStateException("an ID call or insert failed", failure.get());
+        }
+        try (DataOutputStream w = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(out)))) {
+            for (long[] threadIds : issued) {
+                for (long id : threadIds) {
+                    w.writeLong(id);
+                }
+            }
+        }
+        if (duplicates.get() > 0) {
+            throw new IllegalStateException(duplicates.get() + " insert(s) hit an existing key");
+        }
+    }
+
+    // --- The row's user and date follow from its ID, so (user, program, date) is unique exactly when the ID is ---
+    private static void insert(RecordService service, int id, int users, AtomicLong duplicates) throws SQLException, ServiceException {
+        try {
+            service.recordAttendance(id, 1 + id % users, PROGRAM, FIRST_DAY.plusDays(id / users).toString());
+        } catch (ServiceException e) {
+            if (e.getCategory() != DbMetrics.ErrorCategory.UNIQUE) throw e;
+            if (duplicates.incrementAndGet() <= 10) {
+                System.out.println("❌ ID " + id + " was handed out more than once: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Writes a row ten IDs past the allocator's reserved range without going
+     * through it, as an import tool would; later reservations must start
+     * above it. Returns the ID, or -1 if another JVM wrote in between.
+     */
+    private static int insertPastAllocator(int users) throws SQLException {
+        try (Connection conn = config.getWriteConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                int id;
+                try (PreparedStatement next = conn.prepareStatement("SELECT next_id FROM id_sequence WHERE seq_name = ?")) {
+                    next.setString(1, TABLE + "." + COLUMN);
+                    try (ResultSet rs = next.executeQuery()) {
+                        id = (rs.next() ? rs.getInt(1) : 1) + 10;
+                    }
+                }
+                try (PreparedStatement max = conn.prepareStatement("SELECT MAX(" + COLUMN + ") FROM " + TABLE);
+                     ResultSet rs = max.executeQuery()) {
+                    if (rs.next()) id = Math.max(id, rs.getInt(1) + 10);
+                }
+                try (PreparedStatement ins = conn.prepareStatement(
+                        "INSERT INTO attendance(attendance_id, user_id, program_id, meeting_date) VALUES (?,?,?,?)")) {
+                    ins.setInt(1, id);
+                    ins.setInt(2, 1 + id % users);
+                    ins.setInt(3, PROGRAM);
+                    ins.setString(4, FIRST_DAY.plusDays(id / users).toString());
+                    ins.executeUpdate();
+                }
+                conn.commit();
+                return id;
+            } catch (SQLException e) {
+                conn.rollback();
+                if (e.getMessage() != null && e.getMessage().contains("SQLITE_BUSY")) {
+                    return -1;
+                }
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package bench;
+
+import config.ChangeJournal;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Change-journal write throughput: appending an attendance insert and waiting
+ * until it is on disk, from one thread and from eight (where group commit
+ * lets one fsync cover the records of every waiting thread), and appending
+ * alone (encoding and buffering, no fsync). The journal's records/sync figure
+ * is printed at the end of each trial.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class JournalBenchmark {
+
+    private static final String SQL_INSERT_ATTENDANCE =
+        "INSERT INTO attendance(attendance_id, user_id, program_id, meeting_date) VALUES (?,?,?,?)";
+
+    private Path dir;
+    private ChangeJournal journal;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("4ps-journal-bench-");
+        journal = ChangeJournal.open(dir, 64L << 20, 4, 0);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        journal.close();
+        System.out.println("\n" + journal);
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(f -> f.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public long commitOneThread() {
+        return appendAndSync();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public long commitEightThreads() {
+        return appendAndSync();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public long appendOnly() {
+        return append();
+    }
+
+    private long appendAndSync() {
+        long seq = append();
+        journal.sync(seq);
+        return seq;
+    }
+
+    private long append() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return journal.append(SQL_INSERT_ATTENDANCE,
+                new Object[] { random.nextInt(1 << 30), random.nextInt(100000), 1 + random.nextInt(20), "2024-03-11" }, 1);
+    }
+}
@@ -0,0 +1,53 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+import main.AuthManager;
+import main.PasswordHasher;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Password verifications per second, i.e. the CPU ceiling on logins.
+ * Compare cost factors with {@code -p iterations=60000,120000,240000}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class LoginBenchmark {
+
+    @Param("120000")
+    public int iterations;
+
+    private PasswordHasher hasher;
+    private String pbkdf2Hash;
+    private String legacyHash;
+
+    @Setup
+    public void setUp() {
+        hasher = new PasswordHasher(iterations);
+        pbkdf2Hash = hasher.hash("correct horse");
+        legacyHash = AuthManager.hashPassword("correct horse");
+    }
+
+    @Benchmark
+    public boolean verifyPbkdf2() {
+        return hasher.verify("correct horse", pbkdf2Hash).matches();
+    }
+
+    @Benchmark
+    public boolean verifyLegacySha256() {
+        return hasher.verify("correct horse", legacyHash).matches();
+    }
+}
@@ -0,0 +1,100 @@
+package bench;
+
+import config.config;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Reading one beneficiary's attendance (40 rows): getRecords with columns
+ * read by label through the closing proxy vs. queryForEach reading by index,
+ * and an existence check as SELECT * vs. exists (SELECT 1 ... LIMIT 1).
+ * Run with {@code -prof gc} to compare allocation per call.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class QueryApiBenchmark {
+
+    private static final int PROGRAMS = 20;
+    private static final int MEETINGS_PER_USER = 40;
+    private static final String SQL_ROWS =
+        "SELECT attendance_id, program_id, meeting_date FROM attendance WHERE user_id = ?";
+    private static final String SQL_FIND = "SELECT * FROM participation WHERE user_id = ? AND program_id = ?";
+    private static final String SQL_EXISTS = config.existsSql("participation", "user_id = ? AND program_id = ?");
+
+    @Param("20000")
+    public int users;
+
+    private Path file;
+    private config db;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        file = BenchDatabase.create(users, PROGRAMS, MEETINGS_PER_USER);
+        System.setProperty("4ps.db.url", "jdbc:sqlite:" + file);
+        config.connectDB();
+        db = new config();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        config.closeDB();
+        BenchDatabase.delete(file);
+    }
+
+    @Benchmark
+    public long rowsByLabel() throws SQLException {
+        long sum = 0;
+        try (ResultSet rs = db.getRecords(SQL_ROWS, randomUser())) {
+            while (rs.next()) {
+                sum += rs.getInt("attendance_id") + rs.getInt("program_id") + rs.getString("meeting_date").length();
+            }
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long rowsByIndex() throws SQLException {
+        final long[] sum = new long[1];
+        db.queryForEach(SQL_ROWS, rs -> sum[0] += rs.getInt(1) + rs.getInt(2) + rs.getString(3).length(), randomUser());
+        return sum[0];
+    }
+
+    @Benchmark
+    public boolean existsBySelectStar() throws SQLException {
+        int user = randomUser();
+        try (ResultSet rs = db.getRecords(SQL_FIND, user, user % PROGRAMS + 1)) {
+            return rs.next();
+        }
+    }
+
+    @Benchmark
+    public boolean existsBySelectOne() throws SQLException {
+        int user = randomUser();
+        return db.exists(SQL_EXISTS, user, user % PROGRAMS + 1);
+    }
+
+    private int randomUser() {
+        return 1 + ThreadLocalRandom.current().nextInt(users);
+    }
+}
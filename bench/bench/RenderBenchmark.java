@@ -0,0 +1,63 @@
+package bench;
+
+import config.config;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** displayResultSet over a fixed-size attendance result, with console output discarded. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class RenderBenchmark {
+
+    @Param("10000")
+    public int rows;
+
+    private Path file;
+    private config db;
+    private PrintStream originalOut;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        // One meeting per user, so the attendance table holds exactly 'rows' rows.
+        file = BenchDatabase.create(rows, 20, 1);
+        System.setProperty("4ps.db.url", "jdbc:sqlite:" + file);
+        config.connectDB();
+        db = new config();
+        originalOut = System.out;
+        System.setOut(new PrintStream(new OutputStream() {
+            @Override public void write(int b) { }
+            @Override public void write(byte[] b, int off, int len) { }
+        }));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        System.setOut(originalOut);
+        config.closeDB();
+        BenchDatabase.delete(file);
+    }
+
+    @Benchmark
+    public void displayResultSet() {
+        db.displayResultSet(db.getRecords("SELECT * FROM attendance LIMIT ?", rows));
+    }
+}
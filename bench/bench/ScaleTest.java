@@ -0,0 +1,343 @@
+package bench;
+
+import config.LatencyHistogram;
+import config.config;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Scanner;
+import java.util.SplittableRandom;
+import main.AuthManager;
+import main.AuthService;
+import main.RecordManager;
+import main.RecordService;
+import main.SessionManager;
+
+/**
+ * Runs the application's own console operations against
+ * {@link DatasetGenerator} databases of increasing size, and reports how
+ * their latency grows with the data, e.g.
+ * <pre>
+ *   java -cp build/classes:build/bench/classes:lib/* bench.ScaleTest --sizes 10000,100000,500000 --ops 500
+ * </pre>
+ *
+ * Each operation goes through {@link AuthManager} or {@link RecordManager}
+ * exactly as the menu drives them, with the answers to their prompts
+ * scripted into the Scanner. Their console output is discarded. The
+ * operations are:
+ * <ul>
+ * <li>login: email and password, then logout.</li>
+ * <li>lookup: the participation view filtered to one beneficiary.</li>
+ * <li>view: the first page of one program's attendance.</li>
+ * <li>update: a participation's amount received.</li>
+ * <li>insert: one attendance row.</li>
+ * <li>delete: one existing attendance row.</li>
+ * <li>search: a beneficiary search for a first name and the start of a
+ *     last name ("maria sant").</li>
+ * <li>typo: a beneficiary search for a misspelt last name ("Gonzlaes"),
+ *     which also runs the typo-tolerant pass.</li>
+ * </ul>
+ *
+ * Datasets are generated once into --dir and reused (same size and seed
+ * give the same file). Each size runs in a fresh JVM on a scratch copy, so
+ * caches, the pool and the writes of one size never leak into the next.
+ */
+public final class ScaleTest {
+
+    private static final String[] OPS = { "login", "lookup", "view", "update", "insert", "delete", "search", "typo" };
+    private static final String RESULT = "RESULT ";
+
+    private ScaleTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        List<Integer> sizes = new ArrayList<>();
+        int ops = 300;
+        int logins = 20;
+        int weeks = new DatasetGenerator.Spec().weeks;
+        long seed = DatasetGenerator.DEFAULT_SEED;
+        Path dir = Paths.get("scale-data");
+        Path run = null;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--sizes":
+                    for (String s : args[i + 1].split(",")) {
+                        sizes.add(Integer.parseInt(s.trim()));
+                    }
+                    break;
+                case "--ops": ops = Integer.parseInt(args[i + 1]); break;
+                case "--logins": logins = Integer.parseInt(args[i + 1]); break;
+                case "--weeks": weeks = Integer.parseInt(args[i + 1]); break;
+                case "--seed": seed = Long.parseLong(args[i + 1]); break;
+                case "--dir": dir = Paths.get(args[i + 1]); break;
+                case "--run": run = Paths.get(args[i + 1]); break;
+                default: throw new IllegalArgumentException("unknown option " + args[i]);
+            }
+        }
+        if (run != null) {
+            runOne(run, ops, logins, seed);
+            return;
+        }
+        if (sizes.isEmpty()) {
+            sizes.add(10_000);
+            sizes.add(50_000);
+            sizes.add(200_000);
+        }
+
+        Files.createDirectories(dir);
+        Map<Integer, Map<String, long[]>> results = new LinkedHashMap<>();
+        Map<Integer, DatasetGenerator.Stats> datasets = new LinkedHashMap<>();
+        for (int users : sizes) {
+            DatasetGenerator.Spec spec = new DatasetGenerator.Spec();
+            spec.users = users;
+            spec.weeks = weeks;
+            spec.seed = seed;
+            Path file = dir.resolve("4ps-" + users + "-w" + weeks + "-s" + seed + ".db");
+            if (!Files.exists(file)) {
+                System.out.printf("⌛ Generating %,d beneficiaries into %s%n", users, file);
+                DatasetGenerator.Stats stats = DatasetGenerator.generate(file, spec);
+                System.out.println("✅ " + stats);
+                datasets.put(users, stats);
+            }
+            Path scratch = dir.resolve("scratch.db");
+            BenchDatabase.delete(scratch);
+            Files.copy(file, scratch, StandardCopyOption.REPLACE_EXISTING);
+            try {
+                System.out.printf("⌛ Running %d operations of each kind on %,d beneficiaries%n", ops, users);
+                results.put(users, fork(scratch, ops, logins, seed));
+            } finally {
+                BenchDatabase.delete(scratch);
+            }
+        }
+        report(results, datasets);
+    }
+
+    // ----------------------------------------------------
+    // --- PARENT: one child JVM per dataset ---
+    // ----------------------------------------------------
+
+    private static Map<String, long[]> fork(Path db, int ops, int logins, long seed) throws IOException, InterruptedException {
+        List<String> cmd = new ArrayList<>();
+        cmd.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        cmd.add("-cp");
+        cmd.add(System.getProperty("java.class.path"));
+        cmd.add("-D4ps.db.url=jdbc:sqlite:" + db.toAbsolutePath());
+        String iterations = System.getProperty("4ps.auth.pbkdf2Iterations");
+        if (iterations != null) {
+            cmd.add("-D4ps.auth.pbkdf2Iterations=" + iterations);
+        }
+        cmd.add(ScaleTest.class.getName());
+        cmd.add("--run");
+        cmd.add(db.toString());
+        cmd.add("--ops");
+        cmd.add(Integer.toString(ops));
+        cmd.add("--logins");
+        cmd.add(Integer.toString(logins));
+        cmd.add("--seed");
+        cmd.add(Long.toString(seed));
+
+        Process child = new ProcessBuilder(cmd).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+        Map<String, long[]> out = new LinkedHashMap<>();
+        try (BufferedReader r = new BufferedReader(new InputStreamReader(child.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = r.readLine()) != null) {
+                if (line.startsWith(RESULT)) {
+                    String[] f = line.substring(RESULT.length()).split(" ");
+                    long[] v = new long[f.length - 1];
+                    for (int i = 1; i < f.length; i++) {
+                        v[i - 1] = Long.parseLong(f[i]);
+                    }
+                    out.put(f[0], v);
+                } else {
+                    System.out.println("   " + line);
+                }
+            }
+        }
+        if (child.waitFor() != 0) {
+            throw new IllegalStateException("scale run on " + db + " exited with " + child.exitValue());
+        }
+        return out;
+    }
+
+    private static void report(Map<Integer, Map<String, long[]>> results, Map<Integer, DatasetGenerator.Stats> datasets) {
+        System.out.println("\n=== Scale test: p50 / p99 latency in ms (n, errors) by number of beneficiaries ===");
+        StringBuilder header = new StringBuilder(String.format("%-8s", "op"));
+        for (int users : results.keySet()) {
+            header.append(String.format(" | %22s", String.format("%,d", users)));
+        }
+        header.append(" | p50 growth");
+        System.out.println(header);
+        for (String op : OPS) {
+            StringBuilder row = new StringBuilder(String.format("%-8s", op));
+            long first = -1;
+            long last = -1;
+            for (Map<String, long[]> r : results.values()) {
+                long[] v = r.get(op);
+                if (v == null) {
+                    row.append(String.format(" | %22s", "-"));
+                    continue;
+                }
+                row.append(String.format(" | %8.3f / %8.3f %2s", v[1] / 1e6, v[2] / 1e6, v[4] > 0 ? "!" : ""));
+                if (first < 0) first = v[1];
+                last = v[1];
+            }
+            row.append(first > 0 ? String.format(" | x%.2f", (double) last / first) : " | -");
+            System.out.println(row);
+        }
+        System.out.println("('!' marks a size where some operations failed; growth is largest size vs. smallest)");
+        for (Map.Entry<Integer, DatasetGenerator.Stats> e : datasets.entrySet()) {
+            System.out.printf("generated %,d: %s%n", e.getKey(), e.getValue());
+        }
+    }
+
+    // ----------------------------------------------------
+    // --- CHILD: drives the managers against one database ---
+    // ----------------------------------------------------
+
+    private static void runOne(Path db, int ops, int logins, long seed) throws SQLException {
+        PrintStream results = System.out;
+        config.connectDB();
+        config cfg = new config();
+        RecordService records = new RecordService(cfg);
+        AuthService auth = new AuthService(cfg);
+        SplittableRandom random = new SplittableRandom(seed + 1);
+
+        int users = count(cfg, "SELECT MAX(user_id) FROM user");
+        int participations = count(cfg, "SELECT MAX(rowid) FROM participation");
+        int attendanceRows = count(cfg, "SELECT MAX(attendance_id) FROM attendance");
+        results.printf("%,d beneficiaries, %,d participations, %,d attendance rows%n", users, participations, attendanceRows);
+
+        Map<String, LatencyHistogram> latency = new LinkedHashMap<>();
+        Map<String, Integer> errors = new LinkedHashMap<>();
+        for (String op : OPS) {
+            latency.put(op, new LatencyHistogram());
+            errors.put(op, 0);
+        }
+
+        // The managers talk to the console; keep that out of the numbers (and off the result stream).
+        System.setOut(new PrintStream(new OutputStream() {
+            @Override
+            public void write(int b) { }
+
+            @Override
+            public void write(byte[] b, int off, int len) { }
+        }, false));
+        try {
+            Workload w = new Workload(cfg, records, auth, random, users, participations, attendanceRows);
+            w.run(latency, errors, Math.max(1, ops / 10), Math.max(1, logins / 4));   // warm-up
+            for (LatencyHistogram h : latency.values()) h.reset();
+            for (String op : OPS) errors.put(op, 0);
+            w.run(latency, errors, ops, logins);
+        } finally {
+            System.setOut(results);
+        }
+        for (String op : OPS) {
+            LatencyHistogram h = latency.get(op);
+            results.println(RESULT + op + " " + h.getCount() + " " + h.getValueAtPercentile(50) + " "
+                    + h.getValueAtPercentile(99) + " " + h.getMax() + " " + errors.get(op));
+        }
+        config.closeDB();
+    }
+
+    private static int count(config cfg, String sql) throws SQLException {
+        Integer n = cfg.queryOne(sql, rs -> rs.getInt(1));
+        return n == null ? 0 : n;
+    }
+
+    private static final class Workload {
+        private final config cfg;
+        private final RecordService records;
+        private final AuthService auth;
+        private final SplittableRandom random;
+        private final int users;
+        private final int participations;
+        private final int attendanceRows;
+        private int insertSeq;
+
+        Workload(config cfg, RecordService records, AuthService auth, SplittableRandom random,
+                 int users, int participations, int attendanceRows) {
+            this.cfg = cfg;
+            this.records = records;
+            this.auth = auth;
+            this.random = random;
+            this.users = users;
+            this.participations = participations;
+            this.attendanceRows = attendanceRows;
+        }
+
+        void run(Map<String, LatencyHistogram> latency, Map<String, Integer> errors, int ops, int logins) throws SQLException {
+            for (int i = 0; i < logins; i++) {
+                String script = "user" + (1 + random.nextInt(users)) + "@4ps.test\n" + DatasetGenerator.PASSWORD + "\n";
+                AuthManager manager = new AuthManager(cfg, new Scanner(script), auth);
+                long start = System.nanoTime();
+                SessionManager.Session session = manager.handleLogin();
+                latency.get("login").record(System.nanoTime() - start);
+                if (session == null) {
+                    errors.merge("login", 1, Integer::sum);
+                } else {
+                    manager.getSessions().close(session.getToken());
+                }
+            }
+            for (int i = 0; i < ops; i++) {
+                int[] pair = randomParticipation();
+                int program = pair == null ? 1 : pair[1];
+                timed(latency, "lookup", "3\n" + (pair == null ? 1 : pair[0]) + "\n\nq\n", RecordManager::viewRecords);
+                timed(latency, "view", "4\n\n" + program + "\n\n\nq\n", RecordManager::viewRecords);
+                if (pair != null) {
+                    timed(latency, "update", "2\n" + pair[0] + "\n" + pair[1] + "\n" + (100 + random.nextInt(5000)) + "\n",
+                            RecordManager::updateRecord);
+                    // Dates past the generated range, so the insert never hits the unique key.
+                    String date = DatasetGenerator.FIRST_MEETING.plusYears(10).plusDays(insertSeq++).toString();
+                    timed(latency, "insert", pair[0] + "\n" + pair[1] + "\n" + date + "\n", RecordManager::recordAttendance);
+                }
+                int victim = 1 + random.nextInt(Math.max(1, attendanceRows));
+                timed(latency, "delete", "3\n" + victim + "\ny\n", RecordManager::deleteRecord);
+                String first = DatasetGenerator.FIRST_NAMES[random.nextInt(DatasetGenerator.FIRST_NAMES.length)];
+                String last = DatasetGenerator.LAST_NAMES[random.nextInt(DatasetGenerator.LAST_NAMES.length)];
+                timed(latency, "search", "1\n" + first + " " + last.substring(0, Math.min(4, last.length())) + "\n",
+                        RecordManager::searchRecords);
+                timed(latency, "typo", "1\n" + misspell(last) + "\n", RecordManager::searchRecords);
+            }
+        }
+
+        // --- Swaps two neighbouring letters after the first, the commonest typing slip ---
+        private String misspell(String word) {
+            if (word.length() < 3) return word;
+            int i = 1 + random.nextInt(word.length() - 2);
+            char[] c = word.toCharArray();
+            char t = c[i];
+            c[i] = c[i + 1];
+            c[i + 1] = t;
+            return new String(c);
+        }
+
+        private int[] randomParticipation() throws SQLException {
+            long rowid = 1 + random.nextInt(Math.max(1, participations));
+            return cfg.queryOne("SELECT user_id, program_id FROM participation WHERE rowid = ?",
+                    rs -> new int[] { rs.getInt(1), rs.getInt(2) }, rowid);
+        }
+
+        private void timed(Map<String, LatencyHistogram> latency, String op, String script, Step step) throws SQLException {
+            RecordManager manager = new RecordManager(cfg, new Scanner(script), records);
+            long start = System.nanoTime();
+            step.run(manager);
+            latency.get(op).record(System.nanoTime() - start);
+        }
+    }
+
+    private interface Step {
+        void run(RecordManager manager) throws SQLException;
+    }
+}
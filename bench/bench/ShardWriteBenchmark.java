@@ -0,0 +1,226 @@
+package bench;
+
+import config.DbMetrics;
+import config.WriteCallback;
+import config.config;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Write throughput of the sharded database: writer threads insert attendance
+ * and participation rows through {@link config#addRecord} for a fixed time,
+ * once per shard count, e.g.
+ * <pre>
+ *   java -cp build/classes:build/bench/classes:lib/* bench.ShardWriteBenchmark --shards 1,2,4 --threads 8 --seconds 10
+ * </pre>
+ *
+ * Every shard file has its own writer, so inserts for users on different
+ * shards commit in parallel instead of queueing behind one write lock. Each
+ * shard count runs in a fresh JVM on a fresh database in a temp directory,
+ * because the shard count is fixed for the life of a JVM.
+ */
+public final class ShardWriteBenchmark {
+
+    private static final String RESULT = "RESULT ";
+    private static final int PROGRAMS = 20;
+    private static final LocalDate FIRST_MEETING = LocalDate.of(2024, 1, 8);
+    private static final String SQL_INSERT_PROGRAM = "INSERT INTO program(program_id, program_name, description) VALUES (?,?,?)";
+    private static final String SQL_INSERT_USER =
+        "INSERT INTO user(user_id, name, gender, year_level, email, password) VALUES (?,?,?,?,?,?)";
+    private static final String SQL_INSERT_ATTENDANCE =
+        "INSERT INTO attendance(attendance_id, user_id, program_id, meeting_date) VALUES (?,?,?,?)";
+    private static final String SQL_INSERT_PARTICIPATION =
+        "INSERT OR IGNORE INTO participation(user_id, program_id, amount_received) VALUES (?,?,?)";
+
+    private ShardWriteBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        List<Integer> shardCounts = new ArrayList<>();
+        int threads = 8;
+        int seconds = 10;
+        int users = 2000;
+        int run = 0;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--shards":
+                    for (String s : args[i + 1].split(",")) {
+                        shardCounts.add(Integer.parseInt(s.trim()));
+                    }
+                    break;
+                case "--threads": threads = Integer.parseInt(args[i + 1]); break;
+                case "--seconds": seconds = Integer.parseInt(args[i + 1]); break;
+                case "--users": users = Integer.parseInt(args[i + 1]); break;
+                case "--run": run = Integer.parseInt(args[i + 1]); break;
+                default: throw new IllegalArgumentException("unknown option " + args[i]);
+            }
+        }
+        if (run > 0) {
+            runOne(threads, seconds, users);
+            return;
+        }
+        if (shardCounts.isEmpty()) {
+            shardCounts.add(1);
+            shardCounts.add(2);
+            shardCounts.add(4);
+        }
+
+        Map<Integer, long[]> results = new LinkedHashMap<>();
+        for (int shards : shardCounts) {
+            Path dir = Files.createTempDirectory("4ps-shard-bench-");
+            try {
+                System.out.printf("⌛ %d shard(s): %d writer threads for %d s%n", shards, threads, seconds);
+                results.put(shards, fork(dir, shards, threads, seconds, users));
+            } finally {
+                deleteDir(dir);
+            }
+        }
+
+        System.out.println("\n=== Sharded writes: inserts/s by shard count ===");
+        System.out.printf("%-7s | %12s | %10s | %8s | %s%n", "shards", "inserts/s", "inserts", "errors", "vs. first");
+        double first = -1;
+        for (Map.Entry<Integer, long[]> e : results.entrySet()) {
+            long[] v = e.getValue();
+            double rate = v[0] / (v[2] / 1e9);
+            if (first < 0) first = rate;
+            System.out.printf("%-7d | %12.0f | %,10d | %,8d | x%.2f%n", e.getKey(), rate, v[0], v[1], rate / first);
+        }
+    }
+
+    // ----------------------------------------------------
+    // --- PARENT: one child JVM per shard count ---
+    // ----------------------------------------------------
+
+    private static long[] fork(Path dir, int shards, int threads, int seconds, int users) throws IOException, InterruptedException {
+        List<String> cmd = new ArrayList<>();
+        cmd.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        cmd.add("-cp");
+        cmd.add(System.getProperty("java.class.path"));
+        cmd.add("-D4ps.db.url=jdbc:sqlite:" + dir.resolve("4psDB.db").toAbsolutePath());
+        cmd.add("-D4ps.db.shards=" + shards);
+        cmd.add(ShardWriteBenchmark.class.getName());
+        cmd.add("--run");
+        cmd.add(Integer.toString(shards));
+        cmd.add("--threads");
+        cmd.add(Integer.toString(threads));
+        cmd.add("--seconds");
+        cmd.add(Integer.toString(seconds));
+        cmd.add("--users");
+        cmd.add(Integer.toString(users));
+
+        Process child = new ProcessBuilder(cmd).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+        long[] out = null;
+        try (BufferedReader r = new BufferedReader(new InputStreamReader(child.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = r.readLine()) != null) {
+                if (line.startsWith(RESULT)) {
+                    String[] f = line.substring(RESULT.length()).split(" ");
+                    out = new long[] { Long.parseLong(f[0]), Long.parseLong(f[1]), Long.parseLong(f[2]) };
+                } else {
+                    System.out.println("   " + line);
+                }
+            }
+        }
+        if (child.waitFor() != 0 || out == null) {
+            throw new IllegalStateException("run with " + shards + " shard(s) exited with " + child.exitValue());
+        }
+        return out;
+    }
+
+    private static void deleteDir(Path dir) throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+            for (Path f : files) {
+                Files.deleteIfExists(f);
+            }
+        }
+        Files.deleteIfExists(dir);
+    }
+
+    // ----------------------------------------------------
+    // --- CHILD: seed, then write for a fixed time ---
+    // ----------------------------------------------------
+
+    private static void runOne(int threads, int seconds, int users) throws Exception {
+        config.connectDB();
+        final config db = new config();
+        try {
+            WriteCallback quiet = counting(new AtomicLong(), new AtomicLong());
+            for (int p = 1; p <= PROGRAMS; p++) {
+                db.addRecord(quiet, SQL_INSERT_PROGRAM, p, "Program " + p, "Family development session track " + p);
+            }
+            for (int u = 1; u <= users; u++) {
+                db.addRecord(quiet, SQL_INSERT_USER, u, "Beneficiary " + u, u % 2 == 0 ? "Female" : "Male",
+                        "Grade " + (u % 12 + 1), "user" + u + "@example.org", "-");
+            }
+            DbMetrics.get().reset();
+
+            final AtomicLong inserted = new AtomicLong();
+            final AtomicLong errors = new AtomicLong();
+            final WriteCallback counter = counting(inserted, errors);
+            final long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+            final CountDownLatch done = new CountDownLatch(threads);
+            final int userCount = users;
+            long start = System.nanoTime();
+            for (int t = 0; t < threads; t++) {
+                final SplittableRandom random = new SplittableRandom(4L + t);
+                Thread worker = new Thread(() -> {
+                    try {
+                        while (System.nanoTime() < deadline) {
+                            int user = 1 + random.nextInt(userCount);
+                            int program = 1 + random.nextInt(PROGRAMS);
+                            if (random.nextInt(4) == 0) {
+                                db.addRecord(counter, SQL_INSERT_PARTICIPATION, user, program, 500 + random.nextInt(2500));
+                            } else {
+                                String day = FIRST_MEETING.plusDays(random.nextInt(3650)).toString();
+                                try {
+                                    db.addRecord(counter, SQL_INSERT_ATTENDANCE,
+                                            db.getNextId("attendance", "attendance_id"), user, program, day);
+                                } catch (SQLException e) {
+                                    errors.incrementAndGet();
+                                }
+                            }
+                        }
+                    } finally {
+                        done.countDown();
+                    }
+                }, "shard-bench-writer-" + t);
+                worker.start();
+            }
+            done.await();
+            long elapsed = System.nanoTime() - start;
+            System.out.println(DbMetrics.get().report());
+            System.out.println(RESULT + inserted.get() + " " + errors.get() + " " + elapsed);
+        } finally {
+            config.closeDB();
+        }
+    }
+
+    private static WriteCallback counting(final AtomicLong inserted, final AtomicLong errors) {
+        return new WriteCallback() {
+            @Override
+            public void onCommit(String sql, Object[] params, int rowsAffected) {
+                inserted.addAndGet(rowsAffected);
+            }
+
+            @Override
+            public void onFailure(String sql, Object[] params, DbMetrics.ErrorCategory category, SQLException e) {
+                errors.incrementAndGet();
+            }
+        };
+    }
+}
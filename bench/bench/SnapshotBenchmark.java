@@ -0,0 +1,143 @@
+package bench;
+
+import config.SnapshotExporter;
+import config.SnapshotReader;
+import config.config;
+import java.io.IOException;
+import java.nio.IntBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Attendance per program inside a date window, over every attendance row:
+ * JDBC row iteration vs. a scan of the memory-mapped columnar snapshot, with
+ * SQLite's own GROUP BY as a reference. All three return the same checksum.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class SnapshotBenchmark {
+
+    private static final int PROGRAMS = 20;
+    private static final int MEETINGS_PER_USER = 20;
+
+    /** Attendance rows = users * 20. */
+    @Param("50000")
+    public int users;
+
+    private Path file;
+    private Path snapshotDir;
+    private SnapshotReader reader;
+    private int programCol;
+    private int dateCol;
+    private String fromDate;
+    private String toDate;
+    private int fromDay;
+    private int toDay;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        file = BenchDatabase.create(users, PROGRAMS, MEETINGS_PER_USER);
+        System.setProperty("4ps.db.url", "jdbc:sqlite:" + file);
+        config.connectDB();
+        snapshotDir = Files.createTempDirectory("4ps-snapshot-");
+        SnapshotExporter.export(snapshotDir);
+        reader = SnapshotReader.open(snapshotDir.resolve("attendance" + SnapshotExporter.EXTENSION));
+        programCol = reader.columnIndex("program_id");
+        dateCol = reader.columnIndex("meeting_date");
+        fromDate = BenchDatabase.FIRST_MEETING.plusWeeks(4).toString();
+        toDate = BenchDatabase.FIRST_MEETING.plusWeeks(12).toString();
+        fromDay = (int) BenchDatabase.FIRST_MEETING.plusWeeks(4).toEpochDay();
+        toDay = (int) BenchDatabase.FIRST_MEETING.plusWeeks(12).toEpochDay();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        reader.close();
+        config.closeDB();
+        BenchDatabase.delete(file);
+        try (Stream<Path> files = Files.walk(snapshotDir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public long jdbcIterate() throws SQLException {
+        long[] perProgram = new long[PROGRAMS + 1];
+        try (Connection conn = config.getConnection();
+             PreparedStatement ps = conn.prepareStatement("SELECT program_id, meeting_date FROM attendance");
+             ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                String date = rs.getString(2);     // ISO dates compare correctly as strings
+                if (date.compareTo(fromDate) >= 0 && date.compareTo(toDate) <= 0) {
+                    perProgram[rs.getInt(1)]++;
+                }
+            }
+        }
+        return checksum(perProgram);
+    }
+
+    @Benchmark
+    public long snapshotScan() throws IOException {
+        long[] perProgram = new long[PROGRAMS + 1];
+        for (int g = 0; g < reader.groupCount(); g++) {
+            IntBuffer programs = reader.ints(g, programCol);
+            IntBuffer days = reader.ints(g, dateCol);
+            for (int i = 0, n = reader.groupRows(g); i < n; i++) {
+                int day = days.get(i);
+                if (day >= fromDay && day <= toDay) {
+                    perProgram[programs.get(i)]++;
+                }
+            }
+        }
+        return checksum(perProgram);
+    }
+
+    @Benchmark
+    public long sqlGroupBy() throws SQLException {
+        long[] perProgram = new long[PROGRAMS + 1];
+        try (Connection conn = config.getConnection();
+             PreparedStatement ps = conn.prepareStatement(
+                     "SELECT program_id, COUNT(*) FROM attendance WHERE meeting_date BETWEEN ? AND ? GROUP BY program_id")) {
+            ps.setString(1, fromDate);
+            ps.setString(2, toDate);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    perProgram[rs.getInt(1)] = rs.getLong(2);
+                }
+            }
+        }
+        return checksum(perProgram);
+    }
+
+    private static long checksum(long[] perProgram) {
+        long sum = 0;
+        for (int p = 0; p < perProgram.length; p++) {
+            sum = sum * 31 + perProgram[p];
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,703 @@
+package config;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+/**
+ * Change-data-capture journal: every committed INSERT, UPDATE or DELETE made
+ * through {@link config} is appended as one binary record, numbered by a
+ * sequence, to an append-only log, so a downstream feed can read just the
+ * changes after its last offset ({@link JournalConsumer}) instead of
+ * re-exporting whole tables.
+ *
+ * A record holds the statement (operation, table, SQL) and its bound
+ * parameters, not row images. Each segment file ({@code <first seq>.journal})
+ * starts with a 16-byte header (magic, version, first sequence) followed by
+ * frames of {@code [int length][int crc32][payload]}; the first change of a
+ * statement in a segment is preceded by a frame defining it, so later changes
+ * carry only its id. A segment is closed once it reaches its size limit, and
+ * closed segments beyond the retention count or age are deleted unless a
+ * registered consumer has not read them yet.
+ *
+ * Records are appended while the write's connection is still held, so within
+ * a shard the sequence order is the commit order. Durability uses group
+ * commit: {@link #sync} forces the file once for every record appended by the
+ * time it runs, and callers arriving during a force wait and share the next.
+ * The journal is written after the database commit; a crash between the two
+ * loses that change from the journal. Rows changed by triggers are not
+ * journaled separately; REPLACE is reported as INSERT. As in snapshots,
+ * password hashes are never journaled: their parameters are written as NULL.
+ */
+public final class ChangeJournal {
+
+    public enum Op { INSERT, UPDATE, DELETE }
+
+    static final int MAGIC = 0x34505343;        // "4PSC"
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 16;
+    static final int FRAME_HEADER_BYTES = 8;
+    static final int MAX_FRAME_BYTES = 64 << 20;
+    static final String SUFFIX = ".journal";
+    static final byte DEFINE = 'D';
+    static final byte CHANGE = 'C';
+
+    private static final Pattern STATEMENT = Pattern.compile(
+            "^\\s*(?:(insert|replace)(?:\\s+or\\s+\\w+)?\\s+into|(update)(?:\\s+or\\s+\\w+)?|(delete)\\s+from)\\s+[\"`\\[]?(\\w+)",
+            Pattern.CASE_INSENSITIVE);
+    private static final Pattern INSERT_LISTS = Pattern.compile("\\(([^)]*)\\)\\s*values\\s*\\(([^)]*)\\)");
+    private static final Pattern ASSIGNMENT = Pattern.compile("(\\w+)\\s*=\\s*\\?");
+    private static final Set<String> EXCLUDED_COLUMNS = new HashSet<>(Arrays.asList("user.password"));
+    private static final int BUFFER_BYTES = 256 * 1024;
+
+    private final Path dir;
+    private final long segmentBytes;
+    private final int retainSegments;
+    private final long retainMillis;
+    private final Map<String, Statement> statements = new ConcurrentHashMap<>();
+    private final AtomicInteger statementIds = new AtomicInteger();
+
+    // --- Guarded by 'this' ---
+    private FileChannel channel;
+    private long segmentSize;
+    private long segmentRecords;
+    private final Set<Integer> defined = new HashSet<>();
+    private final ByteBuffer pending = ByteBuffer.allocateDirect(BUFFER_BYTES);
+    private ByteBuffer scratch = ByteBuffer.allocate(4096);
+    private final CRC32 crc = new CRC32();
+    private long nextSeq;
+    private boolean closed;
+
+    // --- Group commit, guarded by 'syncLock' ---
+    private final Object syncLock = new Object();
+    private boolean syncing;
+    private long durableSeq;
+
+    private volatile IOException failure;
+
+    // --- Metrics ---
+    private final long startedNanos = System.nanoTime();
+    private final LatencyHistogram syncLatency = new LatencyHistogram();
+    private long records;
+    private long bytes;
+    private final AtomicLong syncs = new AtomicLong();
+    private final AtomicLong syncedRecords = new AtomicLong();
+    private long rotations;
+    private long pruned;
+    private long dropped;
+
+    private ChangeJournal(Path dir, long segmentBytes, int retainSegments, long retainMillis) {
+        this.dir = dir;
+        this.segmentBytes = segmentBytes;
+        this.retainSegments = retainSegments;
+        this.retainMillis = retainMillis;
+    }
+
+    /**
+     * Opens the journal in {@code dir}, creating it if needed. A torn record at
+     * the end of the last segment (a crash mid-write) is cut off, and writing
+     * resumes in a new segment after the last complete record.
+     */
+    public static ChangeJournal open(Path dir, long segmentBytes, int retainSegments, long retainMillis) throws IOException {
+        if (segmentBytes < 4096 || retainSegments < 1) {
+            throw new IllegalArgumentException("segmentBytes must be at least 4096 and retainSegments at least 1");
+        }
+        Files.createDirectories(dir);
+        ChangeJournal j = new ChangeJournal(dir, segmentBytes, retainSegments, retainMillis);
+        long next = 1;
+        List<Path> segments = segments(dir);
+        if (!segments.isEmpty()) {
+            Path last = segments.get(segments.size() - 1);
+            next = firstSeq(last);
+            long lastSeq = recover(last);
+            if (lastSeq < 0) {
+                Files.delete(last);     // no complete record: it is recreated below
+            } else {
+                next = lastSeq + 1;
+            }
+        }
+        j.nextSeq = next;
+        j.durableSeq = next - 1;
+        synchronized (j) {
+            j.startSegment(next);
+        }
+        return j;
+    }
+
+    /**
+     * Appends one committed change and returns its sequence number, or -1 if
+     * the statement is not an INSERT, UPDATE or DELETE or the journal has
+     * failed. The record is durable once {@link #sync} has been called with it.
+     */
+    public long append(String sql, Object[] params, int rows) {
+        Statement st = statements.get(sql);
+        if (st == null) {
+            Matcher m = STATEMENT.matcher(sql);
+            if (!m.find()) return -1;
+            Op op = m.group(1) != null ? Op.INSERT : m.group(2) != null ? Op.UPDATE : Op.DELETE;
+            String table = m.group(4).toLowerCase(Locale.ROOT);
+            Statement parsed = new Statement(statementIds.getAndIncrement(), op, table, sql, excludedParams(op, table, sql));
+            st = statements.putIfAbsent(sql, parsed);
+            if (st == null) st = parsed;
+        }
+        if (st.excluded.length > 0 && params != null) {
+            params = params.clone();
+            for (int i : st.excluded) {
+                if (i < params.length) params[i] = null;
+            }
+        }
+        synchronized (this) {
+            if (failure != null || closed) {
+                dropped++;
+                return -1;
+            }
+            long seq = nextSeq;
+            try {
+                ByteBuffer change = encodeChange(seq, System.currentTimeMillis(), st.id, rows, params);
+                int needed = FRAME_HEADER_BYTES + change.remaining()
+                        + (defined.contains(st.id) ? 0 : FRAME_HEADER_BYTES + 64 + st.sql.length() * 3);
+                if (segmentRecords > 0 && segmentSize + needed > segmentBytes) {
+                    rotate(seq);
+                }
+                if (defined.add(st.id)) {
+                    writeFrame(encodeDefinition(st));
+                    change = encodeChange(seq, System.currentTimeMillis(), st.id, rows, params);
+                }
+                writeFrame(change);
+            } catch (IOException | RuntimeException e) {
+                fail(e instanceof IOException ? (IOException) e : new IOException(e));
+                dropped++;
+                return -1;
+            }
+            nextSeq = seq + 1;
+            segmentRecords++;
+            records++;
+            return seq;
+        }
+    }
+
+    /** Blocks until every record up to {@code seq} is on disk; returns at once for seq < 0. */
+    public void sync(long seq) {
+        if (seq < 0) return;
+        synchronized (syncLock) {
+            while (syncing && durableSeq < seq && failure == null) {
+                try {
+                    syncLock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+            if (durableSeq >= seq || failure != null) {
+                return;
+            }
+            syncing = true;
+        }
+        // This thread leads: one force covers everything appended so far.
+        long start = System.nanoTime();
+        long upTo = -1;
+        try {
+            FileChannel ch;
+            synchronized (this) {
+                drain();
+                upTo = nextSeq - 1;
+                ch = channel;
+            }
+            try {
+                ch.force(false);
+            } catch (ClosedChannelException e) {
+                // Rotated meanwhile; the segment was forced before it was closed.
+            }
+        } catch (IOException e) {
+            fail(e);
+            upTo = -1;
+        } finally {
+            synchronized (syncLock) {
+                if (upTo > durableSeq) {
+                    syncs.incrementAndGet();
+                    syncedRecords.addAndGet(upTo - durableSeq);
+                    durableSeq = upTo;
+                }
+                syncing = false;
+                syncLock.notifyAll();
+            }
+            syncLatency.record(System.nanoTime() - start);
+        }
+    }
+
+    /** Syncs every record appended so far. */
+    public void syncAll() {
+        long last;
+        synchronized (this) {
+            last = nextSeq - 1;
+        }
+        sync(last);
+    }
+
+    public synchronized void close() {
+        if (closed) return;
+        closed = true;
+        try {
+            drain();
+            channel.force(false);
+            synchronized (syncLock) {
+                durableSeq = Math.max(durableSeq, nextSeq - 1);
+                syncLock.notifyAll();
+            }
+        } catch (IOException e) {
+            fail(e);
+        } finally {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // nothing more to lose
+            }
+        }
+    }
+
+    public Path getDirectory() {
+        return dir;
+    }
+
+    /** Sequence number of the last record appended, or 0 if there is none yet. */
+    public synchronized long getLastSequence() {
+        return nextSeq - 1;
+    }
+
+    public boolean isFailed() {
+        return failure != null;
+    }
+
+    @Override
+    public synchronized String toString() {
+        double seconds = (System.nanoTime() - startedNanos) / 1e9;
+        return String.format("change journal: %s lastSeq=%d records=%d (%.0f/s) bytes=%d syncs=%d records/sync=%.1f "
+                        + "sync p50/p99 %.3f/%.3f ms, segments rotated=%d pruned=%d, dropped=%d%s",
+                dir, nextSeq - 1, records, records / Math.max(seconds, 1e-9), bytes, syncs.get(),
+                syncs.get() == 0 ? 0.0 : (double) syncedRecords.get() / syncs.get(),
+                syncLatency.getValueAtPercentile(50) / 1e6, syncLatency.getValueAtPercentile(99) / 1e6,
+                rotations, pruned, dropped, failure == null ? "" : " FAILED: " + failure.getMessage());
+    }
+
+    // --- Positions of the parameters bound to excluded columns, in INSERT ... (cols) VALUES (...) and in 'col = ?' ---
+    private static int[] excludedParams(Op op, String table, String sql) {
+        String lower = sql.toLowerCase(Locale.ROOT);
+        List<Integer> out = new ArrayList<>();
+        if (op == Op.INSERT) {
+            Matcher m = INSERT_LISTS.matcher(lower);
+            if (m.find()) {
+                String[] columns = m.group(1).split(",");
+                String[] values = m.group(2).split(",");
+                int param = 0;
+                for (int i = 0; i < values.length; i++) {
+                    if (i < columns.length && "?".equals(values[i].trim())
+                            && EXCLUDED_COLUMNS.contains(table + "." + columns[i].trim())) {
+                        out.add(param);
+                    }
+                    param += placeholders(values[i]);
+                }
+            }
+        } else {
+            Matcher m = ASSIGNMENT.matcher(lower);
+            while (m.find()) {
+                if (EXCLUDED_COLUMNS.contains(table + "." + m.group(1))) {
+                    out.add(placeholders(lower.substring(0, m.end() - 1)));
+                }
+            }
+        }
+        int[] positions = new int[out.size()];
+        for (int i = 0; i < positions.length; i++) {
+            positions[i] = out.get(i);
+        }
+        return positions;
+    }
+
+    private static int placeholders(String s) {
+        int n = 0;
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) == '?') n++;
+        }
+        return n;
+    }
+
+    // ----------------------------------------------------
+    // --- SEGMENTS ---
+    // ----------------------------------------------------
+
+    private void startSegment(long firstSeq) throws IOException {
+        Path file = dir.resolve(segmentName(firstSeq));
+        channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        segmentRecords = 0;
+        defined.clear();
+        pending.clear();
+        pending.putInt(MAGIC).putInt(VERSION).putLong(firstSeq);
+        segmentSize = HEADER_BYTES;
+        bytes += HEADER_BYTES;
+    }
+
+    private void rotate(long nextFirstSeq) throws IOException {
+        drain();
+        channel.force(false);
+        channel.close();
+        synchronized (syncLock) {
+            durableSeq = Math.max(durableSeq, nextFirstSeq - 1);
+            syncLock.notifyAll();
+        }
+        rotations++;
+        startSegment(nextFirstSeq);
+        prune();
+    }
+
+    // --- Closed segments past the count or age limit go, oldest first, once every registered consumer is past them ---
+    private void prune() {
+        try {
+            List<Path> segments = segments(dir);
+            long needed = JournalConsumer.lowestOffset(dir);
+            long now = System.currentTimeMillis();
+            int closedCount = segments.size() - 1;
+            for (int i = 0; i < closedCount; i++) {
+                Path segment = segments.get(i);
+                boolean tooMany = closedCount - i > retainSegments;
+                boolean tooOld = retainMillis > 0 && now - Files.getLastModifiedTime(segment).toMillis() > retainMillis;
+                if (!tooMany && !tooOld) break;
+                if (firstSeq(segments.get(i + 1)) > needed) break;      // a consumer still has to read it
+                Files.deleteIfExists(segment);
+                pruned++;
+            }
+        } catch (IOException e) {
+            System.err.println("⚠️ Change journal retention failed: " + e.getMessage());
+        }
+    }
+
+    static List<Path> segments(Path dir) throws IOException {
+        List<Path> out = new ArrayList<>();
+        if (!Files.isDirectory(dir)) return out;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "*" + SUFFIX)) {
+            for (Path f : files) {
+                if (firstSeq(f) > 0) out.add(f);
+            }
+        }
+        Collections.sort(out, (a, b) -> Long.compare(firstSeq(a), firstSeq(b)));
+        return out;
+    }
+
+    static String segmentName(long firstSeq) {
+        return String.format("%020d%s", firstSeq, SUFFIX);
+    }
+
+    static long firstSeq(Path segment) {
+        String name = segment.getFileName().toString();
+        try {
+            return Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+        } catch (NumberFormatException | IndexOutOfBoundsException e) {
+            return -1;
+        }
+    }
+
+    // --- Cuts a torn tail off the segment; returns the last sequence number in it, or -1 if it has no change ---
+    private static long recover(Path segment) throws IOException {
+        long lastSeq = -1;
+        try (FileChannel ch = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long pos = HEADER_BYTES;
+            if (ch.size() < HEADER_BYTES || readHeader(ch) != firstSeq(segment)) {
+                return -1;
+            }
+            ByteBuffer payload;
+            while ((payload = readFrame(ch, pos)) != null) {
+                if (payload.get(0) == CHANGE) {
+                    lastSeq = payload.getLong(1);
+                }
+                pos += FRAME_HEADER_BYTES + payload.capacity();
+            }
+            if (ch.size() > pos) {
+                System.err.println("⚠️ Change journal: cut " + (ch.size() - pos) + " bytes of an incomplete record off " + segment);
+                ch.truncate(pos);
+                ch.force(false);
+            }
+        }
+        return lastSeq;
+    }
+
+    // ----------------------------------------------------
+    // --- FORMAT ---
+    // ----------------------------------------------------
+
+    /** Reads a segment header; returns its first sequence number. */
+    static long readHeader(FileChannel ch) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        readFully(ch, header, 0);
+        header.flip();
+        if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+            throw new IOException("not a version " + VERSION + " change journal segment");
+        }
+        return header.getLong();
+    }
+
+    /** The payload of the frame at {@code pos}, or null if none is complete there (end of data, or a torn or corrupt frame). */
+    static ByteBuffer readFrame(FileChannel ch, long pos) throws IOException {
+        long size = ch.size();
+        if (size - pos < FRAME_HEADER_BYTES) return null;
+        ByteBuffer header = ByteBuffer.allocate(FRAME_HEADER_BYTES);
+        readFully(ch, header, pos);
+        int length = header.getInt(0);
+        int checksum = header.getInt(4);
+        if (length <= 0 || length > MAX_FRAME_BYTES || size - pos - FRAME_HEADER_BYTES < length) return null;
+        ByteBuffer payload = ByteBuffer.allocate(length);
+        readFully(ch, payload, pos + FRAME_HEADER_BYTES);
+        CRC32 c = new CRC32();
+        c.update(payload.array(), 0, length);
+        if ((int) c.getValue() != checksum) return null;
+        payload.flip();
+        return payload;
+    }
+
+    private static void readFully(FileChannel ch, ByteBuffer buf, long pos) throws IOException {
+        while (buf.hasRemaining()) {
+            int n = ch.read(buf, pos + buf.position());
+            if (n < 0) throw new IOException("unexpected end of journal segment");
+        }
+    }
+
+    /** Decodes a CHANGE payload against the statements defined so far in its segment. */
+    static Change decodeChange(ByteBuffer payload, Map<Integer, Statement> defs) throws IOException {
+        payload.get();                  // type
+        long seq = payload.getLong();
+        long time = payload.getLong();
+        int id = payload.getInt();
+        int rows = payload.getInt();
+        Object[] params = new Object[payload.getShort() & 0xFFFF];
+        for (int i = 0; i < params.length; i++) {
+            params[i] = readValue(payload);
+        }
+        Statement st = defs.get(id);
+        if (st == null) {
+            throw new IOException("change " + seq + " refers to undefined statement " + id);
+        }
+        return new Change(seq, time, st.op, st.table, st.sql, params, rows);
+    }
+
+    /** Decodes a DEFINE payload. */
+    static Statement decodeDefinition(ByteBuffer payload) {
+        payload.get();                  // type
+        int id = payload.getInt();
+        Op op = Op.values()[payload.get()];
+        String table = readString(payload);
+        String sql = readString(payload);
+        return new Statement(id, op, table, sql, new int[0]);
+    }
+
+    private ByteBuffer encodeDefinition(Statement st) {
+        ByteBuffer b = scratch(64 + st.sql.length() * 3);
+        b.put(DEFINE).putInt(st.id).put((byte) st.op.ordinal());
+        b = putString(b, st.table);
+        b = putString(b, st.sql);
+        b.flip();
+        return b;
+    }
+
+    private ByteBuffer encodeChange(long seq, long time, int id, int rows, Object[] params) {
+        int n = params == null ? 0 : params.length;
+        ByteBuffer b = scratch(32 + n * 16);
+        b.put(CHANGE).putLong(seq).putLong(time).putInt(id).putInt(rows).putShort((short) n);
+        for (int i = 0; i < n; i++) {
+            b = putValue(b, params[i]);
+        }
+        b.flip();
+        return b;
+    }
+
+    private ByteBuffer scratch(int atLeast) {
+        if (scratch.capacity() < atLeast) {
+            scratch = ByteBuffer.allocate(Math.max(atLeast, scratch.capacity() * 2));
+        }
+        scratch.clear();
+        return scratch;
+    }
+
+    private ByteBuffer ensure(ByteBuffer b, int more) {
+        if (b.remaining() >= more) return b;
+        ByteBuffer bigger = ByteBuffer.allocate(Math.max(b.capacity() * 2, b.position() + more));
+        b.flip();
+        bigger.put(b);
+        scratch = bigger;
+        return bigger;
+    }
+
+    // Tags: 0 null, 1 int, 2 long, 3 double, 4 text, 5 blob, 6 decimal (as text), 7 boolean
+    private ByteBuffer putValue(ByteBuffer b, Object v) {
+        b = ensure(b, 9);
+        if (v == null) {
+            b.put((byte) 0);
+        } else if (v instanceof Integer || v instanceof Short || v instanceof Byte) {
+            b.put((byte) 1).putInt(((Number) v).intValue());
+        } else if (v instanceof Long) {
+            b.put((byte) 2).putLong((Long) v);
+        } else if (v instanceof Double || v instanceof Float) {
+            b.put((byte) 3).putDouble(((Number) v).doubleValue());
+        } else if (v instanceof byte[]) {
+            byte[] blob = (byte[]) v;
+            b = ensure(b, 5 + blob.length);
+            b.put((byte) 5).putInt(blob.length).put(blob);
+        } else if (v instanceof BigDecimal) {
+            b.put((byte) 6);
+            b = putString(b, ((BigDecimal) v).toPlainString());
+        } else if (v instanceof Boolean) {
+            b.put((byte) 7).put((byte) ((Boolean) v ? 1 : 0));
+        } else {
+            b.put((byte) 4);
+            b = putString(b, v.toString());
+        }
+        return b;
+    }
+
+    private static Object readValue(ByteBuffer b) throws IOException {
+        byte tag = b.get();
+        switch (tag) {
+            case 0: return null;
+            case 1: return b.getInt();
+            case 2: return b.getLong();
+            case 3: return b.getDouble();
+            case 4: return readString(b);
+            case 5: {
+                byte[] blob = new byte[b.getInt()];
+                b.get(blob);
+                return blob;
+            }
+            case 6: return new BigDecimal(readString(b));
+            case 7: return b.get() != 0;
+            default: throw new IOException("unknown value tag " + tag);
+        }
+    }
+
+    private ByteBuffer putString(ByteBuffer b, String s) {
+        byte[] utf8 = s.getBytes(StandardCharsets.UTF_8);
+        b = ensure(b, 4 + utf8.length);
+        b.putInt(utf8.length).put(utf8);
+        return b;
+    }
+
+    private static String readString(ByteBuffer b) {
+        byte[] utf8 = new byte[b.getInt()];
+        b.get(utf8);
+        return new String(utf8, StandardCharsets.UTF_8);
+    }
+
+    // --- Frames collect in a direct buffer and reach the file in large writes: when it fills, on sync and on rotation ---
+    private void writeFrame(ByteBuffer payload) throws IOException {
+        int length = payload.remaining();
+        crc.reset();
+        crc.update(payload.array(), payload.arrayOffset() + payload.position(), length);
+        int frame = FRAME_HEADER_BYTES + length;
+        if (pending.remaining() < frame) {
+            drain();
+        }
+        if (pending.remaining() < frame) {
+            ByteBuffer header = ByteBuffer.allocate(FRAME_HEADER_BYTES);
+            header.putInt(length).putInt((int) crc.getValue()).flip();
+            ByteBuffer[] parts = { header, payload };
+            while (header.hasRemaining() || payload.hasRemaining()) {
+                channel.write(parts);
+            }
+        } else {
+            pending.putInt(length).putInt((int) crc.getValue()).put(payload);
+        }
+        segmentSize += frame;
+        bytes += frame;
+    }
+
+    private void drain() throws IOException {
+        pending.flip();
+        try {
+            while (pending.hasRemaining()) {
+                channel.write(pending);
+            }
+        } finally {
+            pending.compact();
+        }
+    }
+
+    private void fail(IOException e) {
+        synchronized (syncLock) {
+            if (failure == null) {
+                failure = e;
+                System.err.println("❌ Change journal write failed; further changes are NOT journaled: " + e.getMessage());
+            }
+            syncLock.notifyAll();
+        }
+    }
+
+    // ----------------------------------------------------
+    // --- RECORDS ---
+    // ----------------------------------------------------
+
+    static final class Statement {
+        final int id;
+        final Op op;
+        final String table;
+        final String sql;
+        final int[] excluded;       // parameter positions written as NULL
+
+        Statement(int id, Op op, String table, String sql, int[] excluded) {
+            this.id = id;
+            this.op = op;
+            this.table = table;
+            this.sql = sql;
+            this.excluded = excluded;
+        }
+    }
+
+    /** One committed change as read back by a {@link JournalConsumer}. */
+    public static final class Change {
+        private final long sequence;
+        private final long timeMillis;
+        private final Op op;
+        private final String table;
+        private final String sql;
+        private final Object[] params;
+        private final int rows;
+
+        Change(long sequence, long timeMillis, Op op, String table, String sql, Object[] params, int rows) {
+            this.sequence = sequence;
+            this.timeMillis = timeMillis;
+            this.op = op;
+            this.table = table;
+            this.sql = sql;
+            this.params = params;
+            this.rows = rows;
+        }
+
+        public long getSequence() { return sequence; }
+        public long getTimeMillis() { return timeMillis; }
+        public Op getOp() { return op; }
+        public String getTable() { return table; }
+        public String getSql() { return sql; }
+        public Object[] getParams() { return params.clone(); }
+        public int getRows() { return rows; }
+
+        @Override
+        public String toString() {
+            return "#" + sequence + " " + op + " " + table + " " + Arrays.toString(params) + " (" + rows + " rows)";
+        }
+    }
+}
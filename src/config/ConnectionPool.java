@@ -0,0 +1,559 @@
+package config;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded pool of SQLite connections: one writer plus N query-only readers.
+ *
+ * Every connection is opened in WAL mode with a busy timeout, so readers never
+ * block the writer and the writer never blocks readers. Checkout is per thread:
+ * a thread that already holds a connection gets the same one back (nested calls
+ * just bump a depth counter), and a thread holding the writer reads through it
+ * so it sees its own uncommitted changes. Handles returned to callers are plain
+ * {@link Connection}s whose {@code close()} gives the connection back, and
+ * {@code prepareStatement(sql)} on them is served from a per-connection
+ * {@link StatementCache}.
+ *
+ * Work that must wait for the writer's open transaction to commit (the change
+ * journal) is registered with {@link #afterCommit} and runs on the committing
+ * thread while it still holds the writer; a rollback drops it.
+ */
+public class ConnectionPool {
+
+    private static final long VALIDATE_AFTER_IDLE_MS = 30_000L;
+
+    private final String url;
+    private final int readerCount;
+    private final int busyTimeoutMs;
+    private final long acquireTimeoutMs;
+    private final int statementCacheSize;
+
+    private final BlockingQueue<PooledConnection> idleReaders;
+    private final AtomicInteger createdReaders = new AtomicInteger();
+    private final Semaphore writerPermit = new Semaphore(1, true);
+    private PooledConnection writer;
+
+    private final ThreadLocal<Lease> readerLease = new ThreadLocal<>();
+    private final ThreadLocal<Lease> writerLease = new ThreadLocal<>();
+
+    private volatile boolean closed = false;
+
+    // --- Metrics ---
+    private final AtomicLong acquisitions = new AtomicLong();
+    private final AtomicLong waitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+    private final AtomicLong healthCheckFailures = new AtomicLong();
+    private final AtomicLong statementHits = new AtomicLong();
+    private final AtomicLong statementMisses = new AtomicLong();
+    private final AtomicLong statementEvictions = new AtomicLong();
+    private final AtomicInteger activeReaders = new AtomicInteger();
+    private volatile boolean writerActive = false;
+
+    public ConnectionPool(String url, int readerCount, int busyTimeoutMs, long acquireTimeoutMs, int statementCacheSize) {
+        if (readerCount < 1) {
+            throw new IllegalArgumentException("readerCount must be at least 1");
+        }
+        this.url = url;
+        this.readerCount = readerCount;
+        this.busyTimeoutMs = busyTimeoutMs;
+        this.acquireTimeoutMs = acquireTimeoutMs;
+        this.statementCacheSize = statementCacheSize;
+        this.idleReaders = new ArrayBlockingQueue<>(readerCount);
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    // --- Opens the writer eagerly so connection problems surface at startup ---
+    public synchronized void start() throws SQLException {
+        if (writer == null) {
+            writer = open(false);
+        }
+    }
+
+    // ----------------------------------------------------
+    // --- CHECKOUT ---
+    // ----------------------------------------------------
+
+    /** Checks out a read connection. A thread holding the writer reads through it. */
+    public Connection acquireReader() throws SQLException {
+        ensureOpen();
+        Lease held = writerLease.get();
+        if (held == null) {
+            held = readerLease.get();
+        }
+        if (held != null) {
+            return held.newHandle();
+        }
+
+        long start = System.nanoTime();
+        PooledConnection pc = idleReaders.poll();
+        if (pc == null && createdReaders.get() < readerCount) {
+            if (createdReaders.incrementAndGet() <= readerCount) {
+                try {
+                    pc = open(true);
+                } catch (SQLException e) {
+                    createdReaders.decrementAndGet();
+                    throw e;
+                }
+            } else {
+                createdReaders.decrementAndGet();
+            }
+        }
+        if (pc == null) {
+            try {
+                pc = idleReaders.poll(acquireTimeoutMs, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrupted while waiting for a reader connection", e);
+            }
+            if (pc == null) {
+                timeouts.incrementAndGet();
+                throw new SQLException("Timed out after " + acquireTimeoutMs + " ms waiting for a reader connection (SQLITE_BUSY)");
+            }
+        }
+        pc = validate(pc, true);
+        recordWait(start, false);
+        activeReaders.incrementAndGet();
+
+        Lease lease = new Lease(pc, false);
+        readerLease.set(lease);
+        return lease.newHandle();
+    }
+
+    /** Checks out the single writer connection, waiting for the current holder if needed. */
+    public Connection acquireWriter() throws SQLException {
+        ensureOpen();
+        Lease held = writerLease.get();
+        if (held != null) {
+            return held.newHandle();
+        }
+        // Holding a reader while waiting here cannot deadlock: the writer's holder reads
+        // through the writer itself and never waits on the reader queue.
+
+        long start = System.nanoTime();
+        try {
+            if (!writerPermit.tryAcquire(acquireTimeoutMs, TimeUnit.MILLISECONDS)) {
+                timeouts.incrementAndGet();
+                throw new SQLException("Timed out after " + acquireTimeoutMs + " ms waiting for the writer connection (SQLITE_BUSY)");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for the writer connection", e);
+        }
+        try {
+            synchronized (this) {
+                if (writer == null) {
+                    writer = open(false);
+                }
+                writer = validate(writer, false);
+            }
+        } catch (SQLException e) {
+            writerPermit.release();
+            throw e;
+        }
+        recordWait(start, true);
+        writerActive = true;
+
+        Lease lease = new Lease(writer, true);
+        writerLease.set(lease);
+        return lease.newHandle();
+    }
+
+    /**
+     * Runs {@code action} once the calling thread's open writer transaction
+     * commits, or drops it if the transaction rolls back. Registering an action
+     * already waiting moves it behind the others. Returns false, registering
+     * nothing, when this thread holds no writer or it is in autocommit mode.
+     */
+    boolean afterCommit(Runnable action) throws SQLException {
+        Lease held = writerLease.get();
+        if (held == null || held.pc.conn.getAutoCommit()) {
+            return false;
+        }
+        held.afterCommit.remove(action);
+        held.afterCommit.add(action);
+        return true;
+    }
+
+    private void release(Lease lease) {
+        PooledConnection pc = lease.pc;
+        pc.lastUsed = System.currentTimeMillis();
+        if (lease.writer) {
+            writerLease.remove();
+            lease.afterCommit.clear();
+            try {
+                if (!pc.conn.getAutoCommit()) {
+                    // A caller left a transaction open; never hand a half-done transaction to the next thread.
+                    pc.conn.rollback();
+                    pc.conn.setAutoCommit(true);
+                }
+            } catch (SQLException e) {
+                pc.broken = true;
+            }
+            writerActive = false;
+            writerPermit.release();
+        } else {
+            readerLease.remove();
+            activeReaders.decrementAndGet();
+            if (closed || pc.broken || !idleReaders.offer(pc)) {
+                discard(pc, true);
+            }
+        }
+    }
+
+    // ----------------------------------------------------
+    // --- HEALTH CHECKS ---
+    // ----------------------------------------------------
+
+    private PooledConnection validate(PooledConnection pc, boolean reader) throws SQLException {
+        boolean stale = System.currentTimeMillis() - pc.lastUsed > VALIDATE_AFTER_IDLE_MS;
+        if (!pc.broken && !stale) {
+            return pc;
+        }
+        if (!pc.broken && isHealthy(pc)) {
+            return pc;
+        }
+        healthCheckFailures.incrementAndGet();
+        closeQuietly(pc);
+        return open(reader);
+    }
+
+    private boolean isHealthy(PooledConnection pc) {
+        try {
+            return !pc.conn.isClosed() && pc.conn.isValid(2);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    /** Validates every idle reader and replaces the ones that no longer respond. */
+    public int healthCheck() {
+        int replaced = 0;
+        List<PooledConnection> drained = new ArrayList<>();
+        idleReaders.drainTo(drained);
+        for (PooledConnection pc : drained) {
+            if (!isHealthy(pc)) {
+                healthCheckFailures.incrementAndGet();
+                closeQuietly(pc);
+                replaced++;
+                try {
+                    pc = open(true);
+                } catch (SQLException e) {
+                    createdReaders.decrementAndGet();
+                    continue;
+                }
+            }
+            if (!idleReaders.offer(pc)) {
+                discard(pc, true);
+            }
+        }
+        return replaced;
+    }
+
+    // ----------------------------------------------------
+    // --- LIFECYCLE ---
+    // ----------------------------------------------------
+
+    /**
+     * Opens a query-only connection outside the pool, for bulk jobs that want
+     * one reader per worker thread without taking readers away from
+     * interactive requests. Not counted in the pool's stats; the caller
+     * closes it.
+     */
+    public Connection openDedicatedReader() throws SQLException {
+        ensureOpen();
+        return openRaw(true);
+    }
+
+    /**
+     * Opens a writable connection outside the pool for VACUUM INTO, which
+     * SQLite refuses under query_only even though it only reads this
+     * database. It must not be used for writes: those go through the writer.
+     */
+    public Connection openBackupConnection() throws SQLException {
+        ensureOpen();
+        return openRaw(false);
+    }
+
+    private PooledConnection open(boolean reader) throws SQLException {
+        Connection conn = openRaw(reader);
+        DbMetrics.get().connectionOpened();
+        StatementCache cache = statementCacheSize > 0
+                ? new StatementCache(conn, statementCacheSize, statementHits, statementMisses, statementEvictions)
+                : null;
+        return new PooledConnection(conn, cache);
+    }
+
+    private Connection openRaw(boolean reader) throws SQLException {
+        Connection conn = DriverManager.getConnection(url);
+        try (Statement st = conn.createStatement()) {
+            st.execute("PRAGMA busy_timeout = " + busyTimeoutMs);
+            st.execute("PRAGMA journal_mode = WAL");
+            if (reader) {
+                st.execute("PRAGMA query_only = ON");
+            }
+        } catch (SQLException e) {
+            try { conn.close(); } catch (SQLException closeE) { /* Ignore */ }
+            throw e;
+        }
+        return conn;
+    }
+
+    private void discard(PooledConnection pc, boolean reader) {
+        closeQuietly(pc);
+        if (reader) {
+            createdReaders.decrementAndGet();
+        }
+    }
+
+    private void closeQuietly(PooledConnection pc) {
+        if (pc.statements != null) {
+            pc.statements.closeAll();
+        }
+        try {
+            pc.conn.close();
+            DbMetrics.get().connectionClosed();
+        } catch (SQLException e) {
+            /* Ignore close error */
+        }
+    }
+
+    private void ensureOpen() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed");
+        }
+    }
+
+    /** Closes idle connections now; readers still checked out are closed when they come back. */
+    public void close() {
+        closed = true;
+        List<PooledConnection> drained = new ArrayList<>();
+        idleReaders.drainTo(drained);
+        for (PooledConnection pc : drained) {
+            discard(pc, true);
+        }
+        boolean gotWriter = false;
+        try {
+            gotWriter = writerPermit.tryAcquire(acquireTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            if (writer != null) {
+                closeQuietly(writer);
+                writer = null;
+            }
+        }
+        if (gotWriter) {
+            writerPermit.release();
+        }
+    }
+
+    private void recordWait(long startNanos, boolean forWriter) {
+        long waited = System.nanoTime() - startNanos;
+        DbMetrics.get().recordLockWait(forWriter, waited);
+        acquisitions.incrementAndGet();
+        waitNanos.addAndGet(waited);
+        long max;
+        while (waited > (max = maxWaitNanos.get())) {
+            if (maxWaitNanos.compareAndSet(max, waited)) break;
+        }
+    }
+
+    public Stats getStats() {
+        return new Stats(acquisitions.get(), waitNanos.get(), maxWaitNanos.get(), timeouts.get(),
+                healthCheckFailures.get(), activeReaders.get(), idleReaders.size(), readerCount, writerActive,
+                statementHits.get(), statementMisses.get(), statementEvictions.get());
+    }
+
+    // ----------------------------------------------------
+    // --- INTERNALS ---
+    // ----------------------------------------------------
+
+    private static class PooledConnection {
+        final Connection conn;
+        final StatementCache statements;
+        volatile long lastUsed = System.currentTimeMillis();
+        volatile boolean broken = false;
+
+        PooledConnection(Connection conn, StatementCache statements) {
+            this.conn = conn;
+            this.statements = statements;
+        }
+    }
+
+    /** One checkout of a connection by one thread; nested handles share it. */
+    private class Lease {
+        final PooledConnection pc;
+        final boolean writer;
+        final Set<Runnable> afterCommit = new LinkedHashSet<>();
+        int depth = 0;
+
+        Lease(PooledConnection pc, boolean writer) {
+            this.pc = pc;
+            this.writer = writer;
+        }
+
+        Connection newHandle() {
+            depth++;
+            return (Connection) Proxy.newProxyInstance(
+                    Connection.class.getClassLoader(),
+                    new Class<?>[] { Connection.class },
+                    new Handle(this));
+        }
+
+        void handleClosed() {
+            if (--depth == 0) {
+                release(this);
+            }
+        }
+
+        void committed() {
+            if (afterCommit.isEmpty()) return;
+            List<Runnable> actions = new ArrayList<>(afterCommit);
+            afterCommit.clear();
+            for (Runnable action : actions) {
+                try {
+                    action.run();
+                } catch (RuntimeException e) {
+                    System.err.println("⚠️ After-commit action failed: " + e);
+                }
+            }
+        }
+    }
+
+    /** Connection proxy whose close() returns the lease instead of closing the socket/file. */
+    private static class Handle implements InvocationHandler {
+        private final Lease lease;
+        private boolean released = false;
+
+        Handle(Lease lease) {
+            this.lease = lease;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if ("close".equals(name)) {
+                if (!released) {
+                    released = true;
+                    lease.handleClosed();
+                }
+                return null;
+            }
+            if ("isClosed".equals(name)) {
+                return released || lease.pc.conn.isClosed();
+            }
+            if ("equals".equals(name)) {
+                return proxy == args[0];
+            }
+            if ("hashCode".equals(name)) {
+                return System.identityHashCode(proxy);
+            }
+            if ("toString".equals(name)) {
+                return "PooledConnection[" + (lease.writer ? "writer" : "reader") + "]";
+            }
+            if (released) {
+                throw new SQLException("Connection handle already returned to the pool");
+            }
+            if ("prepareStatement".equals(name) && args.length == 1 && lease.pc.statements != null) {
+                return lease.pc.statements.prepare((String) args[0]);
+            }
+            try {
+                // setAutoCommit(true) inside a transaction commits it.
+                boolean commits = lease.writer && !lease.afterCommit.isEmpty()
+                        && ("commit".equals(name) || "setAutoCommit".equals(name) && Boolean.TRUE.equals(args[0]));
+                Object result = method.invoke(lease.pc.conn, args);
+                if (commits) {
+                    lease.committed();
+                } else if ("rollback".equals(name) && args == null) {
+                    lease.afterCommit.clear();
+                }
+                return result;
+            } catch (InvocationTargetException e) {
+                if (e.getCause() instanceof SQLException && lease.pc.conn.isClosed()) {
+                    lease.pc.broken = true;
+                }
+                throw e.getCause();
+            }
+        }
+    }
+
+    /** Point-in-time snapshot of pool metrics. */
+    public static class Stats {
+        private final long acquisitions;
+        private final long totalWaitNanos;
+        private final long maxWaitNanos;
+        private final long timeouts;
+        private final long healthCheckFailures;
+        private final int activeReaders;
+        private final int idleReaders;
+        private final int maxReaders;
+        private final boolean writerActive;
+        private final long statementHits;
+        private final long statementMisses;
+        private final long statementEvictions;
+
+        Stats(long acquisitions, long totalWaitNanos, long maxWaitNanos, long timeouts, long healthCheckFailures,
+              int activeReaders, int idleReaders, int maxReaders, boolean writerActive,
+              long statementHits, long statementMisses, long statementEvictions) {
+            this.acquisitions = acquisitions;
+            this.totalWaitNanos = totalWaitNanos;
+            this.maxWaitNanos = maxWaitNanos;
+            this.timeouts = timeouts;
+            this.healthCheckFailures = healthCheckFailures;
+            this.activeReaders = activeReaders;
+            this.idleReaders = idleReaders;
+            this.maxReaders = maxReaders;
+            this.writerActive = writerActive;
+            this.statementHits = statementHits;
+            this.statementMisses = statementMisses;
+            this.statementEvictions = statementEvictions;
+        }
+
+        public long getAcquisitions() { return acquisitions; }
+        public long getTotalWaitNanos() { return totalWaitNanos; }
+        public long getMaxWaitNanos() { return maxWaitNanos; }
+        public long getTimeouts() { return timeouts; }
+        public long getHealthCheckFailures() { return healthCheckFailures; }
+        public int getActiveReaders() { return activeReaders; }
+        public int getIdleReaders() { return idleReaders; }
+        public int getMaxReaders() { return maxReaders; }
+        public boolean isWriterActive() { return writerActive; }
+        public long getStatementHits() { return statementHits; }
+        public long getStatementMisses() { return statementMisses; }
+        public long getStatementEvictions() { return statementEvictions; }
+
+        public double getAverageWaitMillis() {
+            return acquisitions == 0 ? 0.0 : totalWaitNanos / 1_000_000.0 / acquisitions;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("acquisitions=%d avgWait=%.3fms maxWait=%.3fms timeouts=%d readers(active=%d idle=%d max=%d) writerActive=%s healthFailures=%d statements(hits=%d misses=%d evictions=%d)",
+                    acquisitions, getAverageWaitMillis(), maxWaitNanos / 1_000_000.0, timeouts,
+                    activeReaders, idleReaders, maxReaders, writerActive, healthCheckFailures,
+                    statementHits, statementMisses, statementEvictions);
+        }
+    }
+}
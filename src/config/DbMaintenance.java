@@ -0,0 +1,613 @@
+package config;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Online maintenance for the database file: backups, compaction and planner
+ * statistics, each step timed together with how long it held the writer.
+ *
+ * <ul>
+ * <li>{@link #backup(Path)} copies the live database with {@code VACUUM INTO}
+ *     on a connection of its own. In WAL mode that is an ordinary read
+ *     transaction, so writers keep going. The copy is already compacted. A
+ *     manifest next to it records the file's SHA-256 and a content checksum
+ *     (row count plus an order-independent hash per table).</li>
+ * <li>{@link #incrementalVacuum(int)} returns free pages to the file system
+ *     a few hundred pages per writer transaction, so writers queued on the
+ *     pool get in between steps. Needs {@code auto_vacuum = INCREMENTAL}: new
+ *     databases get it, and older files are converted once by
+ *     {@link #enableIncrementalVacuum()} (a full VACUUM that holds the writer).</li>
+ * <li>{@link #optimize()} runs ANALYZE the first time, then
+ *     {@code PRAGMA optimize}.</li>
+ * <li>{@link #verify(Path)} and {@link #restore(Path, Path)} check a backup
+ *     against its manifest; a restore is verified again after the copy and
+ *     only then moved into place. Restore while the application is stopped.</li>
+ * </ul>
+ *
+ * {@link #start(Path, long, int)} runs backup, vacuum and optimize on a
+ * background thread at a fixed interval ({@code -D4ps.backup.dir} turns it on
+ * from {@link config#connectDB()}). With the database sharded every step
+ * covers each shard file in turn, and each file keeps its own backups.
+ */
+public final class DbMaintenance {
+
+    public static final String MANIFEST_SUFFIX = ".manifest";
+    private static final String BACKUP_SUFFIX = ".db";
+    private static final DateTimeFormatter STAMP = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+    private static final Pattern BACKUP_NAME = Pattern.compile("(.*)-\\d{8}-\\d{6}(?:-\\d+)?\\.db");
+    private static final int DEFAULT_VACUUM_PAGES_PER_STEP = 512;
+    private static final int HISTORY_SIZE = 20;
+    private static final int COPY_BUFFER_BYTES = 1 << 20;
+
+    private static final Deque<StepResult> history = new ArrayDeque<>();
+    private static ScheduledExecutorService scheduler;
+
+    private DbMaintenance() {
+    }
+
+    // ----------------------------------------------------
+    // --- BACKUP ---
+    // ----------------------------------------------------
+
+    /** Writes a compacted copy of the live database (each shard file, when sharded) plus its manifest into {@code dir}. */
+    public static StepResult backup(Path dir) throws SQLException, IOException {
+        long start = System.nanoTime();
+        List<String> details = new ArrayList<>();
+        for (int shard = 0; shard < config.getShardCount(); shard++) {
+            details.add(backupShard(dir, shard));
+        }
+        return record(new StepResult("backup", System.nanoTime() - start, 0, 0, String.join("; ", details)));
+    }
+
+    private static String backupShard(Path dir, int shard) throws SQLException, IOException {
+        Files.createDirectories(dir);
+        Path source = Paths.get(config.getDatabasePath(shard));
+        String base = source.getFileName().toString().replaceFirst("\\.db$", "");
+        Path target = uniqueName(dir, base + "-" + LocalDateTime.now().format(STAMP));
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        Files.deleteIfExists(temp);
+
+        try (Connection conn = config.openBackupConnection(shard); Statement st = conn.createStatement()) {
+            st.execute("VACUUM INTO '" + temp.toAbsolutePath().toString().replace("'", "''") + "'");
+        } catch (SQLException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        Manifest m;
+        try {
+            m = Manifest.of(temp);
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (SQLException | IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        m.file = target.getFileName().toString();
+        m.write(manifestOf(target));
+        return String.format("%s (%,d bytes, %,d rows in %d tables)", target, m.bytes, m.rows, m.tables);
+    }
+
+    /** Deletes all but the newest {@code keep} backups of each database file in {@code dir}; returns how many were removed. */
+    public static int prune(Path dir, int keep) throws IOException {
+        Map<String, List<Path>> bySource = new TreeMap<>();
+        for (Path p : listBackups(dir)) {
+            Matcher m = BACKUP_NAME.matcher(p.getFileName().toString());
+            String source = m.matches() ? m.group(1) : "";
+            bySource.computeIfAbsent(source, k -> new ArrayList<>()).add(p);
+        }
+        int removed = 0;
+        for (List<Path> backups : bySource.values()) {
+            for (int i = 0; i < backups.size() - Math.max(keep, 1); i++) {
+                Files.deleteIfExists(backups.get(i));
+                Files.deleteIfExists(manifestOf(backups.get(i)));
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    /** Backups in {@code dir} that have a manifest, oldest first. */
+    public static List<Path> listBackups(Path dir) throws IOException {
+        List<Path> out = new ArrayList<>();
+        if (!Files.isDirectory(dir)) return out;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "*" + BACKUP_SUFFIX)) {
+            for (Path p : files) {
+                if (Files.exists(manifestOf(p))) out.add(p);
+            }
+        }
+        Collections.sort(out);      // names carry the timestamp
+        return out;
+    }
+
+    // ----------------------------------------------------
+    // --- VERIFY / RESTORE ---
+    // ----------------------------------------------------
+
+    /** Checks a backup against its manifest: file SHA-256, integrity_check and content checksum. */
+    public static VerifyResult verify(Path backup) throws IOException {
+        Path manifest = manifestOf(backup);
+        if (!Files.exists(manifest)) {
+            return new VerifyResult(backup, false, "no manifest at " + manifest);
+        }
+        Manifest expected = Manifest.read(manifest);
+        String sha = sha256(backup);
+        if (!sha.equals(expected.sha256)) {
+            return new VerifyResult(backup, false, "file SHA-256 is " + sha + ", manifest says " + expected.sha256);
+        }
+        return verifyContent(backup, expected);
+    }
+
+    /**
+     * Restores a backup to {@code target}. The backup is verified first,
+     * then copied next to the target, verified again, and moved into place.
+     * The old file (if any) is kept as {@code <target>.before-restore}, and a
+     * stale -wal/-shm pair is removed. Run it with the application stopped.
+     */
+    public static VerifyResult restore(Path backup, Path target) throws IOException {
+        VerifyResult check = verify(backup);
+        if (!check.isOk()) return check;
+
+        Path temp = target.resolveSibling(target.getFileName() + ".restore.tmp");
+        Files.copy(backup, temp, StandardCopyOption.REPLACE_EXISTING);
+        VerifyResult copied = verifyContent(temp, Manifest.read(manifestOf(backup)));
+        if (!copied.isOk()) {
+            Files.deleteIfExists(temp);
+            return new VerifyResult(target, false, "copy does not match the backup: " + copied.getDetail());
+        }
+        if (Files.exists(target)) {
+            Files.move(target, target.resolveSibling(target.getFileName() + ".before-restore"), StandardCopyOption.REPLACE_EXISTING);
+        }
+        // A WAL left over from the old file would be replayed onto the restored one.
+        Files.deleteIfExists(target.resolveSibling(target.getFileName() + "-wal"));
+        Files.deleteIfExists(target.resolveSibling(target.getFileName() + "-shm"));
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+        return new VerifyResult(target, true, "restored from " + backup + "; " + copied.getDetail());
+    }
+
+    private static VerifyResult verifyContent(Path file, Manifest expected) {
+        try (Connection conn = openFile(file)) {
+            try (Statement st = conn.createStatement(); ResultSet rs = st.executeQuery("PRAGMA integrity_check")) {
+                String first = rs.next() ? rs.getString(1) : "no result";
+                if (!"ok".equals(first)) {
+                    return new VerifyResult(file, false, "integrity_check: " + first);
+                }
+            }
+            Manifest actual = Manifest.ofConnection(conn);
+            if (!actual.content.equals(expected.content)) {
+                return new VerifyResult(file, false, "content checksum " + actual.content + " does not match " + expected.content);
+            }
+            return new VerifyResult(file, true, String.format("integrity ok, %,d rows in %d tables match the manifest",
+                    actual.rows, actual.tables));
+        } catch (SQLException e) {
+            return new VerifyResult(file, false, "could not read: " + e.getMessage());
+        }
+    }
+
+    // ----------------------------------------------------
+    // --- COMPACTION / STATISTICS ---
+    // ----------------------------------------------------
+
+    public static StepResult incrementalVacuum() throws SQLException {
+        return incrementalVacuum(DEFAULT_VACUUM_PAGES_PER_STEP);
+    }
+
+    /** Frees pages {@code pagesPerStep} at a time, one short writer transaction per step (shard by shard, when sharded). */
+    public static StepResult incrementalVacuum(int pagesPerStep) throws SQLException {
+        long start = System.nanoTime();
+        StepTotals totals = new StepTotals();
+        for (int shard = 0; shard < config.getShardCount(); shard++) {
+            totals.add(shard, vacuumShard(shard, pagesPerStep, totals));
+        }
+        return record(new StepResult("incremental_vacuum", System.nanoTime() - start, totals.held, totals.maxHold, totals.detail()));
+    }
+
+    private static String vacuumShard(int shard, int pagesPerStep, StepTotals totals) throws SQLException {
+        int steps = 0;
+        long freed = 0;
+        if (pragmaInt(shard, "auto_vacuum") != 2) {
+            return "skipped: auto_vacuum is not INCREMENTAL (" + pragmaInt(shard, "freelist_count") + " free pages); enable it once first";
+        }
+        while (true) {
+            long t0 = System.nanoTime();
+            long before;
+            long after;
+            try (Connection conn = config.getWriteConnection(shard); Statement st = conn.createStatement()) {
+                before = intPragma(st, "freelist_count");
+                if (before > 0) {
+                    // executeUpdate runs the pragma to completion; execute() would free a single page.
+                    st.executeUpdate("PRAGMA incremental_vacuum(" + pagesPerStep + ")");
+                }
+                after = intPragma(st, "freelist_count");
+            }
+            totals.hold(System.nanoTime() - t0);
+            if (before == 0) break;
+            steps++;
+            freed += before - after;
+            if (after == 0 || after >= before) break;
+        }
+        return String.format("%,d pages freed in %d steps", freed, steps);
+    }
+
+    /**
+     * Switches the file (every shard file, when sharded) to
+     * {@code auto_vacuum = INCREMENTAL}. This takes a full VACUUM, which
+     * rewrites the file and holds its writer throughout.
+     */
+    public static StepResult enableIncrementalVacuum() throws SQLException {
+        long start = System.nanoTime();
+        StepTotals totals = new StepTotals();
+        for (int shard = 0; shard < config.getShardCount(); shard++) {
+            if (pragmaInt(shard, "auto_vacuum") == 2) {
+                totals.add(shard, "already INCREMENTAL");
+                continue;
+            }
+            long t0 = System.nanoTime();
+            try (Connection conn = config.getWriteConnection(shard); Statement st = conn.createStatement()) {
+                st.execute("PRAGMA auto_vacuum = INCREMENTAL");
+                st.execute("VACUUM");
+            }
+            totals.hold(System.nanoTime() - t0);
+            totals.add(shard, "file rewritten with auto_vacuum = INCREMENTAL");
+        }
+        return record(new StepResult("enable_incremental_vacuum", System.nanoTime() - start, totals.held, totals.maxHold, totals.detail()));
+    }
+
+    /** ANALYZE when the database has no statistics yet, otherwise PRAGMA optimize (per shard file). */
+    public static StepResult optimize() throws SQLException {
+        long start = System.nanoTime();
+        StepTotals totals = new StepTotals();
+        for (int shard = 0; shard < config.getShardCount(); shard++) {
+            String what;
+            long t0 = System.nanoTime();
+            try (Connection conn = config.getWriteConnection(shard); Statement st = conn.createStatement()) {
+                boolean analyzed;
+                try (ResultSet rs = st.executeQuery("SELECT 1 FROM sqlite_master WHERE name = 'sqlite_stat1'")) {
+                    analyzed = rs.next();
+                }
+                what = analyzed ? "PRAGMA optimize" : "ANALYZE";
+                st.execute(what);
+            }
+            totals.hold(System.nanoTime() - t0);
+            totals.add(shard, what);
+        }
+        return record(new StepResult("optimize", System.nanoTime() - start, totals.held, totals.maxHold, totals.detail()));
+    }
+
+    // --- Writer hold times and per-shard outcomes of one step ---
+    private static final class StepTotals {
+        long held;
+        long maxHold;
+        final List<String> details = new ArrayList<>();
+
+        void hold(long nanos) {
+            held += nanos;
+            maxHold = Math.max(maxHold, nanos);
+        }
+
+        void add(int shard, String detail) {
+            details.add(config.getShardCount() > 1 ? "shard " + shard + ": " + detail : detail);
+        }
+
+        String detail() {
+            return String.join("; ", details);
+        }
+    }
+
+    /** Backup (when {@code backupDir} is set), then incremental vacuum, then optimize. */
+    public static List<StepResult> runAll(Path backupDir, int keep) throws SQLException, IOException {
+        List<StepResult> steps = new ArrayList<>();
+        if (backupDir != null) {
+            steps.add(backup(backupDir));
+            prune(backupDir, keep);
+        }
+        steps.add(incrementalVacuum());
+        steps.add(optimize());
+        return steps;
+    }
+
+    // ----------------------------------------------------
+    // --- SCHEDULE ---
+    // ----------------------------------------------------
+
+    /** Runs {@link #runAll} every {@code intervalMinutes} on a daemon thread, first run after one interval. */
+    public static synchronized void start(final Path backupDir, long intervalMinutes, final int keep) {
+        if (scheduler != null) return;
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "4ps-maintenance");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                runAll(backupDir, keep);
+            } catch (SQLException | IOException | RuntimeException e) {
+                record(new StepResult("scheduled run", 0, 0, 0, "failed: " + e.getMessage()));
+                System.err.println("❌ Scheduled maintenance failed: " + e.getMessage());
+            }
+        }, intervalMinutes, intervalMinutes, TimeUnit.MINUTES);
+    }
+
+    public static synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            try {
+                scheduler.awaitTermination(30, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            scheduler = null;
+        }
+    }
+
+    /** The most recent steps (scheduled or not), oldest first. */
+    public static List<StepResult> getHistory() {
+        synchronized (history) {
+            return new ArrayList<>(history);
+        }
+    }
+
+    private static StepResult record(StepResult r) {
+        synchronized (history) {
+            if (history.size() == HISTORY_SIZE) history.removeFirst();
+            history.addLast(r);
+        }
+        return r;
+    }
+
+    // ----------------------------------------------------
+    // --- HELPERS ---
+    // ----------------------------------------------------
+
+    public static Path manifestOf(Path backup) {
+        return backup.resolveSibling(backup.getFileName() + MANIFEST_SUFFIX);
+    }
+
+    private static Path uniqueName(Path dir, String stem) {
+        Path p = dir.resolve(stem + BACKUP_SUFFIX);
+        for (int n = 2; Files.exists(p); n++) {
+            p = dir.resolve(stem + "-" + n + BACKUP_SUFFIX);
+        }
+        return p;
+    }
+
+    // On the writer: an idle pooled reader can report a header value from before another connection's VACUUM.
+    private static int pragmaInt(int shard, String pragma) throws SQLException {
+        try (Connection conn = config.getWriteConnection(shard); Statement st = conn.createStatement()) {
+            return intPragma(st, pragma);
+        }
+    }
+
+    private static int intPragma(Statement st, String pragma) throws SQLException {
+        try (ResultSet rs = st.executeQuery("PRAGMA " + pragma)) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    private static Connection openFile(Path file) throws SQLException {
+        Connection conn = DriverManager.getConnection("jdbc:sqlite:" + file.toAbsolutePath());
+        try (Statement st = conn.createStatement()) {
+            st.execute("PRAGMA query_only = ON");
+        } catch (SQLException e) {
+            conn.close();
+            throw e;
+        }
+        return conn;
+    }
+
+    static String sha256(Path file) throws IOException {
+        MessageDigest md = digest();
+        ByteBuffer buf = ByteBuffer.allocateDirect(COPY_BUFFER_BYTES);
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (ch.read(buf) > 0) {
+                buf.flip();
+                md.update(buf);
+                buf.clear();
+            }
+        }
+        return Hex.encode(md.digest());
+    }
+
+    private static MessageDigest digest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    // --- 64-bit mix (SplitMix64 finalizer) for the per-row hashes ---
+    private static long mix(long h) {
+        h = (h ^ (h >>> 30)) * 0xbf58476d1ce4e5b9L;
+        h = (h ^ (h >>> 27)) * 0x94d049bb133111ebL;
+        return h ^ (h >>> 31);
+    }
+
+    // --- What a backup's manifest records ---
+    private static final class Manifest {
+        String file;
+        String sha256;
+        long bytes;
+        int tables;
+        long rows;
+        String content;
+
+        // Content checksum: per table (by name) its row count and the sum of its row hashes, so row order does
+        // not matter (VACUUM may renumber rowids); the lines are then hashed with SHA-256.
+        static Manifest ofConnection(Connection conn) throws SQLException {
+            Manifest m = new Manifest();
+            List<String> names = new ArrayList<>();
+            try (Statement st = conn.createStatement();
+                 ResultSet rs = st.executeQuery("SELECT name FROM sqlite_master WHERE type = 'table' AND name NOT LIKE 'sqlite_%' ORDER BY name")) {
+                while (rs.next()) names.add(rs.getString(1));
+            }
+            MessageDigest md = digest();
+            for (String table : names) {
+                long count = 0;
+                long sum = 0;
+                try (Statement st = conn.createStatement(); ResultSet rs = st.executeQuery("SELECT * FROM \"" + table + "\"")) {
+                    int cols = rs.getMetaData().getColumnCount();
+                    while (rs.next()) {
+                        long h = 0x9E3779B97F4A7C15L;
+                        for (int c = 1; c <= cols; c++) {
+                            h = mix(h ^ valueHash(rs.getObject(c)));
+                        }
+                        sum += h;
+                        count++;
+                    }
+                }
+                md.update((table + ":" + count + ":" + Long.toHexString(sum) + "\n").getBytes(StandardCharsets.UTF_8));
+                m.tables++;
+                m.rows += count;
+            }
+            m.content = Hex.encode(md.digest());
+            return m;
+        }
+
+        private static long valueHash(Object v) {
+            if (v == null) return 0x6e756c6cL;
+            if (v instanceof Integer || v instanceof Long) return mix(((Number) v).longValue()) ^ 1;
+            if (v instanceof Number) return mix(Double.doubleToLongBits(((Number) v).doubleValue())) ^ 2;
+            if (v instanceof byte[]) {
+                long h = 3;
+                for (byte b : (byte[]) v) h = h * 31 + b;
+                return mix(h);
+            }
+            long h = 4;
+            String s = v.toString();
+            for (int i = 0; i < s.length(); i++) h = h * 31 + s.charAt(i);
+            return mix(h);
+        }
+
+        static Manifest of(Path file) throws SQLException, IOException {
+            Manifest m;
+            try (Connection conn = openFile(file)) {
+                m = ofConnection(conn);
+            }
+            m.sha256 = sha256(file);
+            m.bytes = Files.size(file);
+            return m;
+        }
+
+        void write(Path path) throws IOException {
+            Properties p = new Properties();
+            p.setProperty("file", file);
+            p.setProperty("sha256", sha256);
+            p.setProperty("bytes", Long.toString(bytes));
+            p.setProperty("tables", Integer.toString(tables));
+            p.setProperty("rows", Long.toString(rows));
+            p.setProperty("content", content);
+            Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+            try (OutputStream out = Files.newOutputStream(temp)) {
+                p.store(out, "4Ps database backup");
+            }
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        static Manifest read(Path path) throws IOException {
+            Properties p = new Properties();
+            try (InputStream in = Files.newInputStream(path)) {
+                p.load(in);
+            }
+            Manifest m = new Manifest();
+            m.file = p.getProperty("file");
+            m.sha256 = p.getProperty("sha256", "");
+            m.content = p.getProperty("content", "");
+            try {
+                m.bytes = Long.parseLong(p.getProperty("bytes", "0"));
+                m.tables = Integer.parseInt(p.getProperty("tables", "0"));
+                m.rows = Long.parseLong(p.getProperty("rows", "0"));
+            } catch (NumberFormatException e) {
+                throw new IOException(path + " is not a valid backup manifest", e);
+            }
+            return m;
+        }
+    }
+
+    // ----------------------------------------------------
+    // --- RESULTS ---
+    // ----------------------------------------------------
+
+    /** One maintenance step: how long it took and how long it kept the writer from everyone else. */
+    public static final class StepResult {
+        private final String step;
+        private final LocalDateTime at = LocalDateTime.now();
+        private final long elapsedNanos;
+        private final long writerHeldNanos;
+        private final long maxWriterHoldNanos;
+        private final String detail;
+
+        StepResult(String step, long elapsedNanos, long writerHeldNanos, long maxWriterHoldNanos, String detail) {
+            this.step = step;
+            this.elapsedNanos = elapsedNanos;
+            this.writerHeldNanos = writerHeldNanos;
+            this.maxWriterHoldNanos = maxWriterHoldNanos;
+            this.detail = detail;
+        }
+
+        public String getStep() { return step; }
+        public LocalDateTime getAt() { return at; }
+        public long getElapsedNanos() { return elapsedNanos; }
+        public long getWriterHeldNanos() { return writerHeldNanos; }
+        public long getMaxWriterHoldNanos() { return maxWriterHoldNanos; }
+        public String getDetail() { return detail; }
+
+        @Override
+        public String toString() {
+            return String.format("%-25s %8.1f ms, writer held %7.1f ms (longest %6.1f ms): %s",
+                    step, elapsedNanos / 1e6, writerHeldNanos / 1e6, maxWriterHoldNanos / 1e6, detail);
+        }
+    }
+
+    public static final class VerifyResult {
+        private final Path file;
+        private final boolean ok;
+        private final String detail;
+
+        VerifyResult(Path file, boolean ok, String detail) {
+            this.file = file;
+            this.ok = ok;
+            this.detail = detail;
+        }
+
+        public Path getFile() { return file; }
+        public boolean isOk() { return ok; }
+        public String getDetail() { return detail; }
+
+        @Override
+        public String toString() {
+            return (ok ? "Verified " : "Verification failed for ") + file + ": " + detail;
+        }
+    }
+}
@@ -0,0 +1,301 @@
+package config;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Process-wide metrics for every database operation that goes through config.
+ *
+ * Keeps a latency histogram, row count and error count per SQL statement,
+ * error totals by category, pool lock-wait times and connection lifecycle
+ * counters. Published over JMX as {@code fourps:type=DbMetrics} and, when
+ * {@code -D4ps.metrics.file=...} is set, dumped to that file periodically.
+ */
+public final class DbMetrics implements DbMetricsMXBean {
+
+    /** Error categories addRecord already distinguishes in its console messages. */
+    public enum ErrorCategory { BUSY, UNIQUE, FOREIGN_KEY, OTHER }
+
+    private static final int MAX_TRACKED_STATEMENTS = 512;
+    private static final String OVERFLOW_KEY = "(other statements)";
+    private static final DbMetrics INSTANCE = new DbMetrics();
+
+    private final ConcurrentHashMap<String, StatementStats> statements = new ConcurrentHashMap<>();
+    private final EnumMap<ErrorCategory, AtomicLong> errors = new EnumMap<>(ErrorCategory.class);
+    private final LatencyHistogram readerWait = new LatencyHistogram();
+    private final LatencyHistogram writerWait = new LatencyHistogram();
+    private final AtomicLong connectionsOpened = new AtomicLong();
+    private final AtomicLong connectionsClosed = new AtomicLong();
+
+    private ScheduledExecutorService dumper;
+
+    private DbMetrics() {
+        for (ErrorCategory c : ErrorCategory.values()) {
+            errors.put(c, new AtomicLong());
+        }
+    }
+
+    public static DbMetrics get() {
+        return INSTANCE;
+    }
+
+    public static ErrorCategory classify(SQLException e) {
+        String msg = e.getMessage() == null ? "" : e.getMessage();
+        if (msg.contains("SQLITE_BUSY") || msg.contains("SQLITE_LOCKED") || msg.contains("database is locked")) {
+            return ErrorCategory.BUSY;
+        } else if (msg.contains("UNIQUE constraint failed")) {
+            return ErrorCategory.UNIQUE;
+        } else if (msg.contains("FOREIGN KEY constraint failed")) {
+            return ErrorCategory.FOREIGN_KEY;
+        }
+        return ErrorCategory.OTHER;
+    }
+
+    // ----------------------------------------------------
+    // --- RECORDING ---
+    // ----------------------------------------------------
+
+    public void recordStatement(String sql, long elapsedNanos, long rows) {
+        StatementStats s = stats(sql);
+        s.latency.record(elapsedNanos);
+        s.rows.addAndGet(rows);
+    }
+
+    public ErrorCategory recordError(String sql, long elapsedNanos, SQLException e) {
+        ErrorCategory category = classify(e);
+        StatementStats s = stats(sql);
+        s.latency.record(elapsedNanos);
+        s.errors.incrementAndGet();
+        errors.get(category).incrementAndGet();
+        return category;
+    }
+
+    public void recordRows(String sql, long rows) {
+        stats(sql).rows.addAndGet(rows);
+    }
+
+    public void recordLockWait(boolean writer, long waitNanos) {
+        (writer ? writerWait : readerWait).record(waitNanos);
+    }
+
+    public void connectionOpened() {
+        connectionsOpened.incrementAndGet();
+    }
+
+    public void connectionClosed() {
+        connectionsClosed.incrementAndGet();
+    }
+
+    private StatementStats stats(String sql) {
+        StatementStats s = statements.get(sql);
+        if (s == null) {
+            // Ad-hoc SQL must not grow the map without bound.
+            String key = statements.size() < MAX_TRACKED_STATEMENTS ? sql : OVERFLOW_KEY;
+            s = statements.computeIfAbsent(key, k -> new StatementStats());
+        }
+        return s;
+    }
+
+    public LatencyHistogram getLatency(String sql) {
+        StatementStats s = statements.get(sql);
+        return s == null ? null : s.latency;
+    }
+
+    // ----------------------------------------------------
+    // --- JMX VIEW ---
+    // ----------------------------------------------------
+
+    @Override
+    public Map<String, Long> getErrorCounts() {
+        Map<String, Long> out = new LinkedHashMap<>();
+        for (Map.Entry<ErrorCategory, AtomicLong> e : errors.entrySet()) {
+            out.put(e.getKey().name(), e.getValue().get());
+        }
+        return out;
+    }
+
+    @Override
+    public long getStatementExecutions() {
+        long total = 0;
+        for (StatementStats s : statements.values()) {
+            total += s.latency.getCount();
+        }
+        return total;
+    }
+
+    @Override
+    public double getReaderLockWaitP99Millis() {
+        return readerWait.getValueAtPercentile(99) / 1_000_000.0;
+    }
+
+    @Override
+    public double getWriterLockWaitP99Millis() {
+        return writerWait.getValueAtPercentile(99) / 1_000_000.0;
+    }
+
+    @Override
+    public long getConnectionsOpened() {
+        return connectionsOpened.get();
+    }
+
+    @Override
+    public long getConnectionsClosed() {
+        return connectionsClosed.get();
+    }
+
+    @Override
+    public int getOpenCursors() {
+        return OpenCursors.get().count();
+    }
+
+    @Override
+    public int getWriteBehindQueueDepth() {
+        WriteBehindQueue q = config.getWriteBehind();
+        return q == null ? 0 : q.getDepth();
+    }
+
+    @Override
+    public double getWriteBehindCommitP99Millis() {
+        WriteBehindQueue q = config.getWriteBehind();
+        return q == null ? 0.0 : q.getCommitLatency().getValueAtPercentile(99) / 1_000_000.0;
+    }
+
+    @Override
+    public String[] getSlowestStatements() {
+        List<Map.Entry<String, StatementStats>> list = new ArrayList<>(statements.entrySet());
+        list.sort((a, b) -> Long.compare(b.getValue().latency.getValueAtPercentile(99), a.getValue().latency.getValueAtPercentile(99)));
+        int n = Math.min(10, list.size());
+        String[] out = new String[n];
+        for (int i = 0; i < n; i++) {
+            out[i] = formatLine(list.get(i).getKey(), list.get(i).getValue());
+        }
+        return out;
+    }
+
+    @Override
+    public String report() {
+        StringBuilder sb = new StringBuilder(4096);
+        sb.append("=== 4Ps DB metrics @ ").append(LocalDateTime.now()).append(" ===\n");
+        for (int shard = 0; shard < config.getShardCount(); shard++) {
+            ConnectionPool.Stats pool = config.getPoolStats(shard);
+            if (pool != null) {
+                sb.append(config.getShardCount() > 1 ? "pool[shard " + shard + "]: " : "pool: ").append(pool).append('\n');
+            }
+        }
+        sb.append(String.format("connections: opened=%d closed=%d%n", connectionsOpened.get(), connectionsClosed.get()));
+        sb.append(String.format("cursors: open=%d (of %d handed out)%n", OpenCursors.get().count(), OpenCursors.get().totalOpened()));
+        sb.append(String.format("lock wait p50/p99/max ms: reader %.3f/%.3f/%.3f writer %.3f/%.3f/%.3f%n",
+                readerWait.getValueAtPercentile(50) / 1e6, readerWait.getValueAtPercentile(99) / 1e6, readerWait.getMax() / 1e6,
+                writerWait.getValueAtPercentile(50) / 1e6, writerWait.getValueAtPercentile(99) / 1e6, writerWait.getMax() / 1e6));
+        sb.append("errors: ").append(getErrorCounts()).append('\n');
+        sb.append(config.getCacheStats()).append('\n');
+        String writeBehind = config.getWriteBehindStats();
+        if (writeBehind != null) {
+            sb.append(writeBehind).append('\n');
+        }
+        String journal = config.getJournalStats();
+        if (journal != null) {
+            sb.append(journal).append('\n');
+        }
+        sb.append("statements (by p99):\n");
+        for (String line : getSlowestStatements()) {
+            sb.append("  ").append(line).append('\n');
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public void reset() {
+        statements.clear();
+        for (AtomicLong c : errors.values()) c.set(0);
+        readerWait.reset();
+        writerWait.reset();
+    }
+
+    private static String formatLine(String sql, StatementStats s) {
+        LatencyHistogram h = s.latency;
+        return String.format("n=%d p50=%.3fms p99=%.3fms max=%.3fms rows=%d errors=%d  %s",
+                h.getCount(), h.getValueAtPercentile(50) / 1e6, h.getValueAtPercentile(99) / 1e6, h.getMax() / 1e6,
+                s.rows.get(), s.errors.get(), sql);
+    }
+
+    // ----------------------------------------------------
+    // --- PUBLISHING ---
+    // ----------------------------------------------------
+
+    /** Registers the JMX bean and starts the periodic file dump if configured. Safe to call more than once. */
+    public synchronized void start() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName("fourps:type=DbMetrics");
+            if (!server.isRegistered(name)) {
+                server.registerMBean(this, name);
+            }
+        } catch (JMException e) {
+            System.err.println("⚠️ Could not register DB metrics with JMX: " + e.getMessage());
+        }
+
+        String file = System.getProperty("4ps.metrics.file");
+        if (file != null && dumper == null) {
+            long interval = Long.getLong("4ps.metrics.intervalSec", 60L);
+            final Path target = Paths.get(file);
+            dumper = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "4ps-metrics-dump");
+                t.setDaemon(true);
+                return t;
+            });
+            dumper.scheduleAtFixedRate(() -> dumpTo(target), interval, interval, TimeUnit.SECONDS);
+        }
+    }
+
+    public synchronized void stop() {
+        if (dumper != null) {
+            dumper.shutdownNow();
+            String file = System.getProperty("4ps.metrics.file");
+            if (file != null) {
+                dumpTo(Paths.get(file));
+            }
+            dumper = null;
+        }
+    }
+
+    // --- Writes to a temp file and renames, so readers never see a half-written report ---
+    public void dumpTo(Path target) {
+        try {
+            Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+            try (Writer w = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+                w.write(report());
+            }
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            System.err.println("⚠️ Could not write DB metrics to " + target + ": " + e.getMessage());
+        }
+    }
+
+    private static class StatementStats {
+        final LatencyHistogram latency = new LatencyHistogram();
+        final AtomicLong rows = new AtomicLong();
+        final AtomicLong errors = new AtomicLong();
+    }
+}
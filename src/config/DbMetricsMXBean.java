@@ -0,0 +1,31 @@
+package config;
+
+import java.util.Map;
+
+/** JMX view of {@link DbMetrics}. */
+public interface DbMetricsMXBean {
+
+    long getStatementExecutions();
+
+    Map<String, Long> getErrorCounts();
+
+    double getReaderLockWaitP99Millis();
+
+    double getWriterLockWaitP99Millis();
+
+    long getConnectionsOpened();
+
+    long getConnectionsClosed();
+
+    int getOpenCursors();
+
+    int getWriteBehindQueueDepth();
+
+    double getWriteBehindCommitP99Millis();
+
+    String[] getSlowestStatements();
+
+    String report();
+
+    void reset();
+}
@@ -0,0 +1,79 @@
+package config;
+
+/**
+ * Table-driven hex codec. The array-to-array methods allocate nothing, so hot
+ * paths can encode into and decode from buffers they already own.
+ */
+public final class Hex {
+
+    private static final char[] DIGITS = "0123456789abcdef".toCharArray();
+    private static final byte[] VALUES = new byte[128];
+
+    static {
+        java.util.Arrays.fill(VALUES, (byte) -1);
+        for (int i = 0; i < 10; i++) VALUES['0' + i] = (byte) i;
+        for (int i = 0; i < 6; i++) {
+            VALUES['a' + i] = (byte) (10 + i);
+            VALUES['A' + i] = (byte) (10 + i);
+        }
+    }
+
+    private Hex() {
+    }
+
+    /** Writes 2 * src.length lowercase hex digits into dst starting at offset. */
+    public static void encode(byte[] src, char[] dst, int offset) {
+        for (int i = 0; i < src.length; i++) {
+            int b = src[i] & 0xff;
+            dst[offset + 2 * i] = DIGITS[b >>> 4];
+            dst[offset + 2 * i + 1] = DIGITS[b & 0x0f];
+        }
+    }
+
+    public static String encode(byte[] src) {
+        char[] out = new char[src.length * 2];
+        encode(src, out, 0);
+        return new String(out);
+    }
+
+    /**
+     * Decodes 2 * dst.length hex digits of {@code src}, starting at offset, into dst.
+     * Returns false (leaving dst partly written) if a character is not a hex digit.
+     */
+    public static boolean decode(CharSequence src, int offset, byte[] dst) {
+        if (src.length() - offset < dst.length * 2) {
+            return false;
+        }
+        for (int i = 0; i < dst.length; i++) {
+            int hi = digit(src.charAt(offset + 2 * i));
+            int lo = digit(src.charAt(offset + 2 * i + 1));
+            if ((hi | lo) < 0) {
+                return false;
+            }
+            dst[i] = (byte) ((hi << 4) | lo);
+        }
+        return true;
+    }
+
+    public static byte[] decode(CharSequence src) {
+        if (src.length() % 2 != 0) {
+            throw new IllegalArgumentException("Hex string has odd length");
+        }
+        byte[] out = new byte[src.length() / 2];
+        if (!decode(src, 0, out)) {
+            throw new IllegalArgumentException("Not a hex string");
+        }
+        return out;
+    }
+
+    public static boolean isHex(CharSequence s) {
+        for (int i = 0; i < s.length(); i++) {
+            if (digit(s.charAt(i)) < 0) return false;
+        }
+        return true;
+    }
+
+    private static int digit(char c) {
+        return c < 128 ? VALUES[c] : -1;
+    }
+}
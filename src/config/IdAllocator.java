@@ -0,0 +1,174 @@
+package config;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * Hands out primary keys from blocks reserved per table.
+ *
+ * Each (table, column) pair owns a block of IDs kept in an in-memory atomic
+ * counter, so the common case costs no query at all. When a block runs out the
+ * next one is reserved in the {@code id_sequence} table inside a write
+ * transaction; because SQLite serialises writers, two processes sharing the
+ * same database file can never receive overlapping blocks. IDs left unused in
+ * a block when the process exits are simply skipped.
+ */
+public class IdAllocator {
+
+    private static final Pattern IDENTIFIER = Pattern.compile("[A-Za-z_][A-Za-z0-9_]*");
+
+    private final ConnectionPool pool;
+    private final List<ConnectionPool> shards;
+    private final int blockSize;
+    private final ConcurrentHashMap<String, Block> blocks = new ConcurrentHashMap<>();
+    private final AtomicLong reservations = new AtomicLong();
+
+    public IdAllocator(ConnectionPool pool, int blockSize) {
+        this(pool, Collections.singletonList(pool), blockSize);
+    }
+
+    /**
+     * With the database sharded, id_sequence lives in {@code pool} (shard 0)
+     * and IDs are unique across every shard; the safety check against rows
+     * written behind the allocator's back looks at all of {@code shards}.
+     */
+    public IdAllocator(ConnectionPool pool, List<ConnectionPool> shards, int blockSize) {
+        if (blockSize < 1) {
+            throw new IllegalArgumentException("blockSize must be at least 1");
+        }
+        this.pool = pool;
+        this.shards = shards;
+        this.blockSize = blockSize;
+    }
+
+    public void init() throws SQLException {
+        try (Connection conn = pool.acquireWriter();
+             Statement st = conn.createStatement()) {
+            st.execute("CREATE TABLE IF NOT EXISTS id_sequence ("
+                    + "seq_name TEXT PRIMARY KEY, "
+                    + "next_id INTEGER NOT NULL)");
+        }
+    }
+
+    /** Returns the next free ID for {@code table.idColumn}. */
+    public long next(String table, String idColumn) throws SQLException {
+        String key = key(table, idColumn);
+        while (true) {
+            Block block = blocks.get(key);
+            if (block != null) {
+                long id = block.next.getAndIncrement();
+                if (id < block.limit) {
+                    return id;
+                }
+            }
+            synchronized (this) {
+                // Re-check under the lock: another thread may have refilled already.
+                Block current = blocks.get(key);
+                if (current == block) {
+                    long start = reserve(key, table, idColumn, blockSize);
+                    blocks.put(key, new Block(start, start + blockSize));
+                }
+            }
+        }
+    }
+
+    /**
+     * Reserves {@code count} consecutive IDs directly in the sequence table and
+     * returns the first one. Used by bulk loaders that need a contiguous range.
+     */
+    public synchronized long reserveRange(String table, String idColumn, int count) throws SQLException {
+        if (count < 1) {
+            throw new IllegalArgumentException("count must be at least 1");
+        }
+        return reserve(key(table, idColumn), table, idColumn, count);
+    }
+
+    public long getReservations() {
+        return reservations.get();
+    }
+
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    // --- Reserves [start, start + count) in id_sequence; one short write transaction per block ---
+    private long reserve(String key, String table, String idColumn, int count) throws SQLException {
+        try (Connection conn = pool.acquireWriter()) {
+            if (!conn.getAutoCommit()) {
+                // Committing here would also commit the caller's half-finished transaction.
+                throw new SQLException("Cannot reserve IDs for " + table + " inside an open transaction");
+            }
+            conn.setAutoCommit(false);
+            try {
+                // The write comes first so this transaction holds the write lock before it reads.
+                try (PreparedStatement ins = conn.prepareStatement(
+                        "INSERT OR IGNORE INTO id_sequence(seq_name, next_id) VALUES (?, 1)")) {
+                    ins.setString(1, key);
+                    ins.executeUpdate();
+                }
+                long seqNext;
+                try (PreparedStatement sel = conn.prepareStatement("SELECT next_id FROM id_sequence WHERE seq_name = ?")) {
+                    sel.setString(1, key);
+                    try (ResultSet rs = sel.executeQuery()) {
+                        seqNext = rs.next() ? rs.getLong(1) : 1L;
+                    }
+                }
+                // Rows written by tools that bypass the allocator must never be handed out again.
+                long tableNext = maxId(conn, table, idColumn) + 1;
+                for (ConnectionPool shard : shards) {
+                    if (shard != pool) {
+                        try (Connection other = shard.acquireReader()) {
+                            tableNext = Math.max(tableNext, maxId(other, table, idColumn) + 1);
+                        }
+                    }
+                }
+                long start = Math.max(seqNext, tableNext);
+                try (PreparedStatement upd = conn.prepareStatement("UPDATE id_sequence SET next_id = ? WHERE seq_name = ?")) {
+                    upd.setLong(1, start + count);
+                    upd.setString(2, key);
+                    upd.executeUpdate();
+                }
+                conn.commit();
+                reservations.incrementAndGet();
+                return start;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+    }
+
+    private static long maxId(Connection conn, String table, String idColumn) throws SQLException {
+        try (PreparedStatement max = conn.prepareStatement("SELECT MAX(" + idColumn + ") FROM " + table);
+             ResultSet rs = max.executeQuery()) {
+            return rs.next() ? rs.getLong(1) : 0L;
+        }
+    }
+
+    private static String key(String table, String idColumn) {
+        if (!IDENTIFIER.matcher(table).matches() || !IDENTIFIER.matcher(idColumn).matches()) {
+            throw new IllegalArgumentException("Invalid table or column name: " + table + "." + idColumn);
+        }
+        return table + "." + idColumn;
+    }
+
+    private static class Block {
+        final AtomicLong next;
+        final long limit;
+
+        Block(long start, long limit) {
+            this.next = new AtomicLong(start);
+            this.limit = limit;
+        }
+    }
+}
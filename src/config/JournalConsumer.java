@@ -0,0 +1,240 @@
+package config;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Reads the {@link ChangeJournal} for one named downstream consumer, resuming
+ * from the offset it last committed, e.g.
+ * <pre>
+ *   try (JournalConsumer feed = JournalConsumer.open(journalDir, "dswd-feed")) {
+ *       List&lt;ChangeJournal.Change&gt; changes = feed.poll(1000);
+ *       send(changes);
+ *       feed.commit();
+ *   }
+ * </pre>
+ *
+ * The offset is the sequence number of the next change to read; it lives in
+ * {@code consumers/<name>.offset} inside the journal directory and is replaced
+ * atomically on commit. A consumer without a stored offset starts at the
+ * oldest change still retained. Retention never deletes a segment a
+ * registered consumer has not read past, so a consumer that is retired should
+ * have its offset file removed. Reading works on a live journal: poll returns
+ * what has been written so far and picks up later changes on the next call.
+ */
+public final class JournalConsumer implements Closeable {
+
+    static final String CONSUMERS_DIR = "consumers";
+    private static final String OFFSET_SUFFIX = ".offset";
+    private static final Pattern NAME = Pattern.compile("[A-Za-z0-9_.-]{1,64}");
+
+    private final Path dir;
+    private final String name;
+    private long offset;            // next sequence number to hand out
+    private long committed;
+    private boolean stored;         // an offset file exists (the consumer holds back retention)
+
+    // --- Position in the current segment ---
+    private FileChannel channel;
+    private Path segment;
+    private long position;
+    private final Map<Integer, ChangeJournal.Statement> statements = new HashMap<>();
+
+    private JournalConsumer(Path dir, String name, long offset, boolean stored) {
+        this.dir = dir;
+        this.name = name;
+        this.offset = offset;
+        this.committed = offset;
+        this.stored = stored;
+    }
+
+    /** Opens the consumer {@code name} on the journal in {@code dir}, at its stored offset. */
+    public static JournalConsumer open(Path dir, String name) throws IOException {
+        if (!NAME.matcher(name).matches()) {
+            throw new IllegalArgumentException("consumer name must be 1-64 letters, digits, '_', '.' or '-'");
+        }
+        Long stored = readOffset(offsetFile(dir, name));
+        if (stored != null) {
+            return new JournalConsumer(dir, name, stored, true);
+        }
+        List<Path> segments = ChangeJournal.segments(dir);
+        return new JournalConsumer(dir, name, segments.isEmpty() ? 1 : ChangeJournal.firstSeq(segments.get(0)), false);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /** Sequence number of the next change poll returns. */
+    public long getOffset() {
+        return offset;
+    }
+
+    /** Sequence number stored by the last commit (where a restarted consumer resumes). */
+    public long getCommittedOffset() {
+        return committed;
+    }
+
+    /** Returns up to {@code max} changes from the current offset, in sequence order; empty when caught up. */
+    public List<ChangeJournal.Change> poll(int max) throws IOException {
+        List<ChangeJournal.Change> out = new ArrayList<>(Math.min(max, 1024));
+        while (out.size() < max) {
+            if (channel == null && !openSegment()) {
+                break;
+            }
+            ByteBuffer payload = ChangeJournal.readFrame(channel, position);
+            if (payload == null) {
+                Path next = segmentAfter(segment);
+                if (next == null) break;            // caught up with the writer
+                // The writer finished this segment before starting the next; read once more, then move on.
+                payload = ChangeJournal.readFrame(channel, position);
+                if (payload == null) {
+                    if (channel.size() > position) {
+                        System.err.println("⚠️ Change journal: skipping " + (channel.size() - position)
+                                + " unreadable bytes at the end of " + segment);
+                    }
+                    closeSegment();
+                    if (offset < ChangeJournal.firstSeq(next)) {
+                        throw new IOException("changes " + offset + " to " + (ChangeJournal.firstSeq(next) - 1)
+                                + " are missing from the journal");
+                    }
+                    continue;
+                }
+            }
+            position += ChangeJournal.FRAME_HEADER_BYTES + payload.capacity();
+            if (payload.get(0) == ChangeJournal.DEFINE) {
+                ChangeJournal.Statement st = ChangeJournal.decodeDefinition(payload);
+                statements.put(st.id, st);
+                continue;
+            }
+            ChangeJournal.Change change = ChangeJournal.decodeChange(payload, statements);
+            if (change.getSequence() >= offset) {
+                out.add(change);
+                offset = change.getSequence() + 1;
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Stores the current offset, so a restarted consumer continues after the
+     * changes polled so far. The first commit registers the consumer.
+     */
+    public void commit() throws IOException {
+        if (offset == committed && stored) return;
+        Path file = offsetFile(dir, name);
+        Files.createDirectories(file.getParent());
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer b = ByteBuffer.wrap(Long.toString(offset).getBytes(StandardCharsets.US_ASCII));
+            while (b.hasRemaining()) {
+                ch.write(b);
+            }
+            ch.force(true);
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        committed = offset;
+        stored = true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        closeSegment();
+    }
+
+    // ----------------------------------------------------
+    // --- SEGMENTS ---
+    // ----------------------------------------------------
+
+    // --- Opens the segment holding 'offset' (the last one starting at or before it) ---
+    private boolean openSegment() throws IOException {
+        List<Path> segments = ChangeJournal.segments(dir);
+        if (segments.isEmpty()) return false;
+        if (offset < ChangeJournal.firstSeq(segments.get(0))) {
+            throw new IOException("change " + offset + " is no longer retained; the oldest is "
+                    + ChangeJournal.firstSeq(segments.get(0)));
+        }
+        Path target = segments.get(0);
+        for (Path s : segments) {
+            if (ChangeJournal.firstSeq(s) <= offset) target = s;
+        }
+        FileChannel ch = FileChannel.open(target, StandardOpenOption.READ);
+        try {
+            if (ch.size() < ChangeJournal.HEADER_BYTES) {
+                ch.close();
+                return false;           // just created; the header is not written yet
+            }
+            ChangeJournal.readHeader(ch);
+        } catch (IOException e) {
+            ch.close();
+            throw new IOException(target + ": " + e.getMessage(), e);
+        }
+        channel = ch;
+        segment = target;
+        position = ChangeJournal.HEADER_BYTES;
+        statements.clear();
+        return true;
+    }
+
+    private Path segmentAfter(Path current) throws IOException {
+        long first = ChangeJournal.firstSeq(current);
+        for (Path s : ChangeJournal.segments(dir)) {
+            if (ChangeJournal.firstSeq(s) > first) return s;
+        }
+        return null;
+    }
+
+    private void closeSegment() throws IOException {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+            segment = null;
+        }
+    }
+
+    // ----------------------------------------------------
+    // --- OFFSETS ---
+    // ----------------------------------------------------
+
+    private static Path offsetFile(Path dir, String name) {
+        return dir.resolve(CONSUMERS_DIR).resolve(name + OFFSET_SUFFIX);
+    }
+
+    private static Long readOffset(Path file) throws IOException {
+        if (!Files.exists(file)) return null;
+        String text = new String(Files.readAllBytes(file), StandardCharsets.US_ASCII).trim();
+        try {
+            return Long.parseLong(text);
+        } catch (NumberFormatException e) {
+            throw new IOException(file + " does not hold an offset: '" + text + "'");
+        }
+    }
+
+    /** The lowest offset stored by any consumer of the journal in {@code dir}, or Long.MAX_VALUE if there is none. */
+    static long lowestOffset(Path dir) throws IOException {
+        Path consumers = dir.resolve(CONSUMERS_DIR);
+        long lowest = Long.MAX_VALUE;
+        if (!Files.isDirectory(consumers)) return lowest;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(consumers, "*" + OFFSET_SUFFIX)) {
+            for (Path f : files) {
+                Long offset = readOffset(f);
+                if (offset != null) lowest = Math.min(lowest, offset);
+            }
+        }
+        return lowest;
+    }
+}
@@ -0,0 +1,155 @@
+package config;
+
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Types;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * A forward-only, read-only ResultSet over rows already in memory: the merged
+ * result of a query sent to every shard, or a report combined from per-shard
+ * partials. Supports what the application reads from a ResultSet (next, the
+ * getters by index or label, wasNull, findColumn and the column count and
+ * labels of the metadata); anything else throws
+ * SQLFeatureNotSupportedException.
+ */
+public final class MemoryResultSet {
+
+    private MemoryResultSet() {
+    }
+
+    /** A ResultSet over {@code rows}; each row holds one value per label, as JDBC getObject would return it. */
+    public static ResultSet of(final String[] labels, final List<Object[]> rows) {
+        final Map<String, Integer> index = new HashMap<>();
+        for (int i = labels.length - 1; i >= 0; i--) {
+            index.put(labels[i].toLowerCase(Locale.ROOT), i + 1);
+        }
+        final ResultSetMetaData meta = metaData(labels, rows);
+        final int[] pos = { -1 };
+        final boolean[] state = new boolean[2];     // [0] closed, [1] last value read was NULL
+        return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(), new Class<?>[] { ResultSet.class },
+                (proxy, method, args) -> {
+                    String name = method.getName();
+                    switch (name) {
+                        case "close": state[0] = true; return null;
+                        case "isClosed": return state[0];
+                        case "equals": return proxy == args[0];
+                        case "hashCode": return System.identityHashCode(proxy);
+                        case "toString": return "MemoryResultSet[" + rows.size() + " rows]";
+                        default: break;
+                    }
+                    if (state[0]) {
+                        throw new SQLException("ResultSet is closed");
+                    }
+                    switch (name) {
+                        case "next":
+                            if (pos[0] < rows.size()) pos[0]++;
+                            return pos[0] < rows.size();
+                        case "getMetaData": return meta;
+                        case "wasNull": return state[1];
+                        case "findColumn": return column(index, args[0]);
+                        case "getRow": return pos[0] >= 0 && pos[0] < rows.size() ? pos[0] + 1 : 0;
+                        case "isBeforeFirst": return pos[0] < 0 && !rows.isEmpty();
+                        case "isAfterLast": return pos[0] >= rows.size() && !rows.isEmpty();
+                        case "getType": return ResultSet.TYPE_FORWARD_ONLY;
+                        case "getConcurrency": return ResultSet.CONCUR_READ_ONLY;
+                        case "getFetchSize": return 0;
+                        case "setFetchSize":
+                        case "clearWarnings": return null;
+                        case "getWarnings":
+                        case "getStatement": return null;
+                        case "isWrapperFor": return false;
+                        default: break;
+                    }
+                    if (name.startsWith("get") && args != null && args.length == 1
+                            && (args[0] instanceof Integer || args[0] instanceof String)) {
+                        if (pos[0] < 0 || pos[0] >= rows.size()) {
+                            throw new SQLException("No current row");
+                        }
+                        int col = args[0] instanceof Integer ? (Integer) args[0] : column(index, args[0]);
+                        if (col < 1 || col > labels.length) {
+                            throw new SQLException("Column index out of range: " + col);
+                        }
+                        Object v = rows.get(pos[0])[col - 1];
+                        state[1] = v == null;
+                        return convert(v, method.getReturnType(), name);
+                    }
+                    throw new SQLFeatureNotSupportedException("MemoryResultSet does not support " + name);
+                });
+    }
+
+    private static int column(Map<String, Integer> index, Object label) throws SQLException {
+        Integer i = index.get(String.valueOf(label).toLowerCase(Locale.ROOT));
+        if (i == null) {
+            throw new SQLException("No such column: " + label);
+        }
+        return i;
+    }
+
+    private static Object convert(Object v, Class<?> type, String getter) throws SQLException {
+        if (type == Object.class) return v;
+        if (type == String.class) return v == null ? null : v instanceof byte[] ? new String((byte[]) v) : v.toString();
+        if (type == byte[].class) return v == null ? null : v instanceof byte[] ? v : v.toString().getBytes();
+        if (type == boolean.class) return v != null && number(v, getter).doubleValue() != 0;
+        if (type == int.class) return v == null ? 0 : number(v, getter).intValue();
+        if (type == long.class) return v == null ? 0L : number(v, getter).longValue();
+        if (type == double.class) return v == null ? 0.0 : number(v, getter).doubleValue();
+        if (type == float.class) return v == null ? 0f : number(v, getter).floatValue();
+        if (type == short.class) return v == null ? (short) 0 : number(v, getter).shortValue();
+        if (type == byte.class) return v == null ? (byte) 0 : number(v, getter).byteValue();
+        throw new SQLFeatureNotSupportedException("MemoryResultSet does not support " + getter);
+    }
+
+    private static Number number(Object v, String getter) throws SQLException {
+        if (v instanceof Number) return (Number) v;
+        try {
+            return Double.valueOf(v.toString().trim());
+        } catch (NumberFormatException e) {
+            throw new SQLException(getter + ": '" + v + "' is not a number");
+        }
+    }
+
+    private static ResultSetMetaData metaData(final String[] labels, final List<Object[]> rows) {
+        return (ResultSetMetaData) Proxy.newProxyInstance(ResultSetMetaData.class.getClassLoader(),
+                new Class<?>[] { ResultSetMetaData.class },
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getColumnCount": return labels.length;
+                        case "getColumnLabel":
+                        case "getColumnName": return labels[(Integer) args[0] - 1];
+                        case "getColumnType": return sqlType(firstValue(rows, (Integer) args[0] - 1));
+                        case "getColumnClassName": {
+                            Object v = firstValue(rows, (Integer) args[0] - 1);
+                            return (v == null ? Object.class : v.getClass()).getName();
+                        }
+                        case "isNullable": return ResultSetMetaData.columnNullableUnknown;
+                        case "equals": return proxy == args[0];
+                        case "hashCode": return System.identityHashCode(proxy);
+                        case "toString": return "MemoryResultSet.MetaData" + Arrays.toString(labels);
+                        default:
+                            throw new SQLFeatureNotSupportedException("MemoryResultSet metadata does not support " + method.getName());
+                    }
+                });
+    }
+
+    private static Object firstValue(List<Object[]> rows, int col) {
+        for (Object[] row : rows) {
+            if (row[col] != null) return row[col];
+        }
+        return null;
+    }
+
+    private static int sqlType(Object v) {
+        if (v instanceof Integer || v instanceof Long) return Types.INTEGER;
+        if (v instanceof Number) return Types.REAL;
+        if (v instanceof byte[]) return Types.BLOB;
+        return v == null ? Types.NULL : Types.VARCHAR;
+    }
+}
@@ -0,0 +1,84 @@
+package config;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Every ResultSet handed out by config (getRecords, stream) that has not
+ * been closed yet. Each one pins a statement and a pooled connection, and
+ * keeps its read transaction open; a leaked one holds its connection until
+ * the process ends, and the WAL cannot be checkpointed past its snapshot.
+ *
+ * With {@code -D4ps.db.traceCursors=true} the opening stack trace is kept,
+ * so {@link #describe()} shows where each leak came from.
+ */
+final class OpenCursors {
+
+    private static final boolean TRACE = Boolean.getBoolean("4ps.db.traceCursors");
+    private static final OpenCursors INSTANCE = new OpenCursors();
+
+    private final ConcurrentHashMap<Long, Site> open = new ConcurrentHashMap<>();
+    private final AtomicLong nextId = new AtomicLong();
+    private final AtomicLong opened = new AtomicLong();
+
+    private OpenCursors() {
+    }
+
+    static OpenCursors get() {
+        return INSTANCE;
+    }
+
+    long opened(String sql) {
+        long id = nextId.incrementAndGet();
+        open.put(id, new Site(sql, TRACE ? new Throwable("cursor opened here") : null));
+        opened.incrementAndGet();
+        return id;
+    }
+
+    void closed(long id) {
+        open.remove(id);
+    }
+
+    int count() {
+        return open.size();
+    }
+
+    long totalOpened() {
+        return opened.get();
+    }
+
+    /** One line per open cursor (plus the opening stack when tracing), oldest first. */
+    List<String> describe() {
+        List<Long> ids = new ArrayList<>(open.keySet());
+        ids.sort(null);
+        List<String> out = new ArrayList<>();
+        for (Long id : ids) {
+            Site s = open.get(id);
+            if (s == null) continue;
+            StringBuilder sb = new StringBuilder();
+            sb.append("#").append(id).append(" opened ").append(s.at).append(" on ").append(s.thread).append(": ").append(s.sql);
+            if (s.trace != null) {
+                for (StackTraceElement e : s.trace.getStackTrace()) {
+                    sb.append("\n      at ").append(e);
+                }
+            }
+            out.add(sb.toString());
+        }
+        return out;
+    }
+
+    private static final class Site {
+        final String sql;
+        final String thread = Thread.currentThread().getName();
+        final LocalDateTime at = LocalDateTime.now();
+        final Throwable trace;
+
+        Site(String sql, Throwable trace) {
+            this.sql = sql;
+            this.trace = trace;
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package config;
+
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded read-through cache of single rows keyed by integer primary key.
+ *
+ * Entries expire after a fixed time-to-live and the least recently used entry
+ * is dropped once the cache is full. Misses are cached too (as "not found"),
+ * so repeated checks for an ID that does not exist stay in memory. Every
+ * invalidation bumps a generation counter; a load that raced with a write is
+ * returned to its caller but not stored.
+ */
+public class RowCache {
+
+    /** Loads one row, or returns null if it does not exist. */
+    public interface Loader {
+        Map<String, Object> load(int id) throws SQLException;
+    }
+
+    private static final Map<String, Object> NOT_FOUND = Collections.emptyMap();
+
+    private final String name;
+    private final int maxEntries;
+    private final long ttlNanos;
+    private final LinkedHashMap<Integer, Entry> entries;
+    private long generation = 0;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long invalidations;
+
+    public RowCache(String name, int maxEntries, long ttlMillis) {
+        this.name = name;
+        this.maxEntries = maxEntries;
+        this.ttlNanos = ttlMillis * 1_000_000L;
+        this.entries = new LinkedHashMap<>(Math.min(maxEntries, 1024), 0.75f, true);
+    }
+
+    public Map<String, Object> get(int id, Loader loader) throws SQLException {
+        long gen;
+        synchronized (this) {
+            Entry e = entries.get(id);
+            if (e != null && System.nanoTime() - e.loadedAt < ttlNanos) {
+                hits++;
+                return e.row == NOT_FOUND ? null : e.row;
+            }
+            if (e != null) {
+                entries.remove(id);
+                evictions++;
+            }
+            misses++;
+            gen = generation;
+        }
+
+        Map<String, Object> row = loader.load(id);
+        Map<String, Object> stored = row == null ? NOT_FOUND : Collections.unmodifiableMap(row);
+
+        synchronized (this) {
+            if (gen == generation) {
+                entries.put(id, new Entry(stored, System.nanoTime()));
+                Iterator<Integer> it = entries.keySet().iterator();
+                while (entries.size() > maxEntries && it.hasNext()) {
+                    it.next();
+                    it.remove();
+                    evictions++;
+                }
+            }
+        }
+        return row == null ? null : stored;
+    }
+
+    public synchronized void invalidate(int id) {
+        generation++;
+        invalidations++;
+        entries.remove(id);
+    }
+
+    public synchronized void invalidateAll() {
+        generation++;
+        invalidations++;
+        entries.clear();
+    }
+
+    public synchronized double getHitRatio() {
+        long total = hits + misses;
+        return total == 0 ? 0.0 : (double) hits / total;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("%s cache: size=%d/%d hits=%d misses=%d hitRatio=%.1f%% evictions=%d invalidations=%d",
+                name, entries.size(), maxEntries, hits, misses, getHitRatio() * 100, evictions, invalidations);
+    }
+
+    private static class Entry {
+        final Map<String, Object> row;
+        final long loadedAt;
+
+        Entry(Map<String, Object> row, long loadedAt) {
+            this.row = row;
+            this.loadedAt = loadedAt;
+        }
+    }
+}
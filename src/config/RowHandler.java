@@ -0,0 +1,15 @@
+package config;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Receives each row of {@link config#queryForEach}. Nothing is allocated per
+ * row unless the handler does it: read the columns by index into whatever
+ * the handler accumulates into.
+ */
+@FunctionalInterface
+public interface RowHandler {
+
+    void handle(ResultSet rs) throws SQLException;
+}
@@ -0,0 +1,35 @@
+package config;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Maps the current row of a query run through {@link config#queryOne},
+ * {@link config#queryList} or {@link config#stream}. The cursor is closed by
+ * config, never by the mapper.
+ *
+ * Read columns by index ({@code rs.getInt(1)}) rather than by label: that
+ * skips a name lookup per column. A mapper used with {@link config#stream}
+ * may fill and return the same object for every row when the consumer does
+ * not keep it; {@link config#queryList} needs a fresh object per row.
+ */
+@FunctionalInterface
+public interface RowMapper<T> {
+
+    T map(ResultSet rs) throws SQLException;
+
+    /** Column label -> value, one new map per row (for display and JSON, not hot paths). */
+    static RowMapper<Map<String, Object>> asMap() {
+        return rs -> {
+            ResultSetMetaData md = rs.getMetaData();
+            Map<String, Object> row = new LinkedHashMap<>();
+            for (int i = 1; i <= md.getColumnCount(); i++) {
+                row.put(md.getColumnLabel(i), rs.getObject(i));
+            }
+            return row;
+        };
+    }
+}
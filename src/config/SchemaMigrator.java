@@ -0,0 +1,411 @@
+package config;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Versioned schema migrations, tracked in {@code PRAGMA user_version}.
+ *
+ * Each entry of {@link #MIGRATIONS} moves the schema up one version inside its
+ * own transaction; a database is only ever migrated forward. Also holds the
+ * startup check that runs {@code EXPLAIN QUERY PLAN} over the application's
+ * SQL and reports statements that would scan a whole table.
+ */
+public final class SchemaMigrator {
+
+    /** One schema step. Runs inside a transaction on the writer connection. */
+    public interface Migration {
+        void apply(Connection conn) throws SQLException;
+    }
+
+    // --- Trigger bodies shared by the v3 insert/update/delete triggers (an UPDATE is "remove OLD, add NEW") ---
+    private static final String PARTICIPATION_ADD_NEW =
+        "    INSERT INTO program_summary(program_id, participants, meetings_attended, amount_received)\n"
+            + "    VALUES (NEW.program_id, 1, IFNULL(NEW.meetings_attended, 0), IFNULL(NEW.amount_received, 0))\n"
+            + "    ON CONFLICT(program_id) DO UPDATE SET participants = participants + 1,\n"
+            + "        meetings_attended = meetings_attended + excluded.meetings_attended,\n"
+            + "        amount_received = amount_received + excluded.amount_received;\n";
+    private static final String PARTICIPATION_SUBTRACT_OLD =
+        "    UPDATE program_summary SET participants = participants - 1,\n"
+            + "        meetings_attended = meetings_attended - IFNULL(OLD.meetings_attended, 0),\n"
+            + "        amount_received = amount_received - IFNULL(OLD.amount_received, 0)\n"
+            + "    WHERE program_id = OLD.program_id;\n";
+    private static final String ATTENDANCE_ADD_NEW =
+        "    INSERT INTO program_summary(program_id, attendance_count) VALUES (NEW.program_id, 1)\n"
+            + "    ON CONFLICT(program_id) DO UPDATE SET attendance_count = attendance_count + 1;\n"
+            + "    INSERT INTO attendance_daily(program_id, meeting_date, attendees) VALUES (NEW.program_id, NEW.meeting_date, 1)\n"
+            + "    ON CONFLICT(program_id, meeting_date) DO UPDATE SET attendees = attendees + 1;\n"
+            + "    INSERT INTO beneficiary_attendance(program_id, user_id, meetings) VALUES (NEW.program_id, NEW.user_id, 1)\n"
+            + "    ON CONFLICT(program_id, user_id) DO UPDATE SET meetings = meetings + 1;\n";
+    private static final String ATTENDANCE_SUBTRACT_OLD =
+        "    UPDATE program_summary SET attendance_count = attendance_count - 1 WHERE program_id = OLD.program_id;\n"
+            + "    UPDATE attendance_daily SET attendees = attendees - 1\n"
+            + "    WHERE program_id = OLD.program_id AND meeting_date = OLD.meeting_date;\n"
+            + "    DELETE FROM attendance_daily\n"
+            + "    WHERE program_id = OLD.program_id AND meeting_date = OLD.meeting_date AND attendees <= 0;\n"
+            + "    UPDATE beneficiary_attendance SET meetings = meetings - 1\n"
+            + "    WHERE program_id = OLD.program_id AND user_id = OLD.user_id;\n"
+            + "    DELETE FROM beneficiary_attendance\n"
+            + "    WHERE program_id = OLD.program_id AND user_id = OLD.user_id AND meetings <= 0;\n";
+
+    private static final String MEETINGS_ADD_NEW =
+        "    UPDATE participation SET meetings_attended = IFNULL(meetings_attended, 0) + 1\n"
+            + "    WHERE user_id = NEW.user_id AND program_id = NEW.program_id;\n";
+    private static final String MEETINGS_SUBTRACT_OLD =
+        "    UPDATE participation SET meetings_attended = IFNULL(meetings_attended, 0) - 1\n"
+            + "    WHERE user_id = OLD.user_id AND program_id = OLD.program_id;\n";
+
+    // --- v6 search index upkeep: an external-content FTS5 row is removed by re-inserting its old values as 'delete' ---
+    private static final String USER_SEARCH_ADD_NEW =
+        "    INSERT INTO user_search(rowid, name, email) VALUES (NEW.user_id, NEW.name, NEW.email);\n";
+    private static final String USER_SEARCH_REMOVE_OLD =
+        "    INSERT INTO user_search(user_search, rowid, name, email) VALUES ('delete', OLD.user_id, OLD.name, OLD.email);\n";
+    private static final String PROGRAM_SEARCH_ADD_NEW =
+        "    INSERT INTO program_search(rowid, program_name, description)\n"
+            + "    VALUES (NEW.program_id, NEW.program_name, NEW.description);\n";
+    private static final String PROGRAM_SEARCH_REMOVE_OLD =
+        "    INSERT INTO program_search(program_search, rowid, program_name, description)\n"
+            + "    VALUES ('delete', OLD.program_id, OLD.program_name, OLD.description);\n";
+
+    private static final List<Migration> MIGRATIONS = new ArrayList<>();
+
+    static {
+        // --- v1: the original 4psDB.db tables, so an empty file becomes a working database ---
+        MIGRATIONS.add(statements(
+            "CREATE TABLE IF NOT EXISTS user (\n"
+                + "    user_id INT PRIMARY KEY,\n"
+                + "    name VARCHAR(255) NOT NULL,\n"
+                + "    gender VARCHAR(10),\n"
+                + "    year_level VARCHAR(50),\n"
+                + "    email VARCHAR(100) UNIQUE NOT NULL,\n"
+                + "    password VARCHAR(64) NOT NULL\n"
+                + ")",
+            "CREATE TABLE IF NOT EXISTS program (\n"
+                + "    program_id INT PRIMARY KEY,\n"
+                + "    program_name VARCHAR(255) NOT NULL,\n"
+                + "    description TEXT\n"
+                + ")",
+            "CREATE TABLE IF NOT EXISTS participation (\n"
+                + "    user_id INT,\n"
+                + "    program_id INT,\n"
+                + "    meetings_attended INT DEFAULT 0,\n"
+                + "    amount_received DECIMAL(10, 2) DEFAULT 0.00,\n"
+                + "    PRIMARY KEY (user_id, program_id),\n"
+                + "    FOREIGN KEY (user_id) REFERENCES user(user_id) ON DELETE CASCADE,\n"
+                + "    FOREIGN KEY (program_id) REFERENCES program(program_id) ON DELETE CASCADE\n"
+                + ")",
+            "CREATE TABLE IF NOT EXISTS attendance (\n"
+                + "    attendance_id INT PRIMARY KEY,\n"
+                + "    user_id INT NOT NULL,\n"
+                + "    program_id INT NOT NULL,\n"
+                + "    meeting_date DATE NOT NULL,\n"
+                + "    UNIQUE (user_id, program_id, meeting_date),\n"
+                + "    FOREIGN KEY (user_id) REFERENCES user(user_id) ON DELETE CASCADE,\n"
+                + "    FOREIGN KEY (program_id) REFERENCES program(program_id) ON DELETE CASCADE\n"
+                + ")"));
+
+        // --- v2: lookup indexes ---
+        MIGRATIONS.add(conn -> {
+            execute(conn,
+                // Covers "participation WHERE user_id = ? AND program_id = ?" without touching the table.
+                "CREATE INDEX IF NOT EXISTS idx_participation_lookup "
+                    + "ON participation(user_id, program_id, meetings_attended, amount_received)",
+                // Participation and attendance filtered by program alone (views, reports).
+                "CREATE INDEX IF NOT EXISTS idx_participation_program ON participation(program_id)",
+                "CREATE INDEX IF NOT EXISTS idx_attendance_program_date ON attendance(program_id, meeting_date)");
+            // The shipped table already declares email UNIQUE; only add an index where that is missing.
+            if (!hasUniqueIndexOn(conn, "user", "email")) {
+                execute(conn, "CREATE UNIQUE INDEX idx_user_email ON user(email)");
+            }
+        });
+
+        // --- v3: report summaries, kept current by triggers and backfilled from the existing rows ---
+        MIGRATIONS.add(statements(
+            "CREATE TABLE program_summary (\n"
+                + "    program_id INTEGER PRIMARY KEY,\n"
+                + "    participants INTEGER NOT NULL DEFAULT 0,\n"
+                + "    meetings_attended INTEGER NOT NULL DEFAULT 0,\n"
+                + "    amount_received REAL NOT NULL DEFAULT 0,\n"
+                + "    attendance_count INTEGER NOT NULL DEFAULT 0\n"
+                + ")",
+            "CREATE TABLE attendance_daily (\n"
+                + "    program_id INTEGER NOT NULL,\n"
+                + "    meeting_date TEXT NOT NULL,\n"
+                + "    attendees INTEGER NOT NULL,\n"
+                + "    PRIMARY KEY (program_id, meeting_date)\n"
+                + ") WITHOUT ROWID",
+            "CREATE TABLE beneficiary_attendance (\n"
+                + "    program_id INTEGER NOT NULL,\n"
+                + "    user_id INTEGER NOT NULL,\n"
+                + "    meetings INTEGER NOT NULL,\n"
+                + "    PRIMARY KEY (program_id, user_id)\n"
+                + ") WITHOUT ROWID",
+            // Widened so the per-program rebuild and backfill read user_id from the index, not the table.
+            "DROP INDEX IF EXISTS idx_attendance_program_date",
+            "CREATE INDEX idx_attendance_program_date_user ON attendance(program_id, meeting_date, user_id)",
+
+            "CREATE TRIGGER trg_participation_summary_ins AFTER INSERT ON participation BEGIN\n"
+                + PARTICIPATION_ADD_NEW
+                + "END",
+            "CREATE TRIGGER trg_participation_summary_del AFTER DELETE ON participation BEGIN\n"
+                + PARTICIPATION_SUBTRACT_OLD
+                + "END",
+            "CREATE TRIGGER trg_participation_summary_upd\n"
+                + "AFTER UPDATE OF program_id, meetings_attended, amount_received ON participation BEGIN\n"
+                + PARTICIPATION_SUBTRACT_OLD
+                + PARTICIPATION_ADD_NEW
+                + "END",
+            "CREATE TRIGGER trg_attendance_summary_ins AFTER INSERT ON attendance BEGIN\n"
+                + ATTENDANCE_ADD_NEW
+                + "END",
+            "CREATE TRIGGER trg_attendance_summary_del AFTER DELETE ON attendance BEGIN\n"
+                + ATTENDANCE_SUBTRACT_OLD
+                + "END",
+            "CREATE TRIGGER trg_attendance_summary_upd\n"
+                + "AFTER UPDATE OF user_id, program_id, meeting_date ON attendance BEGIN\n"
+                + ATTENDANCE_SUBTRACT_OLD
+                + ATTENDANCE_ADD_NEW
+                + "END",
+
+            "INSERT INTO program_summary(program_id, participants, meetings_attended, amount_received)\n"
+                + "SELECT program_id, COUNT(*), TOTAL(meetings_attended), TOTAL(amount_received)\n"
+                + "FROM participation GROUP BY program_id",
+            "INSERT INTO program_summary(program_id, attendance_count)\n"
+                + "SELECT program_id, COUNT(*) FROM attendance WHERE 1 GROUP BY program_id\n"
+                + "ON CONFLICT(program_id) DO UPDATE SET attendance_count = excluded.attendance_count",
+            "INSERT INTO attendance_daily(program_id, meeting_date, attendees)\n"
+                + "SELECT program_id, meeting_date, COUNT(*) FROM attendance GROUP BY program_id, meeting_date",
+            "INSERT INTO beneficiary_attendance(program_id, user_id, meetings)\n"
+                + "SELECT program_id, user_id, COUNT(*) FROM attendance GROUP BY program_id, user_id"));
+
+        // --- v4: participation.meetings_attended derived from attendance instead of typed in ---
+        // Values typed in before are left as they are; drift is reported at startup and only recounted
+        // when the operator runs the reconcile (MeetingsReconciler).
+        MIGRATIONS.add(statements(
+            "CREATE TRIGGER trg_attendance_meetings_ins AFTER INSERT ON attendance BEGIN\n"
+                + MEETINGS_ADD_NEW
+                + "END",
+            "CREATE TRIGGER trg_attendance_meetings_del AFTER DELETE ON attendance BEGIN\n"
+                + MEETINGS_SUBTRACT_OLD
+                + "END",
+            "CREATE TRIGGER trg_attendance_meetings_upd AFTER UPDATE OF user_id, program_id ON attendance BEGIN\n"
+                + MEETINGS_SUBTRACT_OLD
+                + MEETINGS_ADD_NEW
+                + "END",
+            // A participation row created after its attendance starts from the existing count.
+            "CREATE TRIGGER trg_participation_meetings_ins AFTER INSERT ON participation\n"
+                + "WHEN EXISTS (SELECT 1 FROM attendance WHERE user_id = NEW.user_id AND program_id = NEW.program_id) BEGIN\n"
+                + "    UPDATE participation SET meetings_attended =\n"
+                + "        (SELECT COUNT(*) FROM attendance WHERE user_id = NEW.user_id AND program_id = NEW.program_id)\n"
+                + "    WHERE user_id = NEW.user_id AND program_id = NEW.program_id;\n"
+                + "END"));
+
+        // --- v5: payout-cycle compliance runs and their per-participation verdicts ---
+        MIGRATIONS.add(statements(
+            "CREATE TABLE compliance_run (\n"
+                + "    run_id INTEGER PRIMARY KEY,\n"
+                + "    period_from TEXT NOT NULL,\n"
+                + "    period_to TEXT NOT NULL,\n"
+                + "    min_rate REAL NOT NULL,\n"
+                + "    status TEXT NOT NULL,\n"
+                + "    started_at TEXT NOT NULL,\n"
+                + "    finished_at TEXT,\n"
+                + "    evaluated INTEGER NOT NULL DEFAULT 0,\n"
+                + "    eligible INTEGER NOT NULL DEFAULT 0,\n"
+                + "    total_amount REAL NOT NULL DEFAULT 0\n"
+                + ")",
+            "CREATE TABLE compliance_result (\n"
+                + "    run_id INTEGER NOT NULL,\n"
+                + "    user_id INTEGER NOT NULL,\n"
+                + "    program_id INTEGER NOT NULL,\n"
+                + "    meetings_held INTEGER NOT NULL,\n"
+                + "    meetings_attended INTEGER NOT NULL,\n"
+                + "    eligible INTEGER NOT NULL,\n"
+                + "    computed_amount REAL NOT NULL,\n"
+                + "    PRIMARY KEY (run_id, user_id, program_id)\n"
+                + ") WITHOUT ROWID"));
+
+        // --- v6: full-text search indexes over user and program, kept current by triggers ---
+        // External content: the index stores only tokens and reads name/email back from the base table.
+        MIGRATIONS.add(statements(
+            "CREATE VIRTUAL TABLE user_search USING fts5(name, email, content='user', content_rowid='user_id',\n"
+                + "    tokenize=\"unicode61 remove_diacritics 2\", prefix='2 3')",
+            "CREATE VIRTUAL TABLE program_search USING fts5(program_name, description, content='program',\n"
+                + "    content_rowid='program_id', tokenize=\"unicode61 remove_diacritics 2\", prefix='2 3')",
+            // The distinct indexed terms, where typo-tolerant search looks for near spellings.
+            "CREATE VIRTUAL TABLE user_search_vocab USING fts5vocab(user_search, row)",
+            "CREATE VIRTUAL TABLE program_search_vocab USING fts5vocab(program_search, row)",
+            // Names count for more than e-mail addresses and descriptions when ranking.
+            "INSERT INTO user_search(user_search, rank) VALUES ('rank', 'bm25(10.0, 2.0)')",
+            "INSERT INTO program_search(program_search, rank) VALUES ('rank', 'bm25(10.0, 1.0)')",
+
+            "CREATE TRIGGER trg_user_search_ins AFTER INSERT ON user BEGIN\n"
+                + USER_SEARCH_ADD_NEW
+                + "END",
+            "CREATE TRIGGER trg_user_search_del AFTER DELETE ON user BEGIN\n"
+                + USER_SEARCH_REMOVE_OLD
+                + "END",
+            "CREATE TRIGGER trg_user_search_upd AFTER UPDATE OF user_id, name, email ON user BEGIN\n"
+                + USER_SEARCH_REMOVE_OLD
+                + USER_SEARCH_ADD_NEW
+                + "END",
+            "CREATE TRIGGER trg_program_search_ins AFTER INSERT ON program BEGIN\n"
+                + PROGRAM_SEARCH_ADD_NEW
+                + "END",
+            "CREATE TRIGGER trg_program_search_del AFTER DELETE ON program BEGIN\n"
+                + PROGRAM_SEARCH_REMOVE_OLD
+                + "END",
+            "CREATE TRIGGER trg_program_search_upd AFTER UPDATE OF program_id, program_name, description ON program BEGIN\n"
+                + PROGRAM_SEARCH_REMOVE_OLD
+                + PROGRAM_SEARCH_ADD_NEW
+                + "END",
+
+            "INSERT INTO user_search(user_search) VALUES ('rebuild')",
+            "INSERT INTO program_search(program_search) VALUES ('rebuild')"));
+
+        // --- v7: keyset pages filtered by user or program seek straight to the next key instead of sorting the filter's rows ---
+        MIGRATIONS.add(statements(
+            "CREATE INDEX idx_attendance_program_id ON attendance(program_id, attendance_id)",
+            "CREATE INDEX idx_attendance_user_id ON attendance(user_id, attendance_id)",
+            // Widened from (program_id): participation of one program comes out in (user_id) order.
+            "DROP INDEX IF EXISTS idx_participation_program",
+            "CREATE INDEX idx_participation_program_user ON participation(program_id, user_id)"));
+    }
+
+    private SchemaMigrator() {
+    }
+
+    public static int latestVersion() {
+        return MIGRATIONS.size();
+    }
+
+    /** Brings the database up to {@link #latestVersion()}; returns the version it started from. */
+    public static int migrate(Connection conn) throws SQLException {
+        int current = currentVersion(conn);
+        if (current == 0 && !hasTables(conn)) {
+            // Lets DbMaintenance free pages in small steps later. The WAL switch has already written the header,
+            // so the setting only sticks after a VACUUM, which costs nothing while the file is empty.
+            execute(conn, "PRAGMA auto_vacuum = INCREMENTAL");
+            execute(conn, "VACUUM");
+        }
+        for (int v = current; v < MIGRATIONS.size(); v++) {
+            conn.setAutoCommit(false);
+            try {
+                MIGRATIONS.get(v).apply(conn);
+                execute(conn, "PRAGMA user_version = " + (v + 1));
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw new SQLException("Schema migration to version " + (v + 1) + " failed: " + e.getMessage(), e);
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+        return current;
+    }
+
+    private static boolean hasTables(Connection conn) throws SQLException {
+        try (Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery("SELECT 1 FROM sqlite_master WHERE type = 'table' LIMIT 1")) {
+            return rs.next();
+        }
+    }
+
+    public static int currentVersion(Connection conn) throws SQLException {
+        try (Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery("PRAGMA user_version")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    // ----------------------------------------------------
+    // --- QUERY PLAN CHECK ---
+    // ----------------------------------------------------
+
+    /**
+     * Runs EXPLAIN QUERY PLAN for every statement (parameters bound to NULL) and
+     * returns one line per full table scan found. Ordered walks of an index
+     * ("SCAN TABLE x USING INDEX ...") are not reported, nor are lookups in a
+     * virtual table such as the full-text indexes ("SCAN TABLE x VIRTUAL TABLE
+     * INDEX ..."), which answer from their own index.
+     */
+    public static List<String> findFullScans(Connection conn, Collection<String> sqls) {
+        return findFullScans(conn, sqls, Collections.<String>emptySet());
+    }
+
+    /**
+     * Same, and for the statements in {@code paged} (keyset pages, which must
+     * read their rows in key order) also reports a sort of the matching rows
+     * ("USE TEMP B-TREE FOR ORDER BY"): such a page reads every row the
+     * filter matches before it returns the first.
+     */
+    public static List<String> findFullScans(Connection conn, Collection<String> sqls, Collection<String> paged) {
+        List<String> scans = new ArrayList<>();
+        for (String sql : sqls) {
+            try (PreparedStatement ps = conn.prepareStatement("EXPLAIN QUERY PLAN " + sql)) {
+                int params = ps.getParameterMetaData().getParameterCount();
+                for (int i = 1; i <= params; i++) {
+                    ps.setObject(i, null);
+                }
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        String detail = rs.getString("detail");
+                        if (detail != null && detail.startsWith("SCAN ") && !detail.contains(" USING ")
+                                && !detail.contains(" VIRTUAL TABLE INDEX ")) {
+                            scans.add(detail + "  <-  " + sql);
+                        } else if (detail != null && detail.startsWith("USE TEMP B-TREE FOR ORDER BY") && paged.contains(sql)) {
+                            scans.add(detail + "  <-  " + sql);
+                        }
+                    }
+                }
+            } catch (SQLException e) {
+                scans.add("could not explain (" + e.getMessage() + ")  <-  " + sql);
+            }
+        }
+        return scans;
+    }
+
+    // ----------------------------------------------------
+    // --- HELPERS ---
+    // ----------------------------------------------------
+
+    private static Migration statements(final String... sql) {
+        return conn -> execute(conn, sql);
+    }
+
+    private static void execute(Connection conn, String... sql) throws SQLException {
+        try (Statement st = conn.createStatement()) {
+            for (String s : sql) {
+                st.execute(s);
+            }
+        }
+    }
+
+    private static boolean hasUniqueIndexOn(Connection conn, String table, String column) throws SQLException {
+        List<String> unique = new ArrayList<>();
+        try (Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery("PRAGMA index_list(" + table + ")")) {
+            while (rs.next()) {
+                if (rs.getInt("unique") == 1) {
+                    unique.add(rs.getString("name"));
+                }
+            }
+        }
+        for (String index : unique) {
+            try (Statement st = conn.createStatement();
+                 ResultSet rs = st.executeQuery("PRAGMA index_info(" + index + ")")) {
+                if (rs.next() && column.equalsIgnoreCase(rs.getString("name")) && !rs.next()) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
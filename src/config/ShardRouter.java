@@ -0,0 +1,516 @@
+package config;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Decides which shard file(s) a statement runs on when the database is split
+ * across several SQLite files ({@code -D4ps.db.shards=N}, N > 1).
+ *
+ * Beneficiary data is sharded by a hash of user_id: user, participation,
+ * attendance and beneficiary_attendance rows live on the shard that owns
+ * their user_id, so every per-beneficiary join stays inside one file.
+ * program is reference data with a copy on every shard. The full-text
+ * indexes follow their base tables, since triggers fill them on whichever
+ * shard the row is written to. program_summary and attendance_daily hold
+ * per-shard partial aggregates, so only a caller that knows how to add them
+ * up can read them ({@link config#queryEveryShard}).
+ * Everything else (id_sequence, the compliance tables) lives on shard 0,
+ * the home shard.
+ *
+ * The decision is made once per SQL text, by the same kind of lightweight
+ * scan config already uses for cache invalidation: a top-level
+ * {@code user_id = ?} conjunct in the WHERE clause, or a user_id column in
+ * an INSERT, routes to the owning shard. Reads without one are sent to
+ * every shard in parallel and merged on the ORDER BY columns, with the
+ * LIMIT applied again afterwards. Reads that aggregate, group or de-duplicate
+ * across sharded tables cannot be merged that way and are refused.
+ */
+final class ShardRouter {
+
+    enum Target {
+        /** Shard 0 only. */
+        HOME,
+        /** The shard owning the user_id bound at {@link Plan#keyIndex}. */
+        KEYED,
+        /** A write applied on every shard. */
+        BROADCAST,
+        /** A read run on every shard, results merged. */
+        SCATTER,
+        /** Cannot be routed; {@link Plan#reason} says why. */
+        UNSUPPORTED
+    }
+
+    private static final Set<String> SHARDED = new HashSet<>(Arrays.asList(
+            "user", "participation", "attendance", "beneficiary_attendance", "user_search", "user_search_vocab"));
+    private static final Set<String> REPLICATED = new HashSet<>(Arrays.asList("program", "program_search", "program_search_vocab"));
+    private static final Set<String> PARTIAL = new HashSet<>(Arrays.asList("program_summary", "attendance_daily"));
+
+    private static final Pattern FIRST_WORD = Pattern.compile("^\\s*(\\w+)");
+    private static final Pattern TABLE_REF = Pattern.compile("\\b(?:from|join|into|update)\\s+(\\w+)");
+    private static final Pattern INSERT_SHAPE = Pattern.compile(
+            "^\\s*(?:insert|replace)(?:\\s+or\\s+\\w+)?\\s+into\\s+(\\w+)\\s*\\(([^)]*)\\)\\s*values\\s*\\(([^)]*)\\)\\s*$");
+    private static final Pattern WRITE_TARGET = Pattern.compile("^\\s*(?:update(?:\\s+or\\s+\\w+)?|delete\\s+from)\\s+(\\w+)");
+    private static final Pattern KEY_CONJUNCT = Pattern.compile("^(?:\\w+\\.)?user_id\\s*=\\s*\\?$");
+    private static final Pattern AGGREGATE_CALL = Pattern.compile("\\b(?:count|sum|total|avg|min|max|group_concat)\\s*\\(");
+    private static final Pattern ORDER_TERM = Pattern.compile("^(?:\\w+\\.)?(\\w+)(?:\\s+(asc|desc))?$");
+    private static final Pattern LIMIT_TERM = Pattern.compile("^(\\?|\\d+)$");
+    private static final int MAX_CACHED_PLANS = 1024;
+
+    private final int shards;
+    private final ConcurrentHashMap<String, Plan> plans = new ConcurrentHashMap<>();
+
+    ShardRouter(int shards) {
+        if (shards < 2) {
+            throw new IllegalArgumentException("a router is only needed for two or more shards");
+        }
+        this.shards = shards;
+    }
+
+    int getShards() {
+        return shards;
+    }
+
+    Plan plan(String sql) {
+        Plan p = plans.get(sql);
+        if (p == null) {
+            p = analyze(sql);
+            if (plans.size() < MAX_CACHED_PLANS) {
+                plans.put(sql, p);
+            }
+        }
+        return p;
+    }
+
+    /** The shard owning the user_id that {@code plan} reads from {@code params}. */
+    int shardOf(Plan plan, Object[] params) throws SQLException {
+        Object key = params == null || plan.keyIndex >= params.length ? null : params[plan.keyIndex];
+        long userId;
+        if (key instanceof Number) {
+            userId = ((Number) key).longValue();
+        } else if (key instanceof String) {
+            try {
+                userId = Long.parseLong(((String) key).trim());
+            } catch (NumberFormatException e) {
+                throw new SQLException("Cannot route on user_id '" + key + "': not a number");
+            }
+        } else {
+            throw new SQLException("Cannot route on user_id " + key + " (parameter " + (plan.keyIndex + 1) + ")");
+        }
+        return shardOf(userId, shards);
+    }
+
+    /**
+     * The owning shard of a user_id. Changing this function moves every
+     * beneficiary to another file, so it is fixed: MurmurHash3's 64-bit
+     * finaliser, which spreads consecutive IDs evenly.
+     */
+    static int shardOf(long userId, int shards) {
+        long h = userId;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return (int) ((h >>> 1) % shards);
+    }
+
+    // ----------------------------------------------------
+    // --- ANALYSIS ---
+    // ----------------------------------------------------
+
+    static Plan analyze(String sql) {
+        String s = mask(sql.toLowerCase(Locale.ROOT));
+        int[] depth = depths(s);
+        String verb = firstWord(s);
+
+        Set<String> tables = new HashSet<>();
+        Matcher m = TABLE_REF.matcher(s);
+        while (m.find()) {
+            tables.add(m.group(1));
+        }
+        boolean sharded = intersects(tables, SHARDED);
+        boolean partial = intersects(tables, PARTIAL);
+
+        switch (verb) {
+            case "insert":
+            case "replace":
+                return analyzeInsert(s);
+            case "update":
+            case "delete": {
+                Matcher t = WRITE_TARGET.matcher(s);
+                String table = t.find() ? t.group(1) : "";
+                if (SHARDED.contains(table)) {
+                    int key = keyIndex(s, depth);
+                    return key >= 0 ? Plan.keyed(key) : Plan.broadcast(false);
+                }
+                if (REPLICATED.contains(table) || PARTIAL.contains(table)) {
+                    return Plan.broadcast(REPLICATED.contains(table));
+                }
+                return Plan.HOME_PLAN;
+            }
+            case "select":
+            case "with":
+                break;
+            default:
+                return Plan.HOME_PLAN;
+        }
+
+        if (partial) {
+            return Plan.unsupported("reads per-shard summary tables; combine the shards with config.queryEveryShard");
+        }
+        if (!sharded) {
+            return Plan.HOME_PLAN;
+        }
+        int key = keyIndex(s, depth);
+        if (key >= 0) {
+            return Plan.keyed(key);
+        }
+        return analyzeScatter(s, depth);
+    }
+
+    private static Plan analyzeInsert(String s) {
+        Matcher m = INSERT_SHAPE.matcher(s);
+        if (!m.find()) {
+            Matcher t = TABLE_REF.matcher(s);
+            String table = t.find() ? t.group(1) : "";
+            if (SHARDED.contains(table) || PARTIAL.contains(table)) {
+                return Plan.unsupported("only INSERT ... (columns) VALUES (...) can be routed to a shard");
+            }
+            return REPLICATED.contains(table) ? Plan.broadcast(true) : Plan.HOME_PLAN;
+        }
+        String table = m.group(1);
+        if (REPLICATED.contains(table)) {
+            return Plan.broadcast(true);
+        }
+        if (PARTIAL.contains(table)) {
+            return Plan.unsupported("summary rows are written by triggers on each shard");
+        }
+        if (!SHARDED.contains(table)) {
+            return Plan.HOME_PLAN;
+        }
+        String[] columns = m.group(2).split(",");
+        String[] values = m.group(3).split(",");
+        int params = 0;
+        for (int i = 0; i < columns.length && i < values.length; i++) {
+            boolean bound = values[i].trim().equals("?");
+            if ("user_id".equals(columns[i].trim())) {
+                return bound ? Plan.keyed(params) : Plan.unsupported("user_id must be a bound parameter");
+            }
+            params += count(values[i], '?');
+        }
+        return Plan.unsupported("an INSERT into " + table + " needs a user_id column");
+    }
+
+    private static Plan analyzeScatter(String s, int[] depth) {
+        int from = indexOfWord(s, depth, "from", 0);
+        String select = from < 0 ? s : s.substring(0, from);
+        for (String word : new String[] { "union", "intersect", "except", "distinct", "having", "offset" }) {
+            if (indexOfWord(s, depth, word, 0) >= 0) {
+                return Plan.unsupported("a " + word.toUpperCase(Locale.ROOT) + " over sharded tables cannot be merged");
+            }
+        }
+        if (indexOfPhrase(s, depth, "group by", 0) >= 0 || topLevelFind(AGGREGATE_CALL, select, depth)) {
+            return Plan.unsupported("an aggregate over sharded tables cannot be merged");
+        }
+
+        int orderAt = indexOfPhrase(s, depth, "order by", 0);
+        int limitAt = indexOfWord(s, depth, "limit", 0);
+        List<String> columns = new ArrayList<>();
+        List<Boolean> descending = new ArrayList<>();
+        if (orderAt >= 0) {
+            int end = limitAt > orderAt ? limitAt : s.length();
+            for (String term : splitTopLevel(s, depth, orderAt + "order by".length(), end, ',')) {
+                Matcher t = ORDER_TERM.matcher(term.trim());
+                if (!t.find()) {
+                    return Plan.unsupported("ORDER BY " + term.trim() + " cannot be merged; order by plain columns");
+                }
+                columns.add(t.group(1));
+                descending.add("desc".equals(t.group(2)));
+            }
+        }
+        int limitIndex = -1;
+        long limitValue = -1;
+        if (limitAt >= 0) {
+            Matcher t = LIMIT_TERM.matcher(s.substring(limitAt + "limit".length()).trim());
+            if (!t.find()) {
+                return Plan.unsupported("only LIMIT n or LIMIT ? can be merged");
+            }
+            if ("?".equals(t.group(1))) {
+                limitIndex = count(s.substring(0, limitAt), '?');
+            } else {
+                limitValue = Long.parseLong(t.group(1));
+            }
+        }
+        boolean[] desc = new boolean[descending.size()];
+        for (int i = 0; i < desc.length; i++) {
+            desc[i] = descending.get(i);
+        }
+        return Plan.scatter(columns.toArray(new String[0]), desc, limitIndex, limitValue);
+    }
+
+    // --- Parameter index of a top-level "user_id = ?" conjunct of the outer WHERE, or -1 ---
+    private static int keyIndex(String s, int[] depth) {
+        int where = indexOfWord(s, depth, "where", 0);
+        if (where < 0) return -1;
+        int end = s.length();
+        for (String stop : new String[] { "group by", "order by", "limit", "having" }) {
+            int at = stop.indexOf(' ') > 0 ? indexOfPhrase(s, depth, stop, where) : indexOfWord(s, depth, stop, where);
+            if (at >= 0 && at < end) end = at;
+        }
+        if (indexOfWord(s.substring(0, end), depth, "or", where) >= 0) {
+            return -1;
+        }
+        int start = where + "where".length();
+        for (int[] part : splitTopLevelWords(s, depth, start, end, "and")) {
+            String conjunct = s.substring(part[0], part[1]).trim();
+            if (KEY_CONJUNCT.matcher(conjunct).matches()) {
+                return count(s.substring(0, part[0]), '?');
+            }
+        }
+        return -1;
+    }
+
+    // ----------------------------------------------------
+    // --- SCANNING HELPERS (on the lower-cased, masked text) ---
+    // ----------------------------------------------------
+
+    // --- Blanks out quoted literals and identifiers so keywords and '?' inside them are not seen ---
+    static String mask(String sql) {
+        char[] c = sql.toCharArray();
+        char quote = 0;
+        for (int i = 0; i < c.length; i++) {
+            if (quote != 0) {
+                if (c[i] == quote) {
+                    quote = 0;
+                } else {
+                    c[i] = ' ';
+                }
+            } else if (c[i] == '\'' || c[i] == '"' || c[i] == '`') {
+                quote = c[i];
+            }
+        }
+        return new String(c);
+    }
+
+    private static int[] depths(String s) {
+        int[] d = new int[s.length()];
+        int level = 0;
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) == '(') level++;
+            d[i] = level;
+            if (s.charAt(i) == ')') level--;
+        }
+        return d;
+    }
+
+    private static int indexOfWord(String s, int[] depth, String word, int from) {
+        int i = from;
+        while ((i = s.indexOf(word, i)) >= 0) {
+            boolean startOk = i == 0 || !Character.isLetterOrDigit(s.charAt(i - 1)) && s.charAt(i - 1) != '_';
+            int after = i + word.length();
+            boolean endOk = after >= s.length() || !Character.isLetterOrDigit(s.charAt(after)) && s.charAt(after) != '_';
+            if (startOk && endOk && depth[i] == 0) return i;
+            i = after;
+        }
+        return -1;
+    }
+
+    private static int indexOfPhrase(String s, int[] depth, String phrase, int from) {
+        String[] words = phrase.split(" ");
+        int i = from;
+        while ((i = indexOfWord(s, depth, words[0], i)) >= 0) {
+            int j = i + words[0].length();
+            while (j < s.length() && Character.isWhitespace(s.charAt(j))) j++;
+            if (s.startsWith(words[1], j) && indexOfWord(s, depth, words[1], j) == j) return i;
+            i = j;
+        }
+        return -1;
+    }
+
+    private static boolean topLevelFind(Pattern p, String text, int[] depth) {
+        Matcher m = p.matcher(text);
+        while (m.find()) {
+            if (depth[m.start()] == 0) return true;
+        }
+        return false;
+    }
+
+    private static List<String> splitTopLevel(String s, int[] depth, int start, int end, char sep) {
+        List<String> out = new ArrayList<>();
+        int from = start;
+        for (int i = start; i < end; i++) {
+            if (s.charAt(i) == sep && depth[i] == 0) {
+                out.add(s.substring(from, i));
+                from = i + 1;
+            }
+        }
+        out.add(s.substring(from, end));
+        return out;
+    }
+
+    private static List<int[]> splitTopLevelWords(String s, int[] depth, int start, int end, String word) {
+        List<int[]> out = new ArrayList<>();
+        int from = start;
+        int i = start;
+        while ((i = indexOfWord(s, depth, word, i)) >= 0 && i < end) {
+            out.add(new int[] { from, i });
+            from = i + word.length();
+            i = from;
+        }
+        out.add(new int[] { from, end });
+        return out;
+    }
+
+    private static String firstWord(String s) {
+        Matcher m = FIRST_WORD.matcher(s);
+        return m.find() ? m.group(1) : "";
+    }
+
+    private static int count(String s, char c) {
+        int n = 0;
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) == c) n++;
+        }
+        return n;
+    }
+
+    static int compareValues(Object a, Object b) {
+        int ra = storageClass(a);
+        int rb = storageClass(b);
+        if (ra != rb) return Integer.compare(ra, rb);
+        switch (ra) {
+            case 1: {
+                Number x = (Number) a;
+                Number y = (Number) b;
+                boolean exact = !(x instanceof Double || x instanceof Float || y instanceof Double || y instanceof Float);
+                return exact ? Long.compare(x.longValue(), y.longValue()) : Double.compare(x.doubleValue(), y.doubleValue());
+            }
+            case 2:
+                return a.toString().compareTo(b.toString());
+            case 3: {
+                byte[] x = (byte[]) a;
+                byte[] y = (byte[]) b;
+                for (int i = 0; i < Math.min(x.length, y.length); i++) {
+                    int c = Integer.compare(x[i] & 0xff, y[i] & 0xff);
+                    if (c != 0) return c;
+                }
+                return Integer.compare(x.length, y.length);
+            }
+            default:
+                return 0;
+        }
+    }
+
+    private static int storageClass(Object v) {
+        if (v == null) return 0;
+        if (v instanceof Number) return 1;
+        if (v instanceof byte[]) return 3;
+        return 2;
+    }
+
+    private static boolean intersects(Set<String> a, Set<String> b) {
+        for (String x : a) {
+            if (b.contains(x)) return true;
+        }
+        return false;
+    }
+
+    // ----------------------------------------------------
+    // --- PLAN ---
+    // ----------------------------------------------------
+
+    /** How one SQL text is routed. */
+    static final class Plan {
+        static final Plan HOME_PLAN = new Plan(Target.HOME, -1, false, null, null, -1, -1, null);
+
+        final Target target;
+        final int keyIndex;             // KEYED: parameter holding the user_id
+        final boolean replicated;       // BROADCAST: same rows on every shard, so report shard 0's count
+        final String[] orderColumns;    // SCATTER: merge keys (result labels), may be empty
+        final boolean[] descending;
+        final int limitIndex;           // SCATTER: parameter holding the LIMIT, or -1
+        final long limitValue;          // SCATTER: literal LIMIT, or -1
+        final String reason;            // UNSUPPORTED
+
+        private Plan(Target target, int keyIndex, boolean replicated, String[] orderColumns, boolean[] descending,
+                     int limitIndex, long limitValue, String reason) {
+            this.target = target;
+            this.keyIndex = keyIndex;
+            this.replicated = replicated;
+            this.orderColumns = orderColumns;
+            this.descending = descending;
+            this.limitIndex = limitIndex;
+            this.limitValue = limitValue;
+            this.reason = reason;
+        }
+
+        static Plan keyed(int keyIndex) {
+            return new Plan(Target.KEYED, keyIndex, false, null, null, -1, -1, null);
+        }
+
+        static Plan broadcast(boolean replicated) {
+            return new Plan(Target.BROADCAST, -1, replicated, null, null, -1, -1, null);
+        }
+
+        static Plan scatter(String[] orderColumns, boolean[] descending, int limitIndex, long limitValue) {
+            return new Plan(Target.SCATTER, -1, false, orderColumns, descending, limitIndex, limitValue, null);
+        }
+
+        static Plan unsupported(String reason) {
+            return new Plan(Target.UNSUPPORTED, -1, false, null, null, -1, -1, reason);
+        }
+
+        /** The LIMIT to apply after merging, or -1 for none. */
+        long limit(Object[] params) {
+            if (limitIndex >= 0 && params != null && limitIndex < params.length && params[limitIndex] instanceof Number) {
+                return ((Number) params[limitIndex]).longValue();
+            }
+            return limitValue;
+        }
+
+        /** Orders merged rows the way SQLite ordered each shard's: NULL, then numbers, then text, then blobs. */
+        Comparator<Object[]> ordering(String[] labels) throws SQLException {
+            final int[] cols = new int[orderColumns.length];
+            for (int i = 0; i < cols.length; i++) {
+                cols[i] = -1;
+                for (int c = 0; c < labels.length; c++) {
+                    if (labels[c].equalsIgnoreCase(orderColumns[i])) {
+                        cols[i] = c;
+                        break;
+                    }
+                }
+                if (cols[i] < 0) {
+                    throw new SQLException("ORDER BY " + orderColumns[i] + " must be a selected column to merge the shards");
+                }
+            }
+            return (a, b) -> {
+                for (int i = 0; i < cols.length; i++) {
+                    int c = compareValues(a[cols[i]], b[cols[i]]);
+                    if (c != 0) return descending[i] ? -c : c;
+                }
+                return 0;
+            };
+        }
+
+        @Override
+        public String toString() {
+            switch (target) {
+                case KEYED: return "KEYED(param " + (keyIndex + 1) + ")";
+                case SCATTER: return "SCATTER(order " + Arrays.toString(orderColumns) + ", limit "
+                        + (limitIndex >= 0 ? "param " + (limitIndex + 1) : String.valueOf(limitValue)) + ")";
+                case UNSUPPORTED: return "UNSUPPORTED(" + reason + ")";
+                default: return target + (target == Target.BROADCAST && replicated ? "(replicated)" : "");
+            }
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package config;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Exports every table of the database into columnar snapshot files
+ * ({@code <table>.4pscol}, see {@link SnapshotReader}) for offline analytics.
+ *
+ * All tables are read inside one read transaction on a pooled reader, so the
+ * files form a consistent snapshot while writers keep going (WAL). Column
+ * types follow the declared SQL type: INT* becomes INT32, DATE becomes
+ * EPOCH_DAY, REAL/FLOAT/DOUBLE/DECIMAL/NUMERIC become FLOAT64, anything else
+ * STRING. Password hashes are never exported.
+ *
+ * With the database sharded, each shard is exported into its own
+ * {@code shard-<k>/} subdirectory. Every shard is consistent in itself; the
+ * shards are read one after another, not at one common point in time.
+ */
+public final class SnapshotExporter {
+
+    public static final String EXTENSION = ".4pscol";
+    public static final int GROUP_ROWS = 65536;
+    private static final Set<String> EXCLUDED_COLUMNS = new HashSet<>(Arrays.asList("user.password"));
+    // Full-text indexes (virtual tables and their shadow tables) are derived from the base tables and left out.
+    private static final String SQL_TABLES =
+        "SELECT name FROM sqlite_master t WHERE type = 'table' AND name NOT LIKE 'sqlite_%'\n"
+            + "AND sql NOT LIKE 'CREATE VIRTUAL TABLE%'\n"
+            + "AND NOT EXISTS (SELECT 1 FROM sqlite_master v WHERE v.type = 'table' AND v.sql LIKE 'CREATE VIRTUAL TABLE%'\n"
+            + "    AND t.name LIKE v.name || '\\_%' ESCAPE '\\')\n"
+            + "ORDER BY name";
+
+    private SnapshotExporter() {
+    }
+
+    public static Result export(Path dir) throws SQLException, IOException {
+        long start = System.nanoTime();
+        Files.createDirectories(dir);
+        Result result = new Result(dir);
+        int shards = config.getShardCount();
+        for (int shard = 0; shard < shards; shard++) {
+            Path target = shards == 1 ? dir : dir.resolve("shard-" + shard);
+            Files.createDirectories(target);
+            exportShard(shard, target, shards == 1 ? "" : "shard-" + shard + "/", result);
+        }
+        result.elapsedNanos = System.nanoTime() - start;
+        return result;
+    }
+
+    private static void exportShard(int shard, Path dir, String prefix, Result result) throws SQLException, IOException {
+        try (Connection conn = config.getConnection(shard)) {
+            conn.setAutoCommit(false);      // one read transaction = one point-in-time view of every table
+            try {
+                List<String> tables = new ArrayList<>();
+                try (Statement st = conn.createStatement(); ResultSet rs = st.executeQuery(SQL_TABLES)) {
+                    while (rs.next()) {
+                        tables.add(rs.getString(1));
+                    }
+                }
+                for (String table : tables) {
+                    exportTable(conn, table, dir.resolve(table + EXTENSION), prefix, result);
+                }
+            } finally {
+                conn.rollback();
+                conn.setAutoCommit(true);
+            }
+        }
+    }
+
+    private static void exportTable(Connection conn, String table, Path file, String prefix, Result result) throws SQLException, IOException {
+        List<String> names = new ArrayList<>();
+        List<SnapshotReader.Type> types = new ArrayList<>();
+        try (Statement st = conn.createStatement(); ResultSet rs = st.executeQuery("PRAGMA table_info(\"" + table + "\")")) {
+            while (rs.next()) {
+                String name = rs.getString("name");
+                if (EXCLUDED_COLUMNS.contains(table + "." + name)) continue;
+                names.add(name);
+                types.add(typeOf(rs.getString("type")));
+            }
+        }
+        StringBuilder sql = new StringBuilder("SELECT ");
+        for (int c = 0; c < names.size(); c++) {
+            sql.append(c == 0 ? "\"" : ", \"").append(names.get(c)).append('"');
+        }
+        sql.append(" FROM \"").append(table).append('"');
+
+        SnapshotReader.Type[] t = types.toArray(new SnapshotReader.Type[0]);
+        SnapshotWriter w = new SnapshotWriter(file, names.toArray(new String[0]), t, GROUP_ROWS);
+        long badDates = 0;
+        try (PreparedStatement ps = conn.prepareStatement(sql.toString()); ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                for (int c = 0; c < t.length; c++) {
+                    switch (t[c]) {
+                        case INT32: {
+                            long v = rs.getLong(c + 1);
+                            if (rs.wasNull()) break;
+                            if (v != (int) v) {
+                                throw new SQLException(table + "." + names.get(c) + " holds " + v + ", outside the INT32 range");
+                            }
+                            w.setInt(c, (int) v);
+                            break;
+                        }
+                        case EPOCH_DAY: {
+                            String v = rs.getString(c + 1);
+                            if (v == null) break;
+                            try {
+                                w.setInt(c, (int) LocalDate.parse(v).toEpochDay());
+                            } catch (DateTimeParseException e) {
+                                badDates++;     // exported as null
+                            }
+                            break;
+                        }
+                        case FLOAT64: {
+                            double v = rs.getDouble(c + 1);
+                            if (!rs.wasNull()) w.setDouble(c, v);
+                            break;
+                        }
+                        default:
+                            w.setString(c, rs.getString(c + 1));
+                    }
+                }
+                w.endRow();
+            }
+            w.close();
+        } catch (SQLException | IOException | RuntimeException e) {
+            w.abort();
+            throw e;
+        }
+        result.add(prefix + table, w.getRowCount(), Files.size(file), badDates);
+    }
+
+    static SnapshotReader.Type typeOf(String declared) {
+        String d = declared == null ? "" : declared.toUpperCase(Locale.ROOT);
+        if (d.contains("INT")) return SnapshotReader.Type.INT32;
+        if (d.startsWith("DATE") && !d.startsWith("DATETIME")) return SnapshotReader.Type.EPOCH_DAY;
+        if (d.contains("REAL") || d.contains("FLOA") || d.contains("DOUB") || d.contains("DEC") || d.contains("NUMERIC")) {
+            return SnapshotReader.Type.FLOAT64;
+        }
+        return SnapshotReader.Type.STRING;
+    }
+
+    /** Per-table row counts and file sizes of one export. */
+    public static final class Result {
+        private final Path dir;
+        private final StringBuilder tables = new StringBuilder();
+        private int tableCount;
+        private long rows;
+        private long bytes;
+        private long badDates;
+        private long elapsedNanos;
+
+        Result(Path dir) {
+            this.dir = dir;
+        }
+
+        void add(String table, long tableRows, long fileBytes, long tableBadDates) {
+            tables.append(String.format("%n   %-24s %,12d rows %,14d bytes", table, tableRows, fileBytes));
+            if (tableBadDates > 0) {
+                tables.append(String.format("  (%d unparseable dates exported as null)", tableBadDates));
+            }
+            tableCount++;
+            rows += tableRows;
+            bytes += fileBytes;
+            badDates += tableBadDates;
+        }
+
+        public int getTables() { return tableCount; }
+        public long getRows() { return rows; }
+        public long getBytes() { return bytes; }
+        public long getBadDates() { return badDates; }
+        public long getElapsedNanos() { return elapsedNanos; }
+
+        @Override
+        public String toString() {
+            return String.format("Snapshot of %d tables (%,d rows, %,d bytes) written to %s in %.2f s%s",
+                    tableCount, rows, bytes, dir.toAbsolutePath(), elapsedNanos / 1e9, tables);
+        }
+    }
+}
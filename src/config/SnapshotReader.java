@@ -0,0 +1,221 @@
+package config;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Reads a columnar snapshot written by {@link SnapshotWriter} through
+ * memory-mapped row groups.
+ *
+ * Integer and date columns are handed out as {@link IntBuffer} views straight
+ * over the mapped file, so a scan is a loop over {@code buf.get(i)} with no
+ * JDBC, no parsing and no per-row objects. Row groups are mapped on first use
+ * and stay mapped until {@link #close()} (the mapping itself is released by
+ * the GC).
+ *
+ * <pre>
+ * file    := MAGIC group* footer footerLength:int MAGIC
+ * group   := per column: [null bitmap: long[(rows+63)/64]] data   (8-byte aligned)
+ * data    := INT32, EPOCH_DAY: int[rows] | FLOAT64: double[rows]
+ *          | STRING: int[rows+1] offsets, then the UTF-8 bytes
+ * footer  := columns:int (type:byte nameLength:short name)*
+ *            groups:int (offset:long length:long rows:int (nulls:long data:long bytes:long)*columns)*
+ *            totalRows:long
+ * </pre>
+ * All numbers are little-endian; offsets inside a group entry are absolute
+ * file positions, -1 when absent.
+ */
+public final class SnapshotReader implements Closeable {
+
+    /** Column encodings. EPOCH_DAY holds dates as days since 1970-01-01. */
+    public enum Type { INT32, EPOCH_DAY, FLOAT64, STRING }
+
+    static final byte[] MAGIC = "4PSCOL01".getBytes(StandardCharsets.US_ASCII);
+
+    private final FileChannel channel;
+    private final String[] names;
+    private final Type[] types;
+    private final long[] groupOffset;
+    private final long[] groupLength;
+    private final int[] groupRows;
+    private final long[][] nullsAt;
+    private final long[][] dataAt;
+    private final long[][] bytesAt;
+    private final long totalRows;
+    private final MappedByteBuffer[] mapped;
+
+    private SnapshotReader(FileChannel channel, ByteBuffer footer) {
+        this.channel = channel;
+        int columns = footer.getInt();
+        names = new String[columns];
+        types = new Type[columns];
+        for (int c = 0; c < columns; c++) {
+            types[c] = Type.values()[footer.get()];
+            byte[] name = new byte[footer.getShort()];
+            footer.get(name);
+            names[c] = new String(name, StandardCharsets.UTF_8);
+        }
+        int groups = footer.getInt();
+        groupOffset = new long[groups];
+        groupLength = new long[groups];
+        groupRows = new int[groups];
+        nullsAt = new long[groups][columns];
+        dataAt = new long[groups][columns];
+        bytesAt = new long[groups][columns];
+        for (int g = 0; g < groups; g++) {
+            groupOffset[g] = footer.getLong();
+            groupLength[g] = footer.getLong();
+            groupRows[g] = footer.getInt();
+            for (int c = 0; c < columns; c++) {
+                nullsAt[g][c] = footer.getLong();
+                dataAt[g][c] = footer.getLong();
+                bytesAt[g][c] = footer.getLong();
+            }
+        }
+        totalRows = footer.getLong();
+        mapped = new MappedByteBuffer[groups];
+    }
+
+    public static SnapshotReader open(Path file) throws IOException {
+        FileChannel ch = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            long size = ch.size();
+            ByteBuffer tail = ByteBuffer.allocate(12).order(ByteOrder.LITTLE_ENDIAN);
+            if (size < 2L * MAGIC.length + 4 || ch.read(tail, size - 12) != 12) {
+                throw new IOException(file + " is not a 4Ps snapshot (too short)");
+            }
+            tail.flip();
+            int footerLength = tail.getInt();
+            byte[] magic = new byte[MAGIC.length];
+            tail.get(magic);
+            if (!Arrays.equals(magic, MAGIC) || footerLength < 0 || footerLength > size - 12 - MAGIC.length) {
+                throw new IOException(file + " is not a 4Ps snapshot (bad trailer)");
+            }
+            ByteBuffer footer = ByteBuffer.allocate(footerLength).order(ByteOrder.LITTLE_ENDIAN);
+            long at = size - 12 - footerLength;
+            while (footer.hasRemaining()) {
+                if (ch.read(footer, at + footer.position()) < 0) throw new IOException("unexpected end of " + file);
+            }
+            footer.flip();
+            return new SnapshotReader(ch, footer);
+        } catch (IOException | RuntimeException e) {
+            ch.close();
+            throw e instanceof IOException ? (IOException) e : new IOException(file + " has a corrupt footer", e);
+        }
+    }
+
+    // ----------------------------------------------------
+    // --- SCHEMA ---
+    // ----------------------------------------------------
+
+    public int columnCount() {
+        return names.length;
+    }
+
+    public String columnName(int column) {
+        return names[column];
+    }
+
+    public Type columnType(int column) {
+        return types[column];
+    }
+
+    /** Index of the named column, or -1. */
+    public int columnIndex(String name) {
+        for (int c = 0; c < names.length; c++) {
+            if (names[c].equalsIgnoreCase(name)) return c;
+        }
+        return -1;
+    }
+
+    public long rowCount() {
+        return totalRows;
+    }
+
+    public int groupCount() {
+        return groupRows.length;
+    }
+
+    public int groupRows(int group) {
+        return groupRows[group];
+    }
+
+    // ----------------------------------------------------
+    // --- COLUMN ACCESS ---
+    // ----------------------------------------------------
+
+    /** Zero-copy view of an INT32 or EPOCH_DAY column in one row group; null cells read as 0. */
+    public IntBuffer ints(int group, int column) throws IOException {
+        require(column, Type.INT32, Type.EPOCH_DAY);
+        return slice(group, dataAt[group][column], 4L * groupRows[group]).asIntBuffer();
+    }
+
+    /** Zero-copy view of a FLOAT64 column in one row group; null cells read as 0.0. */
+    public DoubleBuffer doubles(int group, int column) throws IOException {
+        require(column, Type.FLOAT64, Type.FLOAT64);
+        return slice(group, dataAt[group][column], 8L * groupRows[group]).asDoubleBuffer();
+    }
+
+    /** One STRING cell (allocates the String), or null. */
+    public String string(int group, int column, int row) throws IOException {
+        require(column, Type.STRING, Type.STRING);
+        if (isNull(group, column, row)) return null;
+        ByteBuffer offsets = slice(group, dataAt[group][column], 4L * (groupRows[group] + 1));
+        int from = offsets.getInt(4 * row);
+        int to = offsets.getInt(4 * (row + 1));
+        ByteBuffer bytes = slice(group, bytesAt[group][column] + from, to - from);
+        byte[] b = new byte[to - from];
+        bytes.get(b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+
+    public boolean hasNulls(int group, int column) {
+        return nullsAt[group][column] >= 0;
+    }
+
+    public boolean isNull(int group, int column, int row) throws IOException {
+        long at = nullsAt[group][column];
+        if (at < 0) return false;
+        long word = map(group).getLong((int) (at - groupOffset[group]) + 8 * (row >>> 6));
+        return (word & (1L << (row & 63))) != 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        Arrays.fill(mapped, null);
+        channel.close();
+    }
+
+    private void require(int column, Type a, Type b) {
+        if (types[column] != a && types[column] != b) {
+            throw new IllegalArgumentException("column " + names[column] + " is " + types[column] + ", not " + a);
+        }
+    }
+
+    private ByteBuffer slice(int group, long position, long length) throws IOException {
+        ByteBuffer buf = map(group).duplicate();
+        int start = (int) (position - groupOffset[group]);
+        buf.position(start).limit(start + (int) length);
+        return buf.slice().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private synchronized MappedByteBuffer map(int group) throws IOException {
+        MappedByteBuffer m = mapped[group];
+        if (m == null) {
+            m = channel.map(FileChannel.MapMode.READ_ONLY, groupOffset[group], groupLength[group]);
+            m.order(ByteOrder.LITTLE_ENDIAN);
+            mapped[group] = m;
+        }
+        return m;
+    }
+}
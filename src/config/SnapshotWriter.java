@@ -0,0 +1,284 @@
+package config;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Streams rows into the columnar snapshot format read by {@link SnapshotReader}.
+ *
+ * Rows are buffered one row group at a time in primitive arrays (int[] for
+ * INT32/EPOCH_DAY, double[] for FLOAT64, offsets plus one byte array for
+ * STRING), so memory stays bounded by the group size however large the table
+ * is. The file is written under a temporary name and moved into place on
+ * {@link #close()}, so readers never see a half-written snapshot.
+ *
+ * Usage: for each row call the {@code set...} methods for its columns (unset
+ * columns are null), then {@link #endRow()}.
+ */
+public final class SnapshotWriter implements Closeable {
+
+    private static final int IO_BUFFER_BYTES = 1 << 20;
+
+    private final Path target;
+    private final Path temp;
+    private final FileChannel out;
+    private final ByteBuffer io = ByteBuffer.allocateDirect(IO_BUFFER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+    private final String[] names;
+    private final SnapshotReader.Type[] types;
+    private final int groupRows;
+
+    // --- Current row group ---
+    private final int[][] ints;
+    private final double[][] doubles;
+    private final int[][] stringOffsets;
+    private final byte[][] stringBytes;
+    private final long[][] nulls;
+    private final boolean[] groupHasNulls;
+    private final boolean[] rowSet;
+    private int rows = 0;
+
+    // --- Footer entries: offset, length, rows, then nulls/data/bytes per column ---
+    private final List<long[]> groups = new ArrayList<>();
+    private long position = 0;
+    private long totalRows = 0;
+    private boolean closed;
+
+    public SnapshotWriter(Path file, String[] names, SnapshotReader.Type[] types, int groupRows) throws IOException {
+        if (names.length != types.length || names.length == 0 || groupRows < 1) {
+            throw new IllegalArgumentException("need at least one column, one type per column and groupRows >= 1");
+        }
+        this.target = file;
+        this.temp = file.resolveSibling(file.getFileName() + ".tmp");
+        this.names = names.clone();
+        this.types = types.clone();
+        this.groupRows = groupRows;
+        int n = names.length;
+        ints = new int[n][];
+        doubles = new double[n][];
+        stringOffsets = new int[n][];
+        stringBytes = new byte[n][];
+        nulls = new long[n][(groupRows + 63) / 64];
+        groupHasNulls = new boolean[n];
+        rowSet = new boolean[n];
+        for (int c = 0; c < n; c++) {
+            switch (types[c]) {
+                case INT32:
+                case EPOCH_DAY: ints[c] = new int[groupRows]; break;
+                case FLOAT64: doubles[c] = new double[groupRows]; break;
+                default:
+                    stringOffsets[c] = new int[groupRows + 1];
+                    stringBytes[c] = new byte[Math.min(groupRows * 16, 1 << 20)];
+            }
+        }
+        this.out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        io.put(SnapshotReader.MAGIC);
+    }
+
+    public void setInt(int column, int value) {
+        ints[column][rows] = value;
+        rowSet[column] = true;
+    }
+
+    public void setDouble(int column, double value) {
+        doubles[column][rows] = value;
+        rowSet[column] = true;
+    }
+
+    public void setString(int column, String value) {
+        if (value == null) return;
+        byte[] b = value.getBytes(StandardCharsets.UTF_8);
+        int at = stringOffsets[column][rows];
+        if (at + b.length > stringBytes[column].length) {
+            stringBytes[column] = Arrays.copyOf(stringBytes[column], Math.max(at + b.length, stringBytes[column].length * 2));
+        }
+        System.arraycopy(b, 0, stringBytes[column], at, b.length);
+        stringOffsets[column][rows + 1] = at + b.length;
+        rowSet[column] = true;
+    }
+
+    public void endRow() throws IOException {
+        for (int c = 0; c < names.length; c++) {
+            if (!rowSet[c]) {
+                nulls[c][rows >>> 6] |= 1L << (rows & 63);
+                groupHasNulls[c] = true;
+                if (stringOffsets[c] != null) {
+                    stringOffsets[c][rows + 1] = stringOffsets[c][rows];
+                } else if (ints[c] != null) {
+                    ints[c][rows] = 0;
+                } else {
+                    doubles[c][rows] = 0.0;
+                }
+            }
+            rowSet[c] = false;
+        }
+        rows++;
+        if (rows == groupRows) {
+            flushGroup();
+        }
+    }
+
+    public long getRowCount() {
+        return totalRows + rows;
+    }
+
+    /** Writes the last group and the footer, forces the file to disk and moves it into place. */
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        try {
+            if (rows > 0 || groups.isEmpty()) {
+                flushGroup();
+            }
+            long footerPosition = position + io.position();
+            putInt(names.length);
+            for (int c = 0; c < names.length; c++) {
+                byte[] name = names[c].getBytes(StandardCharsets.UTF_8);
+                ensure(3 + name.length);
+                io.put((byte) types[c].ordinal()).putShort((short) name.length).put(name);
+            }
+            putInt(groups.size());
+            for (long[] g : groups) {
+                ensure(8 * g.length);
+                io.putLong(g[0]).putLong(g[1]).putInt((int) g[2]);
+                for (int i = 3; i < g.length; i++) {
+                    io.putLong(g[i]);
+                }
+            }
+            ensure(8);
+            io.putLong(totalRows);
+            long footerLength = position + io.position() - footerPosition;
+            ensure(4 + SnapshotReader.MAGIC.length);
+            io.putInt((int) footerLength).put(SnapshotReader.MAGIC);
+            drain();
+            out.force(true);
+        } finally {
+            out.close();
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /** Drops the partial file (after a failed export). */
+    public void abort() {
+        closed = true;
+        try {
+            out.close();
+            Files.deleteIfExists(temp);
+        } catch (IOException e) {
+            /* Ignore cleanup error */
+        }
+    }
+
+    // ----------------------------------------------------
+    // --- ROW GROUPS ---
+    // ----------------------------------------------------
+
+    private void flushGroup() throws IOException {
+        int n = names.length;
+        align();
+        long start = position + io.position();
+        long[] entry = new long[3 + 3 * n];
+        entry[0] = start;
+        entry[2] = rows;
+        for (int c = 0; c < n; c++) {
+            align();
+            if (groupHasNulls[c]) {
+                entry[3 + 3 * c] = position + io.position();
+                int words = (rows + 63) / 64;
+                for (int w = 0; w < words; w++) {
+                    ensure(8);
+                    io.putLong(nulls[c][w]);
+                }
+                Arrays.fill(nulls[c], 0L);
+                groupHasNulls[c] = false;
+            } else {
+                entry[3 + 3 * c] = -1;
+            }
+            entry[3 + 3 * c + 1] = position + io.position();
+            entry[3 + 3 * c + 2] = -1;
+            switch (types[c]) {
+                case INT32:
+                case EPOCH_DAY:
+                    putInts(ints[c], rows);
+                    break;
+                case FLOAT64:
+                    for (int i = 0; i < rows; ) {
+                        ensure(8);
+                        int chunk = Math.min(rows - i, io.remaining() / 8);
+                        io.asDoubleBuffer().put(doubles[c], i, chunk);
+                        io.position(io.position() + 8 * chunk);
+                        i += chunk;
+                    }
+                    break;
+                default:
+                    putInts(stringOffsets[c], rows + 1);
+                    entry[3 + 3 * c + 2] = position + io.position();
+                    putBytes(stringBytes[c], stringOffsets[c][rows]);
+                    stringOffsets[c][0] = 0;
+            }
+        }
+        align();
+        entry[1] = position + io.position() - start;
+        groups.add(entry);
+        totalRows += rows;
+        rows = 0;
+    }
+
+    private void putInts(int[] values, int count) throws IOException {
+        for (int i = 0; i < count; ) {
+            ensure(4);
+            int chunk = Math.min(count - i, io.remaining() / 4);
+            io.asIntBuffer().put(values, i, chunk);
+            io.position(io.position() + 4 * chunk);
+            i += chunk;
+        }
+    }
+
+    private void putBytes(byte[] values, int count) throws IOException {
+        for (int i = 0; i < count; ) {
+            ensure(1);
+            int chunk = Math.min(count - i, io.remaining());
+            io.put(values, i, chunk);
+            i += chunk;
+        }
+    }
+
+    private void putInt(int value) throws IOException {
+        ensure(4);
+        io.putInt(value);
+    }
+
+    // Column data starts on 8-byte boundaries so the mapped views are aligned.
+    private void align() throws IOException {
+        int pad = (int) ((8 - ((position + io.position()) & 7)) & 7);
+        ensure(pad);
+        for (int i = 0; i < pad; i++) {
+            io.put((byte) 0);
+        }
+    }
+
+    private void ensure(int bytes) throws IOException {
+        if (io.remaining() < bytes) {
+            drain();
+        }
+    }
+
+    private void drain() throws IOException {
+        io.flip();
+        while (io.hasRemaining()) {
+            position += out.write(io);
+        }
+        io.clear();
+    }
+}
@@ -0,0 +1,165 @@
+package config;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded LRU cache of PreparedStatements for one pooled connection, keyed by SQL text.
+ *
+ * Callers still {@code close()} the statement they get; for a cached statement
+ * that only clears its parameters and open ResultSet and marks it free again.
+ * Each borrow gets its own handle, dead once closed: later calls on it throw
+ * rather than reach the statement the next borrower now holds.
+ * Statements are really closed when they fall out of the cache or when the
+ * connection itself is closed. If the same SQL is prepared again while the
+ * cached copy is still in use (nested queries), a plain uncached statement is
+ * returned instead.
+ */
+class StatementCache {
+
+    private final Connection conn;
+    private final int capacity;
+    private final AtomicLong hits;
+    private final AtomicLong misses;
+    private final AtomicLong evictions;
+    private final LinkedHashMap<String, Entry> entries;
+
+    StatementCache(Connection conn, int capacity, AtomicLong hits, AtomicLong misses, AtomicLong evictions) {
+        this.conn = conn;
+        this.capacity = capacity;
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+        this.entries = new LinkedHashMap<>(capacity * 2, 0.75f, true);
+    }
+
+    synchronized PreparedStatement prepare(String sql) throws SQLException {
+        Entry entry = entries.get(sql);
+        if (entry != null) {
+            if (entry.inUse) {
+                misses.incrementAndGet();
+                return conn.prepareStatement(sql);
+            }
+            hits.incrementAndGet();
+            return entry.borrow();
+        }
+
+        misses.incrementAndGet();
+        entry = new Entry(sql, conn.prepareStatement(sql));
+        entries.put(sql, entry);
+        evictOverflow();
+        return entry.borrow();
+    }
+
+    private void evictOverflow() {
+        Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        while (entries.size() > capacity && it.hasNext()) {
+            Entry eldest = it.next().getValue();
+            it.remove();
+            evictions.incrementAndGet();
+            eldest.evicted = true;
+            if (!eldest.inUse) {
+                eldest.closeQuietly();
+            }
+        }
+    }
+
+    synchronized void closeAll() {
+        for (Entry entry : entries.values()) {
+            entry.evicted = true;
+            entry.closeQuietly();
+        }
+        entries.clear();
+    }
+
+    private synchronized void release(Entry entry, int borrow) throws SQLException {
+        // A second close, or one through a handle from an earlier borrow, must not free the current borrower's statement.
+        if (!entry.inUse || entry.borrows != borrow) return;
+        entry.inUse = false;
+        if (entry.evicted) {
+            entry.closeQuietly();
+            return;
+        }
+        try {
+            if (entry.lastResult != null) {
+                entry.lastResult.close();
+                entry.lastResult = null;
+            }
+            entry.stmt.clearParameters();
+            entry.stmt.clearBatch();
+        } catch (SQLException e) {
+            // A statement that cannot be reset is not worth keeping.
+            entries.remove(entry.sql);
+            entry.evicted = true;
+            entry.closeQuietly();
+        }
+    }
+
+    private class Entry {
+        final String sql;
+        final PreparedStatement stmt;
+        ResultSet lastResult;
+        boolean inUse;
+        boolean evicted;
+        int borrows;        // a handle works only while its borrow is the current one
+
+        Entry(String sql, PreparedStatement stmt) {
+            this.sql = sql;
+            this.stmt = stmt;
+        }
+
+        // --- A fresh handle per borrow, so a reference kept past close() cannot drive the next borrower's statement ---
+        PreparedStatement borrow() {
+            inUse = true;
+            final int borrow = ++borrows;
+            return (PreparedStatement) Proxy.newProxyInstance(
+                    PreparedStatement.class.getClassLoader(),
+                    new Class<?>[] { PreparedStatement.class },
+                    (proxy, method, args) -> {
+                        String name = method.getName();
+                        if ("close".equals(name)) {
+                            release(this, borrow);
+                            return null;
+                        }
+                        boolean released = !inUse || borrows != borrow;
+                        if ("isClosed".equals(name)) {
+                            return released || stmt.isClosed();
+                        }
+                        if ("equals".equals(name)) {
+                            return proxy == args[0];
+                        }
+                        if ("hashCode".equals(name)) {
+                            return System.identityHashCode(proxy);
+                        }
+                        if (released) {
+                            throw new SQLException("statement already closed");
+                        }
+                        try {
+                            Object result = method.invoke(stmt, args);
+                            if (result instanceof ResultSet) {
+                                lastResult = (ResultSet) result;
+                            }
+                            return result;
+                        } catch (InvocationTargetException e) {
+                            throw e.getCause();
+                        }
+                    });
+        }
+
+        void closeQuietly() {
+            try {
+                stmt.close();
+            } catch (SQLException e) {
+                /* Ignore close error */
+            }
+        }
+    }
+}
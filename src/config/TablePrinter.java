@@ -0,0 +1,134 @@
+package config;
+
+import java.io.PrintStream;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Buffered console renderer for query results.
+ *
+ * Rows are read a page at a time, column widths are computed once for that
+ * page, every line is formatted into one reusable StringBuilder and the whole
+ * page goes to the console in a single write.
+ */
+public class TablePrinter {
+
+    private static final int MAX_WIDTH = 40;
+    private static final int GAP = 2;
+
+    private final PrintStream out;
+    private final StringBuilder buf = new StringBuilder(8192);
+    private final List<String[]> rows = new ArrayList<>();
+    private String[] labels = new String[0];
+    private int[] widths = new int[0];
+
+    public TablePrinter(PrintStream out) {
+        this.out = out;
+    }
+
+    /**
+     * Reads up to {@code maxRows} rows from {@code rs} and prints them as one
+     * page. Returns the number of rows printed; the rows stay available through
+     * {@link #getRow(int)} until the next call.
+     */
+    public int printPage(ResultSet rs, int maxRows) throws SQLException {
+        ResultSetMetaData rsmd = rs.getMetaData();
+        int columnCount = rsmd.getColumnCount();
+        if (labels.length != columnCount) {
+            labels = new String[columnCount];
+            widths = new int[columnCount];
+        }
+        for (int i = 0; i < columnCount; i++) {
+            labels[i] = rsmd.getColumnLabel(i + 1);
+        }
+
+        rows.clear();
+        while (rows.size() < maxRows && rs.next()) {
+            String[] row = new String[columnCount];
+            for (int i = 0; i < columnCount; i++) {
+                row[i] = rs.getString(i + 1);
+            }
+            rows.add(row);
+        }
+
+        computeWidths();
+        buf.setLength(0);
+        appendRow(labels);
+        int total = 0;
+        for (int w : widths) total += w + GAP;
+        for (int i = 0; i < total; i++) buf.append('-');
+        buf.append('\n');
+        for (String[] row : rows) {
+            appendRow(row);
+        }
+        out.print(buf);
+        out.flush();
+        return rows.size();
+    }
+
+    /**
+     * Continues the last page: reads up to {@code maxRows} more rows and prints
+     * them under the header already shown, in its column widths (longer cells
+     * are cut like any cell over the maximum width). Prints nothing when the
+     * result set is used up. Returns the number of rows printed.
+     */
+    public int printMore(ResultSet rs, int maxRows) throws SQLException {
+        int columnCount = labels.length;
+        rows.clear();
+        while (rows.size() < maxRows && rs.next()) {
+            String[] row = new String[columnCount];
+            for (int i = 0; i < columnCount; i++) {
+                row[i] = rs.getString(i + 1);
+            }
+            rows.add(row);
+        }
+        if (rows.isEmpty()) return 0;
+        buf.setLength(0);
+        for (String[] row : rows) {
+            appendRow(row);
+        }
+        out.print(buf);
+        out.flush();
+        return rows.size();
+    }
+
+    public String[] getRow(int index) {
+        return rows.get(index);
+    }
+
+    private void computeWidths() {
+        for (int i = 0; i < labels.length; i++) {
+            widths[i] = Math.min(MAX_WIDTH, labels[i].length());
+        }
+        for (String[] row : rows) {
+            for (int i = 0; i < row.length; i++) {
+                int len = row[i] == null ? 4 : row[i].length();
+                if (len > widths[i]) {
+                    widths[i] = Math.min(MAX_WIDTH, len);
+                }
+            }
+        }
+    }
+
+    private void appendRow(String[] cells) {
+        for (int i = 0; i < cells.length; i++) {
+            String cell = cells[i] == null ? "null" : cells[i];
+            int w = widths[i];
+            if (cell.length() > w) {
+                buf.append(cell, 0, w - 1).append('~');
+            } else {
+                buf.append(cell);
+                if (i < cells.length - 1) {
+                    for (int pad = cell.length(); pad < w; pad++) buf.append(' ');
+                }
+            }
+            if (i < cells.length - 1) {
+                for (int gap = 0; gap < GAP; gap++) buf.append(' ');
+            }
+        }
+        buf.append('\n');
+    }
+}
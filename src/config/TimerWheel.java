@@ -0,0 +1,123 @@
+package config;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hashed timer wheel for large numbers of coarse timeouts (idle sessions,
+ * rate-limit windows).
+ *
+ * Time is cut into ticks and every timeout lands in slot {@code tick % slots};
+ * one daemon thread visits a single slot per tick, so scheduling is O(1) and
+ * the cost per tick is proportional to what is due, not to how much is
+ * pending. Timeouts further away than one turn of the wheel carry a round
+ * count and are passed over until their turn comes. Timeouts fire up to two
+ * ticks late, never early.
+ *
+ * A timeout cannot be cancelled. Instead the handler decides when it fires:
+ * it returns the further delay (ms) the item still needs, or 0 to drop it.
+ * That keeps "touch" operations free of any wheel bookkeeping.
+ */
+public final class TimerWheel<T> {
+
+    /** Called on the wheel thread when an item's timeout comes due; must not block. */
+    public interface Handler<T> {
+        /** Returns how many more milliseconds the item needs, or 0 (or less) to drop it. */
+        long onTimeout(T item);
+    }
+
+    private final long tickNanos;
+    private final int mask;
+    private final ConcurrentLinkedQueue<Entry<T>>[] slots;
+    private final Handler<T> handler;
+    private final Thread worker;
+    private final AtomicInteger pending = new AtomicInteger();
+    private volatile long currentTick = 0;
+    private volatile boolean running = true;
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    public TimerWheel(String name, long tickMillis, int slots, Handler<T> handler) {
+        if (tickMillis < 1 || Integer.bitCount(slots) != 1) {
+            throw new IllegalArgumentException("tickMillis must be >= 1 and slots a power of two");
+        }
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+        this.mask = slots - 1;
+        this.slots = new ConcurrentLinkedQueue[slots];
+        for (int i = 0; i < slots; i++) {
+            this.slots[i] = new ConcurrentLinkedQueue<>();
+        }
+        this.handler = handler;
+        this.worker = new Thread(this::run, name);
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    public void schedule(T item, long delayMillis) {
+        long ticks = Math.max(1, (TimeUnit.MILLISECONDS.toNanos(delayMillis) + tickNanos - 1) / tickNanos);
+        // One spare tick: the wheel may advance between reading currentTick and the add below.
+        long due = currentTick + ticks + 1;
+        slots[(int) (due & mask)].add(new Entry<>(item, due));
+        pending.incrementAndGet();
+    }
+
+    /** Items scheduled and not yet dropped. */
+    public int size() {
+        return pending.get();
+    }
+
+    public void close() {
+        running = false;
+        worker.interrupt();
+    }
+
+    private void run() {
+        long start = System.nanoTime();
+        while (running) {
+            long next = currentTick + 1;
+            long sleep = start + next * tickNanos - System.nanoTime();
+            if (sleep > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(sleep);
+                } catch (InterruptedException e) {
+                    continue;
+                }
+            }
+            currentTick = next;
+            expire(slots[(int) (next & mask)], next);
+        }
+    }
+
+    private void expire(ConcurrentLinkedQueue<Entry<T>> slot, long tick) {
+        // Only look at what is in the slot now; entries re-armed below may land back in it.
+        for (int n = slot.size(); n > 0; n--) {
+            Entry<T> e = slot.poll();
+            if (e == null) break;
+            if (e.dueTick > tick) {
+                slot.add(e);            // a later round of the wheel
+                continue;
+            }
+            pending.decrementAndGet();
+            long more;
+            try {
+                more = handler.onTimeout(e.item);
+            } catch (RuntimeException ex) {
+                System.err.println("⚠️ Timer handler failed: " + ex);
+                continue;
+            }
+            if (more > 0) {
+                schedule(e.item, more);
+            }
+        }
+    }
+
+    private static final class Entry<T> {
+        final T item;
+        final long dueTick;
+
+        Entry(T item, long dueTick) {
+            this.item = item;
+            this.dueTick = dueTick;
+        }
+    }
+}
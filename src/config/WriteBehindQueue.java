@@ -0,0 +1,246 @@
+package config;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Write-behind mode for addRecord: callers enqueue and return immediately, and a
+ * single thread applies the writes in grouped transactions.
+ *
+ * A group is closed once it holds {@code batchRows} writes or {@code flushMillis}
+ * have passed since its first write was taken. Each write still runs as its own
+ * statement, so a constraint violation rejects only that write; the others in
+ * the group commit. When the queue is full, submit blocks the caller for up to
+ * {@code offerTimeoutMs} (backpressure) and then fails the write. close() drains
+ * and commits everything already accepted before returning.
+ */
+final class WriteBehindQueue {
+
+    private final ConnectionPool pool;
+    private final BlockingQueue<PendingWrite> queue;
+    private final int capacity;
+    private final long flushNanos;
+    private final int batchRows;
+    private final long offerTimeoutMs;
+    private final Thread worker;
+    private volatile boolean accepting = true;
+
+    // --- Metrics ---
+    private final LatencyHistogram commitLatency = new LatencyHistogram();
+    private final LatencyHistogram enqueueWait = new LatencyHistogram();
+    private final LatencyHistogram queueDelay = new LatencyHistogram();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong committed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong rejectedFull = new AtomicLong();
+    private final AtomicInteger maxDepth = new AtomicInteger();
+
+    WriteBehindQueue(ConnectionPool pool, int capacity, long flushMillis, int batchRows, long offerTimeoutMs) {
+        if (capacity < 1 || batchRows < 1) {
+            throw new IllegalArgumentException("capacity and batchRows must be at least 1");
+        }
+        this.pool = pool;
+        this.capacity = capacity;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.flushNanos = TimeUnit.MILLISECONDS.toNanos(flushMillis);
+        this.batchRows = batchRows;
+        this.offerTimeoutMs = offerTimeoutMs;
+        this.worker = new Thread(this::run, "4ps-write-behind");
+        this.worker.setDaemon(true);
+    }
+
+    void start() {
+        worker.start();
+    }
+
+    // ----------------------------------------------------
+    // --- PRODUCER SIDE ---
+    // ----------------------------------------------------
+
+    void submit(String sql, Object[] params, WriteCallback callback) {
+        PendingWrite w = new PendingWrite(sql, params, callback, null);
+        long start = System.nanoTime();
+        boolean queued = false;
+        try {
+            queued = accepting && queue.offer(w, offerTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        enqueueWait.record(System.nanoTime() - start);
+        if (!queued) {
+            rejectedFull.incrementAndGet();
+            fail(w, new SQLException(accepting
+                    ? "Write-behind queue full (" + capacity + " pending writes) for " + offerTimeoutMs + " ms"
+                    : "Write-behind queue is closed"));
+            return;
+        }
+        int depth = queue.size();
+        int m;
+        while (depth > (m = maxDepth.get()) && !maxDepth.compareAndSet(m, depth)) {
+            // retry
+        }
+    }
+
+    /** Blocks until every write submitted before this call has been committed or failed. */
+    void flush() {
+        CountDownLatch done = new CountDownLatch(1);
+        try {
+            if (!accepting || !queue.offer(new PendingWrite(null, null, null, done), offerTimeoutMs, TimeUnit.MILLISECONDS)) {
+                return;
+            }
+            while (!done.await(100, TimeUnit.MILLISECONDS)) {
+                if (!worker.isAlive()) return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** Stops accepting writes, commits everything already queued and stops the thread. */
+    void close() {
+        accepting = false;
+        try {
+            worker.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    int getDepth() {
+        return queue.size();
+    }
+
+    LatencyHistogram getCommitLatency() {
+        return commitLatency;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("write-behind: depth=%d/%d maxDepth=%d batches=%d committed=%d failed=%d queueFull=%d "
+                        + "commit p50/p99 %.3f/%.3f ms, queue delay p99 %.3f ms, enqueue wait p99 %.3f ms",
+                queue.size(), capacity, maxDepth.get(), batches.get(), committed.get(), failed.get(), rejectedFull.get(),
+                commitLatency.getValueAtPercentile(50) / 1e6, commitLatency.getValueAtPercentile(99) / 1e6,
+                queueDelay.getValueAtPercentile(99) / 1e6, enqueueWait.getValueAtPercentile(99) / 1e6);
+    }
+
+    // ----------------------------------------------------
+    // --- WRITER THREAD ---
+    // ----------------------------------------------------
+
+    private void run() {
+        List<PendingWrite> batch = new ArrayList<>(batchRows);
+        while (accepting || !queue.isEmpty()) {
+            try {
+                PendingWrite first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                batch.add(first);
+                long deadline = System.nanoTime() + flushNanos;
+                while (batch.size() < batchRows) {
+                    long left = deadline - System.nanoTime();
+                    PendingWrite next = left > 0 ? queue.poll(left, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (next == null) break;
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                // Only close() stops the thread; keep draining.
+            }
+            if (!batch.isEmpty()) {
+                commit(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    private void commit(List<PendingWrite> batch) {
+        long start = System.nanoTime();
+        int[] rows = new int[batch.size()];
+        SQLException[] errors = new SQLException[batch.size()];
+        SQLException batchError = null;
+
+        try (Connection conn = pool.acquireWriter()) {
+            conn.setAutoCommit(false);
+            try {
+                for (int i = 0; i < batch.size(); i++) {
+                    PendingWrite w = batch.get(i);
+                    if (w.flushed != null) continue;
+                    queueDelay.record(start - w.enqueuedAt);
+                    long t = System.nanoTime();
+                    try (PreparedStatement pstmt = conn.prepareStatement(w.sql)) {
+                        if (w.params != null) {
+                            for (int p = 0; p < w.params.length; p++) {
+                                pstmt.setObject(p + 1, w.params[p]);
+                            }
+                        }
+                        rows[i] = pstmt.executeUpdate();
+                        DbMetrics.get().recordStatement(w.sql, System.nanoTime() - t, rows[i]);
+                        config.journalWrite(pool, false, w.sql, w.params, rows[i]);     // journaled by the commit below
+                    } catch (SQLException e) {
+                        // SQLite undoes just the failed statement; the rest of the group still commits.
+                        errors[i] = e;
+                    }
+                }
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            batchError = e;
+        }
+        commitLatency.record(System.nanoTime() - start);
+        batches.incrementAndGet();
+
+        // Callbacks run after the transaction has ended, so they may read the committed rows.
+        for (int i = 0; i < batch.size(); i++) {
+            PendingWrite w = batch.get(i);
+            if (w.flushed != null) {
+                w.flushed.countDown();
+            } else if (batchError != null || errors[i] != null) {
+                fail(w, errors[i] != null ? errors[i] : batchError);
+            } else {
+                committed.incrementAndGet();
+                try {
+                    w.callback.onCommit(w.sql, w.params, rows[i]);
+                } catch (RuntimeException e) {
+                    System.err.println("⚠️ Write-behind callback failed: " + e);
+                }
+            }
+        }
+    }
+
+    private void fail(PendingWrite w, SQLException e) {
+        failed.incrementAndGet();
+        DbMetrics.ErrorCategory category = DbMetrics.get().recordError(w.sql, System.nanoTime() - w.enqueuedAt, e);
+        try {
+            w.callback.onFailure(w.sql, w.params, category, e);
+        } catch (RuntimeException re) {
+            System.err.println("⚠️ Write-behind callback failed: " + re);
+        }
+    }
+
+    private static class PendingWrite {
+        final String sql;
+        final Object[] params;
+        final WriteCallback callback;
+        final CountDownLatch flushed;   // non-null for flush() markers, which carry no SQL
+        final long enqueuedAt = System.nanoTime();
+
+        PendingWrite(String sql, Object[] params, WriteCallback callback, CountDownLatch flushed) {
+            this.sql = sql;
+            this.params = params;
+            this.callback = callback;
+            this.flushed = flushed;
+        }
+    }
+}
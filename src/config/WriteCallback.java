@@ -0,0 +1,16 @@
+package config;
+
+import java.sql.SQLException;
+
+/**
+ * Outcome of a write handed to {@link config#addRecord(WriteCallback, String, Object...)}.
+ *
+ * With write-behind enabled both methods run on the write-behind thread after
+ * the write's transaction has committed (or failed), so they must not block.
+ */
+public interface WriteCallback {
+
+    void onCommit(String sql, Object[] params, int rowsAffected);
+
+    void onFailure(String sql, Object[] params, DbMetrics.ErrorCategory category, SQLException e);
+}
@@ -1,26 +1,139 @@
 package config;
 
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public class config {
     
     // --- DATABASE CONFIGURATION (UPDATED FOR SQLITE) ---
-    private static final String URL = "jdbc:sqlite:4psDB.db"; 
+    private static final String URL_PREFIX = "jdbc:sqlite:";
+    private static final String URL = System.getProperty("4ps.db.url", "jdbc:sqlite:4psDB.db"); 
     
-    private static Connection conn = null;
+    // --- Pool sizing: one writer plus N readers (override with -D4ps.db.readers=...) ---
+    private static final int READERS = Integer.getInteger("4ps.db.readers", 4);
+    private static final int BUSY_TIMEOUT_MS = Integer.getInteger("4ps.db.busyTimeoutMs", 5000);
+    private static final long ACQUIRE_TIMEOUT_MS = Long.getLong("4ps.db.acquireTimeoutMs", 10000L);
+    private static final int STATEMENT_CACHE_SIZE = Integer.getInteger("4ps.db.statementCacheSize", 32);
+    private static final int ID_BLOCK_SIZE = Integer.getInteger("4ps.db.idBlockSize", 64);
+    private static final int DISPLAY_BLOCK_ROWS = 500;
 
-    public static void connectDB() {
+    // --- Optional write-behind for addRecord (-D4ps.writeBehind=true) ---
+    private static final boolean WRITE_BEHIND = Boolean.getBoolean("4ps.writeBehind");
+    private static final int WRITE_BEHIND_CAPACITY = Integer.getInteger("4ps.writeBehind.capacity", 1000);
+    private static final long WRITE_BEHIND_FLUSH_MS = Long.getLong("4ps.writeBehind.flushMs", 50L);
+    private static final int WRITE_BEHIND_BATCH_ROWS = Integer.getInteger("4ps.writeBehind.batchRows", 200);
+
+    // --- Optional sharding by user_id across several files (-D4ps.db.shards=N; shard k > 0 is <name>-shard<k>.db) ---
+    private static final int SHARDS = Math.max(1, Integer.getInteger("4ps.db.shards", 1));
+
+    // --- Scheduled online backup + maintenance (-D4ps.backup.dir=<dir>) ---
+    private static final String BACKUP_DIR = System.getProperty("4ps.backup.dir");
+    private static final long BACKUP_INTERVAL_MINUTES = Long.getLong("4ps.backup.intervalMinutes", 60L);
+    public static final int BACKUP_KEEP = Integer.getInteger("4ps.backup.keep", 7);
+
+    // --- Optional change journal of every committed write, for incremental exports (-D4ps.journal.dir=<dir>) ---
+    private static final String JOURNAL_DIR = System.getProperty("4ps.journal.dir");
+    private static final long JOURNAL_SEGMENT_MB = Long.getLong("4ps.journal.segmentMb", 64L);
+    private static final int JOURNAL_RETAIN_SEGMENTS = Integer.getInteger("4ps.journal.retainSegments", 16);
+    private static final long JOURNAL_RETAIN_HOURS = Long.getLong("4ps.journal.retainHours", 168L);
+    
+    // --- Reference-data caches for program and user rows (invalidated by addRecord writes) ---
+    public static final String SQL_PROGRAM_BY_ID = "SELECT program_id, program_name, description FROM program WHERE program_id = ?";
+    public static final String SQL_USER_BY_ID = "SELECT user_id, name, gender, year_level, email FROM user WHERE user_id = ?";
+    private static final long CACHE_TTL_MS = Long.getLong("4ps.cache.ttlMs", 300000L);
+    private static final RowCache programCache = new RowCache("program", Integer.getInteger("4ps.cache.programs", 1000), CACHE_TTL_MS);
+    private static final RowCache userCache = new RowCache("user", Integer.getInteger("4ps.cache.users", 10000), CACHE_TTL_MS);
+    private static final Pattern WRITE_TARGET = Pattern.compile(
+            "^\\s*(insert(?:\\s+or\\s+\\w+)?\\s+into|update|delete\\s+from)\\s+(\\w+)\\s*(?:\\(\\s*(\\w+))?", Pattern.CASE_INSENSITIVE);
+    private static final Pattern WHERE_SINGLE_KEY = Pattern.compile("where\\s+(\\w+)\\s*=\\s*\\?\\s*$", Pattern.CASE_INSENSITIVE);
+    
+    private static final RowMapper<Map<String, Object>> ROW_AS_MAP = RowMapper.asMap();
+
+    private static volatile ConnectionPool pool = null;
+    private static volatile ConnectionPool[] shardPools = null;     // shardPools[0] is pool
+    private static volatile ShardRouter router = null;              // null with a single shard
+    private static volatile ExecutorService scatterPool = null;
+    private static volatile IdAllocator ids = null;
+    private static volatile WriteBehindQueue writeBehind = null;
+    private static volatile ChangeJournal journal = null;
+    private static boolean shutdownHookAdded = false;
+    private static volatile int upgradedFrom = -1;
+
+    public static synchronized void connectDB() {
         try {
-            if (conn == null || conn.isClosed()) {
+            if (pool == null) {
                 // Must load the SQLite JDBC driver
                 Class.forName("org.sqlite.JDBC"); 
-                conn = DriverManager.getConnection(URL);
-                System.out.println("✅ Database connection established to 4psDB.db.");
+                ConnectionPool[] newPools = new ConnectionPool[SHARDS];
+                upgradedFrom = SchemaMigrator.latestVersion();
+                try {
+                    for (int shard = 0; shard < SHARDS; shard++) {
+                        newPools[shard] = openShard(shard);
+                    }
+                } catch (SQLException e) {
+                    for (ConnectionPool p : newPools) {
+                        if (p != null) p.close();
+                    }
+                    throw e;
+                }
+                ConnectionPool newPool = newPools[0];
+                IdAllocator newIds = new IdAllocator(newPool, Arrays.asList(newPools), ID_BLOCK_SIZE);
+                newIds.init();
+                pool = newPool;
+                shardPools = newPools;
+                ids = newIds;
+                if (SHARDS > 1) {
+                    router = new ShardRouter(SHARDS);
+                    scatterPool = Executors.newFixedThreadPool(SHARDS, new ScatterThreadFactory());
+                }
+                DbMetrics.get().start();
+                boolean writeBehindOn = WRITE_BEHIND && SHARDS == 1;
+                if (WRITE_BEHIND && !writeBehindOn) {
+                    System.out.println("⚠️ Write-behind is not available with more than one shard; writes commit synchronously.");
+                }
+                if (JOURNAL_DIR != null) {
+                    openJournal();
+                }
+                if (writeBehindOn) {
+                    startWriteBehind(newPool);
+                }
+                if (BACKUP_DIR != null) {
+                    DbMaintenance.start(Paths.get(BACKUP_DIR), BACKUP_INTERVAL_MINUTES, BACKUP_KEEP);
+                }
+                System.out.println("✅ Database connection established to " + getDatabasePath()
+                        + (SHARDS > 1 ? " and " + (SHARDS - 1) + " more shard file(s), sharded by user_id" : "")
+                        + " (WAL, 1 writer + " + READERS + " readers" + (SHARDS > 1 ? " per shard" : "")
+                        + (writeBehindOn ? ", write-behind" : "") + (journal != null ? ", change journal in " + JOURNAL_DIR : "")
+                        + (BACKUP_DIR != null ? ", backups to " + BACKUP_DIR + " every " + BACKUP_INTERVAL_MINUTES + " min" : "") + ").");
             }
         } catch (ClassNotFoundException e) {
             System.err.println("❌ SQLite JDBC Driver Missing: Make sure the 'sqlite-jdbc-xxx.jar' file is in your project build path.");
@@ -29,33 +142,655 @@ public class config {
         }
     }
 
-    public static Object getConnection() {
-        throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
+    private static ConnectionPool openShard(int shard) throws SQLException {
+        ConnectionPool p = new ConnectionPool(shardUrl(shard), READERS, BUSY_TIMEOUT_MS, ACQUIRE_TIMEOUT_MS, STATEMENT_CACHE_SIZE);
+        try {
+            p.start();
+            try (Connection conn = p.acquireWriter()) {
+                int from = SchemaMigrator.migrate(conn);
+                upgradedFrom = Math.min(upgradedFrom, from);
+                if (from < SchemaMigrator.latestVersion()) {
+                    System.out.println("✅ Database schema upgraded from version " + from + " to " + SchemaMigrator.latestVersion()
+                            + (SHARDS > 1 ? " in " + getDatabasePath(shard) : "") + ".");
+                }
+                checkShardLayout(conn, shard);
+            }
+        } catch (SQLException e) {
+            p.close();
+            throw e;
+        }
+        return p;
+    }
+
+    // --- Each shard file records its place; opening it with another shard count would look users up in the wrong file ---
+    private static void checkShardLayout(Connection conn, int shard) throws SQLException {
+        try (Statement st = conn.createStatement()) {
+            boolean recorded;
+            try (ResultSet rs = st.executeQuery("SELECT 1 FROM sqlite_master WHERE type = 'table' AND name = 'shard_info'")) {
+                recorded = rs.next();
+            }
+            if (recorded) {
+                try (ResultSet rs = st.executeQuery("SELECT shard_index, shard_count FROM shard_info")) {
+                    if (rs.next() && (rs.getInt(1) != shard || rs.getInt(2) != SHARDS)) {
+                        throw new SQLException(getDatabasePath(shard) + " is shard " + rs.getInt(1) + " of " + rs.getInt(2)
+                                + ", but it was opened as shard " + shard + " of " + SHARDS + " (-D4ps.db.shards)");
+                    }
+                }
+                return;
+            }
+            if (SHARDS == 1) return;
+            try (ResultSet rs = st.executeQuery("SELECT 1 FROM user LIMIT 1")) {
+                if (rs.next()) {
+                    throw new SQLException(getDatabasePath(shard) + " already holds an unsharded database; start it without -D4ps.db.shards");
+                }
+            }
+            st.execute("CREATE TABLE shard_info (shard_index INTEGER NOT NULL, shard_count INTEGER NOT NULL)");
+            st.execute("INSERT INTO shard_info(shard_index, shard_count) VALUES (" + shard + ", " + SHARDS + ")");
+        }
+    }
+
+    // --- Shard 0 is the configured file; shard k is the same name with -shard<k> before the extension ---
+    private static String shardUrl(int shard) {
+        if (shard == 0) return URL;
+        String path = URL.substring(URL_PREFIX.length());
+        int dot = path.lastIndexOf('.');
+        int slash = Math.max(path.lastIndexOf('/'), path.lastIndexOf('\\'));
+        return URL_PREFIX + (dot > slash ? path.substring(0, dot) + "-shard" + shard + path.substring(dot) : path + "-shard" + shard);
+    }
+
+    private static final class ScatterThreadFactory implements ThreadFactory {
+        private final AtomicInteger n = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "4ps-shard-query-" + n.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }
+    }
+
+    private static void openJournal() {
+        try {
+            journal = ChangeJournal.open(Paths.get(JOURNAL_DIR), JOURNAL_SEGMENT_MB << 20, JOURNAL_RETAIN_SEGMENTS,
+                    TimeUnit.HOURS.toMillis(JOURNAL_RETAIN_HOURS));
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("❌ Change journal could not be opened in " + JOURNAL_DIR + "; changes are NOT journaled: " + e.getMessage());
+        }
+    }
+
+    private static void startWriteBehind(ConnectionPool p) {
+        WriteBehindQueue q = new WriteBehindQueue(p, WRITE_BEHIND_CAPACITY, WRITE_BEHIND_FLUSH_MS, WRITE_BEHIND_BATCH_ROWS, ACQUIRE_TIMEOUT_MS);
+        q.start();
+        writeBehind = q;
+        if (!shutdownHookAdded) {
+            // Queued writes must reach the database even when the program ends through System.exit.
+            Runtime.getRuntime().addShutdownHook(new Thread(config::closeDB, "4ps-db-shutdown"));
+            shutdownHookAdded = true;
+        }
+    }
+
+    // --- Pooled entry points: close() the returned Connection to hand it back (shard 0 when sharded) ---
+    public static Connection getConnection() throws SQLException {
+        return requirePool().acquireReader();
+    }
+
+    public static Connection getWriteConnection() throws SQLException {
+        return requirePool().acquireWriter();
+    }
+
+    // --- A query-only connection of its own (not pooled); the caller closes it ---
+    public static Connection openDedicatedReader() throws SQLException {
+        return requirePool().openDedicatedReader();
+    }
+
+    // --- An unpooled connection for DbMaintenance.backup (VACUUM INTO); never write through it ---
+    static Connection openBackupConnection() throws SQLException {
+        return requirePool().openBackupConnection();
+    }
+
+    public static String getDatabasePath() {
+        return URL.substring(URL_PREFIX.length());
+    }
+
+    public static ConnectionPool.Stats getPoolStats() {
+        ConnectionPool p = pool;
+        return p == null ? null : p.getStats();
+    }
+
+    /**
+     * The lowest schema version any shard was migrated from by the last
+     * {@link #connectDB()}; {@link SchemaMigrator#latestVersion()} if none
+     * needed migrating, -1 before the first connect.
+     */
+    public static int getUpgradedFromVersion() {
+        return upgradedFrom;
+    }
+
+    // ----------------------------------------------------
+    // --- SHARDS (a single shard, number 0, unless -D4ps.db.shards is set) ---
+    // ----------------------------------------------------
+
+    public static int getShardCount() {
+        return SHARDS;
+    }
+
+    /** The shard holding a beneficiary's user, participation and attendance rows. */
+    public static int shardOf(int userId) {
+        return SHARDS == 1 ? 0 : ShardRouter.shardOf(userId, SHARDS);
+    }
+
+    // --- Per-shard connections for jobs that work through the tables shard by shard ---
+    public static Connection getConnection(int shard) throws SQLException {
+        return requireShard(shard).acquireReader();
+    }
+
+    public static Connection getWriteConnection(int shard) throws SQLException {
+        return requireShard(shard).acquireWriter();
+    }
+
+    public static Connection openDedicatedReader(int shard) throws SQLException {
+        return requireShard(shard).openDedicatedReader();
+    }
+
+    static Connection openBackupConnection(int shard) throws SQLException {
+        return requireShard(shard).openBackupConnection();
+    }
+
+    public static String getDatabasePath(int shard) {
+        return shardUrl(shard).substring(URL_PREFIX.length());
+    }
+
+    public static ConnectionPool.Stats getPoolStats(int shard) {
+        ConnectionPool[] p = shardPools;
+        return p == null || shard < 0 || shard >= p.length ? null : p[shard].getStats();
+    }
+
+    private static ConnectionPool requireShard(int shard) throws SQLException {
+        ConnectionPool[] p = shardPools;
+        if (p == null) {
+            throw new SQLException("Database is not connected. Call config.connectDB() first.");
+        }
+        if (shard < 0 || shard >= p.length) {
+            throw new SQLException("There is no shard " + shard + " (" + p.length + " configured)");
+        }
+        return p[shard];
+    }
+
+    // --- The reader a query runs on: its beneficiary's shard, shard 0, or null when it must go to every shard ---
+    private static Connection readerFor(String sql, Object[] params) throws SQLException {
+        ShardRouter r = router;
+        if (r == null) {
+            return getConnection();
+        }
+        ShardRouter.Plan plan = r.plan(sql);
+        switch (plan.target) {
+            case HOME: return getConnection(0);
+            case KEYED: return getConnection(r.shardOf(plan, params));
+            case SCATTER: return null;
+            default: throw unroutable(plan, sql);
+        }
+    }
+
+    // --- One write on the writer of the shard(s) the statement routes to ---
+    private static int executeUpdate(String sql, Object[] params) throws SQLException {
+        ShardRouter r = router;
+        if (r == null) {
+            return executeUpdate(requirePool(), sql, params);
+        }
+        ShardRouter.Plan plan = r.plan(sql);
+        switch (plan.target) {
+            case HOME: return executeUpdate(requireShard(0), sql, params);
+            case KEYED: return executeUpdate(requireShard(r.shardOf(plan, params)), sql, params);
+            case BROADCAST: return broadcastUpdate(plan, sql, params);
+            default: throw unroutable(plan, sql);
+        }
+    }
+
+    private static int executeUpdate(ConnectionPool p, String sql, Object[] params) throws SQLException {
+        int rows;
+        long seq;
+        // 'try-with-resources' ensures PreparedStatement is closed and the writer handed back on exit.
+        try (Connection conn = p.acquireWriter();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            setParameters(pstmt, params);
+            rows = pstmt.executeUpdate();
+            seq = journalWrite(p, conn.getAutoCommit(), sql, params, rows);
+        }
+        syncJournal(seq);
+        return rows;
+    }
+
+    /**
+     * Applies a write on every shard: program rows (copied to each shard) and
+     * updates or deletes on sharded tables that name no user_id. The writers
+     * are taken in shard order, so two broadcasts cannot deadlock, and nothing
+     * commits unless the statement succeeded on every shard. The commits are
+     * still one per file: a crash between them leaves the change on some
+     * shards only. Returns shard 0's count for copied rows, else the total.
+     */
+    private static int broadcastUpdate(ShardRouter.Plan plan, String sql, Object[] params) throws SQLException {
+        ConnectionPool[] pools = shardPools;
+        List<Connection> held = new ArrayList<>(pools.length);
+        List<Connection> owned = new ArrayList<>(pools.length);    // transactions opened here (not the caller's)
+        boolean committed = false;
+        int first = 0;
+        int total = 0;
+        int rows;
+        long seq;
+        try {
+            for (int shard = 0; shard < pools.length; shard++) {
+                Connection conn = pools[shard].acquireWriter();
+                held.add(conn);
+                if (conn.getAutoCommit()) {
+                    conn.setAutoCommit(false);
+                    owned.add(conn);
+                }
+                try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                    setParameters(pstmt, params);
+                    int n = pstmt.executeUpdate();
+                    if (shard == 0) first = n;
+                    total += n;
+                }
+            }
+            for (Connection conn : owned) {
+                conn.commit();
+            }
+            committed = true;
+            rows = plan.replicated ? first : total;
+            // Journaled once, on shard 0's writer: now, or when the caller's own transaction there commits.
+            seq = journalWrite(pools[0], owned.contains(held.get(0)), sql, params, rows);
+        } finally {
+            for (Connection conn : owned) {
+                try {
+                    if (!committed) conn.rollback();
+                    conn.setAutoCommit(true);
+                } catch (SQLException e) { /* Ignore */ }
+            }
+            for (Connection conn : held) {
+                try { conn.close(); } catch (SQLException e) { /* Ignore */ }
+            }
+        }
+        syncJournal(seq);
+        return rows;
+    }
+
+    // ----------------------------------------------------
+    // --- CHANGE JOURNAL ---
+    // ----------------------------------------------------
+
+    // Registered after a transaction's journal records, so each commit syncs the journal once.
+    private static final Runnable SYNC_JOURNAL = () -> {
+        ChangeJournal j = journal;
+        if (j != null) j.syncAll();
+    };
+
+    /**
+     * Journals a write that changed rows, while its writer on pool 'p' is still
+     * held: at once if it has committed, else when the holder's transaction
+     * commits (dropped on rollback). Returns the sequence number to sync, or -1.
+     */
+    static long journalWrite(ConnectionPool p, boolean committed, final String sql, Object[] params, final int rows)
+            throws SQLException {
+        final ChangeJournal j = journal;
+        if (j == null || rows <= 0) return -1;
+        if (committed) {
+            return j.append(sql, params, rows);
+        }
+        final Object[] copy = params == null ? null : params.clone();
+        if (p.afterCommit(() -> j.append(sql, copy, rows))) {
+            p.afterCommit(SYNC_JOURNAL);
+            return -1;
+        }
+        return j.append(sql, params, rows);
+    }
+
+    private static void syncJournal(long seq) {
+        ChangeJournal j = journal;
+        if (j != null && seq >= 0) j.sync(seq);
+    }
+
+    /**
+     * Journals a write the caller made itself on shard 'shard''s writer (bulk
+     * loads, repairs), while still holding that writer: it is recorded when
+     * the caller's transaction commits, or at once outside a transaction.
+     */
+    public static void recordChange(int shard, String sql, Object[] params, int rows) throws SQLException {
+        if (journal == null || rows <= 0) return;
+        ConnectionPool p = requireShard(shard);
+        long seq;
+        try (Connection conn = p.acquireWriter()) {
+            seq = journalWrite(p, conn.getAutoCommit(), sql, params, rows);
+        }
+        syncJournal(seq);
+    }
+
+    /** The change journal's directory, or null when journaling is off. */
+    public static Path getJournalDirectory() {
+        ChangeJournal j = journal;
+        return j == null ? null : j.getDirectory();
+    }
+
+    public static String getJournalStats() {
+        ChangeJournal j = journal;
+        return j == null ? null : j.toString();
+    }
+
+    private static SQLException unroutable(ShardRouter.Plan plan, String sql) {
+        return new SQLException("Cannot run on a sharded database: "
+                + (plan.reason != null ? plan.reason : "not a query") + " (" + sql + ")");
+    }
+
+    /**
+     * Runs a query on every shard at once and merges the rows: sorted again
+     * on the ORDER BY columns, then cut to the LIMIT. Each shard returns its
+     * rows already in order (and at most LIMIT of them), so the sort only
+     * merges runs.
+     */
+    private static ResultSet scatter(final String sql, final Object[] params) throws SQLException {
+        final ShardRouter.Plan plan = router.plan(sql);
+        final long limit = plan.limit(params);
+        List<ShardRows> parts = onEveryShard(shard -> readShard(shard, sql, params, limit));
+        String[] labels = parts.get(0).labels;
+        List<Object[]> rows = new ArrayList<>();
+        for (ShardRows part : parts) {
+            rows.addAll(part.rows);
+        }
+        if (plan.orderColumns.length > 0) {
+            rows.sort(plan.ordering(labels));
+        }
+        if (limit >= 0 && rows.size() > limit) {
+            rows = new ArrayList<>(rows.subList(0, (int) limit));
+        }
+        return MemoryResultSet.of(labels, rows);
+    }
+
+    private static ShardRows readShard(int shard, String sql, Object[] params, long limit) throws SQLException {
+        try (Connection conn = getConnection(shard);
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            setParameters(pstmt, params);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                ResultSetMetaData md = rs.getMetaData();
+                String[] labels = new String[md.getColumnCount()];
+                for (int i = 0; i < labels.length; i++) {
+                    labels[i] = md.getColumnLabel(i + 1);
+                }
+                List<Object[]> rows = new ArrayList<>();
+                while ((limit < 0 || rows.size() < limit) && rs.next()) {
+                    Object[] row = new Object[labels.length];
+                    for (int i = 0; i < row.length; i++) {
+                        row[i] = rs.getObject(i + 1);
+                    }
+                    rows.add(row);
+                }
+                return new ShardRows(labels, rows);
+            }
+        }
+    }
+
+    private static final class ShardRows {
+        final String[] labels;
+        final List<Object[]> rows;
+
+        ShardRows(String[] labels, List<Object[]> rows) {
+            this.labels = labels;
+            this.rows = rows;
+        }
+    }
+
+    private interface ShardTask<T> {
+        T run(int shard) throws SQLException;
+    }
+
+    // --- Runs the task once per shard, in parallel on the scatter pool; waits for all of them, even after a failure ---
+    private static <T> List<T> onEveryShard(final ShardTask<T> task) throws SQLException {
+        List<T> out = new ArrayList<>(SHARDS);
+        ExecutorService exec = scatterPool;
+        if (exec == null) {
+            for (int shard = 0; shard < SHARDS; shard++) {
+                out.add(task.run(shard));
+            }
+            return out;
+        }
+        List<Future<T>> futures = new ArrayList<>(SHARDS);
+        for (int shard = 0; shard < SHARDS; shard++) {
+            final int k = shard;
+            futures.add(exec.submit(() -> task.run(k)));
+        }
+        SQLException failure = null;
+        for (Future<T> f : futures) {
+            try {
+                out.add(f.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                for (Future<T> other : futures) other.cancel(true);
+                throw new SQLException("Interrupted while querying the shards", e);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (failure == null) {
+                    failure = cause instanceof SQLException ? (SQLException) cause : new SQLException("Shard query failed: " + cause, cause);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return out;
+    }
+
+    // --- Warns about every statement whose query plan contains a full table scan ---
+    public static int verifyQueryPlans(Collection<String> sqls) {
+        return verifyQueryPlans(sqls, Collections.<String>emptySet());
+    }
+
+    // --- Same, also warning when one of the keyset-paged statements would sort its rows instead of reading them in order ---
+    public static int verifyQueryPlans(Collection<String> sqls, Collection<String> paged) {
+        try (Connection conn = getConnection()) {
+            List<String> scans = SchemaMigrator.findFullScans(conn, sqls, paged);
+            for (String scan : scans) {
+                System.out.println("⚠️ Query plan warning: " + scan);
+            }
+            return scans.size();
+        } catch (SQLException e) {
+            System.err.println("❌ Could not verify query plans: " + e.getMessage());
+            return -1;
+        }
+    }
+
+    private static ConnectionPool requirePool() throws SQLException {
+        ConnectionPool p = pool;
+        if (p == null) {
+            throw new SQLException("Database is not connected. Call config.connectDB() first.");
+        }
+        return p;
     }
 
     // --- Core method for INSERT, UPDATE, DELETE ---
     public void addRecord(String sql, Object... params) {
-        // 'try-with-resources' ensures PreparedStatement is closed on exit, releasing the lock.
-        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            setParameters(pstmt, params);
-            int rowsAffected = pstmt.executeUpdate();
-            if (rowsAffected > 0) {
-                // Operation successful.
-            } else if (sql.toLowerCase().startsWith("update") || sql.toLowerCase().startsWith("delete")) {
+        addRecord(CONSOLE_REPORTER, sql, params);
+    }
+
+    // --- Same, reporting the outcome to 'callback'; with write-behind on it is queued and this returns at once ---
+    public void addRecord(WriteCallback callback, String sql, Object... params) {
+        WriteCallback cb = invalidatingCaches(callback);
+        WriteBehindQueue q = writeBehind;
+        if (q != null) {
+            q.submit(sql, params == null ? null : params.clone(), cb);
+            return;
+        }
+
+        long start = System.nanoTime();
+        int rowsAffected;
+        try {
+            rowsAffected = executeUpdate(sql, params);
+            DbMetrics.get().recordStatement(sql, System.nanoTime() - start, rowsAffected);
+        } catch (SQLException e) {
+            cb.onFailure(sql, params, DbMetrics.get().recordError(sql, System.nanoTime() - start, e), e);
+            return;
+        }
+        cb.onCommit(sql, params, rowsAffected);
+    }
+
+    // --- Blocks until every queued write-behind write has been committed (no-op when write-behind is off) ---
+    public static void flushWrites() {
+        WriteBehindQueue q = writeBehind;
+        if (q != null) {
+            q.flush();
+        }
+    }
+
+    public static String getWriteBehindStats() {
+        WriteBehindQueue q = writeBehind;
+        return q == null ? null : q.toString();
+    }
+
+    static WriteBehindQueue getWriteBehind() {
+        return writeBehind;
+    }
+
+    public static boolean isWriteBehindEnabled() {
+        return writeBehind != null;
+    }
+
+    // --- The operator-facing text for a failed write, as addRecord has always reported it ---
+    public static String describeWriteError(String sql, DbMetrics.ErrorCategory category, SQLException e) {
+        // FIX: Enhanced Error Checking for common SQLite constraint failures
+        switch (category) {
+            case BUSY:
+                return "SQL ADD/UPDATE/DELETE Error: The database file is locked (SQLITE_BUSY). Ensure all ResultSets from prior SELECTs are closed.";
+            case UNIQUE:
+                return "Error: A unique entry (like an Email or combined primary key) already exists. Details: " + e.getMessage();
+            case FOREIGN_KEY:
+                return "Error: Foreign key constraint failed. Check if the ID of the parent record exists. Details: " + e.getMessage();
+            default:
+                return "SQL ADD/UPDATE/DELETE Error (" + sql + ") : " + e.getMessage();
+        }
+    }
+
+    public static WriteCallback consoleReporter() {
+        return CONSOLE_REPORTER;
+    }
+
+    // --- The console messages addRecord has always printed ---
+    private static final WriteCallback CONSOLE_REPORTER = new WriteCallback() {
+        @Override
+        public void onCommit(String sql, Object[] params, int rowsAffected) {
+            if (rowsAffected == 0 && (sql.toLowerCase().startsWith("update") || sql.toLowerCase().startsWith("delete"))) {
                  // Only show a warning for 0 rows on update/delete
                  System.out.println("⚠️ Record operation completed, but 0 rows affected. Check IDs or foreign keys.");
             }
-        } catch (SQLException e) {
-            // FIX: Enhanced Error Checking for common SQLite constraint failures
-            if (e.getMessage().contains("SQLITE_BUSY")) {
-                 System.out.println("❌ SQL ADD/UPDATE/DELETE Error: The database file is locked (SQLITE_BUSY). Ensure all ResultSets from prior SELECTs are closed.");
-            } else if (e.getMessage().contains("UNIQUE constraint failed")) {
-                System.out.println("❌ Error: A unique entry (like an Email or combined primary key) already exists. Details: " + e.getMessage());
-            } else if (e.getMessage().contains("FOREIGN KEY constraint failed")) {
-                 System.out.println("❌ Error: Foreign key constraint failed. Check if the ID of the parent record exists. Details: " + e.getMessage());
-            } else {
-                System.err.println("❌ SQL ADD/UPDATE/DELETE Error (" + sql + ") : " + e.getMessage());
+        }
+
+        @Override
+        public void onFailure(String sql, Object[] params, DbMetrics.ErrorCategory category, SQLException e) {
+            (category == DbMetrics.ErrorCategory.OTHER ? System.err : System.out).println("❌ " + describeWriteError(sql, category, e));
+        }
+    };
+
+    private static WriteCallback invalidatingCaches(final WriteCallback callback) {
+        return new WriteCallback() {
+            @Override
+            public void onCommit(String sql, Object[] params, int rowsAffected) {
+                if (rowsAffected > 0) {
+                    invalidateCaches(sql, params);
+                    // Inside a caller's transaction the row can be cached again before the commit (read back through
+                    // the held writer, or the old row by a reader), so the real commit drops it once more.
+                    final Object[] copy = params == null ? null : params.clone();
+                    afterCommit(() -> invalidateCaches(sql, copy));
+                }
+                callback.onCommit(sql, params, rowsAffected);
             }
+
+            @Override
+            public void onFailure(String sql, Object[] params, DbMetrics.ErrorCategory category, SQLException e) {
+                callback.onFailure(sql, params, category, e);
+            }
+        };
+    }
+
+    // ----------------------------------------------------
+    // --- REFERENCE DATA (cached) ---
+    // ----------------------------------------------------
+
+    // --- Returns the program row as column -> value, or null if there is no such program ---
+    public Map<String, Object> findProgram(int programId) throws SQLException {
+        return programCache.get(programId, id -> loadRow(SQL_PROGRAM_BY_ID, id));
+    }
+
+    public Map<String, Object> findUser(int userId) throws SQLException {
+        return userCache.get(userId, id -> loadRow(SQL_USER_BY_ID, id));
+    }
+
+    public boolean programExists(int programId) throws SQLException {
+        return findProgram(programId) != null;
+    }
+
+    public boolean userExists(int userId) throws SQLException {
+        return findUser(userId) != null;
+    }
+
+    public static String getCacheStats() {
+        return programCache + "\n" + userCache;
+    }
+
+    private static Map<String, Object> loadRow(String sql, int id) throws SQLException {
+        try (Cursor c = Cursor.open(sql, new Object[] { id }, false)) {
+            return c.next() ? ROW_AS_MAP.map(c.rs) : null;
+        }
+    }
+
+    /**
+     * Drops every cached program and user row. For callers whose own
+     * transaction rolled back: rows it read back before the rollback may be
+     * cached although they no longer exist.
+     */
+    public static void invalidateRowCaches() {
+        programCache.invalidateAll();
+        userCache.invalidateAll();
+    }
+
+    // --- Runs 'action' when this thread's open writer transaction commits, on each shard it holds one on ---
+    private static void afterCommit(Runnable action) {
+        ConnectionPool[] pools = shardPools;
+        if (pools == null) return;
+        for (ConnectionPool p : pools) {
+            try {
+                p.afterCommit(action);
+            } catch (SQLException e) { /* Ignore: no usable transaction there, so nothing waits to commit */ }
+        }
+    }
+
+    // --- Drops cached program/user rows touched by a write; falls back to clearing the whole cache ---
+    private static void invalidateCaches(String sql, Object[] params) {
+        Matcher m = WRITE_TARGET.matcher(sql);
+        if (!m.find()) return;
+        String table = m.group(2).toLowerCase();
+        RowCache cache;
+        String key;
+        if ("program".equals(table)) {
+            cache = programCache;
+            key = "program_id";
+        } else if ("user".equals(table)) {
+            cache = userCache;
+            key = "user_id";
+        } else {
+            return;
+        }
+
+        Object id = null;
+        if (m.group(1).toLowerCase().startsWith("insert")) {
+            if (key.equalsIgnoreCase(m.group(3)) && params != null && params.length > 0) {
+                id = params[0];
+            }
+        } else {
+            Matcher where = WHERE_SINGLE_KEY.matcher(sql);
+            if (where.find() && key.equalsIgnoreCase(where.group(1)) && params != null && params.length > 0) {
+                id = params[params.length - 1];
+            }
+        }
+        if (id instanceof Number) {
+            cache.invalidate(((Number) id).intValue());
+        } else {
+            cache.invalidateAll();
         }
     }
 
@@ -75,67 +810,308 @@ public class config {
 
     // --- Core method for SELECT ---
     public ResultSet getRecords(String sql, Object... params) {
-        PreparedStatement pstmt = null; // Declare outside try-catch to allow cleanup
+        long start = System.nanoTime();
+        Connection conn = null; // Declare outside try-catch to allow cleanup
+        PreparedStatement pstmt = null;
         try {
+            conn = readerFor(sql, params);
+            if (conn == null) {
+                ResultSet merged = scatter(sql, params);
+                DbMetrics.get().recordStatement(sql, System.nanoTime() - start, 0);
+                return closingResultSet(sql, merged, null, null);
+            }
             pstmt = conn.prepareStatement(sql);
             setParameters(pstmt, params);
             
             // The calling code (AuthManager/RecordManager) MUST close the returned 
-            // ResultSet using try-with-resources to release the database lock!
-            return pstmt.executeQuery();
+            // ResultSet using try-with-resources to release the statement and the pooled connection!
+            ResultSet rs = pstmt.executeQuery();
+            DbMetrics.get().recordStatement(sql, System.nanoTime() - start, 0);
+            return closingResultSet(sql, rs, pstmt, conn);
             
         } catch (SQLException e) {
+            DbMetrics.get().recordError(sql, System.nanoTime() - start, e);
             System.err.println("❌ SQL SELECT Error (" + sql + ") : " + e.getMessage());
-            // If an error occurs, we must ensure the PreparedStatement is closed immediately.
+            // If an error occurs, we must ensure the PreparedStatement and connection are released immediately.
             if (pstmt != null) {
                 try { pstmt.close(); } catch (SQLException closeE) { /* Ignore */ }
             }
+            if (conn != null) {
+                try { conn.close(); } catch (SQLException closeE) { /* Ignore */ }
+            }
             return null;
         }
     }
 
-    public int getNextId(String tableName, String idColumn) {
-        String sql = "SELECT MAX(" + idColumn + ") AS max_id FROM " + tableName;
-        // Use try-with-resources for PreparedStatement and ResultSet to ensure immediate closing
-        try (PreparedStatement pstmt = conn.prepareStatement(sql);
-             ResultSet rs = pstmt.executeQuery()) {
+    // --- Wraps a ResultSet so that closing it also closes its statement, returns the connection and counts rows ---
+    private static ResultSet closingResultSet(final String sql, final ResultSet rs, final PreparedStatement pstmt, final Connection conn) {
+        final long[] rows = new long[1];
+        final boolean[] closed = new boolean[1];
+        final long cursor = OpenCursors.get().opened(sql);
+        return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(), new Class<?>[] { ResultSet.class },
+                (proxy, method, args) -> {
+                    String name = method.getName();
+                    if ("close".equals(name)) {
+                        if (closed[0]) return null;
+                        closed[0] = true;
+                        OpenCursors.get().closed(cursor);
+                        DbMetrics.get().recordRows(sql, rows[0]);
+                        try {
+                            rs.close();
+                        } finally {
+                            try {
+                                if (pstmt != null) pstmt.close();
+                            } finally {
+                                if (conn != null) conn.close();
+                            }
+                        }
+                        return null;
+                    }
+                    try {
+                        Object result = method.invoke(rs, args);
+                        if ("next".equals(name) && Boolean.TRUE.equals(result)) {
+                            rows[0]++;
+                        }
+                        return result;
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+    }
+
+    // ----------------------------------------------------
+    // --- MAPPED QUERIES (the cursor is closed before these return) ---
+    // ----------------------------------------------------
+
+    /** The first row mapped, or null if the query returns none. */
+    public <T> T queryOne(String sql, RowMapper<T> mapper, Object... params) throws SQLException {
+        try (Cursor c = Cursor.open(sql, params, false)) {
+            return c.next() ? mapper.map(c.rs) : null;
+        }
+    }
+
+    /** Every row mapped; the mapper must return a new object per row. */
+    public <T> List<T> queryList(String sql, RowMapper<T> mapper, Object... params) throws SQLException {
+        List<T> out = new ArrayList<>();
+        try (Cursor c = Cursor.open(sql, params, false)) {
+            while (c.next()) {
+                out.add(mapper.map(c.rs));
+            }
+        }
+        return out;
+    }
+
+    /** Hands every row to the handler; returns how many there were. */
+    public long queryForEach(String sql, RowHandler handler, Object... params) throws SQLException {
+        try (Cursor c = Cursor.open(sql, params, false)) {
+            while (c.next()) {
+                handler.handle(c.rs);
+            }
+            return c.rows;
+        }
+    }
+
+    /** True if the query returns a row. Build it with {@link #existsSql}, so no columns are read past the first match. */
+    public boolean exists(String sql, Object... params) throws SQLException {
+        try (Cursor c = Cursor.open(sql, params, false)) {
+            return c.next();
+        }
+    }
+
+    public static String existsSql(String table, String where) {
+        return "SELECT 1 FROM " + table + " WHERE " + where + " LIMIT 1";
+    }
+
+    /**
+     * Runs the query unchanged on every shard, in parallel, and returns all
+     * the mapped rows, shard 0's first. For per-shard partials the caller
+     * adds up itself (summary tables, counts); with one shard it is queryList.
+     */
+    public <T> List<T> queryEveryShard(final String sql, final RowMapper<T> mapper, final Object... params) throws SQLException {
+        long start = System.nanoTime();
+        List<T> out = new ArrayList<>();
+        try {
+            for (List<T> part : onEveryShard(shard -> mapShard(shard, sql, mapper, params))) {
+                out.addAll(part);
+            }
+        } catch (SQLException e) {
+            DbMetrics.get().recordError(sql, System.nanoTime() - start, e);
+            throw e;
+        }
+        DbMetrics.get().recordStatement(sql, System.nanoTime() - start, 0);
+        DbMetrics.get().recordRows(sql, out.size());
+        return out;
+    }
+
+    private static <T> List<T> mapShard(int shard, String sql, RowMapper<T> mapper, Object[] params) throws SQLException {
+        List<T> out = new ArrayList<>();
+        try (Connection conn = getConnection(shard);
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            setParameters(pstmt, params);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    out.add(mapper.map(rs));
+                }
+            }
+        }
+        return out;
+    }
+
+    /**
+     * The rows as a lazy stream. The cursor closes once the stream is read to
+     * the end or closed; open it in try-with-resources when it can stop early
+     * (findFirst, limit, an exception). An SQLException while reading is
+     * rethrown as IllegalStateException.
+     */
+    public <T> Stream<T> stream(final String sql, final RowMapper<T> mapper, Object... params) throws SQLException {
+        final Cursor c = Cursor.open(sql, params, true);
+        Spliterator<T> rows = new Spliterators.AbstractSpliterator<T>(Long.MAX_VALUE, Spliterator.ORDERED) {
+            @Override
+            public boolean tryAdvance(Consumer<? super T> action) {
+                if (c.closed) return false;
+                try {
+                    if (!c.next()) {
+                        c.close();
+                        return false;
+                    }
+                    action.accept(mapper.map(c.rs));
+                    return true;
+                } catch (SQLException e) {
+                    c.close();
+                    throw new IllegalStateException("Query failed: " + sql, e);
+                }
+            }
+        };
+        return StreamSupport.stream(rows, false).onClose(c::close);
+    }
+
+    // --- Cursors from getRecords/stream that were never closed; a leak keeps its pooled connection forever ---
+    public static int getOpenCursorCount() {
+        return OpenCursors.get().count();
+    }
+
+    public static List<String> describeOpenCursors() {
+        return OpenCursors.get().describe();
+    }
+
+    // --- A statement, its pooled connection and its ResultSet, released together (rows merged from every shard have neither) ---
+    private static final class Cursor implements AutoCloseable {
+        final String sql;
+        final Connection conn;
+        final PreparedStatement pstmt;
+        final ResultSet rs;
+        final long tracked;     // OpenCursors id, or -1 for cursors that cannot outlive the call
+        long rows;
+        boolean closed;
+
+        private Cursor(String sql, Connection conn, PreparedStatement pstmt, ResultSet rs, long tracked) {
+            this.sql = sql;
+            this.conn = conn;
+            this.pstmt = pstmt;
+            this.rs = rs;
+            this.tracked = tracked;
+        }
+
+        static Cursor open(String sql, Object[] params, boolean track) throws SQLException {
+            long start = System.nanoTime();
+            Connection conn = readerFor(sql, params);
+            if (conn == null) {
+                ResultSet merged;
+                try {
+                    merged = scatter(sql, params);
+                } catch (SQLException e) {
+                    DbMetrics.get().recordError(sql, System.nanoTime() - start, e);
+                    throw e;
+                }
+                DbMetrics.get().recordStatement(sql, System.nanoTime() - start, 0);
+                return new Cursor(sql, null, null, merged, track ? OpenCursors.get().opened(sql) : -1);
+            }
+            PreparedStatement pstmt = null;
+            try {
+                pstmt = conn.prepareStatement(sql);
+                setParameters(pstmt, params);
+                ResultSet rs = pstmt.executeQuery();
+                DbMetrics.get().recordStatement(sql, System.nanoTime() - start, 0);
+                return new Cursor(sql, conn, pstmt, rs, track ? OpenCursors.get().opened(sql) : -1);
+            } catch (SQLException e) {
+                DbMetrics.get().recordError(sql, System.nanoTime() - start, e);
+                if (pstmt != null) {
+                    try { pstmt.close(); } catch (SQLException closeE) { /* Ignore */ }
+                }
+                try { conn.close(); } catch (SQLException closeE) { /* Ignore */ }
+                throw e;
+            }
+        }
+
+        boolean next() throws SQLException {
             if (rs.next()) {
-                return rs.getInt("max_id") + 1;
+                rows++;
+                return true;
             }
+            return false;
+        }
+
+        @Override
+        public void close() {
+            if (closed) return;
+            closed = true;
+            if (tracked >= 0) {
+                OpenCursors.get().closed(tracked);
+            }
+            DbMetrics.get().recordRows(sql, rows);
+            try { rs.close(); } catch (SQLException e) { /* Ignore */ }
+            if (pstmt != null) {
+                try { pstmt.close(); } catch (SQLException e) { /* Ignore */ }
+            }
+            if (conn != null) {
+                try { conn.close(); } catch (SQLException e) { /* Ignore */ }
+            }
+        }
+    }
+
+    // --- IDs come from a per-table block reserved in id_sequence; no query in the common case ---
+    // Throws rather than inventing an ID: any fallback value could collide with IDs the allocator hands out.
+    public int getNextId(String tableName, String idColumn) throws SQLException {
+        long start = System.nanoTime();
+        String metric = "getNextId(" + tableName + "." + idColumn + ")";
+        try {
+            int id = (int) requireIds().next(tableName, idColumn);
+            DbMetrics.get().recordStatement(metric, System.nanoTime() - start, 1);
+            return id;
         } catch (SQLException e) {
-            System.err.println("❌ Error getting next ID for " + tableName + ": " + e.getMessage());
+            DbMetrics.get().recordError(metric, System.nanoTime() - start, e);
+            throw new SQLException("Could not get the next ID for " + tableName + ": " + e.getMessage(), e);
         }
-        return 1; 
     }
 
+    // --- Reserves 'count' consecutive IDs and returns the first (for bulk loaders) ---
+    public int reserveIds(String tableName, String idColumn, int count) throws SQLException {
+        return (int) requireIds().reserveRange(tableName, idColumn, count);
+    }
+
+    private static IdAllocator requireIds() throws SQLException {
+        IdAllocator a = ids;
+        if (a == null) {
+            throw new SQLException("Database is not connected. Call config.connectDB() first.");
+        }
+        return a;
+    }
+
+    // --- Renders through TablePrinter: one buffered write per block of rows, header and widths from the first block ---
     public void displayResultSet(ResultSet rs) {
         if (rs == null) return;
         
         try {
-            ResultSetMetaData rsmd = rs.getMetaData();
-            int columnCount = rsmd.getColumnCount();
-            
-            // ... (Display logic) ...
             System.out.println("\n--- RESULTS ---");
-            for (int i = 1; i <= columnCount; i++) {
-                System.out.print(String.format("%-25s", rsmd.getColumnLabel(i))); 
-            }
-            System.out.println();
-            for (int i = 1; i <= columnCount * 25; i++) {
-                System.out.print("-");
-            }
-            System.out.println();
-            
-            boolean hasRows = false;
-            while (rs.next()) {
-                hasRows = true;
-                for (int i = 1; i <= columnCount; i++) {
-                    System.out.print(String.format("%-25s", rs.getString(i)));
-                }
-                System.out.println();
+            TablePrinter printer = new TablePrinter(System.out);
+            int printed = printer.printPage(rs, DISPLAY_BLOCK_ROWS);
+            int total = printed;
+            while (printed == DISPLAY_BLOCK_ROWS) {
+                printed = printer.printMore(rs, DISPLAY_BLOCK_ROWS);
+                total += printed;
             }
             
-            if (!hasRows) {
+            if (total == 0) {
                 System.out.println("No records found.");
             }
             System.out.println("---------------");
@@ -151,7 +1127,7 @@ public class config {
         }
     }
 
-    private void setParameters(PreparedStatement pstmt, Object... params) throws SQLException {
+    private static void setParameters(PreparedStatement pstmt, Object... params) throws SQLException {
         if (params != null) {
             for (int i = 0; i < params.length; i++) {
                 pstmt.setObject(i + 1, params[i]);
@@ -159,14 +1135,38 @@ public class config {
         }
     }
 
-    public static void closeDB() {
-        try {
-            if (conn != null && !conn.isClosed()) {
-                conn.close();
-                System.out.println("✅ Database connection closed.");
+    public static synchronized void closeDB() {
+        if (pool != null) {
+            DbMaintenance.stop();
+            if (writeBehind != null) {
+                // Commit everything already accepted before the writer goes away.
+                writeBehind.close();
+                writeBehind = null;
             }
-        } catch (SQLException e) {
-            System.err.println("❌ Error closing database connection: " + e.getMessage());
+            if (journal != null) {
+                journal.close();
+                journal = null;
+            }
+            int leaked = OpenCursors.get().count();
+            if (leaked > 0) {
+                System.err.println("⚠️ " + leaked + " query cursor(s) were never closed:");
+                for (String line : OpenCursors.get().describe()) {
+                    System.err.println("   " + line);
+                }
+            }
+            if (scatterPool != null) {
+                scatterPool.shutdownNow();
+                scatterPool = null;
+            }
+            for (ConnectionPool p : shardPools) {
+                p.close();
+            }
+            DbMetrics.get().stop();
+            pool = null;
+            shardPools = null;
+            router = null;
+            ids = null;
+            System.out.println("✅ Database connection closed.");
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,408 @@
+package main;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import config.DbMetrics;
+import config.Json;
+import config.config;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Embedded JSON API so several encoding stations can share one database.
+ *
+ * Requests run on a bounded worker pool; each handler goes through the same
+ * {@link RecordService}/{@link AuthService} as the console menus, and those sit
+ * on the pooled connections of {@link config} (one writer, several WAL readers),
+ * so concurrent requests never share a Connection. When every worker is busy
+ * and the queue is full, the accepting thread runs the request itself, which
+ * stops it from accepting more connections until the backlog drains.
+ *
+ * Apart from health and login, every request needs the token from login as
+ * {@code Authorization: Bearer <token>}; sessions expire after the idle
+ * timeout of {@link SessionManager}. Locked-out logins get 429 + Retry-After.
+ *
+ * <pre>
+ * GET    /api/health
+ * POST   /api/login                                  {email, password} -> {token, user_id, name}
+ * POST   /api/logout
+ * GET    /api/{users|programs|participation|attendance}?user_id=&amp;program_id=&amp;from=&amp;to=&amp;limit=
+ * POST   /api/programs                               {name, description}
+ * GET|PUT|DELETE /api/programs/{id}                  PUT: {name, description}
+ * POST   /api/participation                          {user_id, program_id, amount}
+ * GET|PUT|DELETE /api/participation/{user}/{program} PUT: {amount}
+ * POST   /api/attendance                             {user_id, program_id, date}
+ * GET|DELETE     /api/attendance/{id}
+ * GET    /api/attendance/count?user_id=&amp;program_id=&amp;from=&amp;to=  -> {meetings}
+ * GET    /api/search?q=&amp;scope=users|programs&amp;limit=   -> {rows}, best match first
+ * </pre>
+ */
+public class ApiServer {
+
+    public static final int DEFAULT_PORT = Integer.getInteger("4ps.http.port", 8080);
+    private static final String HOST = System.getProperty("4ps.http.host", "127.0.0.1");
+    private static final int THREADS = Integer.getInteger("4ps.http.threads", 16);
+    private static final int QUEUE = Integer.getInteger("4ps.http.queue", 256);
+    private static final int MAX_BODY_BYTES = 64 * 1024;
+    private static final int DEFAULT_LIST_LIMIT = 100;
+    private static final int MAX_LIST_LIMIT = 1000;
+
+    private final RecordService records;
+    private final AuthService auth;
+    private final SearchService search;
+    private final HttpServer server;
+    private final ThreadPoolExecutor workers;
+
+    public ApiServer(config db, int port) throws IOException {
+        this(db, new InetSocketAddress(HOST, port), THREADS);
+    }
+
+    public ApiServer(config db, InetSocketAddress address, int threads) throws IOException {
+        this.records = new RecordService(db);
+        this.auth = new AuthService(db);
+        this.search = new SearchService(db);
+        // Small JSON replies otherwise sit out the client's delayed ACK (~40 ms each) under Nagle's algorithm.
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+        this.server = HttpServer.create(address, 0);
+        final AtomicInteger n = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(QUEUE),
+                r -> {
+                    Thread t = new Thread(r, "4ps-http-" + n.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        server.setExecutor(workers);
+        server.createContext("/api/", this::handle);
+    }
+
+    public void start() {
+        server.start();
+        System.out.println("✅ HTTP API listening on http://" + server.getAddress().getHostString() + ":" + getPort() + "/api/ ("
+                + workers.getMaximumPoolSize() + " worker threads).");
+    }
+
+    /** Stops accepting requests, waits up to {@code graceSeconds} for running ones, then stops the workers. */
+    public void stop(int graceSeconds) {
+        server.stop(graceSeconds);
+        workers.shutdown();
+        try {
+            workers.awaitTermination(graceSeconds, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    // ----------------------------------------------------
+    // --- DISPATCH ---
+    // ----------------------------------------------------
+
+    private void handle(HttpExchange ex) throws IOException {
+        int status;
+        Object body;
+        try {
+            String[] path = ex.getRequestURI().getPath().substring("/api/".length()).split("/");
+            Response r = route(ex.getRequestMethod(), path, ex);
+            status = r.status;
+            body = r.body;
+        } catch (ServiceException e) {
+            status = statusFor(e);
+            body = error(e.getMessage());
+            if (e.getReason() == ServiceException.Reason.TOO_MANY_ATTEMPTS) {
+                ex.getResponseHeaders().set("Retry-After", String.valueOf(TimeUnit.MILLISECONDS.toSeconds(e.getRetryAfterMillis() + 999)));
+            }
+        } catch (IllegalArgumentException e) {
+            status = 400;
+            body = error(e.getMessage());
+        } catch (SQLException e) {
+            status = 500;
+            body = error("database error: " + e.getMessage());
+        } catch (RuntimeException e) {
+            System.err.println("❌ HTTP handler failed for " + ex.getRequestURI() + ": " + e);
+            status = 500;
+            body = error("internal error");
+        }
+        send(ex, status, body);
+    }
+
+    private Response route(String method, String[] p, HttpExchange ex) throws IOException, SQLException, ServiceException {
+        String resource = p[0];
+        int ids = p.length - 1;
+
+        switch (resource) {
+            case "health":
+                if (ids == 0 && "GET".equals(method)) {
+                    Map<String, Object> health = new LinkedHashMap<>();
+                    health.put("status", config.getPoolStats() == null ? "down" : "ok");
+                    health.put("workers_active", workers.getActiveCount());
+                    health.put("workers_queued", workers.getQueue().size());
+                    return ok(health);
+                }
+                return notAllowed(method, ex);
+            case "login":
+                if (ids == 0 && "POST".equals(method)) {
+                    Map<String, Object> in = readBody(ex);
+                    SessionManager.Session session = auth.login(Args.str(in, "email"), Args.str(in, "password"));
+                    Map<String, Object> out = new LinkedHashMap<>();
+                    out.put("token", session.getToken());
+                    out.put("user_id", session.getUserId());
+                    out.put("name", session.getUserName());
+                    return ok(out);
+                }
+                return notAllowed(method, ex);
+            default:
+        }
+
+        String token = bearerToken(ex);
+        if (auth.getSessions().touch(token) == null) {
+            throw ServiceException.unauthorized(token == null ? "Log in first (Authorization: Bearer <token>)." : "Session expired or unknown. Log in again.");
+        }
+
+        switch (resource) {
+            case "logout":
+                if (ids == 0 && "POST".equals(method)) {
+                    auth.getSessions().close(token);
+                    return noContent();
+                }
+                break;
+            case "users":
+                if (ids == 0 && "GET".equals(method)) return list(RecordViewer.View.USERS, ex);
+                break;
+            case "search":
+                if (ids == 0 && "GET".equals(method)) {
+                    Map<String, Object> query = parseQuery(ex.getRequestURI().getRawQuery());
+                    Integer limit = Args.optInt(query, "limit");
+                    Map<String, Object> out = new LinkedHashMap<>();
+                    out.put("rows", search.search(SearchService.scope(Args.optStr(query, "scope")), Args.str(query, "q"),
+                            limit == null ? SearchService.DEFAULT_LIMIT : limit));
+                    return ok(out);
+                }
+                break;
+            case "programs":
+                if (ids == 0) {
+                    if ("GET".equals(method)) return list(RecordViewer.View.PROGRAMS, ex);
+                    if ("POST".equals(method)) {
+                        Map<String, Object> in = readBody(ex);
+                        int id = records.addProgram(Args.str(in, "name"), Args.optStr(in, "description"));
+                        return created("program_id", id);
+                    }
+                } else if (ids == 1) {
+                    int id = pathId(p[1]);
+                    switch (method) {
+                        case "GET": return found(records.findProgram(id), "Program not found!");
+                        case "PUT": {
+                            Map<String, Object> in = readBody(ex);
+                            records.updateProgram(id, Args.str(in, "name"), Args.optStr(in, "description"));
+                            return noContent();
+                        }
+                        case "DELETE":
+                            records.deleteProgram(id);
+                            return noContent();
+                        default:
+                    }
+                }
+                break;
+            case "participation":
+                if (ids == 0) {
+                    if ("GET".equals(method)) return list(RecordViewer.View.PARTICIPATION, ex);
+                    if ("POST".equals(method)) {
+                        Map<String, Object> in = readBody(ex);
+                        records.recordParticipation(Args.integer(in, "user_id"), Args.integer(in, "program_id"), Args.decimal(in, "amount"));
+                        return new Response(201, null);
+                    }
+                } else if (ids == 2) {
+                    int userId = pathId(p[1]);
+                    int programId = pathId(p[2]);
+                    switch (method) {
+                        case "GET": return found(records.findParticipation(userId, programId), "Participation record not found!");
+                        case "PUT":
+                            records.updateParticipation(userId, programId, Args.decimal(readBody(ex), "amount"));
+                            return noContent();
+                        case "DELETE":
+                            records.deleteParticipation(userId, programId);
+                            return noContent();
+                        default:
+                    }
+                }
+                break;
+            case "attendance":
+                if (ids == 0) {
+                    if ("GET".equals(method)) return list(RecordViewer.View.ATTENDANCE, ex);
+                    if ("POST".equals(method)) {
+                        Map<String, Object> in = readBody(ex);
+                        int id = records.recordAttendance(Args.integer(in, "user_id"), Args.integer(in, "program_id"), Args.str(in, "date"));
+                        return created("attendance_id", id);
+                    }
+                } else if (ids == 1 && "count".equals(p[1])) {
+                    if ("GET".equals(method)) {
+                        Map<String, Object> query = parseQuery(ex.getRequestURI().getRawQuery());
+                        Map<String, Object> out = new LinkedHashMap<>();
+                        out.put("meetings", records.countAttendance(Args.integer(query, "user_id"), Args.integer(query, "program_id"),
+                                Args.str(query, "from"), Args.str(query, "to")));
+                        return ok(out);
+                    }
+                } else if (ids == 1) {
+                    int id = pathId(p[1]);
+                    switch (method) {
+                        case "GET": return found(records.findAttendance(id), "Attendance record not found!");
+                        case "DELETE":
+                            records.deleteAttendance(id);
+                            return noContent();
+                        default:
+                    }
+                }
+                break;
+            default:
+                return new Response(404, error("no such resource '" + resource + "'"));
+        }
+        return notAllowed(method, ex);
+    }
+
+    private static Response notAllowed(String method, HttpExchange ex) {
+        return new Response(405, error(method + " is not supported on " + ex.getRequestURI().getPath()));
+    }
+
+    private Response list(RecordViewer.View view, HttpExchange ex) throws SQLException {
+        Map<String, Object> query = parseQuery(ex.getRequestURI().getRawQuery());
+        Integer limit = Args.optInt(query, "limit");
+        int n = limit == null ? DEFAULT_LIST_LIMIT : Math.max(1, Math.min(limit, MAX_LIST_LIMIT));
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("rows", records.list(view, Args.filter(query), n));
+        return ok(out);
+    }
+
+    // --- HTTP status for a service failure: missing record, lock timeout, constraint, or plain rule violation ---
+    private static int statusFor(ServiceException e) {
+        switch (e.getReason()) {
+            case NOT_FOUND: return 404;
+            case UNAUTHORIZED: return 401;
+            case TOO_MANY_ATTEMPTS: return 429;
+            default:
+        }
+        DbMetrics.ErrorCategory category = e.getCategory();
+        if (category == null) return 400;
+        switch (category) {
+            case BUSY: return 503;
+            case UNIQUE:
+            case FOREIGN_KEY: return 409;
+            default: return 500;
+        }
+    }
+
+    // ----------------------------------------------------
+    // --- REQUEST / RESPONSE HELPERS ---
+    // ----------------------------------------------------
+
+    private static final class Response {
+        final int status;
+        final Object body;
+
+        Response(int status, Object body) {
+            this.status = status;
+            this.body = body;
+        }
+    }
+
+    private static Response ok(Object body) {
+        return new Response(200, body);
+    }
+
+    private static Response noContent() {
+        return new Response(204, null);
+    }
+
+    private static Response created(String key, int id) {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put(key, id);
+        return new Response(201, out);
+    }
+
+    private static Response found(Map<String, Object> row, String message) throws ServiceException {
+        if (row == null) {
+            throw ServiceException.notFound(message);
+        }
+        return ok(row);
+    }
+
+    private static Map<String, Object> error(String message) {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("error", message);
+        return out;
+    }
+
+    private static String bearerToken(HttpExchange ex) {
+        String header = ex.getRequestHeaders().getFirst("Authorization");
+        if (header == null || !header.regionMatches(true, 0, "Bearer ", 0, 7)) return null;
+        return header.substring(7).trim();
+    }
+
+    private static int pathId(String segment) {
+        try {
+            return Integer.parseInt(segment);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("'" + segment + "' is not a valid ID");
+        }
+    }
+
+    private static Map<String, Object> readBody(HttpExchange ex) throws IOException {
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        byte[] chunk = new byte[4096];
+        try (InputStream in = ex.getRequestBody()) {
+            int n;
+            while ((n = in.read(chunk)) > 0) {
+                if (buf.size() + n > MAX_BODY_BYTES) {
+                    throw new IllegalArgumentException("request body larger than " + MAX_BODY_BYTES + " bytes");
+                }
+                buf.write(chunk, 0, n);
+            }
+        }
+        String text = new String(buf.toByteArray(), StandardCharsets.UTF_8).trim();
+        if (text.isEmpty()) {
+            throw new IllegalArgumentException("request body must be a JSON object");
+        }
+        return Json.parseObject(text);
+    }
+
+    private static Map<String, Object> parseQuery(String rawQuery) {
+        Map<String, Object> out = new LinkedHashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) return out;
+        try {
+            for (String pair : rawQuery.split("&")) {
+                int eq = pair.indexOf('=');
+                if (eq <= 0) continue;
+                out.put(URLDecoder.decode(pair.substring(0, eq), "UTF-8"), URLDecoder.decode(pair.substring(eq + 1), "UTF-8"));
+            }
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+        return out;
+    }
+
+    private static void send(HttpExchange ex, int status, Object body) throws IOException {
+        byte[] bytes = body == null ? new byte[0] : Json.write(body).getBytes(StandardCharsets.UTF_8);
+        ex.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        ex.sendResponseHeaders(status, bytes.length == 0 ? -1 : bytes.length);
+        try (OutputStream out = ex.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
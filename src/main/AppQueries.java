@@ -0,0 +1,69 @@
+package main;
+
+import config.config;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/** Catalogue of the SQL the application issues, used for the startup query-plan check. */
+final class AppQueries {
+
+    private AppQueries() {
+    }
+
+    static Collection<String> all() {
+        Set<String> sql = new LinkedHashSet<>(Arrays.asList(
+            config.SQL_PROGRAM_BY_ID,
+            config.SQL_USER_BY_ID,
+            AuthService.SQL_EMAIL_TAKEN,
+            AuthService.SQL_INSERT_USER,
+            AuthService.SQL_LOGIN,
+            AuthService.SQL_UPDATE_PASSWORD,
+            RecordService.SQL_INSERT_PROGRAM,
+            RecordService.SQL_PARTICIPATION_EXISTS,
+            RecordService.SQL_INSERT_PARTICIPATION,
+            RecordService.SQL_INSERT_ATTENDANCE,
+            RecordService.SQL_UPDATE_PROGRAM,
+            RecordService.SQL_FIND_PARTICIPATION,
+            RecordService.SQL_UPDATE_PARTICIPATION,
+            RecordService.SQL_DELETE_PROGRAM,
+            RecordService.SQL_DELETE_PARTICIPATION,
+            RecordService.SQL_FIND_ATTENDANCE,
+            RecordService.SQL_DELETE_ATTENDANCE,
+            BulkImporter.SQL_ALL_USER_IDS,
+            BulkImporter.SQL_ALL_PROGRAM_IDS,
+            BulkImporter.Kind.ATTENDANCE.insertSql,
+            BulkImporter.Kind.PARTICIPATION.insertSql,
+            ReportManager.SQL_PROGRAM_TOTALS,
+            ReportManager.SQL_BENEFICIARY_MEETINGS,
+            ReportManager.SQL_MONTHLY_ATTENDANCE_BY_PROGRAM,
+            ReportManager.SQL_PROGRAMS_WITH_DATA,
+            ReportManager.SQL_AGG_PARTICIPATION,
+            ReportManager.SQL_AGG_ATTENDANCE_BY_DATE,
+            ReportManager.SQL_AGG_ATTENDANCE_BY_USER,
+            ReportManager.SQL_PROGRAM_NAMES,
+            ReportManager.SQL_SHARD_ATTENDANCE_DAILY_BY_PROGRAM,
+            MeetingsReconciler.SQL_FIX_COUNTER,
+            ComplianceRun.SQL_USER_RANGE,
+            ComplianceRun.SQL_SLICE,
+            ComplianceRun.SQL_START_RUN,
+            ComplianceRun.SQL_PUT_RESULT,
+            ComplianceRun.SQL_FINISH_RUN,
+            SearchService.SQL_SEARCH_USERS,
+            SearchService.SQL_SEARCH_PROGRAMS,
+            SearchService.SQL_USER_TERMS,
+            SearchService.SQL_PROGRAM_TERMS));
+        // Left out because they read whole tables on purpose: ReportManager.SQL_MONTHLY_ATTENDANCE,
+        // ReportManager.SQL_SHARD_ATTENDANCE_DAILY, ComplianceRun.SQL_MEETINGS_HELD and
+        // ComplianceRun.SQL_MEETING_DAYS (all of attendance_daily), ReportManager.SQL_SHARD_PROGRAM_SUMMARY
+        // (all of program_summary), MeetingsReconciler.SQL_FIND_DRIFT (all of participation).
+        sql.addAll(RecordViewer.sampleQueries());
+        return sql;
+    }
+
+    /** The keyset-paged statements among {@link #all()}; these must also read their rows in key order. */
+    static Collection<String> paged() {
+        return new LinkedHashSet<>(RecordViewer.sampleQueries());
+    }
+}
@@ -0,0 +1,84 @@
+package main;
+
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Typed access to the loosely typed argument maps of the non-interactive
+ * front ends (headless command lines, HTTP request bodies and query strings).
+ * Values may arrive as JSON numbers or as text; bad or missing values throw
+ * {@link IllegalArgumentException} naming the key.
+ */
+final class Args {
+
+    private Args() {
+    }
+
+    static String str(Map<String, Object> a, String key) {
+        String v = optStr(a, key);
+        if (v == null) {
+            throw new IllegalArgumentException("missing '" + key + "'");
+        }
+        return v;
+    }
+
+    static String optStr(Map<String, Object> a, String key) {
+        Object v = a.get(key);
+        return v == null ? null : v.toString();
+    }
+
+    static int integer(Map<String, Object> a, String key) {
+        Integer v = optInt(a, key);
+        if (v == null) {
+            throw new IllegalArgumentException("missing '" + key + "'");
+        }
+        return v;
+    }
+
+    static Integer optInt(Map<String, Object> a, String key) {
+        Object v = a.get(key);
+        if (v == null) return null;
+        if (v instanceof Number) return ((Number) v).intValue();
+        try {
+            return Integer.valueOf(v.toString().trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("'" + key + "' must be a whole number");
+        }
+    }
+
+    static double decimal(Map<String, Object> a, String key) {
+        Object v = a.get(key);
+        if (v == null) throw new IllegalArgumentException("missing '" + key + "'");
+        if (v instanceof Number) return ((Number) v).doubleValue();
+        try {
+            return Double.parseDouble(v.toString().trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("'" + key + "' must be a number");
+        }
+    }
+
+    static Boolean optBool(Map<String, Object> a, String key) {
+        Object v = a.get(key);
+        if (v == null) return null;
+        if (v instanceof Boolean) return (Boolean) v;
+        return Boolean.valueOf(v.toString().trim());
+    }
+
+    static RecordViewer.View view(String name) {
+        try {
+            return RecordViewer.View.valueOf(name.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("view must be one of users, programs, participation, attendance");
+        }
+    }
+
+    // --- The optional user_id/program_id/from/to filters shared by every listing ---
+    static RecordViewer.Filter filter(Map<String, Object> a) {
+        RecordViewer.Filter filter = new RecordViewer.Filter();
+        filter.userId = optInt(a, "user_id");
+        filter.programId = optInt(a, "program_id");
+        filter.fromDate = optStr(a, "from");
+        filter.toDate = optStr(a, "to");
+        return filter;
+    }
+}
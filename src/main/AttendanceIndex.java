@@ -0,0 +1,516 @@
+package main;
+
+import config.config;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory attendance index for eligibility checks: for every (user_id,
+ * program_id) pair, the sorted epoch-days of the meetings attended.
+ *
+ * Pairs live in an open-addressing table keyed by the primitive long
+ * {@code user_id << 32 | program_id} (linear probing; IDs are positive, so
+ * 0 marks an empty slot), with parallel {@code int[][]} / {@code int[]}
+ * arrays for the days and their counts, so a lookup allocates nothing and
+ * boxes nothing. "How many meetings
+ * between two dates" is two binary searches. Arrays loaded from the database
+ * are trimmed to size, so a pair costs its days at 4 bytes each plus about 40
+ * bytes of overhead.
+ *
+ * The index is loaded on first use ({@link #ensureLoaded()}) and kept in step
+ * by {@link RecordService} and {@link BulkImporter} after their writes commit.
+ * Writes that commit while a load is running are queued and replayed onto
+ * the new table; every operation is idempotent (attendance is UNIQUE on
+ * user, program and date), so it does not matter whether the load's read
+ * transaction already saw them. {@link #invalidate()} drops the table after
+ * a rolled-back batch; the next query reloads it. Foreign keys are not
+ * enforced, so deleting a program leaves its attendance rows in place, and
+ * the index keeps them too.
+ */
+public final class AttendanceIndex {
+
+    static final String SQL_LOAD =
+        "SELECT user_id, program_id, meeting_date FROM attendance ORDER BY user_id, program_id, meeting_date";
+
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int MIN_DAYS_CAPACITY = 4;
+    private static final long ARRAY_HEADER_BYTES = 16;
+    private static final long REFERENCE_BYTES = 4;      // compressed oops
+
+    private static final AttendanceIndex SHARED = new AttendanceIndex();
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Object loadLock = new Object();
+    private Table table;                    // null until loaded; guarded by lock
+    private List<long[]> pending;           // changes committed during a load; guarded by lock
+    private long loadNanos;
+    private long badDates;
+
+    // --- Change kinds queued while a load is running: {kind, key, day} ---
+    private static final long ADD = 1;
+    private static final long REMOVE = 2;
+
+    AttendanceIndex() {
+    }
+
+    /** The index shared by every service in this process. */
+    public static AttendanceIndex get() {
+        return SHARED;
+    }
+
+    // ----------------------------------------------------
+    // --- QUERIES ---
+    // ----------------------------------------------------
+
+    /** Meetings the user attended in the program between two dates (both inclusive). */
+    public int countInRange(int userId, int programId, LocalDate from, LocalDate to) throws SQLException {
+        return countInRange(userId, programId, (int) from.toEpochDay(), (int) to.toEpochDay());
+    }
+
+    /** Same, with the dates as epoch-days. */
+    public int countInRange(int userId, int programId, int fromDay, int toDay) throws SQLException {
+        ensureLoaded();
+        if (fromDay > toDay) return 0;
+        lock.readLock().lock();
+        try {
+            Table t = table;
+            int slot = t == null ? -1 : t.find(key(userId, programId));
+            if (slot < 0) return 0;
+            int[] days = t.days[slot];
+            int size = t.sizes[slot];
+            return upperBound(days, size, toDay) - lowerBound(days, size, fromDay);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** All meetings the user attended in the program. */
+    public int count(int userId, int programId) throws SQLException {
+        ensureLoaded();
+        lock.readLock().lock();
+        try {
+            Table t = table;
+            int slot = t == null ? -1 : t.find(key(userId, programId));
+            return slot < 0 ? 0 : t.sizes[slot];
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public boolean isLoaded() {
+        lock.readLock().lock();
+        try {
+            return table != null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public Stats getStats() {
+        lock.readLock().lock();
+        try {
+            Table t = table;
+            return t == null
+                    ? new Stats(false, 0, 0, 0, 0, 0)
+                    : new Stats(true, t.count, t.entries, t.memoryBytes(), loadNanos, badDates);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // ----------------------------------------------------
+    // --- LOADING ---
+    // ----------------------------------------------------
+
+    /** Loads the index from the attendance table unless it is loaded already. */
+    public void ensureLoaded() throws SQLException {
+        if (isLoaded()) return;
+        synchronized (loadLock) {
+            if (isLoaded()) return;
+            load();
+        }
+    }
+
+    /** Forgets the loaded table; the next query reloads it from the database. */
+    public void invalidate() {
+        lock.writeLock().lock();
+        try {
+            table = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void load() throws SQLException {
+        long start = System.nanoTime();
+        lock.writeLock().lock();
+        try {
+            pending = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        Table t = new Table(INITIAL_CAPACITY);
+        long bad = 0;
+        try {
+            // Rows arrive grouped by pair with the days ascending (the UNIQUE index is covering),
+            // so each pair's array is filled by appends and trimmed once it is complete. A pair's
+            // rows all live on the shard that owns its user, so shards are read one after another.
+            for (int shard = 0; shard < config.getShardCount(); shard++) {
+                bad += loadShard(shard, t);
+            }
+        } catch (SQLException | RuntimeException e) {
+            lock.writeLock().lock();
+            try {
+                pending = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            throw e;
+        }
+
+        lock.writeLock().lock();
+        try {
+            for (long[] change : pending) {
+                apply(t, change[0], change[1], (int) change[2]);
+            }
+            pending = null;
+            table = t;
+            loadNanos = System.nanoTime() - start;
+            badDates = bad;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static long loadShard(int shard, Table t) throws SQLException {
+        long bad = 0;
+        try (Connection conn = config.getConnection(shard);
+             PreparedStatement ps = conn.prepareStatement(SQL_LOAD)) {
+            ps.setFetchSize(4096);
+            try (ResultSet rs = ps.executeQuery()) {
+                long currentKey = 0;
+                int slot = -1;
+                while (rs.next()) {
+                    int day = epochDay(rs.getString(3));
+                    if (day == Integer.MIN_VALUE) {
+                        bad++;
+                        continue;
+                    }
+                    long k = key(rs.getInt(1), rs.getInt(2));
+                    if (k != currentKey) {
+                        if (slot >= 0) t.trim(slot);
+                        currentKey = k;
+                        slot = t.slotFor(k);
+                    }
+                    t.append(slot, day);
+                }
+                if (slot >= 0) t.trim(slot);
+            }
+        }
+        return bad;
+    }
+
+    // ----------------------------------------------------
+    // --- CHANGES (called after the write has committed) ---
+    // ----------------------------------------------------
+
+    public void add(int userId, int programId, String meetingDate) {
+        int day = epochDay(meetingDate);
+        if (day != Integer.MIN_VALUE) change(ADD, key(userId, programId), day);
+    }
+
+    public void remove(int userId, int programId, String meetingDate) {
+        int day = epochDay(meetingDate);
+        if (day != Integer.MIN_VALUE) change(REMOVE, key(userId, programId), day);
+    }
+
+    private void change(long kind, long key, int day) {
+        lock.writeLock().lock();
+        try {
+            if (pending != null) {
+                pending.add(new long[] { kind, key, day });
+            }
+            if (table != null) {
+                apply(table, kind, key, day);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static void apply(Table t, long kind, long key, int day) {
+        if (kind == ADD) {
+            t.insert(t.slotFor(key), day);
+        } else {
+            t.remove(key, day);
+        }
+    }
+
+    // ----------------------------------------------------
+    // --- HELPERS ---
+    // ----------------------------------------------------
+
+    private static long key(int userId, int programId) {
+        return ((long) userId << 32) | (programId & 0xFFFFFFFFL);
+    }
+
+    // --- Epoch-day of a YYYY-MM-DD date, or Integer.MIN_VALUE if it is not one ---
+    static int epochDay(String date) {
+        if (date == null || date.length() != 10 || date.charAt(4) != '-' || date.charAt(7) != '-') {
+            return Integer.MIN_VALUE;
+        }
+        int y = digits(date, 0, 4);
+        int m = digits(date, 5, 7);
+        int d = digits(date, 8, 10);
+        if (y < 0 || m < 0 || d < 0) return Integer.MIN_VALUE;
+        try {
+            return (int) LocalDate.of(y, m, d).toEpochDay();
+        } catch (DateTimeException e) {
+            return Integer.MIN_VALUE;
+        }
+    }
+
+    private static int digits(String s, int from, int to) {
+        int v = 0;
+        for (int i = from; i < to; i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') return -1;
+            v = v * 10 + (c - '0');
+        }
+        return v;
+    }
+
+    // --- First position whose day is >= day ---
+    private static int lowerBound(int[] days, int size, int day) {
+        int lo = 0;
+        int hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (days[mid] < day) lo = mid + 1; else hi = mid;
+        }
+        return lo;
+    }
+
+    // --- First position whose day is > day ---
+    private static int upperBound(int[] days, int size, int day) {
+        int lo = 0;
+        int hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (days[mid] <= day) lo = mid + 1; else hi = mid;
+        }
+        return lo;
+    }
+
+    // ----------------------------------------------------
+    // --- OPEN-ADDRESSING TABLE ---
+    // ----------------------------------------------------
+
+    private static final class Table {
+        long[] keys;
+        int[][] days;
+        int[] sizes;
+        int count;
+        long entries;
+        long dayArrayBytes;
+
+        Table(int capacity) {
+            keys = new long[capacity];
+            days = new int[capacity][];
+            sizes = new int[capacity];
+        }
+
+        private int home(long key) {
+            // MurmurHash3 finalizer: user IDs are dense, so the raw key would cluster.
+            long h = key;
+            h ^= h >>> 33;
+            h *= 0xff51afd7ed558ccdL;
+            h ^= h >>> 33;
+            h *= 0xc4ceb9fe1a85ec53L;
+            h ^= h >>> 33;
+            return (int) h & (keys.length - 1);
+        }
+
+        int find(long key) {
+            int mask = keys.length - 1;
+            for (int i = home(key); ; i = (i + 1) & mask) {
+                long k = keys[i];
+                if (k == key) return i;
+                if (k == 0) return -1;
+            }
+        }
+
+        // --- Slot of the key, claiming an empty one (and growing the table) if needed ---
+        int slotFor(long key) {
+            int slot = find(key);
+            if (slot >= 0) return slot;
+            if ((count + 1) * 10L > keys.length * 7L) {
+                resize(keys.length * 2);
+            }
+            int mask = keys.length - 1;
+            int i = home(key);
+            while (keys[i] != 0) {
+                i = (i + 1) & mask;
+            }
+            keys[i] = key;
+            days[i] = new int[MIN_DAYS_CAPACITY];
+            dayArrayBytes += arrayBytes(MIN_DAYS_CAPACITY);
+            count++;
+            return i;
+        }
+
+        private void resize(int capacity) {
+            long[] oldKeys = keys;
+            int[][] oldDays = days;
+            int[] oldSizes = sizes;
+            keys = new long[capacity];
+            days = new int[capacity][];
+            sizes = new int[capacity];
+            int mask = capacity - 1;
+            for (int j = 0; j < oldKeys.length; j++) {
+                if (oldKeys[j] == 0) continue;
+                int i = home(oldKeys[j]);
+                while (keys[i] != 0) {
+                    i = (i + 1) & mask;
+                }
+                keys[i] = oldKeys[j];
+                days[i] = oldDays[j];
+                sizes[i] = oldSizes[j];
+            }
+        }
+
+        // --- Load path: days arrive ascending and unique ---
+        void append(int slot, int day) {
+            int size = sizes[slot];
+            if (size == days[slot].length) {
+                grow(slot, size + 1);
+            }
+            days[slot][size] = day;
+            sizes[slot] = size + 1;
+            entries++;
+        }
+
+        void trim(int slot) {
+            int size = Math.max(sizes[slot], 1);
+            if (days[slot].length != size) {
+                dayArrayBytes += arrayBytes(size) - arrayBytes(days[slot].length);
+                days[slot] = Arrays.copyOf(days[slot], size);
+            }
+        }
+
+        void insert(int slot, int day) {
+            int size = sizes[slot];
+            int at = Arrays.binarySearch(days[slot], 0, size, day);
+            if (at >= 0) return;        // already there
+            at = -at - 1;
+            if (size == days[slot].length) {
+                grow(slot, size + 1);
+            }
+            int[] d = days[slot];
+            System.arraycopy(d, at, d, at + 1, size - at);
+            d[at] = day;
+            sizes[slot] = size + 1;
+            entries++;
+        }
+
+        void remove(long key, int day) {
+            int slot = find(key);
+            if (slot < 0) return;
+            int size = sizes[slot];
+            int[] d = days[slot];
+            int at = Arrays.binarySearch(d, 0, size, day);
+            if (at < 0) return;
+            System.arraycopy(d, at + 1, d, at, size - at - 1);
+            sizes[slot] = size - 1;
+            entries--;
+            if (size == 1) {
+                deleteSlot(slot);
+            }
+        }
+
+        private void grow(int slot, int minCapacity) {
+            int old = days[slot].length;
+            int capacity = Math.max(minCapacity, Math.max(MIN_DAYS_CAPACITY, old + (old >> 1)));
+            days[slot] = Arrays.copyOf(days[slot], capacity);
+            dayArrayBytes += arrayBytes(capacity) - arrayBytes(old);
+        }
+
+        // --- Backward-shift deletion keeps probe chains intact without tombstones ---
+        private void deleteSlot(int i) {
+            dayArrayBytes -= arrayBytes(days[i].length);
+            count--;
+            int mask = keys.length - 1;
+            int j = i;
+            while (true) {
+                j = (j + 1) & mask;
+                if (keys[j] == 0) break;
+                int h = home(keys[j]);
+                boolean stays = i <= j ? (i < h && h <= j) : (i < h || h <= j);
+                if (!stays) {
+                    keys[i] = keys[j];
+                    days[i] = days[j];
+                    sizes[i] = sizes[j];
+                    i = j;
+                }
+            }
+            keys[i] = 0;
+            days[i] = null;
+            sizes[i] = 0;
+        }
+
+        long memoryBytes() {
+            long slots = keys.length;
+            return 3 * ARRAY_HEADER_BYTES + slots * (8 + REFERENCE_BYTES + 4) + dayArrayBytes;
+        }
+
+        private static long arrayBytes(int length) {
+            return (ARRAY_HEADER_BYTES + 4L * length + 7) & ~7L;
+        }
+    }
+
+    // ----------------------------------------------------
+    // --- STATS ---
+    // ----------------------------------------------------
+
+    public static final class Stats {
+        private final boolean loaded;
+        private final int pairs;
+        private final long meetings;
+        private final long memoryBytes;
+        private final long loadNanos;
+        private final long badDates;
+
+        Stats(boolean loaded, int pairs, long meetings, long memoryBytes, long loadNanos, long badDates) {
+            this.loaded = loaded;
+            this.pairs = pairs;
+            this.meetings = meetings;
+            this.memoryBytes = memoryBytes;
+            this.loadNanos = loadNanos;
+            this.badDates = badDates;
+        }
+
+        public boolean isLoaded() { return loaded; }
+        public int getPairs() { return pairs; }
+        public long getMeetings() { return meetings; }
+        public long getMemoryBytes() { return memoryBytes; }
+        public long getLoadNanos() { return loadNanos; }
+        public long getBadDates() { return badDates; }
+
+        @Override
+        public String toString() {
+            if (!loaded) return "Attendance index not loaded.";
+            return String.format("Attendance index: %,d beneficiary/program pairs, %,d meetings, %.1f MB (loaded in %.0f ms%s)",
+                    pairs, meetings, memoryBytes / (1024.0 * 1024.0), loadNanos / 1e6,
+                    badDates == 0 ? "" : ", " + badDates + " unparseable dates skipped");
+        }
+    }
+}
@@ -1,43 +1,46 @@
 package main;
 
+import config.Hex;
 import config.config;
-import java.io.UnsupportedEncodingException;
+import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
-import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.Scanner;
 
 public class AuthManager {
 
+    // MessageDigest is not thread-safe, so each thread keeps its own instance.
+    private static final ThreadLocal<MessageDigest> SHA256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("Error hashing password", e);
+        }
+    });
+
     private final config db;
     private final Scanner sc;
+    private final AuthService service;
 
     public AuthManager(config db, Scanner sc) {
+        this(db, sc, new AuthService(db));
+    }
+
+    public AuthManager(config db, Scanner sc, PasswordHasher hasher) {
+        this(db, sc, new AuthService(db, hasher));
+    }
+
+    public AuthManager(config db, Scanner sc, AuthService service) {
         this.db = db;
         this.sc = sc;
+        this.service = service;
     }
     
-    public static class LoginResult {
-        private final boolean success;
-        private final int userId;
-        private final String userName;
-        private final int loginAttempts;
-
-        public LoginResult(boolean success, int userId, String userName, int loginAttempts) {
-            this.success = success;
-            this.userId = userId;
-            this.userName = userName;
-            this.loginAttempts = loginAttempts;
-        }
-
-        public boolean isSuccess() { return success; }
-        public int getUserId() { return userId; }
-        public String getUserName() { return userName; }
-        public int getLoginAttempts() { return loginAttempts; }
+    public SessionManager getSessions() {
+        return service.getSessions();
     }
 
-
     public void handleRegistration() throws SQLException {
         System.out.println("\n--- NEW USER REGISTRATION ---");
         int userId = db.getNextId("user", "user_id"); 
@@ -54,63 +57,38 @@ public class AuthManager {
         System.out.print("Enter Password: ");
         String password = sc.nextLine().trim();
 
-        String hashedPassword = hashPassword(password);
-
-        String checkEmailSQL = "SELECT * FROM user WHERE email = ?";
-        
-        try (ResultSet rsCheck = db.getRecords(checkEmailSQL, email)) {
-            if (rsCheck != null && rsCheck.next()) {
-                System.out.println("❌ Email already registered. Try logging in.");
-                return;
-            }
-        }
-        
-        String sqlUser = "INSERT INTO user(user_id, name, gender, year_level, email, password) VALUES (?,?,?,?,?,?)";
-        
         try {
-            db.addRecord(sqlUser, userId, uname, gender, year, email, hashedPassword);
+            service.register(userId, uname, gender, year, email, password);
             System.out.println("✅ Registration successful!");
-        } catch (Exception e) {
-            System.out.println("❌ Registration failed due to a database error: " + e.getMessage());
+        } catch (ServiceException e) {
+            System.out.println("❌ " + e.getMessage());
         }
     }
 
-    public LoginResult handleLogin(int currentAttempts) throws SQLException {
+    /** Prompts for credentials and returns the new session, or null if the login was refused. */
+    public SessionManager.Session handleLogin() throws SQLException {
         System.out.println("\n--- USER LOGIN ---");
         System.out.print("Enter Email: ");
         String loginEmail = sc.nextLine().trim();
         System.out.print("Enter Password: ");
         String loginPass = sc.nextLine().trim();
-        String hashedLogin = hashPassword(loginPass);
 
-        String sqlLogin = "SELECT user_id, name FROM user WHERE email = ? AND password = ?";
-        
-        try (ResultSet rsLogin = db.getRecords(sqlLogin, loginEmail, hashedLogin)) {
-            if (rsLogin != null && rsLogin.next()) {
-                int userId = rsLogin.getInt("user_id");
-                String userName = rsLogin.getString("name");
-                System.out.println("✅ Login successful! Welcome, " + userName + " (ID: " + userId + ")!");
-                return new LoginResult(true, userId, userName, 0);
-            } else {
-                int newAttempts = currentAttempts + 1;
-                int remaining = 3 - newAttempts;
-                System.out.println("❌ Invalid email or password. (" + remaining + " attempts left)");
-                return new LoginResult(false, -1, "", newAttempts);
-            }
+        try {
+            SessionManager.Session session = service.login(loginEmail, loginPass);
+            System.out.println("✅ Login successful! Welcome, " + session.getUserName() + " (ID: " + session.getUserId() + ")!");
+            return session;
+        } catch (ServiceException e) {
+            System.out.println((e.getReason() == ServiceException.Reason.TOO_MANY_ATTEMPTS ? "🚫 " : "❌ ") + e.getMessage());
+            return null;
         }
     }
 
+    // --- Legacy unsalted SHA-256 hex digest; kept so old hashes can still be verified ---
     public static String hashPassword(String password) {
-        try {
-            MessageDigest md = MessageDigest.getInstance("SHA-256");
-            byte[] hashed = md.digest(password.getBytes("UTF-8"));
-            StringBuilder sb = new StringBuilder();
-            for (byte b : hashed) {
-                sb.append(String.format("%02x", b));
-            }
-            return sb.toString();
-        } catch (UnsupportedEncodingException | NoSuchAlgorithmException e) {
-            throw new RuntimeException("Error hashing password", e);    
-        }
+        return Hex.encode(sha256(password));
+    }
+
+    static byte[] sha256(String password) {
+        return SHA256.get().digest(password.getBytes(StandardCharsets.UTF_8));
     }
 }
\ No newline at end of file
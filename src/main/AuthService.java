@@ -0,0 +1,123 @@
+package main;
+
+import config.config;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Registration and login without any console I/O; {@link AuthManager} adds the
+ * prompts, the headless {@link CommandRunner} calls it directly.
+ */
+public class AuthService {
+
+    // --- SQL used by registration and login (also checked against EXPLAIN QUERY PLAN at startup) ---
+    static final String SQL_EMAIL_TAKEN = config.existsSql("user", "email = ?");
+    static final String SQL_INSERT_USER = "INSERT INTO user(user_id, name, gender, year_level, email, password) VALUES (?,?,?,?,?,?)";
+    static final String SQL_LOGIN = "SELECT user_id, name, password FROM user WHERE email = ?";
+    static final String SQL_UPDATE_PASSWORD = "UPDATE user SET password = ? WHERE user_id = ?";
+
+    private final config db;
+    private final PasswordHasher hasher;
+    private final SessionManager sessions;
+
+    public AuthService(config db) {
+        this(db, PasswordHasher.fromSystemProperties());
+    }
+
+    public AuthService(config db, PasswordHasher hasher) {
+        this(db, hasher, SessionManager.get());
+    }
+
+    public AuthService(config db, PasswordHasher hasher, SessionManager sessions) {
+        this.db = db;
+        this.hasher = hasher;
+        this.sessions = sessions;
+    }
+
+    public SessionManager getSessions() {
+        return sessions;
+    }
+
+    /** A successfully authenticated user. */
+    public static class Account {
+        private final int userId;
+        private final String name;
+
+        Account(int userId, String name) {
+            this.userId = userId;
+            this.name = name;
+        }
+
+        public int getUserId() { return userId; }
+        public String getName() { return name; }
+    }
+
+    public int register(String name, String gender, String yearLevel, String email, String password)
+            throws SQLException, ServiceException {
+        int userId = db.getNextId("user", "user_id");
+        register(userId, name, gender, yearLevel, email, password);
+        return userId;
+    }
+
+    /** For callers that reserved the ID themselves (see {@link config#reserveIds}). */
+    public void register(int userId, String name, String gender, String yearLevel, String email, String password)
+            throws SQLException, ServiceException {
+        if (email == null || email.trim().isEmpty() || password == null || password.isEmpty()) {
+            throw new ServiceException("Email and password are required.");
+        }
+        // Checked before hashing, so a duplicate costs one index lookup instead of a full PBKDF2 run.
+        if (db.exists(SQL_EMAIL_TAKEN, email)) {
+            throw new ServiceException("Email already registered. Try logging in.");
+        }
+        String hashedPassword = hasher.hash(password);
+
+        WriteOutcome outcome = new WriteOutcome(config.consoleReporter());
+        db.addRecord(outcome, SQL_INSERT_USER, userId, name, gender, yearLevel, email, hashedPassword);
+        outcome.await();
+    }
+
+    /** Checks the credentials and opens a session for the user. */
+    public SessionManager.Session login(String email, String password) throws SQLException, ServiceException {
+        return sessions.open(authenticate(email, password));
+    }
+
+    /**
+     * Looks the user up by email and checks the password in constant time.
+     * Each email gets a limited number of failed attempts per window (see
+     * {@link SessionManager}); once they are used up it is refused without a
+     * password check. Legacy hashes are upgraded on success.
+     */
+    public Account authenticate(String email, String password) throws SQLException, ServiceException {
+        sessions.checkLoginAllowed(email);
+
+        StoredLogin stored = db.queryOne(SQL_LOGIN, StoredLogin::new, email);
+        int userId = stored == null ? -1 : stored.userId;
+        String userName = stored == null ? "" : stored.name;
+        String storedHash = stored == null ? null : stored.hash;
+
+        PasswordHasher.Verification check = hasher.verify(password, storedHash);
+        if (!check.matches()) {
+            int remaining = sessions.loginFailed(email);
+            throw ServiceException.unauthorized("Invalid email or password. (" + remaining + " attempts left)");
+        }
+        sessions.loginSucceeded(email);
+        if (check.needsRehash()) {
+            // Transparent upgrade of legacy SHA-256 (or cheaper PBKDF2) hashes.
+            db.addRecord(SQL_UPDATE_PASSWORD, hasher.hash(password), userId);
+        }
+        return new Account(userId, userName);
+    }
+
+    // --- Columns of SQL_LOGIN, read by index ---
+    private static final class StoredLogin {
+        final int userId;
+        final String name;
+        final String hash;
+
+        StoredLogin(ResultSet rs) throws SQLException {
+            userId = rs.getInt(1);
+            name = rs.getString(2);
+            hash = rs.getString(3);
+        }
+    }
+}
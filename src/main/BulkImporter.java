@@ -0,0 +1,269 @@
+package main;
+
+import config.config;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Streams attendance or participation rows from a CSV export into the database.
+ *
+ * The file is read line by line, every row is checked against user/program ID
+ * sets loaded once up front, and valid rows are inserted with addBatch/executeBatch
+ * in chunks, one explicit transaction per chunk. Rows that already exist are
+ * skipped (INSERT OR IGNORE) and counted as rejected. With the database
+ * sharded, a chunk is split by the owning shard of each row's user_id and
+ * written as one transaction per shard. Inserted rows go to the change
+ * journal (when on) as the transaction commits.
+ */
+public class BulkImporter {
+
+    public enum Kind {
+        ATTENDANCE("user_id,program_id,meeting_date",
+                "INSERT OR IGNORE INTO attendance(attendance_id, user_id, program_id, meeting_date) VALUES (?,?,?,?)", 1),
+        PARTICIPATION("user_id,program_id,amount_received",
+                "INSERT OR IGNORE INTO participation(user_id, program_id, amount_received) VALUES (?,?,?)", 0);
+
+        private final String columns;
+        final String insertSql;
+        final int userColumn;       // position of user_id in a parsed row
+
+        Kind(String columns, String insertSql, int userColumn) {
+            this.columns = columns;
+            this.insertSql = insertSql;
+            this.userColumn = userColumn;
+        }
+
+        public String getColumns() { return columns; }
+    }
+
+    static final String SQL_ALL_USER_IDS = "SELECT user_id FROM user";
+    static final String SQL_ALL_PROGRAM_IDS = "SELECT program_id FROM program";
+
+    public static final int DEFAULT_CHUNK_SIZE = 5000;
+    private static final int MAX_REJECT_SAMPLES = 20;
+
+    private final config db;
+    private final int chunkSize;
+    private final AttendanceIndex attendanceIndex = AttendanceIndex.get();
+    private Set<Integer> userIds;
+    private Set<Integer> programIds;
+
+    public BulkImporter(config db, int chunkSize) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("chunkSize must be at least 1");
+        }
+        this.db = db;
+        this.chunkSize = chunkSize;
+    }
+
+    public static class Result {
+        private long rowsRead;
+        private long rowsInserted;
+        private long rowsRejected;
+        private long elapsedNanos;
+        private final List<String> rejectSamples = new ArrayList<>();
+
+        public long getRowsRead() { return rowsRead; }
+        public long getRowsInserted() { return rowsInserted; }
+        public long getRowsRejected() { return rowsRejected; }
+        public long getElapsedNanos() { return elapsedNanos; }
+        public List<String> getRejectSamples() { return rejectSamples; }
+
+        public double getRowsPerSecond() {
+            return elapsedNanos == 0 ? 0.0 : rowsInserted * 1_000_000_000.0 / elapsedNanos;
+        }
+
+        private void reject(long lineNo, String reason) {
+            rowsRejected++;
+            if (rejectSamples.size() < MAX_REJECT_SAMPLES) {
+                rejectSamples.add("line " + lineNo + ": " + reason);
+            }
+        }
+    }
+
+    public Result importCsv(Kind kind, Reader source) throws IOException, SQLException {
+        loadKeySets();
+        Result result = new Result();
+        long start = System.nanoTime();
+
+        List<Object[]> chunk = new ArrayList<>(chunkSize);
+        long[] chunkLines = new long[chunkSize];
+        BufferedReader in = source instanceof BufferedReader ? (BufferedReader) source : new BufferedReader(source, 1 << 16);
+        String line;
+        long lineNo = 0;
+        while ((line = in.readLine()) != null) {
+            lineNo++;
+            if (line.trim().isEmpty()) continue;
+            if (lineNo == 1 && !Character.isDigit(line.trim().charAt(0))) continue; // header row
+
+            result.rowsRead++;
+            Object[] row = parseRow(kind, line, lineNo, result);
+            if (row == null) continue;
+
+            chunkLines[chunk.size()] = lineNo;
+            chunk.add(row);
+            if (chunk.size() >= chunkSize) {
+                flush(kind, chunk, chunkLines, result);
+            }
+        }
+        flush(kind, chunk, chunkLines, result);
+
+        result.elapsedNanos = System.nanoTime() - start;
+        return result;
+    }
+
+    // --- Parses and validates one CSV row; returns the insert parameters or null if rejected ---
+    private Object[] parseRow(Kind kind, String line, long lineNo, Result result) {
+        String[] f = splitCsv(line);
+        int expected = kind.getColumns().split(",").length;
+        if (f.length != expected) {
+            result.reject(lineNo, "expected " + expected + " columns (" + kind.getColumns() + ") but found " + f.length);
+            return null;
+        }
+        try {
+            int userId = Integer.parseInt(f[0].trim());
+            int programId = Integer.parseInt(f[1].trim());
+            if (!userIds.contains(userId)) {
+                result.reject(lineNo, "unknown user_id " + userId);
+                return null;
+            }
+            if (!programIds.contains(programId)) {
+                result.reject(lineNo, "unknown program_id " + programId);
+                return null;
+            }
+            if (kind == Kind.ATTENDANCE) {
+                String date = LocalDate.parse(f[2].trim()).toString();
+                return new Object[] { null, userId, programId, date };
+            }
+            double amount = Double.parseDouble(f[2].trim());
+            if (amount < 0) {
+                result.reject(lineNo, "negative amount_received");
+                return null;
+            }
+            return new Object[] { userId, programId, amount };
+        } catch (NumberFormatException e) {
+            result.reject(lineNo, "not a number: " + e.getMessage());
+        } catch (DateTimeParseException e) {
+            result.reject(lineNo, "meeting_date must be YYYY-MM-DD: " + e.getParsedString());
+        }
+        return null;
+    }
+
+    // --- Writes one chunk as a single transaction ---
+    private void flush(Kind kind, List<Object[]> chunk, long[] chunkLines, Result result) throws SQLException {
+        if (chunk.isEmpty()) return;
+
+        if (kind == Kind.ATTENDANCE) {
+            // Reserve the whole chunk's IDs before the transaction opens.
+            int firstId = db.reserveIds("attendance", "attendance_id", chunk.size());
+            for (int i = 0; i < chunk.size(); i++) {
+                chunk.get(i)[0] = firstId + i;
+            }
+        }
+
+        List<List<Integer>> byShard = new ArrayList<>();
+        for (int shard = 0; shard < config.getShardCount(); shard++) {
+            byShard.add(new ArrayList<>());
+        }
+        for (int i = 0; i < chunk.size(); i++) {
+            byShard.get(config.shardOf((Integer) chunk.get(i)[kind.userColumn])).add(i);
+        }
+        for (int shard = 0; shard < byShard.size(); shard++) {
+            if (!byShard.get(shard).isEmpty()) {
+                flushShard(shard, kind, chunk, byShard.get(shard), chunkLines, result);
+            }
+        }
+        chunk.clear();
+    }
+
+    // --- The chunk's rows that belong to one shard (positions in 'rows'), as one transaction ---
+    private void flushShard(int shard, Kind kind, List<Object[]> chunk, List<Integer> rows, long[] chunkLines, Result result)
+            throws SQLException {
+        try (Connection conn = config.getWriteConnection(shard)) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement pstmt = conn.prepareStatement(kind.insertSql)) {
+                for (int r : rows) {
+                    Object[] row = chunk.get(r);
+                    for (int i = 0; i < row.length; i++) {
+                        pstmt.setObject(i + 1, row[i]);
+                    }
+                    pstmt.addBatch();
+                }
+                int[] counts = pstmt.executeBatch();
+                for (int i = 0; i < counts.length; i++) {
+                    config.recordChange(shard, kind.insertSql, chunk.get(rows.get(i)), counts[i]);
+                }
+                conn.commit();
+                for (int i = 0; i < counts.length; i++) {
+                    int r = rows.get(i);
+                    if (counts[i] > 0) {
+                        result.rowsInserted++;
+                        if (kind == Kind.ATTENDANCE) {
+                            Object[] row = chunk.get(r);
+                            attendanceIndex.add((Integer) row[1], (Integer) row[2], (String) row[3]);
+                        }
+                    } else {
+                        result.reject(chunkLines[r], kind.name().toLowerCase() + " record already exists");
+                    }
+                }
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+    }
+
+    private void loadKeySets() throws SQLException {
+        userIds = loadIds(SQL_ALL_USER_IDS);
+        programIds = loadIds(SQL_ALL_PROGRAM_IDS);
+    }
+
+    private Set<Integer> loadIds(String sql) throws SQLException {
+        Set<Integer> ids = new HashSet<>();
+        db.queryForEach(sql, rs -> ids.add(rs.getInt(1)));
+        return ids;
+    }
+
+    // --- Minimal CSV splitter: commas, optional double quotes, "" as an escaped quote ---
+    static String[] splitCsv(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder cur = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"') {
+                    if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                        cur.append('"');
+                        i++;
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    cur.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(cur.toString());
+                cur.setLength(0);
+            } else {
+                cur.append(c);
+            }
+        }
+        fields.add(cur.toString());
+        return fields.toArray(new String[0]);
+    }
+}
@@ -0,0 +1,597 @@
+package main;
+
+import config.ChangeJournal;
+import config.Json;
+import config.DbMaintenance;
+import config.JournalConsumer;
+import config.LatencyHistogram;
+import config.SnapshotExporter;
+import config.config;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Headless command mode: runs a stream of operations without the menu.
+ *
+ * Each input line is one operation, either a JSON object
+ * ({@code {"op":"record_attendance","user_id":3,"program_id":2,"date":"2024-01-08"}})
+ * or the same as a script line
+ * ({@code record_attendance user_id=3 program_id=2 date=2024-01-08}).
+ * Blank lines and lines starting with '#' are skipped. Every operation goes
+ * through {@link RecordService}, {@link AuthService} or {@link ReportManager}
+ * and produces one JSON result line with its timing.
+ *
+ * Operations are grouped into batches of {@code batchSize}: IDs for the whole
+ * batch are reserved up front and the batch runs as one writer transaction.
+ * With write-behind on, the queue does the grouping instead.
+ */
+public class CommandRunner {
+
+    public static final int DEFAULT_BATCH_SIZE = 100;
+    private static final int DEFAULT_QUERY_LIMIT = 100;
+
+    static final List<String> OPERATIONS = Arrays.asList(
+        "add_program", "update_program", "delete_program",
+        "record_participation", "update_participation", "delete_participation",
+        "record_attendance", "delete_attendance", "count_attendance",
+        "register", "login", "query", "report", "reconcile", "rebuild_summaries", "export_snapshot", "compliance_run",
+        "backup", "verify_backup", "maintenance", "export_changes", "search");
+    // Manage their own transactions, so they run between batches.
+    private static final Set<String> STANDALONE = new HashSet<>(Arrays.asList("reconcile", "rebuild_summaries", "export_snapshot", "compliance_run",
+            "backup", "verify_backup", "maintenance", "export_changes"));
+    private static final int DEFAULT_CHANGE_LIMIT = 1000;
+
+    private final config db;
+    private final int batchSize;
+    private final PrintStream out;
+    private final RecordService records;
+    private final AuthService auth;
+    private final ReportManager reports;
+    private final SearchService search;
+
+    private final Map<String, LatencyHistogram> timings = new TreeMap<>();
+    private final LatencyHistogram commitLatency = new LatencyHistogram();
+    private int ok;
+    private int failed;
+    private int batches;
+
+    public CommandRunner(config db, int batchSize, PrintStream out) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batchSize must be at least 1");
+        }
+        this.db = db;
+        this.batchSize = batchSize;
+        this.out = out;
+        this.records = new RecordService(db);
+        this.auth = new AuthService(db);
+        this.reports = new ReportManager(db, null);
+        this.search = new SearchService(db);
+    }
+
+    public Summary run(Reader input) throws IOException {
+        long start = System.nanoTime();
+        BufferedReader in = input instanceof BufferedReader ? (BufferedReader) input : new BufferedReader(input);
+        List<Command> batch = new ArrayList<>(batchSize);
+        String line;
+        long lineNo = 0;
+        while ((line = in.readLine()) != null) {
+            lineNo++;
+            String trimmed = line.trim();
+            if (trimmed.isEmpty() || trimmed.startsWith("#")) continue;
+
+            Command cmd = new Command(lineNo);
+            try {
+                cmd.args = trimmed.startsWith("{") ? Json.parseObject(trimmed) : parseScriptLine(trimmed);
+                Object op = cmd.args.remove("op");
+                cmd.op = op == null ? "" : op.toString().toLowerCase(Locale.ROOT);
+                if (!OPERATIONS.contains(cmd.op)) {
+                    cmd.fail(op == null ? "missing \"op\"" : "unknown op '" + op + "'");
+                }
+            } catch (IllegalArgumentException e) {
+                cmd.op = "";
+                cmd.fail(e.getMessage());
+            }
+
+            if (STANDALONE.contains(cmd.op)) {
+                runBatch(batch);
+                batch.clear();
+                execute(cmd);
+                emit(cmd);
+            } else {
+                batch.add(cmd);
+                if (batch.size() >= batchSize) {
+                    runBatch(batch);
+                    batch.clear();
+                }
+            }
+        }
+        runBatch(batch);
+        config.flushWrites();
+        return new Summary(ok, failed, batches, System.nanoTime() - start, timings, commitLatency);
+    }
+
+    // ----------------------------------------------------
+    // --- BATCHES ---
+    // ----------------------------------------------------
+
+    private void runBatch(List<Command> batch) {
+        if (batch.isEmpty()) return;
+        batches++;
+        try {
+            reserveIds(batch);
+        } catch (SQLException e) {
+            for (Command cmd : batch) {
+                if (cmd.error == null) cmd.fail("could not reserve IDs: " + e.getMessage());
+            }
+        }
+
+        if (config.isWriteBehindEnabled() || batchSize == 1 || config.getShardCount() > 1) {
+            // The write-behind queue groups writes itself; holding the writer here would only stall it.
+            // Sharded, a batch's writes go to different files, so there is no one writer to hold.
+            for (Command cmd : batch) {
+                execute(cmd);
+            }
+        } else {
+            runInTransaction(batch);
+        }
+        for (Command cmd : batch) {
+            emit(cmd);
+        }
+        out.flush();
+    }
+
+    private void runInTransaction(List<Command> batch) {
+        // Nested addRecord/getRecords calls on this thread reuse the writer, so the batch is one transaction.
+        try (Connection conn = config.getWriteConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                for (Command cmd : batch) {
+                    execute(cmd);
+                }
+                long t = System.nanoTime();
+                conn.commit();
+                commitLatency.record(System.nanoTime() - t);
+            } catch (SQLException e) {
+                conn.rollback();
+                // Attendance changes already applied to the in-memory index were rolled back with the batch, and
+                // program/user rows the batch read back may be cached although they were never committed.
+                AttendanceIndex.get().invalidate();
+                config.invalidateRowCaches();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            for (Command cmd : batch) {
+                if (cmd.error == null && !isReadOnly(cmd.op)) {
+                    cmd.result.clear();
+                    cmd.fail("batch transaction failed: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    // --- IdAllocator cannot refill inside an open transaction, so the batch's IDs are taken first ---
+    private void reserveIds(List<Command> batch) throws SQLException {
+        assignIds(batch, "add_program", "program", "program_id");
+        assignIds(batch, "record_attendance", "attendance", "attendance_id");
+        assignIds(batch, "register", "user", "user_id");
+    }
+
+    private void assignIds(List<Command> batch, String op, String table, String column) throws SQLException {
+        int needed = 0;
+        for (Command cmd : batch) {
+            if (cmd.error == null && op.equals(cmd.op) && cmd.args.get(column) == null) needed++;
+        }
+        if (needed == 0) return;
+        int next = db.reserveIds(table, column, needed);
+        for (Command cmd : batch) {
+            if (cmd.error == null && op.equals(cmd.op) && cmd.args.get(column) == null) {
+                cmd.args.put(column, (long) next++);
+            }
+        }
+    }
+
+    // --- The changes journaled since the consumer's stored offset; with commit (the default) the offset moves past them ---
+    private static void exportChanges(String consumer, int max, boolean commit, Map<String, Object> result) throws ServiceException {
+        Path dir = config.getJournalDirectory();
+        if (dir == null) {
+            throw new ServiceException("The change journal is off; start with -D4ps.journal.dir=<dir>.");
+        }
+        if (max < 1) {
+            throw new IllegalArgumentException("'max' must be at least 1");
+        }
+        List<Map<String, Object>> rows = new ArrayList<>();
+        try (JournalConsumer feed = JournalConsumer.open(dir, consumer)) {
+            result.put("from", feed.getOffset());
+            for (ChangeJournal.Change c : feed.poll(max)) {
+                Map<String, Object> row = new LinkedHashMap<>();
+                row.put("seq", c.getSequence());
+                row.put("time", Instant.ofEpochMilli(c.getTimeMillis()).toString());
+                row.put("op", c.getOp().name().toLowerCase(Locale.ROOT));
+                row.put("table", c.getTable());
+                row.put("params", Arrays.asList(c.getParams()));
+                row.put("rows", c.getRows());
+                rows.add(row);
+            }
+            if (commit) {
+                feed.commit();
+            }
+            result.put("next", feed.getOffset());
+        } catch (IOException e) {
+            throw new ServiceException("Could not read the change journal: " + e.getMessage());
+        }
+        result.put("changes", rows);
+    }
+
+    private static boolean isReadOnly(String op) {
+        return "query".equals(op) || "report".equals(op) || "login".equals(op) || "count_attendance".equals(op)
+                || "search".equals(op);
+    }
+
+    // ----------------------------------------------------
+    // --- OPERATIONS ---
+    // ----------------------------------------------------
+
+    private void execute(Command cmd) {
+        if (cmd.error != null) return;
+        long start = System.nanoTime();
+        try {
+            dispatch(cmd.op, cmd.args, cmd.result);
+        } catch (ServiceException e) {
+            cmd.fail(e.getMessage());
+        } catch (SQLException e) {
+            cmd.fail("database error: " + e.getMessage());
+        } catch (IllegalArgumentException e) {
+            cmd.fail(e.getMessage());
+        } catch (RuntimeException e) {
+            // A bug in one operation fails that line only; the rest of the stream still runs.
+            cmd.fail("internal error: " + e);
+        }
+        cmd.elapsedNanos = System.nanoTime() - start;
+        LatencyHistogram h = timings.get(cmd.op);
+        if (h == null) {
+            h = new LatencyHistogram();
+            timings.put(cmd.op, h);
+        }
+        h.record(cmd.elapsedNanos);
+    }
+
+    private void dispatch(String op, Map<String, Object> a, Map<String, Object> result) throws SQLException, ServiceException {
+        switch (op) {
+            case "add_program": {
+                int id = Args.integer(a, "program_id");
+                records.addProgram(id, Args.str(a, "name"), Args.optStr(a, "description"));
+                result.put("program_id", id);
+                break;
+            }
+            case "update_program":
+                records.updateProgram(Args.integer(a, "program_id"), Args.str(a, "name"), Args.optStr(a, "description"));
+                break;
+            case "delete_program":
+                records.deleteProgram(Args.integer(a, "program_id"));
+                break;
+            case "record_participation":
+                records.recordParticipation(Args.integer(a, "user_id"), Args.integer(a, "program_id"), Args.decimal(a, "amount"));
+                break;
+            case "update_participation":
+                records.updateParticipation(Args.integer(a, "user_id"), Args.integer(a, "program_id"), Args.decimal(a, "amount"));
+                break;
+            case "delete_participation":
+                records.deleteParticipation(Args.integer(a, "user_id"), Args.integer(a, "program_id"));
+                break;
+            case "record_attendance": {
+                int id = Args.integer(a, "attendance_id");
+                records.recordAttendance(id, Args.integer(a, "user_id"), Args.integer(a, "program_id"), Args.str(a, "date"));
+                result.put("attendance_id", id);
+                break;
+            }
+            case "delete_attendance":
+                records.deleteAttendance(Args.integer(a, "attendance_id"));
+                break;
+            case "count_attendance":
+                result.put("meetings", records.countAttendance(Args.integer(a, "user_id"), Args.integer(a, "program_id"),
+                        Args.str(a, "from"), Args.str(a, "to")));
+                break;
+            case "register": {
+                int id = Args.integer(a, "user_id");
+                auth.register(id, Args.str(a, "name"), Args.optStr(a, "gender"), Args.optStr(a, "year_level"),
+                        Args.str(a, "email"), Args.str(a, "password"));
+                result.put("user_id", id);
+                break;
+            }
+            case "login": {
+                AuthService.Account account = auth.authenticate(Args.str(a, "email"), Args.str(a, "password"));
+                result.put("user_id", account.getUserId());
+                result.put("name", account.getName());
+                break;
+            }
+            case "query":
+                result.put("rows", query(a));
+                break;
+            case "report":
+                result.put("rows", report(a));
+                break;
+            case "search": {
+                Integer limit = Args.optInt(a, "limit");
+                result.put("rows", search.search(SearchService.scope(Args.optStr(a, "scope")), Args.str(a, "q"),
+                        limit == null ? SearchService.DEFAULT_LIMIT : limit));
+                break;
+            }
+            case "reconcile": {
+                MeetingsReconciler.Result r = new MeetingsReconciler().reconcile(Boolean.TRUE.equals(Args.optBool(a, "fix")));
+                result.put("drifted", r.getDrifted());
+                result.put("fixed", r.isFixed());
+                result.put("samples", r.getSamples());
+                break;
+            }
+            case "rebuild_summaries": {
+                Integer threads = Args.optInt(a, "threads");
+                ReportManager.RebuildResult r = reports.rebuildSummaries(threads == null ? 4 : threads);
+                result.put("programs", r.getPrograms());
+                result.put("rows", r.getRows());
+                break;
+            }
+            case "export_snapshot": {
+                String dir = Args.optStr(a, "dir");
+                SnapshotExporter.Result r;
+                try {
+                    r = SnapshotExporter.export(Paths.get(dir == null ? "snapshot" : dir));
+                } catch (IOException e) {
+                    throw new ServiceException("Could not write the snapshot: " + e.getMessage());
+                }
+                result.put("tables", r.getTables());
+                result.put("rows", r.getRows());
+                result.put("bytes", r.getBytes());
+                break;
+            }
+            case "compliance_run": {
+                Integer threads = Args.optInt(a, "threads");
+                ComplianceRun.Result r;
+                try {
+                    r = new ComplianceRun(db, threads == null ? Runtime.getRuntime().availableProcessors() : threads,
+                            Args.optStr(a, "min_rate") == null ? ComplianceRun.DEFAULT_MIN_RATE : Args.decimal(a, "min_rate"))
+                            .run(LocalDate.parse(Args.str(a, "from")), LocalDate.parse(Args.str(a, "to")), null);
+                } catch (DateTimeParseException e) {
+                    throw new IllegalArgumentException("'from' and 'to' must be YYYY-MM-DD");
+                }
+                result.put("run_id", r.getRunId());
+                result.put("evaluated", r.getEvaluated());
+                result.put("eligible", r.getEligible());
+                result.put("total_amount", r.getTotalAmount());
+                break;
+            }
+            case "backup": {
+                DbMaintenance.StepResult r;
+                try {
+                    r = DbMaintenance.backup(Paths.get(Args.str(a, "dir")));
+                    DbMaintenance.prune(Paths.get(Args.str(a, "dir")), config.BACKUP_KEEP);
+                } catch (IOException e) {
+                    throw new ServiceException("Could not write the backup: " + e.getMessage());
+                }
+                result.put("detail", r.getDetail());
+                result.put("elapsed_ms", r.getElapsedNanos() / 1_000_000);
+                break;
+            }
+            case "verify_backup": {
+                DbMaintenance.VerifyResult r;
+                try {
+                    r = DbMaintenance.verify(Paths.get(Args.str(a, "file")));
+                } catch (IOException e) {
+                    throw new ServiceException("Could not read the backup: " + e.getMessage());
+                }
+                if (!r.isOk()) {
+                    throw new ServiceException(r.getDetail());
+                }
+                result.put("detail", r.getDetail());
+                break;
+            }
+            case "maintenance": {
+                List<DbMaintenance.StepResult> ran = new ArrayList<>();
+                if (Boolean.TRUE.equals(Args.optBool(a, "enable_incremental"))) {
+                    ran.add(DbMaintenance.enableIncrementalVacuum());
+                }
+                ran.add(DbMaintenance.incrementalVacuum());
+                ran.add(DbMaintenance.optimize());
+                List<Map<String, Object>> steps = new ArrayList<>();
+                for (DbMaintenance.StepResult step : ran) {
+                    Map<String, Object> s = new LinkedHashMap<>();
+                    s.put("step", step.getStep());
+                    s.put("elapsed_ms", step.getElapsedNanos() / 1_000_000);
+                    s.put("writer_held_ms", step.getWriterHeldNanos() / 1_000_000);
+                    s.put("longest_hold_ms", step.getMaxWriterHoldNanos() / 1_000_000);
+                    s.put("detail", step.getDetail());
+                    steps.add(s);
+                }
+                result.put("steps", steps);
+                break;
+            }
+            case "export_changes": {
+                Integer max = Args.optInt(a, "max");
+                exportChanges(Args.str(a, "consumer"), max == null ? DEFAULT_CHANGE_LIMIT : max,
+                        !Boolean.FALSE.equals(Args.optBool(a, "commit")), result);
+                break;
+            }
+            default:
+                throw new IllegalArgumentException("unknown op '" + op + "'");
+        }
+    }
+
+    private List<Map<String, Object>> query(Map<String, Object> a) throws SQLException {
+        Integer limit = Args.optInt(a, "limit");
+        return records.list(Args.view(Args.str(a, "view")), Args.filter(a), limit == null ? DEFAULT_QUERY_LIMIT : limit);
+    }
+
+    private List<Map<String, Object>> report(Map<String, Object> a) throws SQLException {
+        String name = Args.str(a, "name");
+        ResultSet rs;
+        switch (name) {
+            case "program_totals": rs = reports.programTotals(); break;
+            case "beneficiary_meetings": rs = reports.beneficiaryMeetings(Args.integer(a, "program_id")); break;
+            case "monthly_attendance": rs = reports.monthlyAttendance(Args.optInt(a, "program_id")); break;
+            default:
+                throw new IllegalArgumentException("'name' must be one of program_totals, beneficiary_meetings, monthly_attendance");
+        }
+        if (rs == null) {
+            throw new SQLException("report query failed");
+        }
+        try (ResultSet r = rs) {
+            List<Map<String, Object>> rows = new ArrayList<>();
+            ResultSetMetaData md = r.getMetaData();
+            while (r.next()) {
+                Map<String, Object> row = new LinkedHashMap<>();
+                for (int i = 1; i <= md.getColumnCount(); i++) {
+                    row.put(md.getColumnLabel(i), r.getObject(i));
+                }
+                rows.add(row);
+            }
+            return rows;
+        }
+    }
+
+    // ----------------------------------------------------
+    // --- INPUT / OUTPUT ---
+    // ----------------------------------------------------
+
+    private void emit(Command cmd) {
+        if (cmd.error == null) ok++; else failed++;
+        Map<String, Object> line = new LinkedHashMap<>();
+        line.put("line", cmd.lineNo);
+        line.put("op", cmd.op);
+        line.put("ok", cmd.error == null);
+        line.put("ms", Math.round(cmd.elapsedNanos / 1000.0) / 1000.0);
+        if (cmd.error != null) {
+            line.put("error", cmd.error);
+        } else {
+            line.putAll(cmd.result);
+        }
+        out.println(Json.write(line));
+    }
+
+    // --- op key=value key="value with spaces" ... ---
+    static Map<String, Object> parseScriptLine(String line) {
+        Map<String, Object> args = new LinkedHashMap<>();
+        List<String> tokens = new ArrayList<>();
+        StringBuilder cur = new StringBuilder();
+        boolean quoted = false;
+        boolean inToken = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '\\' && i + 1 < line.length()) {
+                    cur.append(line.charAt(++i));
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    cur.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+                inToken = true;
+            } else if (Character.isWhitespace(c)) {
+                if (inToken) {
+                    tokens.add(cur.toString());
+                    cur.setLength(0);
+                    inToken = false;
+                }
+            } else {
+                cur.append(c);
+                inToken = true;
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("unterminated quote");
+        }
+        if (inToken) {
+            tokens.add(cur.toString());
+        }
+        args.put("op", tokens.get(0));
+        for (String t : tokens.subList(1, tokens.size())) {
+            int eq = t.indexOf('=');
+            if (eq <= 0) {
+                throw new IllegalArgumentException("expected key=value but found '" + t + "'");
+            }
+            args.put(t.substring(0, eq), t.substring(eq + 1));
+        }
+        return args;
+    }
+
+    private static class Command {
+        final long lineNo;
+        String op;
+        Map<String, Object> args = new LinkedHashMap<>();
+        final Map<String, Object> result = new LinkedHashMap<>();
+        String error;
+        long elapsedNanos;
+
+        Command(long lineNo) {
+            this.lineNo = lineNo;
+        }
+
+        void fail(String message) {
+            error = message;
+        }
+    }
+
+    // ----------------------------------------------------
+    // --- SUMMARY ---
+    // ----------------------------------------------------
+
+    public static class Summary {
+        private final int ok;
+        private final int failed;
+        private final int batches;
+        private final long elapsedNanos;
+        private final Map<String, LatencyHistogram> timings;
+        private final LatencyHistogram commitLatency;
+
+        Summary(int ok, int failed, int batches, long elapsedNanos, Map<String, LatencyHistogram> timings, LatencyHistogram commitLatency) {
+            this.ok = ok;
+            this.failed = failed;
+            this.batches = batches;
+            this.elapsedNanos = elapsedNanos;
+            this.timings = timings;
+            this.commitLatency = commitLatency;
+        }
+
+        public int getOk() { return ok; }
+        public int getFailed() { return failed; }
+        public long getElapsedNanos() { return elapsedNanos; }
+
+        @Override
+        public String toString() {
+            int total = ok + failed;
+            StringBuilder sb = new StringBuilder();
+            sb.append(String.format("%s Headless run: %d operations (%d ok, %d failed) in %.2f s, %.0f ops/s, %d batches, commit p99 %.3f ms%n",
+                    failed == 0 ? "✅" : "⚠️", total, ok, failed, elapsedNanos / 1e9,
+                    elapsedNanos == 0 ? 0.0 : total / (elapsedNanos / 1e9), batches,
+                    commitLatency.getValueAtPercentile(99) / 1e6));
+            for (Map.Entry<String, LatencyHistogram> e : timings.entrySet()) {
+                LatencyHistogram h = e.getValue();
+                sb.append(String.format("   %-22s n=%-8d mean=%.3fms p50=%.3fms p99=%.3fms max=%.3fms%n", e.getKey(), h.getCount(),
+                        h.getMean() / 1e6, h.getValueAtPercentile(50) / 1e6, h.getValueAtPercentile(99) / 1e6, h.getMax() / 1e6));
+            }
+            return sb.toString();
+        }
+    }
+}
@@ -0,0 +1,469 @@
+package main;
+
+import config.config;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Payout-cycle compliance run: for every participation row, did the
+ * beneficiary attend enough of the program's meetings in the period, and
+ * what should they be paid?
+ *
+ * A participant is eligible when they attended at least
+ * {@code ceil(minRate x meetings held)} of the meetings their program held in
+ * the period (meetings held = meeting days in attendance_daily). Eligible
+ * rows keep their participation.amount_received as the computed amount;
+ * the others get 0.
+ *
+ * The user_id range is split recursively across a {@link ForkJoinPool}. Each
+ * worker thread reads its slices through its own query-only connection
+ * ({@link config#openDedicatedReader(int)}), so the workers never queue on the
+ * pool and never share a connection. Finished slices go to a queue that the
+ * calling thread drains into compliance_result in batched writer
+ * transactions, so reading and writing overlap. Slices are read one at a
+ * time, not as one snapshot; for a period that has already closed the rows
+ * do not change while the run is going.
+ *
+ * With the database sharded, each worker holds one reader per shard and
+ * reads every slice from all of them; a program's meetings held are the
+ * distinct meeting days over all shards. The run and its verdicts are
+ * stored on shard 0.
+ */
+public class ComplianceRun {
+
+    public static final double DEFAULT_MIN_RATE = Double.parseDouble(System.getProperty("4ps.compliance.minRate", "0.85"));
+    private static final int WRITE_BATCH_ROWS = Integer.getInteger("4ps.compliance.batchRows", 2000);
+    private static final int MIN_SLICE_USERS = 256;
+    private static final int SLICES_PER_THREAD = 8;
+    private static final long PROGRESS_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    static final String SQL_USER_RANGE = "SELECT MIN(user_id), MAX(user_id), COUNT(*) FROM participation";
+    static final String SQL_MEETINGS_HELD =
+        "SELECT program_id, COUNT(*) FROM attendance_daily WHERE meeting_date BETWEEN ? AND ? GROUP BY program_id";
+    static final String SQL_MEETING_DAYS =
+        "SELECT program_id, meeting_date FROM attendance_daily WHERE meeting_date BETWEEN ? AND ?";
+    static final String SQL_SLICE =
+        "SELECT p.user_id, p.program_id, IFNULL(p.amount_received, 0), "
+            + "(SELECT COUNT(*) FROM attendance a WHERE a.user_id = p.user_id AND a.program_id = p.program_id "
+            + "AND a.meeting_date BETWEEN ? AND ?) "
+            + "FROM participation p WHERE p.user_id >= ? AND p.user_id < ?";
+    static final String SQL_START_RUN =
+        "INSERT INTO compliance_run(run_id, period_from, period_to, min_rate, status, started_at) VALUES (?,?,?,?,'running',?)";
+    static final String SQL_PUT_RESULT =
+        "INSERT INTO compliance_result(run_id, user_id, program_id, meetings_held, meetings_attended, eligible, computed_amount) "
+            + "VALUES (?,?,?,?,?,?,?)";
+    static final String SQL_FINISH_RUN =
+        "UPDATE compliance_run SET status = ?, finished_at = ?, evaluated = ?, eligible = ?, total_amount = ? WHERE run_id = ?";
+
+    /** Receives progress while the run is going, about once a second, on the calling thread. */
+    public interface Progress {
+        void update(long evaluated, long total, long elapsedNanos);
+    }
+
+    private final config db;
+    private final int threads;
+    private final double minRate;
+
+    public ComplianceRun(config db, int threads, double minRate) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads must be at least 1");
+        }
+        if (minRate < 0 || minRate > 1) {
+            throw new IllegalArgumentException("minRate must be between 0 and 1");
+        }
+        this.db = db;
+        this.threads = threads;
+        this.minRate = minRate;
+    }
+
+    /** Evaluates every participation row for the period (both dates inclusive) and stores the verdicts. */
+    public Result run(LocalDate from, LocalDate to, Progress progress) throws SQLException {
+        if (to.isBefore(from)) {
+            throw new IllegalArgumentException("the period ends before it starts");
+        }
+        long start = System.nanoTime();
+        String fromDate = from.toString();
+        String toDate = to.toString();
+
+        int minUser = Integer.MAX_VALUE;
+        int maxUser = Integer.MIN_VALUE;
+        long total = 0;
+        Map<Integer, Integer> held = new HashMap<>();
+        Map<Integer, Set<String>> heldDays = new HashMap<>();
+        for (int shard = 0; shard < config.getShardCount(); shard++) {
+            try (Connection conn = config.getConnection(shard)) {
+                try (PreparedStatement ps = conn.prepareStatement(SQL_USER_RANGE); ResultSet rs = ps.executeQuery()) {
+                    rs.next();
+                    if (rs.getLong(3) > 0) {
+                        minUser = Math.min(minUser, rs.getInt(1));
+                        maxUser = Math.max(maxUser, rs.getInt(2));
+                        total += rs.getLong(3);
+                    }
+                }
+                if (config.getShardCount() == 1) {
+                    try (PreparedStatement ps = conn.prepareStatement(SQL_MEETINGS_HELD)) {
+                        ps.setString(1, fromDate);
+                        ps.setString(2, toDate);
+                        try (ResultSet rs = ps.executeQuery()) {
+                            while (rs.next()) {
+                                held.put(rs.getInt(1), rs.getInt(2));
+                            }
+                        }
+                    }
+                } else {
+                    // A meeting day can have attendees on several shards; count it once.
+                    try (PreparedStatement ps = conn.prepareStatement(SQL_MEETING_DAYS)) {
+                        ps.setString(1, fromDate);
+                        ps.setString(2, toDate);
+                        try (ResultSet rs = ps.executeQuery()) {
+                            while (rs.next()) {
+                                heldDays.computeIfAbsent(rs.getInt(1), k -> new HashSet<>()).add(rs.getString(2));
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        for (Map.Entry<Integer, Set<String>> e : heldDays.entrySet()) {
+            held.put(e.getKey(), e.getValue().size());
+        }
+        if (total == 0) {
+            minUser = 0;
+            maxUser = 0;
+        }
+
+        int runId = db.reserveIds("compliance_run", "run_id", 1);
+        write(SQL_START_RUN, runId, fromDate, toDate, minRate, LocalDateTime.now().toString());
+        Result result = new Result(runId, from, to, minRate, threads);
+
+        BlockingQueue<Slice> done = new LinkedBlockingQueue<>();
+        AtomicReference<SQLException> failure = new AtomicReference<>();
+        Map<Thread, Reader> readers = new ConcurrentHashMap<>();
+        long span = total == 0 ? 0 : (long) maxUser - minUser + 1;
+        long grain = Math.max(MIN_SLICE_USERS, span / ((long) threads * SLICES_PER_THREAD) + 1);
+        ForkJoinPool pool = new ForkJoinPool(threads, WORKER_FACTORY, null, false);
+        try {
+            SliceTask root = new SliceTask(minUser, minUser + span, grain, fromDate, toDate, held, readers, done, failure);
+            pool.execute(root);
+
+            List<Slice> batch = new ArrayList<>();
+            int batchRows = 0;
+            long lastReport = System.nanoTime();
+            while (true) {
+                Slice s = poll(done);
+                if (s == null && root.isDone()) {
+                    s = done.poll();
+                    if (s == null) break;
+                }
+                if (s != null) {
+                    result.slices++;
+                    batch.add(s);
+                    batchRows += s.size;
+                    if (batchRows >= WRITE_BATCH_ROWS) {
+                        writeResults(runId, batch, result);
+                        batch.clear();
+                        batchRows = 0;
+                    }
+                }
+                if (progress != null && System.nanoTime() - lastReport >= PROGRESS_INTERVAL_NANOS) {
+                    lastReport = System.nanoTime();
+                    progress.update(result.evaluated + batchRows, total, lastReport - start);
+                }
+            }
+            if (failure.get() != null) {
+                throw failure.get();
+            }
+            if (root.isCompletedAbnormally()) {
+                throw new SQLException("Compliance run failed: " + root.getException(), root.getException());
+            }
+            writeResults(runId, batch, result);
+        } catch (SQLException | RuntimeException e) {
+            pool.shutdownNow();
+            finish(runId, "failed", result);
+            throw e;
+        } finally {
+            pool.shutdown();
+            for (Reader r : readers.values()) {
+                r.close();
+            }
+        }
+        finish(runId, "done", result);
+        result.elapsedNanos = System.nanoTime() - start;
+        if (progress != null) {
+            progress.update(result.evaluated, total, result.elapsedNanos);
+        }
+        return result;
+    }
+
+    private static Slice poll(BlockingQueue<Slice> queue) throws SQLException {
+        try {
+            return queue.poll(100, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Compliance run interrupted", e);
+        }
+    }
+
+    // ----------------------------------------------------
+    // --- WORKERS ---
+    // ----------------------------------------------------
+
+    // --- One user_id range [lo, hi); splits in halves until a range is at most 'grain' IDs wide ---
+    private final class SliceTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final long lo;
+        private final long hi;
+        private final long grain;
+        private final String fromDate;
+        private final String toDate;
+        private final Map<Integer, Integer> held;
+        private final Map<Thread, Reader> readers;
+        private final BlockingQueue<Slice> done;
+        private final AtomicReference<SQLException> failure;
+
+        SliceTask(long lo, long hi, long grain, String fromDate, String toDate, Map<Integer, Integer> held,
+                  Map<Thread, Reader> readers, BlockingQueue<Slice> done, AtomicReference<SQLException> failure) {
+            this.lo = lo;
+            this.hi = hi;
+            this.grain = grain;
+            this.fromDate = fromDate;
+            this.toDate = toDate;
+            this.held = held;
+            this.readers = readers;
+            this.done = done;
+            this.failure = failure;
+        }
+
+        @Override
+        protected void compute() {
+            if (failure.get() != null || lo >= hi) return;
+            if (hi - lo > grain) {
+                long mid = lo + (hi - lo) / 2;
+                invokeAll(new SliceTask(lo, mid, grain, fromDate, toDate, held, readers, done, failure),
+                          new SliceTask(mid, hi, grain, fromDate, toDate, held, readers, done, failure));
+                return;
+            }
+            try {
+                Slice s = evaluate(reader(), (int) lo, (int) Math.min(hi, Integer.MAX_VALUE));
+                if (s.size > 0) {
+                    done.add(s);
+                }
+            } catch (SQLException e) {
+                failure.compareAndSet(null, e);
+            }
+        }
+
+        private Reader reader() throws SQLException {
+            Reader r = readers.get(Thread.currentThread());
+            if (r == null) {
+                r = new Reader(config.getShardCount());
+                readers.put(Thread.currentThread(), r);
+            }
+            return r;
+        }
+
+        private Slice evaluate(Reader r, int fromUser, int toUser) throws SQLException {
+            Slice s = new Slice();
+            for (PreparedStatement ps : r.slices) {
+                ps.setString(1, fromDate);
+                ps.setString(2, toDate);
+                ps.setInt(3, fromUser);
+                ps.setInt(4, toUser);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        int programId = rs.getInt(2);
+                        Integer meetings = held.get(programId);
+                        int h = meetings == null ? 0 : meetings;
+                        int attended = rs.getInt(4);
+                        boolean eligible = attended >= (int) Math.ceil(minRate * h);
+                        s.add(rs.getInt(1), programId, h, attended, eligible, eligible ? rs.getDouble(3) : 0.0);
+                    }
+                }
+            }
+            return s;
+        }
+    }
+
+    // --- A worker thread's own connection and statement, one of each per shard ---
+    private static final class Reader {
+        final List<Connection> conns = new ArrayList<>();
+        final List<PreparedStatement> slices = new ArrayList<>();
+
+        Reader(int shards) throws SQLException {
+            try {
+                for (int shard = 0; shard < shards; shard++) {
+                    Connection conn = config.openDedicatedReader(shard);
+                    conns.add(conn);
+                    slices.add(conn.prepareStatement(SQL_SLICE));
+                }
+            } catch (SQLException e) {
+                close();
+                throw e;
+            }
+        }
+
+        void close() {
+            for (PreparedStatement ps : slices) {
+                try { ps.close(); } catch (SQLException e) { /* Ignore close error */ }
+            }
+            for (Connection conn : conns) {
+                try { conn.close(); } catch (SQLException e) { /* Ignore close error */ }
+            }
+        }
+    }
+
+    private static final ForkJoinPool.ForkJoinWorkerThreadFactory WORKER_FACTORY = pool -> {
+        ForkJoinWorkerThread t = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+        t.setName("4ps-compliance-" + t.getPoolIndex());
+        t.setDaemon(true);
+        return t;
+    };
+
+    // --- Verdicts for one slice, column by column ---
+    private static final class Slice {
+        int size;
+        int[] users = new int[64];
+        int[] programs = new int[64];
+        int[] held = new int[64];
+        int[] attended = new int[64];
+        boolean[] eligible = new boolean[64];
+        double[] amounts = new double[64];
+
+        void add(int userId, int programId, int meetingsHeld, int meetingsAttended, boolean ok, double amount) {
+            if (size == users.length) {
+                int n = size * 2;
+                users = Arrays.copyOf(users, n);
+                programs = Arrays.copyOf(programs, n);
+                held = Arrays.copyOf(held, n);
+                attended = Arrays.copyOf(attended, n);
+                eligible = Arrays.copyOf(eligible, n);
+                amounts = Arrays.copyOf(amounts, n);
+            }
+            users[size] = userId;
+            programs[size] = programId;
+            held[size] = meetingsHeld;
+            attended[size] = meetingsAttended;
+            eligible[size] = ok;
+            amounts[size] = amount;
+            size++;
+        }
+    }
+
+    // ----------------------------------------------------
+    // --- WRITE-BACK ---
+    // ----------------------------------------------------
+
+    private void writeResults(int runId, List<Slice> batch, Result result) throws SQLException {
+        if (batch.isEmpty()) return;
+        try (Connection conn = config.getWriteConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement ps = conn.prepareStatement(SQL_PUT_RESULT)) {
+                for (Slice s : batch) {
+                    for (int i = 0; i < s.size; i++) {
+                        ps.setInt(1, runId);
+                        ps.setInt(2, s.users[i]);
+                        ps.setInt(3, s.programs[i]);
+                        ps.setInt(4, s.held[i]);
+                        ps.setInt(5, s.attended[i]);
+                        ps.setInt(6, s.eligible[i] ? 1 : 0);
+                        ps.setDouble(7, s.amounts[i]);
+                        ps.addBatch();
+                    }
+                }
+                ps.executeBatch();
+                conn.commit();
+                result.batches++;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+        for (Slice s : batch) {
+            for (int i = 0; i < s.size; i++) {
+                result.evaluated++;
+                if (s.eligible[i]) {
+                    result.eligible++;
+                    result.totalAmount += s.amounts[i];
+                }
+            }
+        }
+    }
+
+    private void finish(int runId, String status, Result result) throws SQLException {
+        write(SQL_FINISH_RUN, status, LocalDateTime.now().toString(), result.evaluated, result.eligible, result.totalAmount, runId);
+    }
+
+    private static void write(String sql, Object... params) throws SQLException {
+        try (Connection conn = config.getWriteConnection(); PreparedStatement ps = conn.prepareStatement(sql)) {
+            for (int i = 0; i < params.length; i++) {
+                ps.setObject(i + 1, params[i]);
+            }
+            ps.executeUpdate();
+        }
+    }
+
+    // ----------------------------------------------------
+    // --- RESULT ---
+    // ----------------------------------------------------
+
+    public static class Result {
+        private final int runId;
+        private final LocalDate from;
+        private final LocalDate to;
+        private final double minRate;
+        private final int threads;
+        private long evaluated;
+        private long eligible;
+        private double totalAmount;
+        private int slices;
+        private int batches;
+        private long elapsedNanos;
+
+        Result(int runId, LocalDate from, LocalDate to, double minRate, int threads) {
+            this.runId = runId;
+            this.from = from;
+            this.to = to;
+            this.minRate = minRate;
+            this.threads = threads;
+        }
+
+        public int getRunId() { return runId; }
+        public long getEvaluated() { return evaluated; }
+        public long getEligible() { return eligible; }
+        public double getTotalAmount() { return totalAmount; }
+        public int getSlices() { return slices; }
+        public int getBatches() { return batches; }
+        public int getThreads() { return threads; }
+        public long getElapsedNanos() { return elapsedNanos; }
+
+        @Override
+        public String toString() {
+            return String.format("Compliance run %d for %s to %s (min. %.0f%% attendance): %,d of %,d participations eligible, "
+                    + "%,.2f to pay. %d slices on %d threads, %d write batches, %.2f s (%,.0f rows/s).",
+                    runId, from, to, minRate * 100, eligible, evaluated, totalAmount, slices, threads, batches,
+                    elapsedNanos / 1e9, evaluated / Math.max(elapsedNanos / 1e9, 1e-9));
+        }
+    }
+}
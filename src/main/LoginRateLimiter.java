@@ -0,0 +1,166 @@
+package main;
+
+import config.TimerWheel;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-email limit on failed logins over a sliding window.
+ *
+ * Each key keeps two counters, the failures in the current fixed window and
+ * in the one before it; the sliding count is the current counter plus the
+ * previous one weighted by how much of it still overlaps the window. That is
+ * a fixed handful of fields per email, however many attempts are
+ * made. Keys that have been quiet for two windows are dropped by a timer
+ * wheel, and at most {@code maxKeys} emails are tracked at once. Once the map
+ * is full, the emails without a window of their own share one overflow
+ * window with the same limit, so filling the map with junk emails locks
+ * out further guessing instead of lifting the limit.
+ */
+final class LoginRateLimiter {
+
+    private final int maxFailures;
+    private final long windowNanos;
+    private final int maxKeys;
+    private final ConcurrentHashMap<String, Window> windows = new ConcurrentHashMap<>();
+    private final TimerWheel<Window> cleaner;
+    private final Window overflow;
+    private final AtomicLong overflowRejections = new AtomicLong();
+
+    LoginRateLimiter(int maxFailures, long windowMillis, int maxKeys) {
+        if (maxFailures < 1 || windowMillis < 1) {
+            throw new IllegalArgumentException("maxFailures and windowMillis must be at least 1");
+        }
+        this.maxFailures = maxFailures;
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMillis);
+        this.maxKeys = maxKeys;
+        this.overflow = new Window("", System.nanoTime());
+        this.cleaner = new TimerWheel<>("4ps-login-limiter", Math.max(1, windowMillis / 64), 128, this::expire);
+    }
+
+    int getMaxFailures() {
+        return maxFailures;
+    }
+
+    /** Milliseconds until this email may try again, or 0 if it may try now. */
+    long retryAfterMillis(String email) {
+        Window w = windows.get(key(email));
+        if (w != null) {
+            return w.retryAfterMillis(System.nanoTime());
+        }
+        if (windows.size() < maxKeys) {
+            return 0;
+        }
+        long wait = overflow.retryAfterMillis(System.nanoTime());
+        if (wait > 0) {
+            overflowRejections.incrementAndGet();
+        }
+        return wait;
+    }
+
+    /** Records a failed attempt and returns how many attempts are left in the window. */
+    int recordFailure(String email) {
+        String key = key(email);
+        Window w = windows.get(key);
+        if (w == null) {
+            if (windows.size() >= maxKeys) {
+                // Tracking is bounded; past the cap every untracked email draws on the shared overflow window.
+                return Math.max(0, maxFailures - overflow.addFailure(System.nanoTime()));
+            }
+            Window fresh = new Window(key, System.nanoTime());
+            w = windows.putIfAbsent(key, fresh);
+            if (w == null) {
+                w = fresh;
+                cleaner.schedule(w, TimeUnit.NANOSECONDS.toMillis(2 * windowNanos));
+            }
+        }
+        return Math.max(0, maxFailures - w.addFailure(System.nanoTime()));
+    }
+
+    /** Forgets an email's failures (after a successful login). */
+    void reset(String email) {
+        windows.remove(key(email));
+    }
+
+    int trackedKeys() {
+        return windows.size();
+    }
+
+    /** Attempts refused because the map was full and the shared overflow window was used up. */
+    long overflowRejections() {
+        return overflowRejections.get();
+    }
+
+    private long expire(Window w) {
+        if (windows.get(w.key) != w) return 0;     // reset since it was scheduled
+        long idle = System.nanoTime() - w.lastFailureNanos();
+        if (idle >= 2 * windowNanos) {
+            windows.remove(w.key, w);
+            return 0;
+        }
+        return TimeUnit.NANOSECONDS.toMillis(2 * windowNanos - idle) + 1;
+    }
+
+    private static String key(String email) {
+        return email == null ? "" : email.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private final class Window {
+        final String key;
+        private long start;
+        private int previous;
+        private int current;
+        private long lastFailure;
+
+        Window(String key, long now) {
+            this.key = key;
+            this.start = now;
+            this.lastFailure = now;
+        }
+
+        synchronized int addFailure(long now) {
+            roll(now);
+            current++;
+            lastFailure = now;
+            return (int) Math.ceil(count(now));
+        }
+
+        synchronized long lastFailureNanos() {
+            return lastFailure;
+        }
+
+        synchronized long retryAfterMillis(long now) {
+            roll(now);
+            if (count(now) < maxFailures) return 0;
+            long elapsed = now - start;
+            long wait;
+            if (current >= maxFailures) {
+                // Blocked until the window rolls and the carried-over share of 'current' falls below the limit.
+                wait = (windowNanos - elapsed) + (long) (windowNanos * (1.0 - (double) maxFailures / current));
+            } else {
+                wait = (long) (windowNanos * (1.0 - (double) (maxFailures - current) / previous)) - elapsed;
+            }
+            return Math.max(1, TimeUnit.NANOSECONDS.toMillis(wait) + 1);
+        }
+
+        private void roll(long now) {
+            long windowsPassed = (now - start) / windowNanos;
+            if (windowsPassed == 1) {
+                previous = current;
+                current = 0;
+                start += windowNanos;
+            } else if (windowsPassed > 1) {
+                previous = 0;
+                current = 0;
+                start += windowsPassed * windowNanos;
+            }
+        }
+
+        private double count(long now) {
+            double overlap = 1.0 - (double) (now - start) / windowNanos;
+            return current + previous * overlap;
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package main;
+
+import config.config;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Batch check of participation.meetings_attended against the attendance table.
+ *
+ * Since schema v4 the counter is maintained by triggers on attendance. The
+ * values typed in before that are kept by the migration, so drift comes from
+ * those or from rows changed behind the application's back; it is reported
+ * at startup after an upgrade from an older schema, and only recounted when
+ * the operator asks for it. One grouped scan of attendance (over its unique
+ * index) is joined against participation; every row whose counter differs is
+ * reported and, when asked to, corrected in the same writer transaction (the
+ * change journal keeps the statements, if it is on).
+ */
+public class MeetingsReconciler {
+
+    /** The schema version whose triggers keep the counter in step with attendance. */
+    public static final int COUNTED_SINCE_VERSION = 4;
+
+    static final String SQL_FIND_DRIFT =
+        "SELECT p.user_id, p.program_id, p.meetings_attended, IFNULL(a.attended, 0) AS attended "
+            + "FROM participation p LEFT JOIN "
+            + "(SELECT user_id, program_id, COUNT(*) AS attended FROM attendance GROUP BY user_id, program_id) a "
+            + "ON a.user_id = p.user_id AND a.program_id = p.program_id "
+            + "WHERE p.meetings_attended IS NOT IFNULL(a.attended, 0)";
+    static final String SQL_FIX_COUNTER =
+        "UPDATE participation SET meetings_attended = ? WHERE user_id = ? AND program_id = ?";
+
+    private static final int MAX_DRIFT_SAMPLES = 20;
+
+    /**
+     * Finds every drifted counter and, if {@code fix} is true, sets it to the
+     * attendance count. The writer is held throughout so no attendance write
+     * can land between the scan and the fix. A sharded database is checked
+     * shard by shard: a beneficiary's participation and attendance rows
+     * always share a shard.
+     */
+    public Result reconcile(boolean fix) throws SQLException {
+        long start = System.nanoTime();
+        Result result = new Result(fix);
+        for (int shard = 0; shard < config.getShardCount(); shard++) {
+            reconcileShard(shard, fix, result);
+        }
+        result.elapsedNanos = System.nanoTime() - start;
+        return result;
+    }
+
+    private static void reconcileShard(int shard, boolean fix, Result result) throws SQLException {
+        try (Connection conn = config.getWriteConnection(shard)) {
+            conn.setAutoCommit(false);
+            try {
+                List<int[]> drift = new ArrayList<>();
+                try (PreparedStatement ps = conn.prepareStatement(SQL_FIND_DRIFT);
+                     ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        int recorded = rs.getInt(3);
+                        if (rs.wasNull()) recorded = Integer.MIN_VALUE;
+                        int[] d = { rs.getInt(1), rs.getInt(2), recorded, rs.getInt(4) };
+                        result.drift(d[0], d[1], d[2], d[3]);
+                        drift.add(d);
+                    }
+                }
+                if (fix && !drift.isEmpty()) {
+                    try (PreparedStatement ps = conn.prepareStatement(SQL_FIX_COUNTER)) {
+                        for (int[] d : drift) {
+                            ps.setInt(1, d[3]);
+                            ps.setInt(2, d[0]);
+                            ps.setInt(3, d[1]);
+                            ps.addBatch();
+                        }
+                        int[] counts = ps.executeBatch();
+                        for (int i = 0; i < counts.length; i++) {
+                            int[] d = drift.get(i);
+                            config.recordChange(shard, SQL_FIX_COUNTER, new Object[] { d[3], d[0], d[1] }, counts[i]);
+                        }
+                    }
+                }
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+    }
+
+    public static class Result {
+        private final boolean fixed;
+        private int drifted;
+        private long elapsedNanos;
+        private final List<String> samples = new ArrayList<>();
+
+        Result(boolean fixed) {
+            this.fixed = fixed;
+        }
+
+        void drift(int userId, int programId, int recorded, int attended) {
+            drifted++;
+            if (samples.size() < MAX_DRIFT_SAMPLES) {
+                samples.add("user " + userId + ", program " + programId + ": recorded "
+                        + (recorded == Integer.MIN_VALUE ? "NULL" : String.valueOf(recorded)) + ", attendance rows " + attended);
+            }
+        }
+
+        public int getDrifted() { return drifted; }
+        public boolean isFixed() { return fixed; }
+        public long getElapsedNanos() { return elapsedNanos; }
+        public List<String> getSamples() { return samples; }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            sb.append(String.format("%d meetings_attended counter(s) out of step with attendance%s (%.1f ms).",
+                    drifted, drifted > 0 && fixed ? ", corrected" : "", elapsedNanos / 1e6));
+            for (String s : samples) {
+                sb.append("\n   - ").append(s);
+            }
+            if (drifted > samples.size()) {
+                sb.append("\n   ... and ").append(drifted - samples.size()).append(" more");
+            }
+            return sb.toString();
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package main;
+
+import config.Hex;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.security.spec.KeySpec;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+
+/**
+ * Salted PBKDF2-HMAC-SHA256 password hashes, stored as
+ * {@code pbkdf2$<iterations>$<salt hex>$<hash hex>} in user.password.
+ *
+ * Plain SHA-256 hex digests written by older versions still verify; callers
+ * are told to re-hash them ({@link Verification#needsRehash()}) so accounts
+ * move to the new scheme on their next successful login. Raising
+ * {@code -D4ps.auth.pbkdf2Iterations} flags older, cheaper hashes the same way.
+ */
+public final class PasswordHasher {
+
+    public static final int DEFAULT_ITERATIONS = 120_000;
+    private static final String PREFIX = "pbkdf2$";
+    private static final int SALT_BYTES = 16;
+    private static final int HASH_BYTES = 32;
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private final int iterations;
+    // Verifying a made-up hash for unknown emails keeps their timing the same as real accounts.
+    private final String dummyHash;
+
+    public PasswordHasher(int iterations) {
+        if (iterations < 1) {
+            throw new IllegalArgumentException("iterations must be at least 1");
+        }
+        this.iterations = iterations;
+        this.dummyHash = hash("not-a-real-password");
+    }
+
+    public static PasswordHasher fromSystemProperties() {
+        return new PasswordHasher(Integer.getInteger("4ps.auth.pbkdf2Iterations", DEFAULT_ITERATIONS));
+    }
+
+    public int getIterations() {
+        return iterations;
+    }
+
+    public String hash(String password) {
+        byte[] salt = new byte[SALT_BYTES];
+        RANDOM.nextBytes(salt);
+        byte[] hash = pbkdf2(password, salt, iterations);
+
+        String iter = Integer.toString(iterations);
+        char[] out = new char[PREFIX.length() + iter.length() + 1 + SALT_BYTES * 2 + 1 + HASH_BYTES * 2];
+        int pos = 0;
+        PREFIX.getChars(0, PREFIX.length(), out, pos);
+        pos += PREFIX.length();
+        iter.getChars(0, iter.length(), out, pos);
+        pos += iter.length();
+        out[pos++] = '$';
+        Hex.encode(salt, out, pos);
+        pos += SALT_BYTES * 2;
+        out[pos++] = '$';
+        Hex.encode(hash, out, pos);
+        return new String(out);
+    }
+
+    public static class Verification {
+        private final boolean matches;
+        private final boolean needsRehash;
+
+        Verification(boolean matches, boolean needsRehash) {
+            this.matches = matches;
+            this.needsRehash = needsRehash;
+        }
+
+        public boolean matches() { return matches; }
+        public boolean needsRehash() { return matches && needsRehash; }
+    }
+
+    /** Checks a password against a stored hash; {@code stored == null} means no such user. */
+    public Verification verify(String password, String stored) {
+        if (stored == null) {
+            verify(password, dummyHash);
+            return new Verification(false, false);
+        }
+        if (stored.startsWith(PREFIX)) {
+            int a = stored.indexOf('$', PREFIX.length());
+            int b = a < 0 ? -1 : stored.indexOf('$', a + 1);
+            if (b < 0 || stored.length() - b - 1 != HASH_BYTES * 2 || b - a - 1 != SALT_BYTES * 2) {
+                return new Verification(false, false);
+            }
+            int storedIterations;
+            try {
+                storedIterations = Integer.parseInt(stored.substring(PREFIX.length(), a));
+            } catch (NumberFormatException e) {
+                return new Verification(false, false);
+            }
+            byte[] salt = new byte[SALT_BYTES];
+            byte[] expected = new byte[HASH_BYTES];
+            if (!Hex.decode(stored, a + 1, salt) || !Hex.decode(stored, b + 1, expected)) {
+                return new Verification(false, false);
+            }
+            byte[] actual = pbkdf2(password, salt, storedIterations);
+            return new Verification(MessageDigest.isEqual(expected, actual), storedIterations < iterations);
+        }
+        if (stored.length() == HASH_BYTES * 2 && Hex.isHex(stored)) {
+            // Legacy unsalted SHA-256 from AuthManager.hashPassword.
+            byte[] expected = new byte[HASH_BYTES];
+            Hex.decode(stored, 0, expected);
+            byte[] actual = AuthManager.sha256(password);
+            return new Verification(MessageDigest.isEqual(expected, actual), true);
+        }
+        return new Verification(false, false);
+    }
+
+    private static byte[] pbkdf2(String password, byte[] salt, int iterations) {
+        KeySpec spec = new PBEKeySpec(password.toCharArray(), salt, iterations, HASH_BYTES * 8);
+        try {
+            return SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256").generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new RuntimeException("Error hashing password", e);
+        }
+    }
+}
@@ -1,18 +1,34 @@
 package main;
 
 import config.config;
-import java.sql.ResultSet;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
 import java.util.Scanner;
 
 public class RecordManager {
 
+    private static final int VIEW_PAGE_SIZE = 20;
+
     private final config db;
     private final Scanner sc;
+    private final RecordService service;
+    private final SearchService search;
 
     public RecordManager(config db, Scanner sc) {
+        this(db, sc, new RecordService(db));
+    }
+
+    public RecordManager(config db, Scanner sc, RecordService service) {
         this.db = db;
         this.sc = sc;
+        this.service = service;
+        this.search = new SearchService(db);
     }
 
     private int getIntInput(String prompt) {
@@ -26,6 +42,23 @@ public class RecordManager {
         }
     }
 
+    private String getOptionalInput(String prompt) {
+        System.out.print(prompt);
+        String line = sc.nextLine().trim();
+        return line.isEmpty() ? null : line;
+    }
+
+    private Integer getOptionalIntInput(String prompt) {
+        String line = getOptionalInput(prompt);
+        if (line == null) return null;
+        try {
+            return Integer.parseInt(line);
+        } catch (NumberFormatException e) {
+            System.out.println("❌ Invalid input, filter ignored.");
+            return null;
+        }
+    }
+
     private double getDoubleInput(String prompt) {
         System.out.print(prompt);
         String line = sc.nextLine().trim();
@@ -50,9 +83,12 @@ public class RecordManager {
         System.out.print("Enter Description: ");
         String desc = sc.nextLine().trim();
 
-        String sqlProgram = "INSERT INTO program(program_id, program_name, description) VALUES (?,?,?)";
-        db.addRecord(sqlProgram, progId, progName, desc);
-        System.out.println("✅ Program added successfully!");
+        try {
+            service.addProgram(progId, progName, desc);
+            System.out.println("✅ Program added successfully!");
+        } catch (ServiceException e) {
+            System.out.println("❌ " + e.getMessage());
+        }
     }
 
     // ----------------------------------------------------
@@ -66,22 +102,15 @@ public class RecordManager {
         int pProgId = getIntInput("Enter Program ID: ");
         if (pProgId == -1) return;
 
-        int meetings = getIntInput("Enter Meetings Attended: ");
-        if (meetings == -1) return;
-
         double amount = getDoubleInput("Enter Amount Received: ");
         if (amount == -1.0) return;
 
-        String checkSql = "SELECT user_id FROM participation WHERE user_id = ? AND program_id = ?";
-        ResultSet rsCheck = db.getRecords(checkSql, pUserId, pProgId);
-        if (rsCheck != null && rsCheck.next()) {
-            System.out.println("❌ Participation record already exists. Use Update (Option 5).");
-            return;
+        try {
+            service.recordParticipation(pUserId, pProgId, amount);
+            System.out.println("✅ Participation recorded! Meetings attended is counted from attendance records.");
+        } catch (ServiceException e) {
+            System.out.println("❌ " + e.getMessage());
         }
-
-        String sqlParticipation = "INSERT INTO participation(user_id, program_id, meetings_attended, amount_received) VALUES (?,?,?,?)";
-        db.addRecord(sqlParticipation, pUserId, pProgId, meetings, amount);
-        System.out.println("✅ Participation recorded!");
     }
 
     // ----------------------------------------------------
@@ -101,9 +130,12 @@ public class RecordManager {
         System.out.print("Enter Meeting Date (YYYY-MM-DD): ");
         String date = sc.nextLine().trim();
 
-        String sqlAttendance = "INSERT INTO attendance(attendance_id, user_id, program_id, meeting_date) VALUES (?,?,?,?)";
-        db.addRecord(sqlAttendance, attId, aUserId, aProgId, date);
-        System.out.println("✅ Attendance recorded!");
+        try {
+            service.recordAttendance(attId, aUserId, aProgId, date);
+            System.out.println("✅ Attendance recorded!");
+        } catch (ServiceException e) {
+            System.out.println("❌ " + e.getMessage());
+        }
     }
 
     // ----------------------------------------------------
@@ -120,29 +152,46 @@ public class RecordManager {
         int viewChoice = getIntInput("");
         if (viewChoice == -1) return;
 
-        String sqlView = null;
+        RecordViewer.View view;
 
         switch (viewChoice) {
-            case 1:
-                sqlView = "SELECT user_id, name, gender, year_level, email FROM user";
-                break;
-            case 2:
-                sqlView = "SELECT * FROM program";
-                break;
-            case 3:
-                sqlView = "SELECT * FROM participation";
-                break;
-            case 4:
-                sqlView = "SELECT * FROM attendance";
-                break;
+            case 1: view = RecordViewer.View.USERS; break;
+            case 2: view = RecordViewer.View.PROGRAMS; break;
+            case 3: view = RecordViewer.View.PARTICIPATION; break;
+            case 4: view = RecordViewer.View.ATTENDANCE; break;
             default:
                 System.out.println("Invalid option!");
                 return;
         }
 
-        if (sqlView != null) {
-            ResultSet rsView = db.getRecords(sqlView);
-            db.displayResultSet(rsView);
+        // Optional filters: leave blank to skip
+        RecordViewer.Filter filter = new RecordViewer.Filter();
+        if (view.hasColumn("user_id")) {
+            filter.userId = getOptionalIntInput("Filter by User ID (blank for all): ");
+        }
+        if (view.hasColumn("program_id")) {
+            filter.programId = getOptionalIntInput("Filter by Program ID (blank for all): ");
+        }
+        if (view.hasDate()) {
+            filter.fromDate = getOptionalInput("From date YYYY-MM-DD (blank for none): ");
+            filter.toDate = getOptionalInput("To date YYYY-MM-DD (blank for none): ");
+        }
+
+        RecordViewer viewer = new RecordViewer(db, view, filter, VIEW_PAGE_SIZE, System.out);
+        System.out.println("\n--- RESULTS ---");
+        while (true) {
+            int shown = viewer.showNextPage();
+            if (shown == 0 && viewer.getPageNumber() == 1) {
+                System.out.println("No records found.");
+            }
+            if (!viewer.hasMore()) {
+                System.out.println("--- End of records ---");
+                return;
+            }
+            System.out.print("-- Page " + viewer.getPageNumber() + " -- [Enter] next page, q to stop: ");
+            if (sc.nextLine().trim().equalsIgnoreCase("q")) {
+                return;
+            }
         }
     }
 
@@ -160,45 +209,47 @@ public class RecordManager {
         switch (updateChoice) {
             case 1:
                 int progId = getIntInput("Enter Program ID to update: ");
-                String checkSql1 = "SELECT * FROM program WHERE program_id = ?";
-                ResultSet rs1 = db.getRecords(checkSql1, progId);
-
-                if (rs1 == null || !rs1.next()) {
+                Map<String, Object> program = service.findProgram(progId);
+                if (program == null) {
                     System.out.println("❌ Program not found!");
                     return;
                 }
 
-                System.out.println("Current Program Name: " + rs1.getString("program_name"));
-                System.out.println("Current Description: " + rs1.getString("description"));
+                System.out.println("Current Program Name: " + program.get("program_name"));
+                System.out.println("Current Description: " + program.get("description"));
                 System.out.print("Enter new Program Name: ");
                 String newName = sc.nextLine().trim();
                 System.out.print("Enter new Description: ");
                 String newDesc = sc.nextLine().trim();
 
-                String sqlUpdate1 = "UPDATE program SET program_name = ?, description = ? WHERE program_id = ?";
-                db.updateRecord(sqlUpdate1, newName, newDesc, progId);
-                System.out.println("✅ Program updated successfully!");
+                try {
+                    service.updateProgram(progId, newName, newDesc);
+                    System.out.println("✅ Program updated successfully!");
+                } catch (ServiceException e) {
+                    System.out.println("❌ " + e.getMessage());
+                }
                 break;
 
             case 2:
                 int userId = getIntInput("Enter User ID: ");
                 int progId2 = getIntInput("Enter Program ID: ");
-                String checkSql2 = "SELECT * FROM participation WHERE user_id = ? AND program_id = ?";
-                ResultSet rs2 = db.getRecords(checkSql2, userId, progId2);
-
-                if (rs2 == null || !rs2.next()) {
+                Map<String, Object> participation = service.findParticipation(userId, progId2);
+                if (participation == null) {
                     System.out.println("❌ Participation record not found!");
                     return;
                 }
 
-                System.out.println("Current Meetings Attended: " + rs2.getInt("meetings_attended"));
-                System.out.println("Current Amount Received: " + rs2.getDouble("amount_received"));
-                int newMeetings = getIntInput("Enter new Meetings Attended: ");
+                System.out.println("Meetings Attended (from attendance): " + participation.get("meetings_attended"));
+                System.out.println("Current Amount Received: " + participation.get("amount_received"));
                 double newAmount = getDoubleInput("Enter new Amount Received: ");
+                if (newAmount == -1.0) return;
 
-                String sqlUpdate2 = "UPDATE participation SET meetings_attended = ?, amount_received = ? WHERE user_id = ? AND program_id = ?";
-                db.updateRecord(sqlUpdate2, newMeetings, newAmount, userId, progId2);
-                System.out.println("✅ Participation updated successfully!");
+                try {
+                    service.updateParticipation(userId, progId2, newAmount);
+                    System.out.println("✅ Participation updated successfully!");
+                } catch (ServiceException e) {
+                    System.out.println("❌ " + e.getMessage());
+                }
                 break;
 
             default:
@@ -222,9 +273,7 @@ public class RecordManager {
         switch (delChoice) {
             case 1:
                 int progId = getIntInput("Enter Program ID to delete: ");
-                String checkSql1 = "SELECT * FROM program WHERE program_id = ?";
-                ResultSet rs1 = db.getRecords(checkSql1, progId);
-                if (rs1 == null || !rs1.next()) {
+                if (service.findProgram(progId) == null) {
                     System.out.println("❌ Program not found!");
                     return;
                 }
@@ -235,17 +284,18 @@ public class RecordManager {
                     return;
                 }
 
-                String sqlDel1 = "DELETE FROM program WHERE program_id = ?";
-                db.deleteRecord(sqlDel1, progId);
-                System.out.println("🗑️ Program deleted successfully!");
+                try {
+                    service.deleteProgram(progId);
+                    System.out.println("🗑️ Program deleted successfully!");
+                } catch (ServiceException e) {
+                    System.out.println("❌ " + e.getMessage());
+                }
                 break;
 
             case 2:
                 int userId = getIntInput("Enter User ID: ");
                 int progId2 = getIntInput("Enter Program ID: ");
-                String checkSql2 = "SELECT * FROM participation WHERE user_id = ? AND program_id = ?";
-                ResultSet rs2 = db.getRecords(checkSql2, userId, progId2);
-                if (rs2 == null || !rs2.next()) {
+                if (service.findParticipation(userId, progId2) == null) {
                     System.out.println("❌ Participation record not found!");
                     return;
                 }
@@ -256,16 +306,17 @@ public class RecordManager {
                     return;
                 }
 
-                String sqlDel2 = "DELETE FROM participation WHERE user_id = ? AND program_id = ?";
-                db.deleteRecord(sqlDel2, userId, progId2);
-                System.out.println("🗑️ Participation deleted successfully!");
+                try {
+                    service.deleteParticipation(userId, progId2);
+                    System.out.println("🗑️ Participation deleted successfully!");
+                } catch (ServiceException e) {
+                    System.out.println("❌ " + e.getMessage());
+                }
                 break;
 
             case 3:
                 int attId = getIntInput("Enter Attendance ID to delete: ");
-                String checkSql3 = "SELECT * FROM attendance WHERE attendance_id = ?";
-                ResultSet rs3 = db.getRecords(checkSql3, attId);
-                if (rs3 == null || !rs3.next()) {
+                if (service.findAttendance(attId) == null) {
                     System.out.println("❌ Attendance record not found!");
                     return;
                 }
@@ -276,9 +327,12 @@ public class RecordManager {
                     return;
                 }
 
-                String sqlDel3 = "DELETE FROM attendance WHERE attendance_id = ?";
-                db.deleteRecord(sqlDel3, attId);
-                System.out.println("🗑️ Attendance deleted successfully!");
+                try {
+                    service.deleteAttendance(attId);
+                    System.out.println("🗑️ Attendance deleted successfully!");
+                } catch (ServiceException e) {
+                    System.out.println("❌ " + e.getMessage());
+                }
                 break;
 
             default:
@@ -286,4 +340,113 @@ public class RecordManager {
                 break;
         }
     }
+
+    // ----------------------------------------------------
+    // --- 7. IMPORT RECORDS (CSV) ---
+    // ----------------------------------------------------
+    public void importRecords() throws SQLException {
+        System.out.println("\n--- IMPORT RECORDS (CSV) ---");
+        System.out.println("1. Attendance    (" + BulkImporter.Kind.ATTENDANCE.getColumns() + ")");
+        System.out.println("2. Participation (" + BulkImporter.Kind.PARTICIPATION.getColumns() + ")");
+        System.out.print("Choose: ");
+        int importChoice = getIntInput("");
+        BulkImporter.Kind kind;
+        switch (importChoice) {
+            case 1: kind = BulkImporter.Kind.ATTENDANCE; break;
+            case 2: kind = BulkImporter.Kind.PARTICIPATION; break;
+            default:
+                System.out.println("Invalid option!");
+                return;
+        }
+
+        System.out.print("Enter CSV file path: ");
+        String path = sc.nextLine().trim();
+        System.out.print("Rows per transaction [" + BulkImporter.DEFAULT_CHUNK_SIZE + "]: ");
+        String chunkLine = sc.nextLine().trim();
+        int chunkSize = BulkImporter.DEFAULT_CHUNK_SIZE;
+        if (!chunkLine.isEmpty()) {
+            try {
+                chunkSize = Integer.parseInt(chunkLine);
+            } catch (NumberFormatException e) {
+                System.out.println("❌ Invalid input. Please enter a whole number.");
+                return;
+            }
+            if (chunkSize < 1) {
+                System.out.println("❌ Rows per transaction must be at least 1.");
+                return;
+            }
+        }
+
+        try (Reader in = Files.newBufferedReader(Paths.get(path), StandardCharsets.UTF_8)) {
+            BulkImporter.Result result = new BulkImporter(db, chunkSize).importCsv(kind, in);
+            System.out.println("✅ Import finished: " + result.getRowsInserted() + " inserted, "
+                    + result.getRowsRejected() + " rejected, " + result.getRowsRead() + " read in "
+                    + String.format("%.2f", result.getElapsedNanos() / 1_000_000_000.0) + " s ("
+                    + String.format("%.0f", result.getRowsPerSecond()) + " rows/s).");
+            for (String reject : result.getRejectSamples()) {
+                System.out.println("   ⚠️ " + reject);
+            }
+            if (result.getRowsRejected() > result.getRejectSamples().size()) {
+                System.out.println("   ... and " + (result.getRowsRejected() - result.getRejectSamples().size()) + " more rejected rows.");
+            }
+        } catch (IOException e) {
+            System.out.println("❌ Could not read " + path + ": " + e.getMessage());
+        }
+    }
+
+    // ----------------------------------------------------
+    // --- 9. SEARCH ---
+    // ----------------------------------------------------
+    public void searchRecords() throws SQLException {
+        System.out.println("\n--- SEARCH ---");
+        System.out.println("1. Beneficiaries (name, email)");
+        System.out.println("2. Programs (name, description)");
+        System.out.print("Choose: ");
+        int searchChoice = getIntInput("");
+        SearchService.Scope scope;
+        switch (searchChoice) {
+            case 1: scope = SearchService.Scope.USERS; break;
+            case 2: scope = SearchService.Scope.PROGRAMS; break;
+            default:
+                System.out.println("Invalid option!");
+                return;
+        }
+
+        System.out.print("Search for (words or the start of words): ");
+        String query = sc.nextLine().trim();
+        long start = System.nanoTime();
+        List<Map<String, Object>> hits;
+        try {
+            hits = search.search(scope, query, SearchService.DEFAULT_LIMIT);
+        } catch (ServiceException e) {
+            System.out.println("❌ " + e.getMessage());
+            return;
+        }
+        double ms = (System.nanoTime() - start) / 1_000_000.0;
+
+        if (hits.isEmpty()) {
+            System.out.println("No matches found.");
+            return;
+        }
+        boolean users = scope == SearchService.Scope.USERS;
+        System.out.println("\n--- RESULTS ---");
+        System.out.printf("%-8s  %-30s  %-36s  %s%n", "ID", users ? "Name" : "Program", users ? "Email" : "Description", "Score");
+        boolean anyFuzzy = false;
+        for (Map<String, Object> hit : hits) {
+            boolean fuzzy = Boolean.TRUE.equals(hit.get("fuzzy"));
+            anyFuzzy |= fuzzy;
+            System.out.printf("%-8s  %-30s  %-36s  %s%s%n",
+                    hit.get(users ? "user_id" : "program_id"),
+                    clip(hit.get(users ? "name" : "program_name"), 30),
+                    clip(hit.get(users ? "email" : "description"), 36),
+                    hit.get("score"), fuzzy ? " ~" : "");
+        }
+        System.out.println("✅ " + hits.size() + " match(es) in " + String.format("%.1f", ms) + " ms"
+                + (anyFuzzy ? " (~ = close spelling)." : "."));
+    }
+
+    private static String clip(Object value, int width) {
+        String s = value == null ? "" : value.toString();
+        return s.length() <= width ? s : s.substring(0, width - 3) + "...";
+    }
 }
@@ -0,0 +1,228 @@
+package main;
+
+import config.RowMapper;
+import config.WriteCallback;
+import config.config;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Program, participation and attendance operations without any console I/O.
+ *
+ * Used by the interactive {@link RecordManager} and by the headless
+ * {@link CommandRunner}. Rule violations and failed writes are thrown as
+ * {@link ServiceException}s carrying the message the menu has always shown.
+ * With write-behind on, a write that fails after it was queued is handed to
+ * the async reporter instead (the console by default).
+ */
+public class RecordService {
+
+    // --- SQL used by the operations (also checked against EXPLAIN QUERY PLAN at startup) ---
+    static final String SQL_INSERT_PROGRAM = "INSERT INTO program(program_id, program_name, description) VALUES (?,?,?)";
+    static final String SQL_PARTICIPATION_EXISTS = config.existsSql("participation", "user_id = ? AND program_id = ?");
+    // meetings_attended is not written here: attendance triggers keep it in step (schema v4).
+    static final String SQL_INSERT_PARTICIPATION = "INSERT INTO participation(user_id, program_id, amount_received) VALUES (?,?,?)";
+    static final String SQL_INSERT_ATTENDANCE = "INSERT INTO attendance(attendance_id, user_id, program_id, meeting_date) VALUES (?,?,?,?)";
+    static final String SQL_UPDATE_PROGRAM = "UPDATE program SET program_name = ?, description = ? WHERE program_id = ?";
+    static final String SQL_FIND_PARTICIPATION = "SELECT * FROM participation WHERE user_id = ? AND program_id = ?";
+    static final String SQL_UPDATE_PARTICIPATION = "UPDATE participation SET amount_received = ? WHERE user_id = ? AND program_id = ?";
+    static final String SQL_DELETE_PROGRAM = "DELETE FROM program WHERE program_id = ?";
+    static final String SQL_DELETE_PARTICIPATION = "DELETE FROM participation WHERE user_id = ? AND program_id = ?";
+    static final String SQL_FIND_ATTENDANCE = "SELECT * FROM attendance WHERE attendance_id = ?";
+    static final String SQL_DELETE_ATTENDANCE = "DELETE FROM attendance WHERE attendance_id = ?";
+
+    private static final RowMapper<Map<String, Object>> ROW_AS_MAP = RowMapper.asMap();
+
+    private final config db;
+    private final WriteCallback asyncReporter;
+    private final AttendanceIndex attendanceIndex = AttendanceIndex.get();
+
+    public RecordService(config db) {
+        this(db, config.consoleReporter());
+    }
+
+    public RecordService(config db, WriteCallback asyncReporter) {
+        this.db = db;
+        this.asyncReporter = asyncReporter;
+    }
+
+    // ----------------------------------------------------
+    // --- PROGRAMS ---
+    // ----------------------------------------------------
+
+    public int addProgram(String name, String description) throws SQLException, ServiceException {
+        int programId = db.getNextId("program", "program_id");
+        addProgram(programId, name, description);
+        return programId;
+    }
+
+    /** For callers that reserved the ID themselves (see {@link config#reserveIds}). */
+    public void addProgram(int programId, String name, String description) throws ServiceException {
+        if (name == null || name.trim().isEmpty()) {
+            throw new ServiceException("Program name is required.");
+        }
+        write(SQL_INSERT_PROGRAM, programId, name.trim(), description == null ? "" : description.trim());
+    }
+
+    public Map<String, Object> findProgram(int programId) throws SQLException {
+        return db.findProgram(programId);
+    }
+
+    public void updateProgram(int programId, String name, String description) throws SQLException, ServiceException {
+        if (!db.programExists(programId)) {
+            throw ServiceException.notFound("Program not found!");
+        }
+        requireFound(write(SQL_UPDATE_PROGRAM, name, description, programId), "Program not found!");
+    }
+
+    public void deleteProgram(int programId) throws SQLException, ServiceException {
+        if (!db.programExists(programId)) {
+            throw ServiceException.notFound("Program not found!");
+        }
+        requireFound(write(SQL_DELETE_PROGRAM, programId), "Program not found!");
+    }
+
+    // ----------------------------------------------------
+    // --- PARTICIPATION ---
+    // ----------------------------------------------------
+
+    public void recordParticipation(int userId, int programId, double amountReceived) throws SQLException, ServiceException {
+        checkReferences(userId, programId);
+        if (amountReceived < 0) {
+            throw new ServiceException("Amount received cannot be negative.");
+        }
+        if (db.exists(SQL_PARTICIPATION_EXISTS, userId, programId)) {
+            throw new ServiceException("Participation record already exists. Use Update (Option 5).");
+        }
+        write(SQL_INSERT_PARTICIPATION, userId, programId, amountReceived);
+    }
+
+    /** The participation row as column -> value, or null. */
+    public Map<String, Object> findParticipation(int userId, int programId) throws SQLException {
+        return findOne(SQL_FIND_PARTICIPATION, userId, programId);
+    }
+
+    public void updateParticipation(int userId, int programId, double amountReceived) throws SQLException, ServiceException {
+        if (amountReceived < 0) {
+            throw new ServiceException("Amount received cannot be negative.");
+        }
+        if (!db.exists(SQL_PARTICIPATION_EXISTS, userId, programId)) {
+            throw ServiceException.notFound("Participation record not found!");
+        }
+        requireFound(write(SQL_UPDATE_PARTICIPATION, amountReceived, userId, programId), "Participation record not found!");
+    }
+
+    public void deleteParticipation(int userId, int programId) throws SQLException, ServiceException {
+        if (!db.exists(SQL_PARTICIPATION_EXISTS, userId, programId)) {
+            throw ServiceException.notFound("Participation record not found!");
+        }
+        requireFound(write(SQL_DELETE_PARTICIPATION, userId, programId), "Participation record not found!");
+    }
+
+    // ----------------------------------------------------
+    // --- ATTENDANCE ---
+    // ----------------------------------------------------
+
+    public int recordAttendance(int userId, int programId, String meetingDate) throws SQLException, ServiceException {
+        int attendanceId = db.getNextId("attendance", "attendance_id");
+        recordAttendance(attendanceId, userId, programId, meetingDate);
+        return attendanceId;
+    }
+
+    /** For callers that reserved the ID themselves (see {@link config#reserveIds}). */
+    public void recordAttendance(int attendanceId, int userId, int programId, String meetingDate) throws SQLException, ServiceException {
+        String date = checkDate(meetingDate);
+        checkReferences(userId, programId);
+        write(() -> attendanceIndex.add(userId, programId, date), SQL_INSERT_ATTENDANCE, attendanceId, userId, programId, date);
+    }
+
+    public Map<String, Object> findAttendance(int attendanceId) throws SQLException {
+        return findOne(SQL_FIND_ATTENDANCE, attendanceId);
+    }
+
+    public void deleteAttendance(int attendanceId) throws SQLException, ServiceException {
+        Map<String, Object> row = findAttendance(attendanceId);
+        if (row == null) {
+            throw ServiceException.notFound("Attendance record not found!");
+        }
+        int userId = ((Number) row.get("user_id")).intValue();
+        int programId = ((Number) row.get("program_id")).intValue();
+        String date = String.valueOf(row.get("meeting_date"));
+        requireFound(write(() -> attendanceIndex.remove(userId, programId, date), SQL_DELETE_ATTENDANCE, attendanceId),
+                "Attendance record not found!");
+    }
+
+    /** Meetings the user attended in the program between two dates (inclusive), from the in-memory index. */
+    public int countAttendance(int userId, int programId, String fromDate, String toDate) throws SQLException, ServiceException {
+        LocalDate from = LocalDate.parse(checkDate(fromDate));
+        LocalDate to = LocalDate.parse(checkDate(toDate));
+        if (to.isBefore(from)) {
+            throw new ServiceException("End date must not be before the start date.");
+        }
+        return attendanceIndex.countInRange(userId, programId, from, to);
+    }
+
+    public AttendanceIndex.Stats getAttendanceIndexStats() {
+        return attendanceIndex.getStats();
+    }
+
+    // ----------------------------------------------------
+    // --- LISTINGS ---
+    // ----------------------------------------------------
+
+    /** The first {@code limit} rows of a view, in key order (one keyset page). */
+    public List<Map<String, Object>> list(RecordViewer.View view, RecordViewer.Filter filter, int limit) throws SQLException {
+        return new RecordViewer(db, view, filter, limit, null).fetchNextPage();
+    }
+
+    // ----------------------------------------------------
+    // --- HELPERS ---
+    // ----------------------------------------------------
+
+    // --- Foreign-key pre-check served from the program/user cache ---
+    private void checkReferences(int userId, int programId) throws SQLException, ServiceException {
+        if (!db.userExists(userId)) {
+            throw new ServiceException("User ID " + userId + " not found!");
+        }
+        if (!db.programExists(programId)) {
+            throw new ServiceException("Program ID " + programId + " not found!");
+        }
+    }
+
+    private static String checkDate(String meetingDate) throws ServiceException {
+        try {
+            return LocalDate.parse(meetingDate == null ? "" : meetingDate.trim()).toString();
+        } catch (DateTimeParseException e) {
+            throw new ServiceException("Meeting date must be YYYY-MM-DD.");
+        }
+    }
+
+    private static void requireFound(int rowsAffected, String message) throws ServiceException {
+        // -1 means the write was queued (write-behind); its outcome is reported later.
+        if (rowsAffected == 0) {
+            throw ServiceException.notFound(message);
+        }
+    }
+
+    private Map<String, Object> findOne(String sql, Object... params) throws SQLException {
+        return db.queryOne(sql, ROW_AS_MAP, params);
+    }
+
+    /**
+     * Runs one write through config.addRecord. Returns the rows affected, or -1
+     * if the write was queued; throws if it failed before this method returned.
+     */
+    private int write(String sql, Object... params) throws ServiceException {
+        return write((Runnable) null, sql, params);
+    }
+
+    // --- Same, running 'afterCommit' once the write has committed (now or on the write-behind thread) ---
+    private int write(Runnable afterCommit, String sql, Object... params) throws ServiceException {
+        WriteOutcome outcome = new WriteOutcome(asyncReporter, afterCommit);
+        db.addRecord(outcome, sql, params);
+        return outcome.await();
+    }
+}
@@ -0,0 +1,216 @@
+package main;
+
+import config.RowMapper;
+import config.TablePrinter;
+import config.config;
+import java.io.PrintStream;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keyset-paginated views over the four tables.
+ *
+ * Each page is fetched with {@code WHERE key > last key ORDER BY key LIMIT n},
+ * so every page costs one index seek no matter how deep the operator scrolls,
+ * and optional filters keep operators from pulling whole tables.
+ */
+public class RecordViewer {
+
+    public enum View {
+        USERS("user", "user_id, name, gender, year_level, email", "user_id", null),
+        PROGRAMS("program", "program_id, program_name, description", "program_id", null),
+        PARTICIPATION("participation", "user_id, program_id, meetings_attended, amount_received", "user_id", "program_id"),
+        ATTENDANCE("attendance", "attendance_id, user_id, program_id, meeting_date", "attendance_id", null);
+
+        private final String table;
+        private final String columns;
+        private final String key1;
+        private final String key2;
+
+        View(String table, String columns, String key1, String key2) {
+            this.table = table;
+            this.columns = columns;
+            this.key1 = key1;
+            this.key2 = key2;
+        }
+
+        public boolean hasColumn(String column) {
+            return (", " + columns + ",").contains(", " + column + ",");
+        }
+
+        public boolean hasDate() {
+            return hasColumn("meeting_date");
+        }
+    }
+
+    /** Optional filters; null fields are ignored. */
+    public static class Filter {
+        public Integer userId;
+        public Integer programId;
+        public String fromDate;
+        public String toDate;
+    }
+
+    private static final RowMapper<Map<String, Object>> ROW_AS_MAP = RowMapper.asMap();
+
+    private final config db;
+    private final View view;
+    private final Filter filter;
+    private final int pageSize;
+    private final TablePrinter printer;
+
+    private Object lastKey1 = null;
+    private Object lastKey2 = null;
+    private int pageNumber = 0;
+    private boolean exhausted = false;
+
+    public RecordViewer(config db, View view, Filter filter, int pageSize, PrintStream out) {
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("pageSize must be at least 1");
+        }
+        this.db = db;
+        this.view = view;
+        this.filter = filter == null ? new Filter() : filter;
+        this.pageSize = pageSize;
+        this.printer = new TablePrinter(out);
+    }
+
+    public boolean hasMore() {
+        return !exhausted;
+    }
+
+    public int getPageNumber() {
+        return pageNumber;
+    }
+
+    /** Prints the next page and returns how many rows it held. */
+    public int showNextPage() throws SQLException {
+        if (exhausted) return 0;
+
+        List<Object> params = new ArrayList<>();
+        String sql = buildSql(params);
+        int printed;
+        try (ResultSet rs = db.getRecords(sql, params.toArray())) {
+            if (rs == null) {
+                exhausted = true;
+                return 0;
+            }
+            printed = printer.printPage(rs, pageSize);
+            // The query asks for one extra row, so a leftover row means another page exists.
+            exhausted = printed < pageSize || !rs.next();
+        }
+        pageNumber++;
+        if (printed > 0) {
+            String[] last = printer.getRow(printed - 1);
+            lastKey1 = Long.valueOf(last[0]);
+            if (view.key2 != null) {
+                lastKey2 = Long.valueOf(last[1]);
+            }
+        }
+        return printed;
+    }
+
+    /** Fetches the next page as column -> value rows instead of printing it (headless callers). */
+    public List<Map<String, Object>> fetchNextPage() throws SQLException {
+        List<Map<String, Object>> rows = new ArrayList<>();
+        if (exhausted) return rows;
+
+        List<Object> params = new ArrayList<>();
+        String sql = buildSql(params);
+        // The query asks for one extra row, so a leftover row means another page exists.
+        long fetched = db.queryForEach(sql, rs -> {
+            if (rows.size() < pageSize) rows.add(ROW_AS_MAP.map(rs));
+        }, params.toArray());
+        exhausted = fetched <= pageSize;
+        pageNumber++;
+        if (!rows.isEmpty()) {
+            Map<String, Object> last = rows.get(rows.size() - 1);
+            lastKey1 = ((Number) last.get(view.key1)).longValue();
+            if (view.key2 != null) {
+                lastKey2 = ((Number) last.get(view.key2)).longValue();
+            }
+        }
+        return rows;
+    }
+
+    // --- Every shape of query the viewer can issue, for the startup query-plan check ---
+    static List<String> sampleQueries() {
+        List<String> out = new ArrayList<>();
+        for (View v : View.values()) {
+            for (int mask = 0; mask < 8; mask++) {
+                Filter f = new Filter();
+                if ((mask & 1) != 0) f.userId = 0;
+                if ((mask & 2) != 0) f.programId = 0;
+                if ((mask & 4) != 0) f.fromDate = f.toDate = "";
+                RecordViewer viewer = new RecordViewer(null, v, f, 1, null);
+                out.add(viewer.buildSql(new ArrayList<>()));
+                viewer.lastKey1 = 0L;
+                viewer.lastKey2 = 0L;
+                out.add(viewer.buildSql(new ArrayList<>()));
+            }
+        }
+        return out;
+    }
+
+    private boolean pinned(String column) {
+        return ("user_id".equals(column) && filter.userId != null) || ("program_id".equals(column) && filter.programId != null);
+    }
+
+    String buildSql(List<Object> params) {
+        StringBuilder sql = new StringBuilder("SELECT ").append(view.columns).append(" FROM ").append(view.table);
+        List<String> where = new ArrayList<>();
+
+        if (lastKey1 != null) {
+            if (view.key2 == null) {
+                where.add(view.key1 + " > ?");
+                params.add(lastKey1);
+            } else if (pinned(view.key1)) {
+                // A filter fixes one key, so the other alone orders the page and seeks in the filter's index.
+                where.add(view.key2 + " > ?");
+                params.add(lastKey2);
+            } else if (pinned(view.key2)) {
+                where.add(view.key1 + " > ?");
+                params.add(lastKey1);
+            } else {
+                // The row-value form plans as an index seek; the equivalent OR form walks the index from its first row.
+                where.add("(" + view.key1 + ", " + view.key2 + ") > (?, ?)");
+                params.add(lastKey1);
+                params.add(lastKey2);
+            }
+        }
+        if (filter.userId != null && view.hasColumn("user_id")) {
+            where.add("user_id = ?");
+            params.add(filter.userId);
+        }
+        if (filter.programId != null && view.hasColumn("program_id")) {
+            where.add("program_id = ?");
+            params.add(filter.programId);
+        }
+        if (view.hasDate()) {
+            // Unary + keeps the date range off the (program_id, meeting_date) index: the page must come out in
+            // key order, and a range read from that index would be sorted in full before the first row.
+            if (filter.fromDate != null) {
+                where.add("+meeting_date >= ?");
+                params.add(filter.fromDate);
+            }
+            if (filter.toDate != null) {
+                where.add("+meeting_date <= ?");
+                params.add(filter.toDate);
+            }
+        }
+
+        for (int i = 0; i < where.size(); i++) {
+            sql.append(i == 0 ? " WHERE " : " AND ").append(where.get(i));
+        }
+        sql.append(" ORDER BY ").append(view.key1);
+        if (view.key2 != null) {
+            sql.append(", ").append(view.key2);
+        }
+        sql.append(" LIMIT ?");
+        params.add(pageSize + 1);
+        return sql.toString();
+    }
+}
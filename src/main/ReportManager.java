@@ -0,0 +1,554 @@
+package main;
+
+import config.ConnectionPool;
+import config.DbMaintenance;
+import config.MemoryResultSet;
+import config.RowMapper;
+import config.SnapshotExporter;
+import config.config;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Scanner;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Program reports served from the summary tables (schema v3).
+ *
+ * program_summary, attendance_daily and beneficiary_attendance are kept up to
+ * date by triggers on every participation/attendance write, so a report only
+ * reads a handful of pre-aggregated rows instead of grouping the raw tables.
+ * {@link #rebuildSummaries(int)} recomputes them from scratch, one program per
+ * task, in parallel on the pool's reader connections.
+ *
+ * With the database sharded, each shard's summary rows cover only its own
+ * beneficiaries: the program totals and monthly rates add the shards up
+ * (read in parallel through {@link config#queryEveryShard}), and a rebuild
+ * goes shard by shard.
+ */
+public class ReportManager {
+
+    // --- Reports ---
+    static final String SQL_PROGRAM_TOTALS =
+        "SELECT p.program_id, p.program_name, IFNULL(s.participants, 0) AS participants, "
+            + "IFNULL(s.attendance_count, 0) AS attendances, IFNULL(s.meetings_attended, 0) AS meetings_recorded, "
+            + "printf('%.2f', IFNULL(s.amount_received, 0)) AS total_amount "
+            + "FROM program p LEFT JOIN program_summary s ON s.program_id = p.program_id "
+            + "ORDER BY p.program_id";
+    static final String SQL_BENEFICIARY_MEETINGS =
+        "SELECT pa.user_id, u.name, IFNULL(b.meetings, 0) AS meetings_attended, "
+            + "printf('%.2f', IFNULL(pa.amount_received, 0)) AS amount_received "
+            + "FROM participation pa "
+            + "LEFT JOIN user u ON u.user_id = pa.user_id "
+            + "LEFT JOIN beneficiary_attendance b ON b.program_id = pa.program_id AND b.user_id = pa.user_id "
+            + "WHERE pa.program_id = ? ORDER BY pa.user_id";
+    // Rate = attendances / (meeting days x current participants) for each month.
+    private static final String MONTHLY_SELECT =
+        "SELECT d.program_id, substr(d.meeting_date, 1, 7) AS month, COUNT(*) AS meeting_days, "
+            + "SUM(d.attendees) AS attendances, "
+            + "printf('%.1f%%', 100.0 * SUM(d.attendees) / (COUNT(*) * MAX(IFNULL(s.participants, 0), 1))) AS attendance_rate "
+            + "FROM attendance_daily d LEFT JOIN program_summary s ON s.program_id = d.program_id ";
+    static final String SQL_MONTHLY_ATTENDANCE = MONTHLY_SELECT
+            + "GROUP BY d.program_id, month ORDER BY d.program_id, month";
+    static final String SQL_MONTHLY_ATTENDANCE_BY_PROGRAM = MONTHLY_SELECT
+            + "WHERE d.program_id = ? GROUP BY d.program_id, month ORDER BY month";
+
+    // --- Rebuild: grouped reads against the raw tables, one program at a time ---
+    static final String SQL_PROGRAMS_WITH_DATA =
+        "SELECT DISTINCT program_id FROM participation UNION SELECT DISTINCT program_id FROM attendance";
+    static final String SQL_AGG_PARTICIPATION =
+        "SELECT COUNT(*), TOTAL(meetings_attended), TOTAL(amount_received) FROM participation WHERE program_id = ?";
+    static final String SQL_AGG_ATTENDANCE_BY_DATE =
+        "SELECT meeting_date, COUNT(*) FROM attendance WHERE program_id = ? GROUP BY meeting_date";
+    static final String SQL_AGG_ATTENDANCE_BY_USER =
+        "SELECT user_id, COUNT(*) FROM attendance WHERE program_id = ? GROUP BY user_id";
+
+    // --- Sharded reports: per-shard partial rows, added up here ---
+    static final String SQL_PROGRAM_NAMES = "SELECT program_id, program_name FROM program ORDER BY program_id";
+    static final String SQL_SHARD_PROGRAM_SUMMARY =
+        "SELECT program_id, participants, attendance_count, meetings_attended, amount_received FROM program_summary";
+    static final String SQL_SHARD_ATTENDANCE_DAILY = "SELECT program_id, meeting_date, attendees FROM attendance_daily";
+    static final String SQL_SHARD_ATTENDANCE_DAILY_BY_PROGRAM = SQL_SHARD_ATTENDANCE_DAILY + " WHERE program_id = ?";
+
+    private static final String[] SQL_CLEAR_SUMMARIES = {
+        "DELETE FROM program_summary", "DELETE FROM attendance_daily", "DELETE FROM beneficiary_attendance"
+    };
+    private static final String SQL_PUT_PROGRAM_SUMMARY =
+        "INSERT INTO program_summary(program_id, participants, meetings_attended, amount_received, attendance_count) "
+            + "VALUES (?,?,?,?,?)";
+    private static final String SQL_PUT_ATTENDANCE_DAILY =
+        "INSERT INTO attendance_daily(program_id, meeting_date, attendees) VALUES (?,?,?)";
+    private static final String SQL_PUT_BENEFICIARY =
+        "INSERT INTO beneficiary_attendance(program_id, user_id, meetings) VALUES (?,?,?)";
+
+    private final config db;
+    private final Scanner sc;
+    private final RecordService records;
+
+    public ReportManager(config db, Scanner sc) {
+        this.db = db;
+        this.sc = sc;
+        this.records = new RecordService(db);
+    }
+
+    // ----------------------------------------------------
+    // --- REPORTS MENU ---
+    // ----------------------------------------------------
+
+    public void showReports() throws SQLException {
+        System.out.println("\n--- REPORTS ---");
+        System.out.println("1. Program Totals (participants, attendance, amount received)");
+        System.out.println("2. Meetings Attended per Beneficiary (one program)");
+        System.out.println("3. Monthly Attendance Rate");
+        System.out.println("4. Rebuild Report Summaries");
+        System.out.println("5. Reconcile Meetings Attended with Attendance");
+        System.out.println("6. Export Analytics Snapshot (columnar files)");
+        System.out.println("7. Meetings Attended in a Date Range (in-memory index)");
+        System.out.println("8. Compliance Run for a Payout Period (all beneficiaries)");
+        System.out.println("9. Database Maintenance (backup, incremental vacuum, optimize)");
+        int choice = getIntInput("Choose report: ");
+
+        long start = System.nanoTime();
+        switch (choice) {
+            case 1:
+                db.displayResultSet(programTotals());
+                break;
+            case 2: {
+                int progId = getIntInput("Enter Program ID: ");
+                if (progId == -1) return;
+                start = System.nanoTime();
+                db.displayResultSet(beneficiaryMeetings(progId));
+                break;
+            }
+            case 3: {
+                System.out.print("Enter Program ID (blank for all): ");
+                String line = sc.nextLine().trim();
+                Integer progId = null;
+                if (!line.isEmpty()) {
+                    try {
+                        progId = Integer.parseInt(line);
+                    } catch (NumberFormatException e) {
+                        System.out.println("❌ Invalid input. Please enter a whole number.");
+                        return;
+                    }
+                }
+                start = System.nanoTime();
+                db.displayResultSet(monthlyAttendance(progId));
+                break;
+            }
+            case 4: {
+                // One task per reader connection; more threads would only queue on the pool.
+                ConnectionPool.Stats pool = config.getPoolStats();
+                RebuildResult result = rebuildSummaries(pool == null ? 1 : pool.getMaxReaders());
+                System.out.println("✅ " + result);
+                return;
+            }
+            case 5: {
+                // Reported first: the recount replaces values that may have been typed in on purpose.
+                MeetingsReconciler.Result result = new MeetingsReconciler().reconcile(false);
+                System.out.println((result.getDrifted() == 0 ? "✅ " : "⚠️ ") + result);
+                if (result.getDrifted() == 0) return;
+                System.out.print("Recount these from attendance? (y/n): ");
+                if (!sc.nextLine().trim().equalsIgnoreCase("y")) {
+                    System.out.println("❌ Recount cancelled; the recorded values were kept.");
+                    return;
+                }
+                result = new MeetingsReconciler().reconcile(true);
+                System.out.println("✅ " + result);
+                return;
+            }
+            case 6: {
+                System.out.print("Export directory (blank for 'snapshot'): ");
+                String dir = sc.nextLine().trim();
+                try {
+                    SnapshotExporter.Result result = SnapshotExporter.export(Paths.get(dir.isEmpty() ? "snapshot" : dir));
+                    System.out.println("✅ " + result);
+                } catch (IOException e) {
+                    System.out.println("❌ Could not write the snapshot: " + e.getMessage());
+                }
+                return;
+            }
+            case 7: {
+                int userId = getIntInput("Enter User ID: ");
+                if (userId == -1) return;
+                int progId = getIntInput("Enter Program ID: ");
+                if (progId == -1) return;
+                System.out.print("From date (YYYY-MM-DD): ");
+                String from = sc.nextLine().trim();
+                System.out.print("To date (YYYY-MM-DD): ");
+                String to = sc.nextLine().trim();
+                start = System.nanoTime();
+                try {
+                    int meetings = records.countAttendance(userId, progId, from, to);
+                    System.out.println("✅ User " + userId + " attended " + meetings + " meeting(s) of program " + progId
+                            + " between " + from + " and " + to + ".");
+                    System.out.println(records.getAttendanceIndexStats());
+                } catch (ServiceException e) {
+                    System.out.println("❌ " + e.getMessage());
+                    return;
+                }
+                break;
+            }
+            case 8: {
+                System.out.print("Period start (YYYY-MM-DD): ");
+                String from = sc.nextLine().trim();
+                System.out.print("Period end (YYYY-MM-DD): ");
+                String to = sc.nextLine().trim();
+                int threads = Runtime.getRuntime().availableProcessors();
+                try {
+                    ComplianceRun.Result result = new ComplianceRun(db, threads, ComplianceRun.DEFAULT_MIN_RATE)
+                            .run(LocalDate.parse(from), LocalDate.parse(to), ReportManager::printProgress);
+                    System.out.println("✅ " + result);
+                    System.out.println("   Verdicts are in compliance_result (run_id = " + result.getRunId() + ").");
+                } catch (DateTimeParseException e) {
+                    System.out.println("❌ Dates must be YYYY-MM-DD.");
+                } catch (IllegalArgumentException e) {
+                    System.out.println("❌ " + e.getMessage());
+                }
+                return;
+            }
+            case 9: {
+                System.out.print("Backup directory (blank to skip the backup): ");
+                String dir = sc.nextLine().trim();
+                try {
+                    for (DbMaintenance.StepResult step : DbMaintenance.runAll(dir.isEmpty() ? null : Paths.get(dir), config.BACKUP_KEEP)) {
+                        System.out.println("✅ " + step);
+                    }
+                } catch (SQLException | IOException e) {
+                    System.out.println("❌ Maintenance failed: " + e.getMessage());
+                }
+                return;
+            }
+            default:
+                System.out.println("Invalid choice!");
+                return;
+        }
+        System.out.printf("(report took %.1f ms)%n", (System.nanoTime() - start) / 1e6);
+    }
+
+    private static void printProgress(long evaluated, long total, long elapsedNanos) {
+        System.out.printf("⌛ %,d of %,d participations evaluated (%.0f%%, %.1f s)%n",
+                evaluated, total, total == 0 ? 100.0 : 100.0 * evaluated / total, elapsedNanos / 1e9);
+    }
+
+    private int getIntInput(String prompt) {
+        System.out.print(prompt);
+        String line = sc.nextLine().trim();
+        try {
+            return Integer.parseInt(line);
+        } catch (NumberFormatException e) {
+            System.out.println("❌ Invalid input. Please enter a whole number.");
+            return -1;
+        }
+    }
+
+    // ----------------------------------------------------
+    // --- REPORT QUERIES (caller closes the ResultSet) ---
+    // ----------------------------------------------------
+
+    public ResultSet programTotals() {
+        if (config.getShardCount() > 1) {
+            return shardedReport("program totals", this::shardedProgramTotals);
+        }
+        return db.getRecords(SQL_PROGRAM_TOTALS);
+    }
+
+    public ResultSet beneficiaryMeetings(int programId) {
+        // Every row of this join belongs to one beneficiary, so config merges the shards itself.
+        return db.getRecords(SQL_BENEFICIARY_MEETINGS, programId);
+    }
+
+    public ResultSet monthlyAttendance(Integer programId) {
+        if (config.getShardCount() > 1) {
+            return shardedReport("monthly attendance", () -> shardedMonthlyAttendance(programId));
+        }
+        return programId == null
+                ? db.getRecords(SQL_MONTHLY_ATTENDANCE)
+                : db.getRecords(SQL_MONTHLY_ATTENDANCE_BY_PROGRAM, programId);
+    }
+
+    // ----------------------------------------------------
+    // --- SHARDED REPORTS (same columns as the single-file SQL) ---
+    // ----------------------------------------------------
+
+    private interface ReportQuery {
+        ResultSet run() throws SQLException;
+    }
+
+    // --- Reports the failure the way getRecords does: printed, and null instead of a ResultSet ---
+    private static ResultSet shardedReport(String name, ReportQuery query) {
+        try {
+            return query.run();
+        } catch (SQLException e) {
+            System.err.println("❌ SQL SELECT Error (" + name + " across shards) : " + e.getMessage());
+            return null;
+        }
+    }
+
+    private ResultSet shardedProgramTotals() throws SQLException {
+        Map<Integer, double[]> totals = new HashMap<>();     // participants, attendances, meetings, amount
+        for (Object[] r : db.queryEveryShard(SQL_SHARD_PROGRAM_SUMMARY,
+                rs -> new Object[] { rs.getInt(1), rs.getLong(2), rs.getLong(3), rs.getLong(4), rs.getDouble(5) })) {
+            double[] t = totals.computeIfAbsent((Integer) r[0], k -> new double[4]);
+            t[0] += (Long) r[1];
+            t[1] += (Long) r[2];
+            t[2] += (Long) r[3];
+            t[3] += (Double) r[4];
+        }
+        List<Object[]> rows = new ArrayList<>();
+        for (Object[] p : db.queryList(SQL_PROGRAM_NAMES, rs -> new Object[] { rs.getInt(1), rs.getString(2) })) {
+            double[] t = totals.getOrDefault((Integer) p[0], new double[4]);
+            rows.add(new Object[] { p[0], p[1], (long) t[0], (long) t[1], (long) t[2], String.format(Locale.ROOT, "%.2f", t[3]) });
+        }
+        return MemoryResultSet.of(new String[] {
+            "program_id", "program_name", "participants", "attendances", "meetings_recorded", "total_amount" }, rows);
+    }
+
+    // --- A meeting day counts once even when attendees of several shards came to it ---
+    private ResultSet shardedMonthlyAttendance(Integer programId) throws SQLException {
+        Map<Integer, Long> participants = new HashMap<>();
+        for (Object[] r : db.queryEveryShard(SQL_SHARD_PROGRAM_SUMMARY, rs -> new Object[] { rs.getInt(1), rs.getLong(2) })) {
+            participants.merge((Integer) r[0], (Long) r[1], Long::sum);
+        }
+        Map<Integer, Map<String, Map<String, Long>>> days = new TreeMap<>();     // program -> month -> day -> attendees
+        RowMapper<Object[]> daily = rs -> new Object[] { rs.getInt(1), rs.getString(2), rs.getLong(3) };
+        List<Object[]> partials = programId == null
+                ? db.queryEveryShard(SQL_SHARD_ATTENDANCE_DAILY, daily)
+                : db.queryEveryShard(SQL_SHARD_ATTENDANCE_DAILY_BY_PROGRAM, daily, programId);
+        for (Object[] r : partials) {
+            String date = (String) r[1];
+            days.computeIfAbsent((Integer) r[0], k -> new TreeMap<>())
+                .computeIfAbsent(date.substring(0, Math.min(7, date.length())), k -> new HashMap<>())
+                .merge(date, (Long) r[2], Long::sum);
+        }
+        List<Object[]> rows = new ArrayList<>();
+        for (Map.Entry<Integer, Map<String, Map<String, Long>>> program : days.entrySet()) {
+            long enrolled = Math.max(participants.getOrDefault(program.getKey(), 0L), 1L);
+            for (Map.Entry<String, Map<String, Long>> month : program.getValue().entrySet()) {
+                long meetingDays = month.getValue().size();
+                long attendances = 0;
+                for (long n : month.getValue().values()) {
+                    attendances += n;
+                }
+                rows.add(new Object[] { program.getKey(), month.getKey(), meetingDays, attendances,
+                        String.format(Locale.ROOT, "%.1f%%", 100.0 * attendances / (meetingDays * enrolled)) });
+            }
+        }
+        return MemoryResultSet.of(new String[] { "program_id", "month", "meeting_days", "attendances", "attendance_rate" }, rows);
+    }
+
+    // ----------------------------------------------------
+    // --- PARALLEL REBUILD ---
+    // ----------------------------------------------------
+
+    /**
+     * Recomputes every summary row from the raw tables.
+     *
+     * The writer is held for the whole rebuild (each shard's writer while
+     * that shard is rebuilt), so no attendance or participation write can
+     * slip in between the reads and the replace. Each program is aggregated
+     * on its own reader connection; the results are written back in a
+     * single transaction per shard.
+     */
+    public RebuildResult rebuildSummaries(int threads) throws SQLException {
+        long start = System.nanoTime();
+        threads = Math.max(1, threads);
+        int rows = 0;
+        Set<Integer> programIds = new HashSet<>();
+        ExecutorService workers = Executors.newFixedThreadPool(threads, new WorkerFactory());
+        try {
+            for (int shard = 0; shard < config.getShardCount(); shard++) {
+                rows += rebuildShard(shard, workers, programIds);
+            }
+        } finally {
+            workers.shutdownNow();
+        }
+        return new RebuildResult(programIds.size(), rows, threads, System.nanoTime() - start);
+    }
+
+    // --- One shard's summaries from its own raw rows, under its writer; returns the rows written ---
+    private static int rebuildShard(final int shard, ExecutorService workers, Set<Integer> allPrograms) throws SQLException {
+        int rows = 0;
+        List<Integer> programIds = new ArrayList<>();
+
+        try (Connection w = config.getWriteConnection(shard)) {
+            w.setAutoCommit(false);
+            try {
+                try (Statement st = w.createStatement()) {
+                    try (ResultSet rs = st.executeQuery(SQL_PROGRAMS_WITH_DATA)) {
+                        while (rs.next()) {
+                            programIds.add(rs.getInt(1));
+                        }
+                    }
+                    for (String sql : SQL_CLEAR_SUMMARIES) {
+                        st.executeUpdate(sql);
+                    }
+                }
+
+                List<Future<ProgramAggregate>> futures = new ArrayList<>(programIds.size());
+                for (final Integer programId : programIds) {
+                    futures.add(workers.submit(() -> aggregate(shard, programId)));
+                }
+
+                try (PreparedStatement putProgram = w.prepareStatement(SQL_PUT_PROGRAM_SUMMARY);
+                     PreparedStatement putDaily = w.prepareStatement(SQL_PUT_ATTENDANCE_DAILY);
+                     PreparedStatement putBeneficiary = w.prepareStatement(SQL_PUT_BENEFICIARY)) {
+                    for (Future<ProgramAggregate> f : futures) {
+                        rows += awaitAggregate(f).writeTo(putProgram, putDaily, putBeneficiary);
+                    }
+                    putProgram.executeBatch();
+                    putDaily.executeBatch();
+                    putBeneficiary.executeBatch();
+                }
+                w.commit();
+            } catch (SQLException | RuntimeException e) {
+                w.rollback();
+                throw e;
+            } finally {
+                w.setAutoCommit(true);
+            }
+        }
+        allPrograms.addAll(programIds);
+        return rows;
+    }
+
+    private static ProgramAggregate awaitAggregate(Future<ProgramAggregate> f) throws SQLException {
+        try {
+            return f.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Summary rebuild interrupted", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException) throw (SQLException) cause;
+            throw new SQLException("Summary rebuild failed: " + cause, cause);
+        }
+    }
+
+    private static ProgramAggregate aggregate(int shard, int programId) throws SQLException {
+        ProgramAggregate agg = new ProgramAggregate(programId);
+        try (Connection conn = config.getConnection(shard)) {
+            try (PreparedStatement ps = conn.prepareStatement(SQL_AGG_PARTICIPATION)) {
+                ps.setInt(1, programId);
+                try (ResultSet rs = ps.executeQuery()) {
+                    if (rs.next()) {
+                        agg.participants = rs.getInt(1);
+                        agg.meetingsAttended = rs.getLong(2);
+                        agg.amountReceived = rs.getDouble(3);
+                    }
+                }
+            }
+            try (PreparedStatement ps = conn.prepareStatement(SQL_AGG_ATTENDANCE_BY_DATE)) {
+                ps.setInt(1, programId);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        agg.byDate.put(rs.getString(1), rs.getInt(2));
+                        agg.attendanceCount += rs.getInt(2);
+                    }
+                }
+            }
+            try (PreparedStatement ps = conn.prepareStatement(SQL_AGG_ATTENDANCE_BY_USER)) {
+                ps.setInt(1, programId);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        agg.byUser.put(rs.getInt(1), rs.getInt(2));
+                    }
+                }
+            }
+        }
+        return agg;
+    }
+
+    // --- Everything the summary tables hold for one program ---
+    private static class ProgramAggregate {
+        final int programId;
+        int participants;
+        long meetingsAttended;
+        double amountReceived;
+        int attendanceCount;
+        final Map<String, Integer> byDate = new LinkedHashMap<>();
+        final Map<Integer, Integer> byUser = new LinkedHashMap<>();
+
+        ProgramAggregate(int programId) {
+            this.programId = programId;
+        }
+
+        int writeTo(PreparedStatement putProgram, PreparedStatement putDaily, PreparedStatement putBeneficiary) throws SQLException {
+            putProgram.setInt(1, programId);
+            putProgram.setInt(2, participants);
+            putProgram.setLong(3, meetingsAttended);
+            putProgram.setDouble(4, amountReceived);
+            putProgram.setInt(5, attendanceCount);
+            putProgram.addBatch();
+            for (Map.Entry<String, Integer> e : byDate.entrySet()) {
+                putDaily.setInt(1, programId);
+                putDaily.setString(2, e.getKey());
+                putDaily.setInt(3, e.getValue());
+                putDaily.addBatch();
+            }
+            for (Map.Entry<Integer, Integer> e : byUser.entrySet()) {
+                putBeneficiary.setInt(1, programId);
+                putBeneficiary.setInt(2, e.getKey());
+                putBeneficiary.setInt(3, e.getValue());
+                putBeneficiary.addBatch();
+            }
+            return 1 + byDate.size() + byUser.size();
+        }
+    }
+
+    public static class RebuildResult {
+        private final int programs;
+        private final int rows;
+        private final int threads;
+        private final long elapsedNanos;
+
+        RebuildResult(int programs, int rows, int threads, long elapsedNanos) {
+            this.programs = programs;
+            this.rows = rows;
+            this.threads = threads;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public int getPrograms() { return programs; }
+        public int getRows() { return rows; }
+        public int getThreads() { return threads; }
+        public long getElapsedNanos() { return elapsedNanos; }
+
+        @Override
+        public String toString() {
+            return String.format("Rebuilt report summaries for %d programs (%d rows) in %.1f ms using %d threads.",
+                    programs, rows, elapsedNanos / 1e6, threads);
+        }
+    }
+
+    private static class WorkerFactory implements ThreadFactory {
+        private final AtomicInteger n = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "4ps-report-rebuild-" + n.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }
+    }
+}
@@ -0,0 +1,243 @@
+package main;
+
+import config.RowMapper;
+import config.config;
+import java.sql.SQLException;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Ranked full-text search over beneficiaries (name, e-mail) and programs
+ * (name, description), on the FTS5 indexes of schema v6.
+ *
+ * Every word of the query must match, and every word matches as a prefix, so
+ * "dela cr" finds "Juan Dela Cruz" while it is still being typed. Results
+ * are ranked by BM25, names weighted above e-mail and description. When the
+ * exact pass finds fewer than {@code limit} hits, a second pass adds to each
+ * word of four letters or more the indexed terms within one typo of it (two
+ * for words of eight or more), taken from the fts5vocab table; those hits
+ * come after the exact ones and carry {@code fuzzy = true}. A typo in the
+ * first letter is not corrected, which keeps the vocabulary scan to one
+ * letter's terms, and words with digits in them (ID numbers, the local part
+ * of generated e-mail addresses) are only matched as typed.
+ *
+ * With the database sharded, beneficiaries are searched on every shard and
+ * merged on their score; BM25 weighs each shard's terms by that shard's own
+ * statistics, which differ little once the shards hold thousands of rows.
+ */
+public class SearchService {
+
+    public enum Scope { USERS, PROGRAMS }
+
+    public static final int DEFAULT_LIMIT = 20;
+    public static final int MAX_LIMIT = 200;
+    private static final int MAX_WORDS = 8;
+    private static final int FUZZY_MIN_LENGTH = 4;
+    private static final int FUZZY_TWO_EDITS_LENGTH = 8;
+    // Near spellings tried per query word, most frequent first.
+    private static final int MAX_VARIANTS = 8;
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern LETTERS = Pattern.compile("\\p{L}+");
+
+    // --- SQL used by the searches (also checked against EXPLAIN QUERY PLAN at startup) ---
+    static final String SQL_SEARCH_USERS = "SELECT rowid AS user_id, name, email, rank AS score FROM user_search\n"
+        + "WHERE user_search MATCH ? ORDER BY score LIMIT ?";
+    static final String SQL_SEARCH_PROGRAMS = "SELECT rowid AS program_id, program_name, description, rank AS score FROM program_search\n"
+        + "WHERE program_search MATCH ? ORDER BY score LIMIT ?";
+    static final String SQL_USER_TERMS =
+        "SELECT term, doc FROM user_search_vocab WHERE term >= ? AND term < ? AND length(term) BETWEEN ? AND ?";
+    static final String SQL_PROGRAM_TERMS =
+        "SELECT term, doc FROM program_search_vocab WHERE term >= ? AND term < ? AND length(term) BETWEEN ? AND ?";
+
+    private static final RowMapper<Map<String, Object>> HIT = rs -> {
+        Map<String, Object> row = RowMapper.asMap().map(rs);
+        // bm25() is lower-is-better and negative; shown as a positive relevance.
+        Object score = row.get("score");
+        if (score instanceof Number) {
+            row.put("score", Math.round(-((Number) score).doubleValue() * 1000) / 1000.0);
+        }
+        return row;
+    };
+
+    private final config db;
+
+    public SearchService(config db) {
+        this.db = db;
+    }
+
+    /** Up to {@code limit} matches for {@code query}, best first. */
+    public List<Map<String, Object>> search(Scope scope, String query, int limit) throws SQLException, ServiceException {
+        List<String> words = words(query);
+        if (words.isEmpty()) {
+            throw new ServiceException("Enter at least one letter or digit to search for.");
+        }
+        int n = Math.max(1, Math.min(limit, MAX_LIMIT));
+        String sql = scope == Scope.USERS ? SQL_SEARCH_USERS : SQL_SEARCH_PROGRAMS;
+        String idColumn = scope == Scope.USERS ? "user_id" : "program_id";
+
+        List<Map<String, Object>> hits = db.queryList(sql, HIT, matchExpression(words, null), n);
+        for (Map<String, Object> hit : hits) {
+            hit.put("fuzzy", false);
+        }
+        if (hits.size() >= n) {
+            return hits;
+        }
+
+        List<List<String>> variants = new ArrayList<>(words.size());
+        boolean anyVariant = false;
+        for (int i = 0; i < words.size(); i++) {
+            List<String> v = variants(scope, words.get(i), i == words.size() - 1);
+            anyVariant |= !v.isEmpty();
+            variants.add(v);
+        }
+        if (!anyVariant) {
+            return hits;
+        }
+        Set<Object> seen = new HashSet<>();
+        for (Map<String, Object> hit : hits) {
+            seen.add(hit.get(idColumn));
+        }
+        for (Map<String, Object> hit : db.queryList(sql, HIT, matchExpression(words, variants), n + hits.size())) {
+            if (hits.size() >= n) break;
+            if (seen.add(hit.get(idColumn))) {
+                hit.put("fuzzy", true);
+                hits.add(hit);
+            }
+        }
+        return hits;
+    }
+
+    // ----------------------------------------------------
+    // --- QUERY TEXT ---
+    // ----------------------------------------------------
+
+    // --- Folds the query the way the unicode61 tokenizer folds the index: no accents, lower case, split on the rest ---
+    static List<String> words(String query) {
+        if (query == null) return Collections.emptyList();
+        String folded = MARKS.matcher(Normalizer.normalize(query, Normalizer.Form.NFD)).replaceAll("").toLowerCase(Locale.ROOT);
+        List<String> words = new ArrayList<>();
+        for (String w : SEPARATORS.split(folded)) {
+            if (!w.isEmpty() && words.size() < MAX_WORDS) {
+                words.add(w);
+            }
+        }
+        return words;
+    }
+
+    // --- "w1"* AND "w2"*, or with variants ("w1"* OR "v1" OR "v2") AND ... (words hold only letters and digits) ---
+    private static String matchExpression(List<String> words, List<List<String>> variants) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < words.size(); i++) {
+            if (i > 0) sb.append(" AND ");
+            List<String> v = variants == null ? Collections.<String>emptyList() : variants.get(i);
+            if (v.isEmpty()) {
+                sb.append('"').append(words.get(i)).append("\"*");
+                continue;
+            }
+            sb.append("(\"").append(words.get(i)).append("\"*");
+            for (String term : v) {
+                sb.append(" OR \"").append(term).append('"');
+            }
+            sb.append(')');
+        }
+        return sb.toString();
+    }
+
+    // ----------------------------------------------------
+    // --- TYPO TOLERANCE ---
+    // ----------------------------------------------------
+
+    // --- Indexed terms within the word's edit budget, most documents first; the last word may still be half typed ---
+    private List<String> variants(Scope scope, String word, boolean typing) throws SQLException {
+        int len = word.codePointCount(0, word.length());
+        if (len < FUZZY_MIN_LENGTH || !LETTERS.matcher(word).matches()) {
+            return Collections.emptyList();
+        }
+        final int budget = len >= FUZZY_TWO_EDITS_LENGTH ? 2 : 1;
+        int first = word.codePointAt(0);
+        String from = new String(Character.toChars(first));
+        String to = new String(Character.toChars(first + 1));
+        int maxLength = typing ? Integer.MAX_VALUE : len + budget;
+
+        final Map<String, Long> docs = new HashMap<>();
+        final Map<String, Integer> distance = new HashMap<>();
+        List<Object[]> terms = db.queryList(scope == Scope.USERS ? SQL_USER_TERMS : SQL_PROGRAM_TERMS,
+                rs -> new Object[] { rs.getString(1), rs.getLong(2) }, from, to, len - budget, maxLength);
+        for (Object[] t : terms) {
+            String term = (String) t[0];
+            if (term.equals(word)) continue;
+            Integer d = distance.get(term);
+            if (d == null) {
+                int best = editDistance(word, term, budget);
+                if (typing && term.length() > word.length()) {
+                    // Compared with the start of the term only: "gonzl" is one edit from "gonza(les)".
+                    best = Math.min(best, editDistance(word, term.substring(0, word.length()), budget));
+                }
+                if (best > budget) continue;
+                distance.put(term, best);
+            }
+            Long before = docs.get(term);
+            docs.put(term, (before == null ? 0 : before) + (Long) t[1]);     // summed over shards
+        }
+        List<String> out = new ArrayList<>(docs.keySet());
+        out.sort((a, b) -> {
+            int c = Integer.compare(distance.get(a), distance.get(b));
+            return c != 0 ? c : Long.compare(docs.get(b), docs.get(a));
+        });
+        return out.size() > MAX_VARIANTS ? new ArrayList<>(out.subList(0, MAX_VARIANTS)) : out;
+    }
+
+    /**
+     * Optimal string alignment distance (insertions, deletions, substitutions
+     * and swaps of neighbouring letters), or {@code limit + 1} as soon as it
+     * is known to exceed {@code limit}.
+     */
+    static int editDistance(String a, String b, int limit) {
+        int n = a.length();
+        int m = b.length();
+        if (Math.abs(n - m) > limit) return limit + 1;
+        int[] prev2 = new int[m + 1];
+        int[] prev = new int[m + 1];
+        int[] cur = new int[m + 1];
+        for (int j = 0; j <= m; j++) prev[j] = j;
+        for (int i = 1; i <= n; i++) {
+            cur[0] = i;
+            int rowMin = cur[0];
+            char ca = a.charAt(i - 1);
+            for (int j = 1; j <= m; j++) {
+                char cb = b.charAt(j - 1);
+                int d = Math.min(Math.min(prev[j] + 1, cur[j - 1] + 1), prev[j - 1] + (ca == cb ? 0 : 1));
+                if (i > 1 && j > 1 && ca == b.charAt(j - 2) && a.charAt(i - 2) == cb) {
+                    d = Math.min(d, prev2[j - 2] + 1);
+                }
+                cur[j] = d;
+                rowMin = Math.min(rowMin, d);
+            }
+            if (rowMin > limit) return limit + 1;
+            int[] t = prev2;
+            prev2 = prev;
+            prev = cur;
+            cur = t;
+        }
+        return Math.min(prev[m], limit + 1);
+    }
+
+    /** The search scope named by a front end ("users" or "programs"). */
+    static Scope scope(String name) {
+        if (name == null) return Scope.USERS;
+        try {
+            return Scope.valueOf(name.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("scope must be users or programs");
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package main;
+
+import config.DbMetrics;
+
+/**
+ * A business rule or write failure reported by {@link RecordService} or
+ * {@link AuthService}. The message is ready to show to an operator.
+ */
+public class ServiceException extends Exception {
+
+    private static final long serialVersionUID = 1L;
+
+    /** What kind of failure this is, for front ends that must tell them apart (HTTP status codes). */
+    public enum Reason { INVALID, NOT_FOUND, UNAUTHORIZED, TOO_MANY_ATTEMPTS, WRITE_FAILED }
+
+    private final DbMetrics.ErrorCategory category;
+    private final Reason reason;
+    private final long retryAfterMillis;
+
+    public ServiceException(String message) {
+        this(message, Reason.INVALID, null, null, 0);
+    }
+
+    public ServiceException(String message, DbMetrics.ErrorCategory category, Throwable cause) {
+        this(message, Reason.WRITE_FAILED, category, cause, 0);
+    }
+
+    private ServiceException(String message, Reason reason, DbMetrics.ErrorCategory category, Throwable cause, long retryAfterMillis) {
+        super(message, cause);
+        this.reason = reason;
+        this.category = category;
+        this.retryAfterMillis = retryAfterMillis;
+    }
+
+    /** The record the operation targets does not exist. */
+    public static ServiceException notFound(String message) {
+        return new ServiceException(message, Reason.NOT_FOUND, null, null, 0);
+    }
+
+    /** Wrong credentials, or no valid session. */
+    public static ServiceException unauthorized(String message) {
+        return new ServiceException(message, Reason.UNAUTHORIZED, null, null, 0);
+    }
+
+    /** Locked out for now; the caller may retry after the given delay. */
+    public static ServiceException tooManyAttempts(String message, long retryAfterMillis) {
+        return new ServiceException(message, Reason.TOO_MANY_ATTEMPTS, null, null, retryAfterMillis);
+    }
+
+    public Reason getReason() {
+        return reason;
+    }
+
+    public boolean isNotFound() {
+        return reason == Reason.NOT_FOUND;
+    }
+
+    /** The SQLite error class for write failures, null for rule violations such as "not found". */
+    public DbMetrics.ErrorCategory getCategory() {
+        return category;
+    }
+
+    /** For {@link Reason#TOO_MANY_ATTEMPTS}: how long until another attempt is allowed. */
+    public long getRetryAfterMillis() {
+        return retryAfterMillis;
+    }
+}
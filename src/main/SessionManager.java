@@ -0,0 +1,178 @@
+package main;
+
+import config.TimerWheel;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Logged-in sessions and the failed-login limit, shared by every front end
+ * (console menu, HTTP API) of the process.
+ *
+ * Sessions live in a concurrent map keyed by a random 192-bit token. Each one
+ * is put on a timer wheel once; when its timeout comes due the wheel either
+ * drops it (idle for the whole timeout) or re-arms it for the time it still
+ * has, so {@link #touch} only writes a timestamp. At most {@code maxSessions}
+ * are open at once.
+ *
+ * Settings: 4ps.session.idleMinutes (30), 4ps.session.max (10000),
+ * 4ps.login.maxFailures (3), 4ps.login.windowSeconds (300),
+ * 4ps.login.maxTrackedEmails (100000).
+ */
+public final class SessionManager {
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+    private static SessionManager shared;
+
+    private final long idleNanos;
+    private final int maxSessions;
+    private final ConcurrentHashMap<String, Session> sessions = new ConcurrentHashMap<>();
+    private final TimerWheel<Session> expiry;
+    private final LoginRateLimiter limiter;
+    private final AtomicLong opened = new AtomicLong();
+    private final AtomicLong expired = new AtomicLong();
+    private final AtomicLong rejectedFull = new AtomicLong();
+
+    /** The process-wide instance, configured from system properties. */
+    public static synchronized SessionManager get() {
+        if (shared == null) {
+            shared = new SessionManager(
+                    TimeUnit.MINUTES.toMillis(Long.getLong("4ps.session.idleMinutes", 30)),
+                    Integer.getInteger("4ps.session.max", 10000),
+                    new LoginRateLimiter(Integer.getInteger("4ps.login.maxFailures", 3),
+                            TimeUnit.SECONDS.toMillis(Long.getLong("4ps.login.windowSeconds", 300)),
+                            Integer.getInteger("4ps.login.maxTrackedEmails", 100000)));
+        }
+        return shared;
+    }
+
+    SessionManager(long idleMillis, int maxSessions, LoginRateLimiter limiter) {
+        this.idleNanos = TimeUnit.MILLISECONDS.toNanos(idleMillis);
+        this.maxSessions = maxSessions;
+        this.limiter = limiter;
+        // 512 slots cover 1/4 of the idle timeout per turn, so a session is passed over at most a few times.
+        this.expiry = new TimerWheel<>("4ps-session-expiry", Math.max(1, idleMillis / 2048), 512, this::expire);
+    }
+
+    /** One logged-in user. The token is the only thing a client needs to keep. */
+    public static final class Session {
+        private final String token;
+        private final int userId;
+        private final String userName;
+        private final long createdAt = System.currentTimeMillis();
+        private volatile long lastAccess = System.nanoTime();
+        private volatile boolean closed;
+
+        Session(String token, int userId, String userName) {
+            this.token = token;
+            this.userId = userId;
+            this.userName = userName;
+        }
+
+        public String getToken() { return token; }
+        public int getUserId() { return userId; }
+        public String getUserName() { return userName; }
+        public long getCreatedAt() { return createdAt; }
+        public boolean isOpen() { return !closed; }
+    }
+
+    // ----------------------------------------------------
+    // --- SESSIONS ---
+    // ----------------------------------------------------
+
+    public Session open(AuthService.Account account) throws ServiceException {
+        if (sessions.size() >= maxSessions) {
+            rejectedFull.incrementAndGet();
+            throw new ServiceException("Too many active sessions (" + maxSessions + "). Try again later.");
+        }
+        Session s = new Session(newToken(), account.getUserId(), account.getName());
+        sessions.put(s.token, s);
+        expiry.schedule(s, TimeUnit.NANOSECONDS.toMillis(idleNanos));
+        opened.incrementAndGet();
+        return s;
+    }
+
+    /** Returns the session and marks it active, or null if the token is unknown or has expired. */
+    public Session touch(String token) {
+        if (token == null) return null;
+        Session s = sessions.get(token);
+        if (s == null) return null;
+        long now = System.nanoTime();
+        if (now - s.lastAccess >= idleNanos) {
+            // Idle past the timeout but the wheel has not got to it yet.
+            close(s, true);
+            return null;
+        }
+        s.lastAccess = now;
+        return s;
+    }
+
+    public void close(String token) {
+        Session s = token == null ? null : sessions.get(token);
+        if (s != null) {
+            close(s, false);
+        }
+    }
+
+    public int activeSessions() {
+        return sessions.size();
+    }
+
+    public long getIdleTimeoutMinutes() {
+        return TimeUnit.NANOSECONDS.toMinutes(idleNanos);
+    }
+
+    private void close(Session s, boolean idle) {
+        s.closed = true;
+        if (sessions.remove(s.token, s) && idle) {
+            expired.incrementAndGet();
+        }
+    }
+
+    private long expire(Session s) {
+        if (s.closed) return 0;
+        long idle = System.nanoTime() - s.lastAccess;
+        if (idle >= idleNanos) {
+            close(s, true);
+            return 0;
+        }
+        return TimeUnit.NANOSECONDS.toMillis(idleNanos - idle) + 1;
+    }
+
+    private static String newToken() {
+        byte[] bytes = new byte[24];
+        RANDOM.nextBytes(bytes);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    // ----------------------------------------------------
+    // --- FAILED-LOGIN LIMIT ---
+    // ----------------------------------------------------
+
+    /** Throws if this email has used up its failed attempts for the current window. */
+    void checkLoginAllowed(String email) throws ServiceException {
+        long wait = limiter.retryAfterMillis(email);
+        if (wait > 0) {
+            throw ServiceException.tooManyAttempts("Too many failed login attempts. Try again in "
+                    + Math.max(1, TimeUnit.MILLISECONDS.toSeconds(wait + 999)) + " seconds.", wait);
+        }
+    }
+
+    /** Records a failed login and returns the attempts left before the email is locked out. */
+    int loginFailed(String email) {
+        return limiter.recordFailure(email);
+    }
+
+    void loginSucceeded(String email) {
+        limiter.reset(email);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("sessions: active=%d/%d opened=%d expired=%d rejected=%d, login limiter: emails=%d overflow-rejected=%d",
+                sessions.size(), maxSessions, opened.get(), expired.get(), rejectedFull.get(),
+                limiter.trackedKeys(), limiter.overflowRejections());
+    }
+}
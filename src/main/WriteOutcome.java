@@ -0,0 +1,61 @@
+package main;
+
+import config.DbMetrics;
+import config.WriteCallback;
+import config.config;
+import java.sql.SQLException;
+
+/**
+ * Hands the outcome of one config.addRecord call back to the service method
+ * that issued it. If the write is still queued (write-behind) when the method
+ * returns, its eventual result goes to the async reporter instead.
+ *
+ * An optional action runs once the write has committed with at least one row
+ * affected, whichever thread reports it (used to keep in-memory indexes such
+ * as {@link AttendanceIndex} in step).
+ */
+final class WriteOutcome implements WriteCallback {
+
+    private final WriteCallback asyncReporter;
+    private final Runnable afterCommit;
+    private boolean returned;
+    private int rows = -1;
+    private ServiceException failure;
+
+    WriteOutcome(WriteCallback asyncReporter) {
+        this(asyncReporter, null);
+    }
+
+    WriteOutcome(WriteCallback asyncReporter, Runnable afterCommit) {
+        this.asyncReporter = asyncReporter;
+        this.afterCommit = afterCommit;
+    }
+
+    @Override
+    public synchronized void onCommit(String sql, Object[] params, int rowsAffected) {
+        if (afterCommit != null && rowsAffected > 0) {
+            afterCommit.run();
+        }
+        if (!returned) {
+            rows = rowsAffected;
+        } else {
+            asyncReporter.onCommit(sql, params, rowsAffected);
+        }
+    }
+
+    @Override
+    public synchronized void onFailure(String sql, Object[] params, DbMetrics.ErrorCategory category, SQLException e) {
+        if (!returned) {
+            failure = new ServiceException(config.describeWriteError(sql, category, e), category, e);
+        } else {
+            asyncReporter.onFailure(sql, params, category, e);
+        }
+    }
+
+    /** Rows affected, or -1 if the write is still queued; throws if it already failed. */
+    synchronized int await() throws ServiceException {
+        returned = true;
+        if (failure != null) throw failure;
+        return rows;
+    }
+}
@@ -1,32 +1,50 @@
 package main;
 
+import config.DbMaintenance;
 import config.config;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.sql.SQLException;
 import java.util.Scanner;
+import java.util.concurrent.CountDownLatch;
 
 public class main {
     
     // --- Application State ---
-    private static boolean loggedIn = false;
-    private static int loggedUserId = -1; // Stores the ID of the currently logged-in user
-    private static String loggedUserName = ""; // Stores the name of the currently logged-in user
-    private static int loginAttempts = 0;
+    // The console's session; its token is checked on every menu turn, so an idle console is logged out.
+    private static SessionManager.Session session = null;
     
     // --- Helper Classes ---
     private static final Scanner sc = new Scanner(System.in);
     private static final config db = new config();
     private static final AuthManager auth = new AuthManager(db, sc);
     private static final RecordManager recordManager = new RecordManager(db, sc);
+    private static final ReportManager reportManager = new ReportManager(db, sc);
     
     public static void main(String[] args) {
+        if (args.length > 0) {
+            System.exit(runHeadless(args));
+        }
         
         // 1. Establish DB connection (must be successful to continue)
         config.connectDB();
+        config.verifyQueryPlans(AppQueries.all(), AppQueries.paged());
+        reportMeetingsDrift();
         
         // 2. Main Application Loop
         while (true) {
             try {
-                if (!loggedIn) {
+                if (session != null) {
+                    checkSession();
+                }
+                if (session == null) {
                     showPreLoginMenu();
                 } else {
                     showMainMenu();
@@ -59,20 +77,8 @@ public class main {
                 auth.handleRegistration();
                 break;
             case 2:
-                // Calls AuthManager to handle login and update state
-                AuthManager.LoginResult result = auth.handleLogin(loginAttempts);
-                if (result.isSuccess()) {
-                    loggedIn = true;
-                    loggedUserId = result.getUserId();
-                    loggedUserName = result.getUserName();
-                    loginAttempts = 0;
-                } else {
-                    loginAttempts = result.getLoginAttempts();
-                    if (loginAttempts >= 3) {
-                         System.out.println("🚫 Too many failed login attempts. Exiting program...");
-                         System.exit(0); // Force exit
-                    }
-                }
+                // Calls AuthManager to handle login; failed attempts are limited per email by the LoginRateLimiter
+                session = auth.handleLogin();
                 break;
             case 3:
                 System.out.println("Exiting program...");
@@ -84,17 +90,22 @@ public class main {
     }
 
     private static void showMainMenu() throws SQLException {
-        System.out.println("\n=== MAIN MENU (Welcome, " + loggedUserName + "!) ===");
+        System.out.println("\n=== MAIN MENU (Welcome, " + session.getUserName() + "!) ===");
         System.out.println("1. Add Program");
         System.out.println("2. Record Participation");
         System.out.println("3. Record Attendance");
         System.out.println("4. View Records");
         System.out.println("5. Update Record");
         System.out.println("6. Delete Record");
-        System.out.println("7. Logout");
+        System.out.println("7. Import Records (CSV)");
+        System.out.println("8. Reports");
+        System.out.println("9. Search");
+        System.out.println("10. Logout");
         System.out.print("Choose option: ");
 
         int choice = getIntInput(sc.nextLine());
+        // The prompt may have waited longer than the idle timeout; nothing runs on an expired session.
+        if (!checkSession()) return;
 
         switch (choice) {
             case 1: recordManager.addProgram(); break;
@@ -103,11 +114,13 @@ public class main {
             case 4: recordManager.viewRecords(); break;
             case 5: recordManager.updateRecord(); break;
             case 6: recordManager.deleteRecord(); break;
-            case 7:
+            case 7: recordManager.importRecords(); break;
+            case 8: reportManager.showReports(); break;
+            case 9: recordManager.searchRecords(); break;
+            case 10:
                 // Logout Logic
-                loggedIn = false;
-                loggedUserId = -1;
-                loggedUserName = "";
+                auth.getSessions().close(session.getToken());
+                session = null;
                 System.out.println("👋 Logged out successfully!");
                 break;
             default:
@@ -115,6 +128,148 @@ public class main {
         }
     }
     
+    // --- Touches the session; once it has expired the console goes back to the login menu ---
+    private static boolean checkSession() {
+        if (auth.getSessions().touch(session.getToken()) != null) {
+            return true;
+        }
+        System.out.println("⌛ Session expired after " + auth.getSessions().getIdleTimeoutMinutes()
+                + " minutes of inactivity. Please log in again.");
+        session = null;
+        return false;
+    }
+
+    // --- Non-interactive modes; results go to stdout, messages to stderr ---
+    //   main --batch <file|-> [--batch-size N]    run a command stream (see CommandRunner)
+    //   main --serve [port]                       serve the JSON API (see ApiServer) until stopped
+    //   main --backup <dir>                       online backup of the live database (see DbMaintenance)
+    //   main --verify-backup <file>               check a backup against its manifest
+    //   main --restore <file> [target]            verify, then restore a backup (application stopped)
+    private static final String USAGE = "Usage: main [--batch <file|-> [--batch-size N]] | [--serve [port]]"
+            + " | [--backup <dir>] | [--verify-backup <file>] | [--restore <file> [target]]";
+
+    private static int runHeadless(String[] args) {
+        if ("--backup".equals(args[0]) || "--verify-backup".equals(args[0]) || "--restore".equals(args[0])) {
+            return runBackupTool(args);
+        }
+        String source = null;
+        int batchSize = CommandRunner.DEFAULT_BATCH_SIZE;
+        Integer port = null;
+        for (int i = 0; i < args.length; i++) {
+            if ("--batch".equals(args[i]) && i + 1 < args.length) {
+                source = args[++i];
+            } else if ("--batch-size".equals(args[i]) && i + 1 < args.length) {
+                batchSize = Math.max(1, getIntInput(args[++i]));
+            } else if ("--serve".equals(args[i])) {
+                port = i + 1 < args.length && !args[i + 1].startsWith("--") ? getIntInput(args[++i]) : ApiServer.DEFAULT_PORT;
+            } else {
+                System.err.println(USAGE);
+                return 2;
+            }
+        }
+        if ((source == null) == (port == null) || (port != null && port < 0)) {
+            System.err.println(USAGE);
+            return 2;
+        }
+
+        PrintStream results = System.out;
+        System.setOut(System.err);
+        config.connectDB();
+        if (config.getPoolStats() == null) {
+            return 2;
+        }
+        reportMeetingsDrift();
+        if (port != null) {
+            return serve(port);
+        }
+        try (InputStream in = "-".equals(source) ? System.in : new FileInputStream(source);
+             Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+            CommandRunner.Summary summary = new CommandRunner(db, batchSize, results).run(reader);
+            System.err.print(summary);
+            return summary.getFailed() == 0 ? 0 : 1;
+        } catch (IOException e) {
+            System.err.println("❌ Could not read " + source + ": " + e.getMessage());
+            return 2;
+        } finally {
+            results.flush();
+            config.closeDB();
+        }
+    }
+
+    // --- Counters typed in before schema v4 are kept as they were; say so if they disagree with attendance ---
+    private static void reportMeetingsDrift() {
+        if (config.getPoolStats() == null || config.getUpgradedFromVersion() >= MeetingsReconciler.COUNTED_SINCE_VERSION) {
+            return;
+        }
+        try {
+            MeetingsReconciler.Result result = new MeetingsReconciler().reconcile(false);
+            if (result.getDrifted() > 0) {
+                System.out.println("⚠️ " + result + "\n   The recorded values were kept. Run Reports > Reconcile Meetings Attended"
+                        + " (or the batch command 'reconcile fix=true') to recount them from attendance.");
+            }
+        } catch (SQLException e) {
+            System.out.println("⚠️ Could not check meetings_attended against attendance: " + e.getMessage());
+        }
+    }
+
+    private static int runBackupTool(String[] args) {
+        if (args.length < 2 || args.length > ("--restore".equals(args[0]) ? 3 : 2)) {
+            System.err.println(USAGE);
+            return 2;
+        }
+        Path file = Paths.get(args[1]);
+        try {
+            if ("--verify-backup".equals(args[0]) || "--restore".equals(args[0])) {
+                // Neither needs the live database; a restore must not have it open.
+                DbMaintenance.VerifyResult result = "--restore".equals(args[0])
+                        ? DbMaintenance.restore(file, Paths.get(args.length == 3 ? args[2] : config.getDatabasePath()))
+                        : DbMaintenance.verify(file);
+                System.err.println((result.isOk() ? "✅ " : "❌ ") + result);
+                return result.isOk() ? 0 : 1;
+            }
+            config.connectDB();
+            if (config.getPoolStats() == null) {
+                return 2;
+            }
+            try {
+                DbMaintenance.StepResult result = DbMaintenance.backup(file);
+                DbMaintenance.prune(file, config.BACKUP_KEEP);
+                System.err.println("✅ " + result);
+                return 0;
+            } finally {
+                config.closeDB();
+            }
+        } catch (IOException | SQLException e) {
+            System.err.println("❌ " + args[0].substring(2) + " failed: " + e.getMessage());
+            return 1;
+        }
+    }
+
+    private static int serve(int port) {
+        final ApiServer server;
+        try {
+            server = new ApiServer(db, port);
+        } catch (IOException e) {
+            System.err.println("❌ Could not start the HTTP API on port " + port + ": " + e.getMessage());
+            config.closeDB();
+            return 2;
+        }
+        final CountDownLatch stopped = new CountDownLatch(1);
+        // Ctrl+C / SIGTERM: finish in-flight requests, then release the database.
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.stop(5);
+            config.closeDB();
+            stopped.countDown();
+        }, "4ps-http-shutdown"));
+        server.start();
+        try {
+            stopped.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return 0;
+    }
+
     // --- Local Helper for Menu Input (replaces old getIntInput for first/menu choice) ---
     private static int getIntInput(String choiceLine) {
         try {